@@ -18,8 +18,24 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.ModuleActivator;
-import org.openmrs.module.muzima.api.service.DataService;
-import org.openmrs.module.muzimaforms.api.MuzimaFormService;
+import org.openmrs.module.muzimaregistration.api.PendingQueueDataService;
+import org.openmrs.module.muzimaregistration.api.QueueStatusService;
+import org.openmrs.module.muzimaregistration.api.db.jdbc.ReadReplica;
+import org.openmrs.module.muzimaregistration.journal.PayloadJournal;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.metrics.SlowItemTraces;
+import org.openmrs.module.muzimaregistration.metrics.StatementCounter;
+import org.openmrs.module.muzimaregistration.scheduling.QueueLeases;
+import org.openmrs.module.muzimaregistration.utils.GlobalPropertyUtils;
+import org.openmrs.module.muzimaregistration.utils.ObsPlanCache;
+import org.openmrs.module.muzimaregistration.utils.ReadThrottle;
+import org.openmrs.module.muzimaregistration.validation.ValidationResultCache;
+import org.openmrs.module.muzimaregistration.warmup.HandlerWarmUp;
+import org.openmrs.util.OpenmrsUtil;
+
+import java.io.File;
+import java.io.IOException;
+import javax.naming.NamingException;
 
 /**
  * This class contains the logic that is run every time this module is either started or stopped.
@@ -54,11 +70,70 @@ public class MuzimaRegistrationActivator implements ModuleActivator {
 	 */
 	public void started() {
 		log.info("Muzima Registration Module started");
-		DataService dataService = Context.getService(DataService.class);
-		log.info("Registration module will start processing: " + dataService.getAllQueueData().size());
+		QueueStatusService queueStatusService = Context.getService(QueueStatusService.class);
+		log.info("Registration module will start processing: " + queueStatusService.countQueueDataByDiscriminator());
+		log.info("Available forms are: " + queueStatusService.countMuzimaForms());
+
+		HandlerMetrics.registerMBean();
+
+		SlowItemTraces.configure(
+				GlobalPropertyUtils.getInteger(SlowItemTraces.GLOBAL_PROPERTY_CAPACITY, SlowItemTraces.DEFAULT_CAPACITY),
+				GlobalPropertyUtils.getLong(SlowItemTraces.GLOBAL_PROPERTY_THRESHOLD, SlowItemTraces.DEFAULT_THRESHOLD_MILLIS));
+		if (SlowItemTraces.getThresholdMillis() >= 0
+				&& GlobalPropertyUtils.getBoolean(StatementCounter.GLOBAL_PROPERTY_ENABLED, false)) {
+			StatementCounter.enable();
+		}
+
+		ValidationResultCache.configure(
+				GlobalPropertyUtils.getInteger(ValidationResultCache.GLOBAL_PROPERTY_CAPACITY, ValidationResultCache.DEFAULT_CAPACITY),
+				GlobalPropertyUtils.getLong(ValidationResultCache.GLOBAL_PROPERTY_TIME_TO_LIVE, ValidationResultCache.DEFAULT_TIME_TO_LIVE));
+
+		if (GlobalPropertyUtils.getBoolean(PayloadJournal.GLOBAL_PROPERTY_ENABLED, false)) {
+			File defaultFile = new File(OpenmrsUtil.getApplicationDataDirectory(), PayloadJournal.DEFAULT_FILE_NAME);
+			String file = GlobalPropertyUtils.getString(PayloadJournal.GLOBAL_PROPERTY_FILE, defaultFile.getPath());
+			try {
+				PayloadJournal.open(new File(file));
+			} catch (IOException e) {
+				log.error("Unable to open the payload journal: " + file, e);
+			}
+		}
+
+		ReadThrottle.configure(
+				GlobalPropertyUtils.getInteger(ReadThrottle.GLOBAL_PROPERTY_MAX_CONCURRENT, ReadThrottle.DEFAULT_MAX_CONCURRENT),
+				GlobalPropertyUtils.getLong(ReadThrottle.GLOBAL_PROPERTY_MAX_WAIT, ReadThrottle.DEFAULT_MAX_WAIT_MILLIS),
+				GlobalPropertyUtils.getInteger(ReadThrottle.GLOBAL_PROPERTY_MAX_QUEUED, ReadThrottle.DEFAULT_MAX_QUEUED));
+
+		try {
+			ReadReplica.configure(
+					ReadReplica.createDataSource(
+							GlobalPropertyUtils.getString(ReadReplica.GLOBAL_PROPERTY_JNDI_NAME, null),
+							GlobalPropertyUtils.getString(ReadReplica.GLOBAL_PROPERTY_URL, null),
+							GlobalPropertyUtils.getString(ReadReplica.GLOBAL_PROPERTY_USERNAME, null),
+							Context.getRuntimeProperties().getProperty(ReadReplica.RUNTIME_PROPERTY_PASSWORD),
+							GlobalPropertyUtils.getString(ReadReplica.GLOBAL_PROPERTY_DRIVER_CLASS_NAME, null)),
+					GlobalPropertyUtils.getLong(ReadReplica.GLOBAL_PROPERTY_READ_YOUR_WRITES, ReadReplica.DEFAULT_READ_YOUR_WRITES_MILLIS));
+		} catch (NamingException e) {
+			log.error("Unable to find the read only data source, reading from the primary database only.", e);
+		}
+
+		try {
+			// queue data submitted before the index was created, or while the module was stopped.
+			int indexed = Context.getService(PendingQueueDataService.class).indexPendingQueueData();
+			log.info("Indexed pending queue data: " + indexed);
+		} catch (RuntimeException e) {
+			log.error("Unable to index the pending queue data.", e);
+		}
+
+		if (GlobalPropertyUtils.getBoolean(QueueLeases.GLOBAL_PROPERTY_ENABLED, false)) {
+			QueueLeases.start(GlobalPropertyUtils.getString(QueueLeases.GLOBAL_PROPERTY_NODE_ID, null),
+					GlobalPropertyUtils.getLong(QueueLeases.GLOBAL_PROPERTY_LEASE, QueueLeases.DEFAULT_LEASE_MILLIS),
+					GlobalPropertyUtils.getInteger(QueueLeases.GLOBAL_PROPERTY_BATCH_SIZE, QueueLeases.DEFAULT_BATCH_SIZE));
+		}
 
-		MuzimaFormService muzimaFormService = Context.getService(MuzimaFormService.class);
-		log.info("Available forms are: " + muzimaFormService.getAll().size());
+		if (GlobalPropertyUtils.getBoolean(HandlerWarmUp.GLOBAL_PROPERTY_ENABLED, true)) {
+			HandlerWarmUp.start(GlobalPropertyUtils.getInteger(
+					HandlerWarmUp.GLOBAL_PROPERTY_ITERATIONS, HandlerWarmUp.DEFAULT_ITERATIONS));
+		}
 	}
 	
 	/**
@@ -72,6 +147,14 @@ public class MuzimaRegistrationActivator implements ModuleActivator {
 	 * @see ModuleActivator#stopped()
 	 */
 	public void stopped() {
+		HandlerMetrics.unregisterMBean();
+		StatementCounter.disable();
+		PayloadJournal.close();
+		SlowItemTraces.clear();
+		ValidationResultCache.clear();
+		ObsPlanCache.clear();
+		ReadReplica.disable();
+		QueueLeases.stop();
 		log.info("Muzima Registration Module stopped");
 	}
 		
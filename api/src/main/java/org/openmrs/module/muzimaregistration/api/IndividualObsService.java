@@ -0,0 +1,41 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api;
+
+import org.openmrs.Obs;
+import org.openmrs.api.OpenmrsService;
+
+import java.util.List;
+
+/**
+ * This service saves large numbers of individual observations, e.g. vitals streamed from devices outside of a form.
+ * It is a Spring managed bean which is configured in moduleApplicationContext.xml.
+ *
+ * @see org.openmrs.api.context.Context
+ */
+public interface IndividualObsService extends OpenmrsService {
+
+    /**
+     * Save the observations in a single transaction. The observations are inserted grouped per patient and the
+     * session is flushed and cleared of the saved observations every batch size observations.
+     * <p/>
+     * The observations are inserted directly, without going through the ObsService, so they must be complete and
+     * valid: person, concept, value, obs datetime, location, creator and date created must be set and the caller must
+     * have checked them with the {@link org.openmrs.validator.ObsValidator}.
+     *
+     * @param observations the observations.
+     * @return the number of saved observations.
+     */
+    int saveIndividualObs(final List<Obs> observations);
+}
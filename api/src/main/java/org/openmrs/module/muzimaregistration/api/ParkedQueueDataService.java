@@ -0,0 +1,89 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api;
+
+import org.openmrs.api.OpenmrsService;
+import org.openmrs.module.muzima.model.ErrorData;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.model.ParkedQueueData;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * This service keeps the queue data waiting on a missing patient or metadata, so they can be run again as soon as the
+ * dependency is saved. It is a Spring managed bean which is configured in moduleApplicationContext.xml.
+ *
+ * @see org.openmrs.api.context.Context
+ */
+public interface ParkedQueueDataService extends OpenmrsService {
+
+    /**
+     * Get the parked queue data waiting on the dependency.
+     *
+     * @param waitingKey the key of the dependency.
+     * @return the parked queue data waiting on the dependency.
+     */
+    List<ParkedQueueData> getParkedQueueDataByWaitingKey(final String waitingKey);
+
+    /**
+     * Get all parking entries of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @return the parking entries of the queue data, one for each dependency it is waiting on.
+     */
+    List<ParkedQueueData> getParkedQueueDataByQueueDataUuid(final String queueDataUuid);
+
+    /**
+     * Save the parking entry of a queue data.
+     *
+     * @param parkedQueueData the parking entry.
+     * @return the saved parking entry.
+     */
+    ParkedQueueData saveParkedQueueData(final ParkedQueueData parkedQueueData);
+
+    /**
+     * Delete the parking entry of a queue data.
+     *
+     * @param parkedQueueData the parking entry.
+     */
+    void purgeParkedQueueData(final ParkedQueueData parkedQueueData);
+
+    /**
+     * Move the error data of the queue data waiting on the dependency back into the queue, so the queue processor
+     * runs them again. The parking entries of the requeued queue data are deleted. The queue data are requeued in
+     * their own transaction, this is called once the transaction saving the dependency is committed.
+     *
+     * @param waitingKey the key of the saved dependency.
+     * @return the requeued queue data.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    List<QueueData> requeueParkedQueueData(final String waitingKey);
+
+    /**
+     * Get the error data left by the failed processing of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data, kept by its error data.
+     * @return the error data or null when the queue data was processed or removed since.
+     */
+    ErrorData getErrorData(final String queueDataUuid);
+
+    /**
+     * Delete the error data of a queue data which was processed successfully.
+     *
+     * @param errorData the error data.
+     */
+    void purgeErrorData(final ErrorData errorData);
+}
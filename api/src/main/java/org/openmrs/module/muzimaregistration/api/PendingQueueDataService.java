@@ -0,0 +1,82 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api;
+
+import org.openmrs.api.OpenmrsService;
+import org.openmrs.module.muzima.exception.QueueProcessorException;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzima.model.handler.QueueDataHandler;
+import org.openmrs.module.muzimaregistration.api.model.PendingQueueData;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * This service keeps the index of the queue data waiting to be processed by the patient uuid referenced in their
+ * payload. It is a Spring managed bean which is configured in moduleApplicationContext.xml.
+ *
+ * @see org.openmrs.api.context.Context
+ */
+public interface PendingQueueDataService extends OpenmrsService {
+
+    /**
+     * Get the queue data waiting to be processed with the discriminator and referencing the patient uuid, in the order
+     * they were submitted.
+     *
+     * @param discriminator the discriminator of the queue data.
+     * @param patientUuid   the patient uuid referenced by the payload.
+     * @return the matching queue data.
+     */
+    List<QueueData> getPendingQueueData(final String discriminator, final String patientUuid);
+
+    /**
+     * Process a pending queue data ahead of its turn, in its own transaction. A failure rolls back what the handler
+     * saved without affecting the transaction of the caller.
+     *
+     * @param handler   the handler of the queue data.
+     * @param queueData the pending queue data.
+     * @throws QueueProcessorException when the handler fails to process the queue data.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    void processPendingQueueData(final QueueDataHandler handler, final QueueData queueData)
+            throws QueueProcessorException;
+
+    /**
+     * Save the index entry of a queue data, replacing the previous entries of the queue data. The entry is saved in its
+     * own transaction, so a failure never affects the transaction saving the queue data.
+     *
+     * @param pendingQueueData the index entry.
+     * @return the saved index entry.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    PendingQueueData savePendingQueueData(final PendingQueueData pendingQueueData);
+
+    /**
+     * Delete the index entries of a queue data which left the queue, in their own transaction.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    void purgePendingQueueData(final String queueDataUuid);
+
+    /**
+     * Index the queue data waiting in the queue which are not indexed yet, e.g. the queue data submitted before the
+     * index was created.
+     *
+     * @return the number of indexed queue data.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    int indexPendingQueueData();
+}
@@ -0,0 +1,43 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api;
+
+import org.openmrs.api.OpenmrsService;
+import org.openmrs.module.muzimaregistration.api.model.ProcessedQueueData;
+
+/**
+ * This service keeps the ledger of processed queue data, so the handlers can recognize a payload which was already
+ * processed. It is a Spring managed bean which is configured in moduleApplicationContext.xml.
+ *
+ * @see org.openmrs.api.context.Context
+ */
+public interface ProcessedQueueDataService extends OpenmrsService {
+
+    /**
+     * Get the ledger entry of a payload processed by a handler.
+     *
+     * @param discriminator the discriminator of the handler.
+     * @param payloadHash   the hash of the payload.
+     * @return the ledger entry or null when the payload was never processed by the handler.
+     */
+    ProcessedQueueData getProcessedQueueData(final String discriminator, final String payloadHash);
+
+    /**
+     * Save the ledger entry of a processed payload.
+     *
+     * @param processedQueueData the ledger entry.
+     * @return the saved ledger entry.
+     */
+    ProcessedQueueData saveProcessedQueueData(final ProcessedQueueData processedQueueData);
+}
@@ -0,0 +1,83 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api;
+
+import org.openmrs.api.OpenmrsService;
+import org.openmrs.module.muzimaregistration.api.model.QueueDataLease;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * This service coordinates which node processes which queue data when several OpenMRS nodes share the database. It is
+ * a Spring managed bean which is configured in moduleApplicationContext.xml.
+ *
+ * @see org.openmrs.api.context.Context
+ */
+public interface QueueDataLeaseService extends OpenmrsService {
+
+    /**
+     * Claim the lease of a queue data. The lease is claimed when no node holds it, when the node already holds it or
+     * when the lease of another node expired. The claim is committed on its own, so the other nodes see it before
+     * the queue data is processed.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     * @param expiresOn     when the lease expires unless it is renewed.
+     * @return the outcome of the claim.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    QueueDataLease.Claim claimLease(final String queueDataUuid, final String owner, final Date expiresOn);
+
+    /**
+     * Extend the leases held by a node.
+     *
+     * @param queueDataUuids the uuids of the queue data being processed by the node.
+     * @param owner          the id of the node.
+     * @param expiresOn      when the leases expire unless they are renewed again.
+     * @return the number of renewed leases.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    int renewLeases(final Collection<String> queueDataUuids, final String owner, final Date expiresOn);
+
+    /**
+     * Mark the lease of a processed queue data as completed. The lease is completed in the transaction processing the
+     * queue data, so it is only completed when the processing is committed.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     */
+    @Transactional
+    void completeLease(final String queueDataUuid, final String owner);
+
+    /**
+     * Give up the lease of a queue data which failed, so it can be claimed again right away once it is requeued.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    void releaseLease(final String queueDataUuid, final String owner);
+
+    /**
+     * Delete the completed leases created before the date.
+     *
+     * @param before the creation date of the oldest completed lease kept.
+     * @return the number of deleted leases.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    int purgeCompletedLeases(final Date before);
+}
@@ -0,0 +1,48 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api;
+
+import org.openmrs.api.OpenmrsService;
+
+import java.util.Map;
+
+/**
+ * This service reports the size of the muzima queues using count queries, without loading the queue data. It is a
+ * Spring managed bean which is configured in moduleApplicationContext.xml.
+ *
+ * @see org.openmrs.api.context.Context
+ */
+public interface QueueStatusService extends OpenmrsService {
+
+    /**
+     * Count the queue data waiting to be processed, grouped by discriminator.
+     *
+     * @return the number of queue data for each discriminator.
+     */
+    Map<String, Long> countQueueDataByDiscriminator();
+
+    /**
+     * Count the queue data which failed processing, grouped by discriminator.
+     *
+     * @return the number of error data for each discriminator.
+     */
+    Map<String, Long> countErrorDataByDiscriminator();
+
+    /**
+     * Count the available muzima forms.
+     *
+     * @return the number of muzima forms.
+     */
+    Number countMuzimaForms();
+}
@@ -0,0 +1,36 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api;
+
+import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+
+import java.io.IOException;
+
+/**
+ * Callback receiving the registration data one by one while the registration data is being streamed from the
+ * database.
+ *
+ * @see RegistrationDataService#streamRegistrationData(RegistrationDataCallback)
+ */
+public interface RegistrationDataCallback {
+
+    /**
+     * Handle a single registration data. The registration data will be evicted from the session at some point after
+     * this call, so implementation should not keep reference to it.
+     *
+     * @param registrationData the registration data.
+     * @throws IOException when the implementation is unable to write the registration data.
+     */
+    void handle(final RegistrationData registrationData) throws IOException;
+}
@@ -16,6 +16,8 @@ package org.openmrs.module.muzimaregistration.api;
 import org.openmrs.api.OpenmrsService;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
 
+import java.io.IOException;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -54,6 +56,17 @@ public interface RegistrationDataService extends OpenmrsService {
      */
     RegistrationData getRegistrationDataByTemporaryUuid(final String temporaryUuid);
 
+    /**
+     * Get registration data based on the temporary uuid for display only, e.g. by the read only web endpoints. The
+     * registration data is read from the read only database when it is configured and is not attached to the
+     * hibernate session, it must not be saved or deleted. Use {@link #getRegistrationDataByTemporaryUuid(String)}
+     * for the registration data to be changed.
+     *
+     * @param temporaryUuid the temporary uuid assigned to a patient.
+     * @return the registration data based on the temporary uuid.
+     */
+    RegistrationData getReadOnlyRegistrationDataByTemporaryUuid(final String temporaryUuid);
+
     /**
      * Get registration data based on the patient real uuid.
      *
@@ -70,6 +83,16 @@ public interface RegistrationDataService extends OpenmrsService {
      */
     RegistrationData saveRegistrationData(final RegistrationData registrationData);
 
+    /**
+     * Reserve the temporary uuid of a registration by inserting its registration data right away, before the patient
+     * is saved. The unique constraint on the temporary uuid makes a concurrent reservation of the same temporary uuid
+     * fail instead of creating the patient twice.
+     *
+     * @param registrationData the registration data with the temporary uuid and the uuid the patient will have.
+     * @return the saved registration data.
+     */
+    RegistrationData reserveRegistrationData(final RegistrationData registrationData);
+
     /**
      * Delete a registration data.
      *
@@ -91,4 +114,51 @@ public interface RegistrationDataService extends OpenmrsService {
      * @return the number of registration data in the database.
      */
     Number countRegistrationData();
+
+    /**
+     * Get the registration data with a temporary uuid or an assigned uuid starting with the search term.
+     *
+     * @param search     the search term, blank to get all registration data.
+     * @param pageNumber the page number.
+     * @param pageSize   the page size.
+     * @return the matching registration data.
+     */
+    List<RegistrationData> getRegistrationData(final String search, final Integer pageNumber, final Integer pageSize);
+
+    /**
+     * Get a page of the registration data with a temporary uuid or an assigned uuid starting with the search term,
+     * ordered by id. The page starts right after the registration data with the given id. The registration data is
+     * read from the read only database when it is configured and must not be saved or deleted.
+     *
+     * @param search   the search term, blank to get all registration data.
+     * @param afterId  the id of the last registration data of the previous page, 0 for the first page.
+     * @param pageSize the page size.
+     * @return the registration data in the page.
+     */
+    List<RegistrationData> getRegistrationDataAfter(final String search, final Integer afterId, final Integer pageSize);
+
+    /**
+     * Count the registration data with a temporary uuid or an assigned uuid starting with the search term.
+     *
+     * @param search the search term, blank to count all registration data.
+     * @return the number of matching registration data.
+     */
+    Number countRegistrationData(final String search);
+
+    /**
+     * Get the most recent date any of the patients was created or changed.
+     *
+     * @param patientUuids the uuids of the patients.
+     * @return the most recent date created or date changed of the patients or null when no patient is found.
+     */
+    Date getPatientsLastModified(final List<String> patientUuids);
+
+    /**
+     * Stream all registration data in the database to the callback using a database cursor, without holding all the
+     * registration data in memory.
+     *
+     * @param callback the callback receiving each registration data.
+     * @throws IOException when the callback is unable to handle a registration data.
+     */
+    void streamRegistrationData(final RegistrationDataCallback callback) throws IOException;
 }
\ No newline at end of file
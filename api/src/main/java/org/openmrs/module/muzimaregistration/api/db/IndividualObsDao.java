@@ -0,0 +1,32 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db;
+
+import org.openmrs.Obs;
+
+import java.util.List;
+
+/**
+ * Database methods for {@link org.openmrs.module.muzimaregistration.api.IndividualObsService}.
+ */
+public interface IndividualObsDao {
+
+    /**
+     * Insert the observations, flushing and evicting the saved observations every batch size observations.
+     *
+     * @param observations the observations.
+     * @param batchSize    the number of observations inserted between flushes.
+     */
+    void saveObs(final List<Obs> observations, final int batchSize);
+}
@@ -0,0 +1,80 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db;
+
+import org.openmrs.module.muzima.model.ErrorData;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.model.ParkedQueueData;
+
+import java.util.List;
+
+/**
+ * Database methods for {@link org.openmrs.module.muzimaregistration.api.ParkedQueueDataService}.
+ */
+public interface ParkedQueueDataDao {
+
+    /**
+     * Get the parked queue data waiting on the dependency.
+     *
+     * @param waitingKey the key of the dependency.
+     * @return the parked queue data.
+     */
+    List<ParkedQueueData> getParkedQueueDataByWaitingKey(final String waitingKey);
+
+    /**
+     * Get all parking entries of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @return the parking entries.
+     */
+    List<ParkedQueueData> getParkedQueueDataByQueueDataUuid(final String queueDataUuid);
+
+    /**
+     * Save the parking entry.
+     *
+     * @param parkedQueueData the parking entry.
+     * @return the saved parking entry.
+     */
+    ParkedQueueData saveParkedQueueData(final ParkedQueueData parkedQueueData);
+
+    /**
+     * Delete the parking entry.
+     *
+     * @param parkedQueueData the parking entry.
+     */
+    void purgeParkedQueueData(final ParkedQueueData parkedQueueData);
+
+    /**
+     * Get the error data by uuid.
+     *
+     * @param uuid the uuid of the error data.
+     * @return the error data or null.
+     */
+    ErrorData getErrorData(final String uuid);
+
+    /**
+     * Delete the error data.
+     *
+     * @param errorData the error data.
+     */
+    void purgeErrorData(final ErrorData errorData);
+
+    /**
+     * Save the queue data.
+     *
+     * @param queueData the queue data.
+     * @return the saved queue data.
+     */
+    QueueData saveQueueData(final QueueData queueData);
+}
@@ -0,0 +1,65 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db;
+
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.model.PendingQueueData;
+
+import java.util.List;
+
+/**
+ * Database methods for {@link org.openmrs.module.muzimaregistration.api.PendingQueueDataService}.
+ */
+public interface PendingQueueDataDao {
+
+    /**
+     * Get the queue data with the discriminator and indexed under the patient uuid.
+     *
+     * @param discriminator the discriminator of the queue data.
+     * @param patientUuid   the patient uuid referenced by the payload.
+     * @return the matching queue data.
+     */
+    List<QueueData> getQueueData(final String discriminator, final String patientUuid);
+
+    /**
+     * Get all index entries of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @return the index entries.
+     */
+    List<PendingQueueData> getPendingQueueDataByQueueDataUuid(final String queueDataUuid);
+
+    /**
+     * Get the queue data with one of the discriminators which don't have any index entry.
+     *
+     * @param discriminators the discriminators of the queue data.
+     * @return the queue data without index entries.
+     */
+    List<QueueData> getUnindexedQueueData(final List<String> discriminators);
+
+    /**
+     * Save the index entry.
+     *
+     * @param pendingQueueData the index entry.
+     * @return the saved index entry.
+     */
+    PendingQueueData savePendingQueueData(final PendingQueueData pendingQueueData);
+
+    /**
+     * Delete the index entry.
+     *
+     * @param pendingQueueData the index entry.
+     */
+    void purgePendingQueueData(final PendingQueueData pendingQueueData);
+}
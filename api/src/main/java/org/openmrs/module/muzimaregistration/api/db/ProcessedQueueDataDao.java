@@ -0,0 +1,39 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db;
+
+import org.openmrs.module.muzimaregistration.api.model.ProcessedQueueData;
+
+/**
+ * Database methods for {@link org.openmrs.module.muzimaregistration.api.ProcessedQueueDataService}.
+ */
+public interface ProcessedQueueDataDao {
+
+    /**
+     * Get the ledger entry by the discriminator and payload hash.
+     *
+     * @param discriminator the discriminator of the handler.
+     * @param payloadHash   the hash of the payload.
+     * @return the ledger entry or null.
+     */
+    ProcessedQueueData getProcessedQueueData(final String discriminator, final String payloadHash);
+
+    /**
+     * Save the ledger entry.
+     *
+     * @param processedQueueData the ledger entry.
+     * @return the saved ledger entry.
+     */
+    ProcessedQueueData saveProcessedQueueData(final ProcessedQueueData processedQueueData);
+}
@@ -0,0 +1,69 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db;
+
+import org.openmrs.module.muzimaregistration.api.model.QueueDataLease;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * Database methods for {@link org.openmrs.module.muzimaregistration.api.QueueDataLeaseService}.
+ */
+public interface QueueDataLeaseDao {
+
+    /**
+     * Claim the lease of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     * @param expiresOn     when the lease expires unless it is renewed.
+     * @return the outcome of the claim.
+     */
+    QueueDataLease.Claim claimLease(final String queueDataUuid, final String owner, final Date expiresOn);
+
+    /**
+     * Extend the leases held by a node.
+     *
+     * @param queueDataUuids the uuids of the queue data.
+     * @param owner          the id of the node.
+     * @param expiresOn      the new expiry of the leases.
+     * @return the number of renewed leases.
+     */
+    int renewLeases(final Collection<String> queueDataUuids, final String owner, final Date expiresOn);
+
+    /**
+     * Mark the lease of a queue data as completed.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     */
+    void completeLease(final String queueDataUuid, final String owner);
+
+    /**
+     * Delete the lease of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     */
+    void releaseLease(final String queueDataUuid, final String owner);
+
+    /**
+     * Delete the completed leases created before the date.
+     *
+     * @param before the creation date of the oldest completed lease kept.
+     * @return the number of deleted leases.
+     */
+    int purgeCompletedLeases(final Date before);
+}
@@ -0,0 +1,38 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db;
+
+import java.util.Map;
+
+/**
+ * Database methods for {@link org.openmrs.module.muzimaregistration.api.QueueStatusService}.
+ */
+public interface QueueStatusDao {
+
+    /**
+     * Count the non voided data of the class, grouped by discriminator.
+     *
+     * @param dataClass the mapped class, must have a discriminator property.
+     * @return the number of data for each discriminator.
+     */
+    Map<String, Long> countByDiscriminator(final Class<?> dataClass);
+
+    /**
+     * Count the non voided data of the class.
+     *
+     * @param dataClass the mapped class.
+     * @return the number of data.
+     */
+    Number count(final Class<?> dataClass);
+}
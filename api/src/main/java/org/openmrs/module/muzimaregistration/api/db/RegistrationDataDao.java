@@ -15,8 +15,11 @@ package org.openmrs.module.muzimaregistration.api.db;
 
 
 import org.openmrs.module.muzima.api.db.SingleClassDao;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataCallback;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
 
+import java.io.IOException;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -59,6 +62,16 @@ public interface RegistrationDataDao extends SingleClassDao<RegistrationData> {
      */
     RegistrationData saveRegistrationData(final RegistrationData registrationData);
 
+    /**
+     * Reserve the temporary uuid of a registration by inserting its registration data right away, before the patient
+     * is saved. The registration data is flushed, so the unique constraint on the temporary uuid is checked
+     * immediately.
+     *
+     * @param registrationData the registration data with the temporary uuid and the uuid the patient will have.
+     * @return the saved registration data.
+     */
+    RegistrationData reserveRegistrationData(final RegistrationData registrationData);
+
     /**
      * Delete a registration data.
      *
@@ -67,17 +80,48 @@ public interface RegistrationDataDao extends SingleClassDao<RegistrationData> {
     void deleteRegistrationData(final RegistrationData registrationData);
 
     /**
-     * Get all registration data information from the database.
+     * Get the registration data with a temporary uuid or an assigned uuid starting with the search term.
      *
+     * @param search     the search term, blank to get all registration data.
      * @param pageNumber the page number.
      * @param pageSize   the page size.
-     * @return all registration data in the database.
+     * @return the matching registration data.
      */
-    List<RegistrationData> getRegistrationData(final Integer pageNumber, final Integer pageSize);
+    List<RegistrationData> getRegistrationData(final String search, final Integer pageNumber, final Integer pageSize);
 
     /**
-     * Count the number of registration data in the database.
-     * @return the number of registration data in the database.
+     * Get a page of the registration data with a temporary uuid or an assigned uuid starting with the search term,
+     * ordered by id. The page starts right after the registration data with the given id.
+     *
+     * @param search   the search term, blank to get all registration data.
+     * @param afterId  the id of the last registration data of the previous page, 0 for the first page.
+     * @param pageSize the page size.
+     * @return the registration data in the page.
+     */
+    List<RegistrationData> getRegistrationDataAfter(final String search, final Integer afterId, final Integer pageSize);
+
+    /**
+     * Count the registration data with a temporary uuid or an assigned uuid starting with the search term.
+     *
+     * @param search the search term, blank to count all registration data.
+     * @return the number of matching registration data.
+     */
+    Number countRegistrationData(final String search);
+
+    /**
+     * Get the most recent date any of the patients was created or changed.
+     *
+     * @param patientUuids the uuids of the patients.
+     * @return the most recent date created or date changed of the patients or null when no patient is found.
+     */
+    Date getPatientsLastModified(final List<String> patientUuids);
+
+    /**
+     * Stream all registration data in the database to the callback using a database cursor, without holding all the
+     * registration data in memory.
+     *
+     * @param callback the callback receiving each registration data.
+     * @throws IOException when the callback is unable to handle a registration data.
      */
-    Number countRegistrationData();
+    void streamRegistrationData(final RegistrationDataCallback callback) throws IOException;
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db.hibernate;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openmrs.Obs;
+import org.openmrs.module.muzimaregistration.api.db.IndividualObsDao;
+
+import java.util.List;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.db.IndividualObsDao}.
+ */
+public class HibernateIndividualObsDao implements IndividualObsDao {
+
+    private SessionFactory sessionFactory;
+
+    /**
+     * @param sessionFactory the sessionFactory to set
+     */
+    public void setSessionFactory(final SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Insert the observations, flushing and evicting the saved observations every batch size observations. With
+     * hibernate.jdbc.batch_size configured, each flush sends the inserts as one jdbc batch. Only the saved
+     * observations are evicted, other objects in the session are left untouched.
+     *
+     * @param observations the observations.
+     * @param batchSize    the number of observations inserted between flushes.
+     */
+    @Override
+    public void saveObs(final List<Obs> observations, final int batchSize) {
+        Session session = sessionFactory.getCurrentSession();
+        int size = Math.max(1, batchSize);
+        for (int start = 0; start < observations.size(); start += size) {
+            List<Obs> chunk = observations.subList(start, Math.min(start + size, observations.size()));
+            for (Obs obs : chunk) {
+                session.save(obs);
+            }
+            session.flush();
+            for (Obs obs : chunk) {
+                session.evict(obs);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
+import org.openmrs.module.muzima.model.ErrorData;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.db.ParkedQueueDataDao;
+import org.openmrs.module.muzimaregistration.api.model.ParkedQueueData;
+
+import java.util.List;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.db.ParkedQueueDataDao}.
+ */
+public class HibernateParkedQueueDataDao implements ParkedQueueDataDao {
+
+    private SessionFactory sessionFactory;
+
+    /**
+     * @param sessionFactory the sessionFactory to set
+     */
+    public void setSessionFactory(final SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Get the parked queue data waiting on the dependency, in the order they were parked. Served by the index on the
+     * waiting key.
+     *
+     * @param waitingKey the key of the dependency.
+     * @return the parked queue data.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ParkedQueueData> getParkedQueueDataByWaitingKey(final String waitingKey) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(ParkedQueueData.class);
+        criteria.add(Restrictions.eq("waitingKey", waitingKey));
+        criteria.addOrder(Order.asc("id"));
+        return criteria.list();
+    }
+
+    /**
+     * Get all parking entries of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @return the parking entries.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<ParkedQueueData> getParkedQueueDataByQueueDataUuid(final String queueDataUuid) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(ParkedQueueData.class);
+        criteria.add(Restrictions.eq("queueDataUuid", queueDataUuid));
+        return criteria.list();
+    }
+
+    /**
+     * Save the parking entry.
+     *
+     * @param parkedQueueData the parking entry.
+     * @return the saved parking entry.
+     */
+    @Override
+    public ParkedQueueData saveParkedQueueData(final ParkedQueueData parkedQueueData) {
+        sessionFactory.getCurrentSession().saveOrUpdate(parkedQueueData);
+        return parkedQueueData;
+    }
+
+    /**
+     * Delete the parking entry.
+     *
+     * @param parkedQueueData the parking entry.
+     */
+    @Override
+    public void purgeParkedQueueData(final ParkedQueueData parkedQueueData) {
+        sessionFactory.getCurrentSession().delete(parkedQueueData);
+    }
+
+    /**
+     * Get the non voided error data by uuid.
+     *
+     * @param uuid the uuid of the error data.
+     * @return the error data or null.
+     */
+    @Override
+    public ErrorData getErrorData(final String uuid) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(ErrorData.class);
+        criteria.add(Restrictions.eq("uuid", uuid));
+        criteria.add(Restrictions.eq("voided", Boolean.FALSE));
+        return (ErrorData) criteria.uniqueResult();
+    }
+
+    /**
+     * Delete the error data.
+     *
+     * @param errorData the error data.
+     */
+    @Override
+    public void purgeErrorData(final ErrorData errorData) {
+        sessionFactory.getCurrentSession().delete(errorData);
+    }
+
+    /**
+     * Save the queue data.
+     *
+     * @param queueData the queue data.
+     * @return the saved queue data.
+     */
+    @Override
+    public QueueData saveQueueData(final QueueData queueData) {
+        sessionFactory.getCurrentSession().saveOrUpdate(queueData);
+        return queueData;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Restrictions;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.db.PendingQueueDataDao;
+import org.openmrs.module.muzimaregistration.api.model.PendingQueueData;
+
+import java.util.List;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.db.PendingQueueDataDao}.
+ */
+public class HibernatePendingQueueDataDao implements PendingQueueDataDao {
+
+    private SessionFactory sessionFactory;
+
+    /**
+     * @param sessionFactory the sessionFactory to set
+     */
+    public void setSessionFactory(final SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Get the non voided queue data with the discriminator and indexed under the patient uuid, ordered by submission.
+     * The index entries are found through the index on the patient uuid, the queue data through their unique uuid.
+     *
+     * @param discriminator the discriminator of the queue data.
+     * @param patientUuid   the patient uuid referenced by the payload.
+     * @return the matching queue data.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<QueueData> getQueueData(final String discriminator, final String patientUuid) {
+        return sessionFactory.getCurrentSession().createQuery(
+                "select queueData from " + QueueData.class.getName() + " queueData, "
+                        + PendingQueueData.class.getName() + " pending"
+                        + " where pending.patientUuid = :patientUuid and pending.discriminator = :discriminator"
+                        + " and queueData.uuid = pending.queueDataUuid and queueData.voided = false"
+                        + " order by queueData.dateCreated, queueData.id")
+                .setString("patientUuid", patientUuid)
+                .setString("discriminator", discriminator)
+                .list();
+    }
+
+    /**
+     * Get all index entries of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @return the index entries.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<PendingQueueData> getPendingQueueDataByQueueDataUuid(final String queueDataUuid) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(PendingQueueData.class);
+        criteria.add(Restrictions.eq("queueDataUuid", queueDataUuid));
+        return criteria.list();
+    }
+
+    /**
+     * Get the non voided queue data with one of the discriminators which don't have any index entry.
+     *
+     * @param discriminators the discriminators of the queue data.
+     * @return the queue data without index entries.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<QueueData> getUnindexedQueueData(final List<String> discriminators) {
+        return sessionFactory.getCurrentSession().createQuery(
+                "from " + QueueData.class.getName() + " queueData"
+                        + " where queueData.discriminator in (:discriminators) and queueData.voided = false"
+                        + " and queueData.uuid not in (select pending.queueDataUuid from "
+                        + PendingQueueData.class.getName() + " pending)")
+                .setParameterList("discriminators", discriminators)
+                .list();
+    }
+
+    /**
+     * Save the index entry.
+     *
+     * @param pendingQueueData the index entry.
+     * @return the saved index entry.
+     */
+    @Override
+    public PendingQueueData savePendingQueueData(final PendingQueueData pendingQueueData) {
+        sessionFactory.getCurrentSession().saveOrUpdate(pendingQueueData);
+        return pendingQueueData;
+    }
+
+    /**
+     * Delete the index entry.
+     *
+     * @param pendingQueueData the index entry.
+     */
+    @Override
+    public void purgePendingQueueData(final PendingQueueData pendingQueueData) {
+        sessionFactory.getCurrentSession().delete(pendingQueueData);
+    }
+}
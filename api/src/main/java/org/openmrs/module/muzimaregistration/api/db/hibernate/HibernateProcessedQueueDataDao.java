@@ -0,0 +1,62 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Restrictions;
+import org.openmrs.module.muzimaregistration.api.db.ProcessedQueueDataDao;
+import org.openmrs.module.muzimaregistration.api.model.ProcessedQueueData;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.db.ProcessedQueueDataDao}.
+ */
+public class HibernateProcessedQueueDataDao implements ProcessedQueueDataDao {
+
+    private SessionFactory sessionFactory;
+
+    /**
+     * @param sessionFactory the sessionFactory to set
+     */
+    public void setSessionFactory(final SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Get the ledger entry by the discriminator and payload hash, served by the unique index on both columns.
+     *
+     * @param discriminator the discriminator of the handler.
+     * @param payloadHash   the hash of the payload.
+     * @return the ledger entry or null.
+     */
+    @Override
+    public ProcessedQueueData getProcessedQueueData(final String discriminator, final String payloadHash) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(ProcessedQueueData.class);
+        criteria.add(Restrictions.eq("payloadHash", payloadHash));
+        criteria.add(Restrictions.eq("discriminator", discriminator));
+        return (ProcessedQueueData) criteria.uniqueResult();
+    }
+
+    /**
+     * Save the ledger entry.
+     *
+     * @param processedQueueData the ledger entry.
+     * @return the saved ledger entry.
+     */
+    @Override
+    public ProcessedQueueData saveProcessedQueueData(final ProcessedQueueData processedQueueData) {
+        sessionFactory.getCurrentSession().saveOrUpdate(processedQueueData);
+        return processedQueueData;
+    }
+}
@@ -0,0 +1,161 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.exception.ConstraintViolationException;
+import org.openmrs.module.muzimaregistration.api.db.QueueDataLeaseDao;
+import org.openmrs.module.muzimaregistration.api.model.QueueDataLease;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.db.QueueDataLeaseDao}.
+ */
+public class HibernateQueueDataLeaseDao implements QueueDataLeaseDao {
+
+    private SessionFactory sessionFactory;
+
+    /**
+     * @param sessionFactory the sessionFactory to set
+     */
+    public void setSessionFactory(final SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Claim the lease of a queue data. The claim never relies on what was read before: a new lease is inserted and
+     * the unique constraint on the queue data uuid lets only one node win, an existing lease is taken with a single
+     * conditional update which only matches when the lease is still claimable.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     * @param expiresOn     when the lease expires unless it is renewed.
+     * @return the outcome of the claim.
+     */
+    @Override
+    public QueueDataLease.Claim claimLease(final String queueDataUuid, final String owner, final Date expiresOn) {
+        Session session = sessionFactory.getCurrentSession();
+        Criteria criteria = session.createCriteria(QueueDataLease.class);
+        criteria.add(Restrictions.eq("queueDataUuid", queueDataUuid));
+        QueueDataLease lease = (QueueDataLease) criteria.uniqueResult();
+        Date now = new Date();
+        if (lease == null) {
+            try {
+                // plain sql, a failed insert must not leave an entity behind in the session.
+                session.createSQLQuery("insert into muzimaregistration_queue_data_lease"
+                        + " (queue_data_uuid, owner, expires_on, completed, date_created) values (?, ?, ?, ?, ?)")
+                        .setString(0, queueDataUuid)
+                        .setString(1, owner)
+                        .setTimestamp(2, expiresOn)
+                        .setBoolean(3, false)
+                        .setTimestamp(4, now)
+                        .executeUpdate();
+                return QueueDataLease.Claim.CLAIMED;
+            } catch (ConstraintViolationException e) {
+                // another node inserted the lease first.
+                return QueueDataLease.Claim.HELD;
+            }
+        }
+        if (Boolean.TRUE.equals(lease.getCompleted())) {
+            return QueueDataLease.Claim.COMPLETED;
+        }
+        int updated = session.createQuery("update QueueDataLease set owner = :owner, expiresOn = :expiresOn"
+                + " where queueDataUuid = :queueDataUuid and completed = :completed"
+                + " and (owner = :owner or expiresOn < :now)")
+                .setString("owner", owner)
+                .setTimestamp("expiresOn", expiresOn)
+                .setString("queueDataUuid", queueDataUuid)
+                .setBoolean("completed", false)
+                .setTimestamp("now", now)
+                .executeUpdate();
+        return updated == 1 ? QueueDataLease.Claim.CLAIMED : QueueDataLease.Claim.HELD;
+    }
+
+    /**
+     * Extend the leases held by a node.
+     *
+     * @param queueDataUuids the uuids of the queue data.
+     * @param owner          the id of the node.
+     * @param expiresOn      the new expiry of the leases.
+     * @return the number of renewed leases.
+     */
+    @Override
+    public int renewLeases(final Collection<String> queueDataUuids, final String owner, final Date expiresOn) {
+        if (queueDataUuids.isEmpty()) {
+            return 0;
+        }
+        return sessionFactory.getCurrentSession()
+                .createQuery("update QueueDataLease set expiresOn = :expiresOn"
+                        + " where owner = :owner and completed = :completed and queueDataUuid in (:queueDataUuids)")
+                .setTimestamp("expiresOn", expiresOn)
+                .setString("owner", owner)
+                .setBoolean("completed", false)
+                .setParameterList("queueDataUuids", queueDataUuids)
+                .executeUpdate();
+    }
+
+    /**
+     * Mark the lease of a queue data as completed.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     */
+    @Override
+    public void completeLease(final String queueDataUuid, final String owner) {
+        sessionFactory.getCurrentSession()
+                .createQuery("update QueueDataLease set completed = :completed"
+                        + " where queueDataUuid = :queueDataUuid and owner = :owner")
+                .setBoolean("completed", true)
+                .setString("queueDataUuid", queueDataUuid)
+                .setString("owner", owner)
+                .executeUpdate();
+    }
+
+    /**
+     * Delete the lease of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     */
+    @Override
+    public void releaseLease(final String queueDataUuid, final String owner) {
+        sessionFactory.getCurrentSession()
+                .createQuery("delete from QueueDataLease"
+                        + " where queueDataUuid = :queueDataUuid and owner = :owner and completed = :completed")
+                .setString("queueDataUuid", queueDataUuid)
+                .setString("owner", owner)
+                .setBoolean("completed", false)
+                .executeUpdate();
+    }
+
+    /**
+     * Delete the completed leases created before the date.
+     *
+     * @param before the creation date of the oldest completed lease kept.
+     * @return the number of deleted leases.
+     */
+    @Override
+    public int purgeCompletedLeases(final Date before) {
+        return sessionFactory.getCurrentSession()
+                .createQuery("delete from QueueDataLease where completed = :completed and dateCreated < :before")
+                .setBoolean("completed", true)
+                .setTimestamp("before", before)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db.hibernate;
+
+import org.hibernate.Criteria;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.openmrs.module.muzimaregistration.api.db.QueueStatusDao;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.db.QueueStatusDao}.
+ */
+public class HibernateQueueStatusDao implements QueueStatusDao {
+
+    private SessionFactory sessionFactory;
+
+    /**
+     * @param sessionFactory the sessionFactory to set
+     */
+    public void setSessionFactory(final SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Count the non voided data of the class, grouped by discriminator.
+     *
+     * @param dataClass the mapped class, must have a discriminator property.
+     * @return the number of data for each discriminator.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public Map<String, Long> countByDiscriminator(final Class<?> dataClass) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(dataClass);
+        criteria.add(Restrictions.eq("voided", Boolean.FALSE));
+        criteria.setProjection(Projections.projectionList()
+                .add(Projections.groupProperty("discriminator"))
+                .add(Projections.rowCount()));
+        Map<String, Long> counts = new TreeMap<String, Long>();
+        for (Object[] row : (List<Object[]>) criteria.list()) {
+            counts.put(String.valueOf(row[0]), ((Number) row[1]).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * Count the non voided data of the class.
+     *
+     * @param dataClass the mapped class.
+     * @return the number of data.
+     */
+    @Override
+    public Number count(final Class<?> dataClass) {
+        Criteria criteria = sessionFactory.getCurrentSession().createCriteria(dataClass);
+        criteria.add(Restrictions.eq("voided", Boolean.FALSE));
+        criteria.setProjection(Projections.rowCount());
+        return (Number) criteria.uniqueResult();
+    }
+}
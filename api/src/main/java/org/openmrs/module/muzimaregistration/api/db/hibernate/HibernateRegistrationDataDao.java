@@ -16,15 +16,26 @@ package org.openmrs.module.muzimaregistration.api.db.hibernate;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.hibernate.CacheMode;
 import org.hibernate.Criteria;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.criterion.MatchMode;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.ProjectionList;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.openmrs.Patient;
 import org.openmrs.module.muzima.api.db.hibernate.HibernateSingleClassDao;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataCallback;
 import org.openmrs.module.muzimaregistration.api.db.RegistrationDataDao;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -32,6 +43,10 @@ import java.util.List;
  */
 public class HibernateRegistrationDataDao extends HibernateSingleClassDao<RegistrationData> implements RegistrationDataDao {
 
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    private static final int STREAM_CLEAR_INTERVAL = 1000;
+
     private final Log log = LogFactory.getLog(this.getClass());
 
     public HibernateRegistrationDataDao() {
@@ -105,6 +120,20 @@ public class HibernateRegistrationDataDao extends HibernateSingleClassDao<Regist
         return saveOrUpdate(registrationData);
     }
 
+    /**
+     * Save the registration data and flush it, so the unique constraint on the temporary uuid is checked now and not
+     * when the transaction commits.
+     *
+     * @param registrationData the registration data.
+     * @return the saved registration data.
+     */
+    @Override
+    public RegistrationData reserveRegistrationData(final RegistrationData registrationData) {
+        RegistrationData savedRegistrationData = saveOrUpdate(registrationData);
+        getSessionFactory().getCurrentSession().flush();
+        return savedRegistrationData;
+    }
+
     /**
      * Delete a registration data.
      *
@@ -117,16 +146,19 @@ public class HibernateRegistrationDataDao extends HibernateSingleClassDao<Regist
     }
 
     /**
-     * Get all registration data information from the database.
+     * Get the registration data with a temporary uuid or an assigned uuid starting with the search term.
      *
+     * @param search     the search term, blank to get all registration data.
      * @param pageNumber the page number.
      * @param pageSize   the page size.
-     * @return all registration data in the database.
+     * @return the matching registration data.
      */
     @Override
     @SuppressWarnings("unchecked")
-    public List<RegistrationData> getRegistrationData(final Integer pageNumber, final Integer pageSize) {
+    public List<RegistrationData> getRegistrationData(final String search, final Integer pageNumber,
+                                                      final Integer pageSize) {
         Criteria criteria = getSessionFactory().getCurrentSession().createCriteria(mappedClass);
+        addSearchRestriction(criteria, search);
         if (pageNumber != null) {
             criteria.setFirstResult((pageNumber - 1) * pageSize);
         }
@@ -138,13 +170,109 @@ public class HibernateRegistrationDataDao extends HibernateSingleClassDao<Regist
     }
 
     /**
-     * Count the number of registration data in the database.
-     * @return the number of registration data in the database.
+     * Get a page of the registration data with a temporary uuid or an assigned uuid starting with the search term,
+     * ordered by id. The page starts right after the registration data with the given id.
+     *
+     * @param search   the search term, blank to get all registration data.
+     * @param afterId  the id of the last registration data of the previous page, 0 for the first page.
+     * @param pageSize the page size.
+     * @return the registration data in the page.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<RegistrationData> getRegistrationDataAfter(final String search, final Integer afterId,
+                                                           final Integer pageSize) {
+        Criteria criteria = getSessionFactory().getCurrentSession().createCriteria(mappedClass);
+        addSearchRestriction(criteria, search);
+        criteria.add(Restrictions.gt("id", afterId == null ? 0 : afterId));
+        criteria.add(Restrictions.eq("voided", Boolean.FALSE));
+        criteria.addOrder(Order.asc("id"));
+        if (pageSize != null) {
+            criteria.setMaxResults(pageSize);
+        }
+        return criteria.list();
+    }
+
+    /**
+     * Count the registration data with a temporary uuid or an assigned uuid starting with the search term.
+     *
+     * @param search the search term, blank to count all registration data.
+     * @return the number of matching registration data.
      */
-    public Number countRegistrationData() {
+    public Number countRegistrationData(final String search) {
         Criteria criteria = getSessionFactory().getCurrentSession().createCriteria(mappedClass);
+        addSearchRestriction(criteria, search);
         criteria.add(Restrictions.eq("voided", Boolean.FALSE));
         criteria.setProjection(Projections.rowCount());
         return (Number) criteria.uniqueResult();
     }
+
+    private void addSearchRestriction(final Criteria criteria, final String search) {
+        if (StringUtils.isNotBlank(search)) {
+            criteria.add(Restrictions.or(
+                    Restrictions.like("temporaryUuid", StringUtils.trim(search), MatchMode.START),
+                    Restrictions.like("assignedUuid", StringUtils.trim(search), MatchMode.START)));
+        }
+    }
+
+    /**
+     * Get the most recent date any of the patients was created or changed.
+     *
+     * @param patientUuids the uuids of the patients.
+     * @return the most recent date created or date changed of the patients or null when no patient is found.
+     */
+    @Override
+    public Date getPatientsLastModified(final List<String> patientUuids) {
+        if (patientUuids == null || patientUuids.isEmpty()) {
+            return null;
+        }
+        Criteria criteria = getSessionFactory().getCurrentSession().createCriteria(Patient.class);
+        criteria.add(Restrictions.in("uuid", patientUuids));
+        ProjectionList projectionList = Projections.projectionList();
+        projectionList.add(Projections.max("dateChanged"));
+        projectionList.add(Projections.max("dateCreated"));
+        criteria.setProjection(projectionList);
+        Object[] dates = (Object[]) criteria.uniqueResult();
+        if (dates == null) {
+            return null;
+        }
+        Date dateChanged = (Date) dates[0];
+        Date dateCreated = (Date) dates[1];
+        if (dateChanged == null || (dateCreated != null && dateCreated.after(dateChanged))) {
+            return dateCreated;
+        }
+        return dateChanged;
+    }
+
+    /**
+     * Stream all registration data in the database to the callback using a forward only database cursor. The session
+     * is cleared periodically so the memory usage stays constant regardless the number of registration data.
+     * <p/>
+     * Note: MySQL Connector/J only honors the fetch size when the connection url contains useCursorFetch=true,
+     * otherwise the driver will buffer the whole result set.
+     *
+     * @param callback the callback receiving each registration data.
+     * @throws IOException when the callback is unable to handle a registration data.
+     */
+    @Override
+    public void streamRegistrationData(final RegistrationDataCallback callback) throws IOException {
+        Session session = getSessionFactory().getCurrentSession();
+        Criteria criteria = session.createCriteria(mappedClass);
+        criteria.add(Restrictions.eq("voided", Boolean.FALSE));
+        criteria.addOrder(Order.asc("id"));
+        criteria.setFetchSize(STREAM_FETCH_SIZE);
+        criteria.setCacheMode(CacheMode.IGNORE);
+        ScrollableResults results = criteria.scroll(ScrollMode.FORWARD_ONLY);
+        try {
+            int counter = 0;
+            while (results.next()) {
+                callback.handle((RegistrationData) results.get(0));
+                if (++counter % STREAM_CLEAR_INTERVAL == 0) {
+                    session.clear();
+                }
+            }
+        } finally {
+            results.close();
+        }
+    }
 }
\ No newline at end of file
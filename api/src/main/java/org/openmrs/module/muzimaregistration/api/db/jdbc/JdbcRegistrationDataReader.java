@@ -0,0 +1,165 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db.jdbc;
+
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.User;
+import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Reads the registration data with plain jdbc, used to serve the read paths from a read only copy of the database
+ * (e.g. a replica). The registration data returned are not attached to the hibernate session.
+ */
+public class JdbcRegistrationDataReader {
+
+    private static final String SELECT_REGISTRATION_DATA =
+            "select id, uuid, temporary_uuid, assigned_uuid, creator, date_created, date_changed"
+                    + " from muzimaregistration_registration_data where voided = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JdbcRegistrationDataReader(final DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Get registration data based on the temporary uuid and / or the assigned uuid.
+     *
+     * @param temporaryUuid the temporary uuid assigned to a patient.
+     * @param assignedUuid  the real uuid of a newly created patient or the real uuid of an existing patient.
+     * @return the registration data based on the temporary uuid and / or the assigned uuid.
+     */
+    public List<RegistrationData> getRegistrationData(final String temporaryUuid, final String assignedUuid) {
+        StringBuilder query = new StringBuilder(SELECT_REGISTRATION_DATA);
+        List<Object> parameters = new ArrayList<Object>();
+        parameters.add(Boolean.FALSE);
+        if (StringUtils.isNotBlank(temporaryUuid)) {
+            query.append(" and temporary_uuid = ?");
+            parameters.add(temporaryUuid);
+        }
+        if (StringUtils.isNotBlank(assignedUuid)) {
+            query.append(" and assigned_uuid = ?");
+            parameters.add(assignedUuid);
+        }
+        return jdbcTemplate.query(query.toString(), parameters.toArray(), new RegistrationDataRowMapper());
+    }
+
+    /**
+     * Get a page of the registration data with a temporary uuid or an assigned uuid starting with the search term. The
+     * page starts right after the registration data with the given id, so the database seeks to the page through the
+     * primary key instead of reading and skipping all the rows of the previous pages.
+     *
+     * @param search   the search term, blank to get all registration data.
+     * @param afterId  the id of the last registration data of the previous page, 0 for the first page.
+     * @param pageSize the page size.
+     * @return the registration data in the page.
+     */
+    public List<RegistrationData> getRegistrationDataAfter(final String search, final Integer afterId,
+                                                           final Integer pageSize) {
+        List<Object> parameters = new ArrayList<Object>();
+        parameters.add(Boolean.FALSE);
+        String query = SELECT_REGISTRATION_DATA + createSearchCondition(search, parameters) + " and id > ? order by id";
+        parameters.add(afterId == null ? 0 : afterId);
+        if (pageSize == null) {
+            return jdbcTemplate.query(query, parameters.toArray(), new RegistrationDataRowMapper());
+        }
+        // the limit syntax is not portable across databases.
+        JdbcTemplate pagingTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        pagingTemplate.setMaxRows(pageSize);
+        return pagingTemplate.query(query, parameters.toArray(), new RegistrationDataRowMapper());
+    }
+
+    /**
+     * @param search the search term, blank to count all registration data.
+     * @return the number of registration data with a temporary uuid or an assigned uuid starting with the search term.
+     */
+    public Number countRegistrationData(final String search) {
+        List<Object> parameters = new ArrayList<Object>();
+        parameters.add(Boolean.FALSE);
+        String query = "select count(*) from muzimaregistration_registration_data where voided = ?"
+                + createSearchCondition(search, parameters);
+        return jdbcTemplate.queryForLong(query, parameters.toArray());
+    }
+
+    private static String createSearchCondition(final String search, final List<Object> parameters) {
+        if (StringUtils.isBlank(search)) {
+            return StringUtils.EMPTY;
+        }
+        String pattern = StringUtils.trim(search) + "%";
+        parameters.add(pattern);
+        parameters.add(pattern);
+        return " and (temporary_uuid like ? or assigned_uuid like ?)";
+    }
+
+    /**
+     * Get the most recent date any of the patients was created or changed.
+     *
+     * @param patientUuids the uuids of the patients.
+     * @return the most recent date created or date changed of the patients or null when no patient is found.
+     */
+    public Date getPatientsLastModified(final List<String> patientUuids) {
+        if (patientUuids == null || patientUuids.isEmpty()) {
+            return null;
+        }
+        StringBuilder query = new StringBuilder("select max(pn.date_changed), max(pn.date_created) from patient pa"
+                + " join person pn on pa.patient_id = pn.person_id where pn.uuid in (");
+        for (int i = 0; i < patientUuids.size(); i++) {
+            query.append(i == 0 ? "?" : ", ?");
+        }
+        query.append(")");
+        Date[] dates = jdbcTemplate.queryForObject(query.toString(), patientUuids.toArray(), new RowMapper<Date[]>() {
+            @Override
+            public Date[] mapRow(final ResultSet resultSet, final int rowNum) throws SQLException {
+                return new Date[]{toDate(resultSet.getTimestamp(1)), toDate(resultSet.getTimestamp(2))};
+            }
+        });
+        Date dateChanged = dates[0];
+        Date dateCreated = dates[1];
+        if (dateChanged == null || (dateCreated != null && dateCreated.after(dateChanged))) {
+            return dateCreated;
+        }
+        return dateChanged;
+    }
+
+    private static Date toDate(final Timestamp timestamp) {
+        return timestamp == null ? null : new Date(timestamp.getTime());
+    }
+
+    private static class RegistrationDataRowMapper implements RowMapper<RegistrationData> {
+
+        @Override
+        public RegistrationData mapRow(final ResultSet resultSet, final int rowNum) throws SQLException {
+            RegistrationData registrationData = new RegistrationData();
+            registrationData.setId(resultSet.getInt("id"));
+            registrationData.setUuid(resultSet.getString("uuid"));
+            registrationData.setTemporaryUuid(resultSet.getString("temporary_uuid"));
+            registrationData.setAssignedUuid(resultSet.getString("assigned_uuid"));
+            registrationData.setCreator(new User(resultSet.getInt("creator")));
+            registrationData.setDateCreated(toDate(resultSet.getTimestamp("date_created")));
+            registrationData.setDateChanged(toDate(resultSet.getTimestamp("date_changed")));
+            registrationData.setVoided(Boolean.FALSE);
+            return registrationData;
+        }
+    }
+}
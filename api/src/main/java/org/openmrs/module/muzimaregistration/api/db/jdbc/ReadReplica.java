@@ -0,0 +1,140 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db.jdbc;
+
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.utils.BoundedCache;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jndi.JndiTemplate;
+
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+/**
+ * Optional read only database (e.g. a replica) serving the registration data lookups and listings of the read only
+ * web endpoints, so they don't compete with the queue processing writes on the primary database. The read only
+ * database is disabled unless a jndi name or a jdbc url is configured. The password of the jdbc url is read from the
+ * runtime properties, so it isn't stored in the database it protects.
+ * <p/>
+ * A replica lags behind the primary database. To read its own writes, the module remembers the temporary and
+ * assigned uuids of the registration data it saved during the read your writes window and reads those from the
+ * primary database.
+ */
+public class ReadReplica {
+
+    public static final String GLOBAL_PROPERTY_JNDI_NAME = "muzimaregistration.replica.jndiName";
+
+    public static final String GLOBAL_PROPERTY_URL = "muzimaregistration.replica.url";
+
+    public static final String GLOBAL_PROPERTY_USERNAME = "muzimaregistration.replica.username";
+
+    public static final String RUNTIME_PROPERTY_PASSWORD = "muzimaregistration.replica.password";
+
+    public static final String GLOBAL_PROPERTY_DRIVER_CLASS_NAME = "muzimaregistration.replica.driverClassName";
+
+    public static final String GLOBAL_PROPERTY_READ_YOUR_WRITES = "muzimaregistration.replica.readYourWritesMillis";
+
+    public static final long DEFAULT_READ_YOUR_WRITES_MILLIS = 60000;
+
+    private static final int MAX_RECENT_WRITES = 10000;
+
+    private static volatile JdbcRegistrationDataReader reader;
+
+    private static volatile BoundedCache<String, Boolean> recentWrites =
+            new BoundedCache<String, Boolean>(MAX_RECENT_WRITES, DEFAULT_READ_YOUR_WRITES_MILLIS);
+
+    private ReadReplica() {
+    }
+
+    /**
+     * Create the data source of the read only database. A container managed data source looked up by jndi name is
+     * preferred, the jdbc url opens a new connection for every read and is meant for testing.
+     *
+     * @param jndiName        the jndi name of the data source, e.g. java:comp/env/jdbc/openmrs-replica.
+     * @param url             the jdbc url, used when no jndi name is configured.
+     * @param username        the user name for the jdbc url.
+     * @param password        the password for the jdbc url.
+     * @param driverClassName the jdbc driver for the jdbc url.
+     * @return the data source or null when neither the jndi name nor the jdbc url is configured.
+     * @throws NamingException when the jndi name can't be found.
+     */
+    public static DataSource createDataSource(final String jndiName, final String url, final String username,
+                                              final String password, final String driverClassName)
+            throws NamingException {
+        if (StringUtils.isNotBlank(jndiName)) {
+            return (DataSource) new JndiTemplate().lookup(jndiName, DataSource.class);
+        }
+        if (StringUtils.isNotBlank(url)) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource(url, username, password);
+            if (StringUtils.isNotBlank(driverClassName)) {
+                dataSource.setDriverClassName(driverClassName);
+            }
+            return dataSource;
+        }
+        return null;
+    }
+
+    /**
+     * Configure the read only database.
+     *
+     * @param dataSource           the data source of the read only database, null to disable the read only database.
+     * @param readYourWritesMillis how long the registration data saved by the module are read from the primary.
+     */
+    public static void configure(final DataSource dataSource, final long readYourWritesMillis) {
+        recentWrites = new BoundedCache<String, Boolean>(MAX_RECENT_WRITES, readYourWritesMillis);
+        reader = dataSource == null ? null : new JdbcRegistrationDataReader(dataSource);
+    }
+
+    /**
+     * Stop reading from the read only database.
+     */
+    public static void disable() {
+        reader = null;
+        recentWrites.clear();
+    }
+
+    /**
+     * @return the reader of the read only database or null when the read only database is not configured.
+     */
+    public static JdbcRegistrationDataReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Remember a registration data written to the primary database.
+     *
+     * @param registrationData the saved or deleted registration data.
+     */
+    public static void recordWrite(final RegistrationData registrationData) {
+        if (reader == null) {
+            return;
+        }
+        BoundedCache<String, Boolean> current = recentWrites;
+        if (StringUtils.isNotBlank(registrationData.getTemporaryUuid())) {
+            current.put(registrationData.getTemporaryUuid(), Boolean.TRUE);
+        }
+        if (StringUtils.isNotBlank(registrationData.getAssignedUuid())) {
+            current.put(registrationData.getAssignedUuid(), Boolean.TRUE);
+        }
+    }
+
+    /**
+     * @param uuid the temporary or assigned uuid.
+     * @return true when a registration data with the uuid was written during the read your writes window.
+     */
+    public static boolean isRecentlyWritten(final String uuid) {
+        return StringUtils.isNotBlank(uuid) && recentWrites.get(uuid) != null;
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.impl;
+
+import org.openmrs.Obs;
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.muzimaregistration.api.IndividualObsService;
+import org.openmrs.module.muzimaregistration.api.db.IndividualObsDao;
+import org.openmrs.module.muzimaregistration.utils.GlobalPropertyUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.IndividualObsService}.
+ */
+public class IndividualObsServiceImpl extends BaseOpenmrsService implements IndividualObsService {
+
+    public static final String GLOBAL_PROPERTY_BATCH_SIZE = "muzimaregistration.obs.batchSize";
+
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    private IndividualObsDao dao;
+
+    /**
+     * @param dao the dao to set
+     */
+    public void setDao(final IndividualObsDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @return the dao
+     */
+    public IndividualObsDao getDao() {
+        return dao;
+    }
+
+    /**
+     * Save the observations in a single transaction, grouped per patient in the order the patients first appear.
+     *
+     * @param observations the observations.
+     * @return the number of saved observations.
+     */
+    @Override
+    public int saveIndividualObs(final List<Obs> observations) {
+        Map<Integer, List<Obs>> observationsPerPatient = new LinkedHashMap<Integer, List<Obs>>();
+        for (Obs obs : observations) {
+            Integer personId = obs.getPerson().getPersonId();
+            List<Obs> patientObservations = observationsPerPatient.get(personId);
+            if (patientObservations == null) {
+                patientObservations = new ArrayList<Obs>();
+                observationsPerPatient.put(personId, patientObservations);
+            }
+            patientObservations.add(obs);
+        }
+        List<Obs> grouped = new ArrayList<Obs>(observations.size());
+        for (List<Obs> patientObservations : observationsPerPatient.values()) {
+            grouped.addAll(patientObservations);
+        }
+        dao.saveObs(grouped, GlobalPropertyUtils.getInteger(GLOBAL_PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE));
+        return grouped.size();
+    }
+}
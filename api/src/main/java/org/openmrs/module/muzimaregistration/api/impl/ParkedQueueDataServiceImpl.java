@@ -0,0 +1,143 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.impl;
+
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.muzima.model.ErrorData;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.ParkedQueueDataService;
+import org.openmrs.module.muzimaregistration.api.db.ParkedQueueDataDao;
+import org.openmrs.module.muzimaregistration.api.model.ParkedQueueData;
+import org.openmrs.module.muzimaregistration.scheduling.PendingQueueDataAdvice;
+import org.springframework.beans.BeanUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.ParkedQueueDataService}.
+ */
+public class ParkedQueueDataServiceImpl extends BaseOpenmrsService implements ParkedQueueDataService {
+
+    private ParkedQueueDataDao dao;
+
+    /**
+     * @param dao the dao to set
+     */
+    public void setDao(final ParkedQueueDataDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @return the dao
+     */
+    public ParkedQueueDataDao getDao() {
+        return dao;
+    }
+
+    /**
+     * Get the parked queue data waiting on the dependency.
+     *
+     * @param waitingKey the key of the dependency.
+     * @return the parked queue data waiting on the dependency.
+     */
+    @Override
+    public List<ParkedQueueData> getParkedQueueDataByWaitingKey(final String waitingKey) {
+        return dao.getParkedQueueDataByWaitingKey(waitingKey);
+    }
+
+    /**
+     * Get all parking entries of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @return the parking entries of the queue data, one for each dependency it is waiting on.
+     */
+    @Override
+    public List<ParkedQueueData> getParkedQueueDataByQueueDataUuid(final String queueDataUuid) {
+        return dao.getParkedQueueDataByQueueDataUuid(queueDataUuid);
+    }
+
+    /**
+     * Save the parking entry of a queue data.
+     *
+     * @param parkedQueueData the parking entry.
+     * @return the saved parking entry.
+     */
+    @Override
+    public ParkedQueueData saveParkedQueueData(final ParkedQueueData parkedQueueData) {
+        return dao.saveParkedQueueData(parkedQueueData);
+    }
+
+    /**
+     * Delete the parking entry of a queue data.
+     *
+     * @param parkedQueueData the parking entry.
+     */
+    @Override
+    public void purgeParkedQueueData(final ParkedQueueData parkedQueueData) {
+        dao.purgeParkedQueueData(parkedQueueData);
+    }
+
+    /**
+     * Move the error data of the queue data waiting on the dependency back into the queue, so the queue processor
+     * runs them again. The parking entries of the requeued queue data are deleted. The queue data are requeued in
+     * their own transaction, this is called once the transaction saving the dependency is committed.
+     *
+     * @param waitingKey the key of the saved dependency.
+     * @return the requeued queue data.
+     */
+    @Override
+    public List<QueueData> requeueParkedQueueData(final String waitingKey) {
+        List<QueueData> requeued = new ArrayList<QueueData>();
+        for (ParkedQueueData parkedQueueData : dao.getParkedQueueDataByWaitingKey(waitingKey)) {
+            String queueDataUuid = parkedQueueData.getQueueDataUuid();
+            for (ParkedQueueData parkingEntry : dao.getParkedQueueDataByQueueDataUuid(queueDataUuid)) {
+                dao.purgeParkedQueueData(parkingEntry);
+            }
+            ErrorData errorData = dao.getErrorData(queueDataUuid);
+            if (errorData == null) {
+                // processed or removed since it was parked.
+                continue;
+            }
+            QueueData queueData = new QueueData();
+            BeanUtils.copyProperties(errorData, queueData, new String[]{"id"});
+            dao.purgeErrorData(errorData);
+            dao.saveQueueData(queueData);
+            PendingQueueDataAdvice.index(queueData);
+            requeued.add(queueData);
+        }
+        return requeued;
+    }
+
+    /**
+     * Get the error data left by the failed processing of a queue data.
+     *
+     * @param queueDataUuid the uuid of the queue data, kept by its error data.
+     * @return the error data or null when the queue data was processed or removed since.
+     */
+    @Override
+    public ErrorData getErrorData(final String queueDataUuid) {
+        return dao.getErrorData(queueDataUuid);
+    }
+
+    /**
+     * Delete the error data of a queue data which was processed successfully.
+     *
+     * @param errorData the error data.
+     */
+    @Override
+    public void purgeErrorData(final ErrorData errorData) {
+        dao.purgeErrorData(errorData);
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.impl;
+
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.muzima.exception.QueueProcessorException;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzima.model.handler.QueueDataHandler;
+import org.openmrs.module.muzimaregistration.api.PendingQueueDataService;
+import org.openmrs.module.muzimaregistration.api.db.PendingQueueDataDao;
+import org.openmrs.module.muzimaregistration.api.model.PendingQueueData;
+import org.openmrs.module.muzimaregistration.scheduling.PendingQueueDataAdvice;
+
+import java.util.List;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.PendingQueueDataService}.
+ */
+public class PendingQueueDataServiceImpl extends BaseOpenmrsService implements PendingQueueDataService {
+
+    private PendingQueueDataDao dao;
+
+    /**
+     * @param dao the dao to set
+     */
+    public void setDao(final PendingQueueDataDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @return the dao
+     */
+    public PendingQueueDataDao getDao() {
+        return dao;
+    }
+
+    /**
+     * Get the queue data waiting to be processed with the discriminator and referencing the patient uuid, in the order
+     * they were submitted.
+     *
+     * @param discriminator the discriminator of the queue data.
+     * @param patientUuid   the patient uuid referenced by the payload.
+     * @return the matching queue data.
+     */
+    @Override
+    public List<QueueData> getPendingQueueData(final String discriminator, final String patientUuid) {
+        return dao.getQueueData(discriminator, patientUuid);
+    }
+
+    /**
+     * Process a pending queue data ahead of its turn, in its own transaction. A failure rolls back what the handler
+     * saved without affecting the transaction of the caller.
+     *
+     * @param handler   the handler of the queue data.
+     * @param queueData the pending queue data.
+     * @throws QueueProcessorException when the handler fails to process the queue data.
+     */
+    @Override
+    public void processPendingQueueData(final QueueDataHandler handler, final QueueData queueData)
+            throws QueueProcessorException {
+        handler.process(queueData);
+    }
+
+    /**
+     * Save the index entry of a queue data, replacing the previous entries of the queue data.
+     *
+     * @param pendingQueueData the index entry.
+     * @return the saved index entry.
+     */
+    @Override
+    public PendingQueueData savePendingQueueData(final PendingQueueData pendingQueueData) {
+        purgePendingQueueData(pendingQueueData.getQueueDataUuid());
+        return dao.savePendingQueueData(pendingQueueData);
+    }
+
+    /**
+     * Delete the index entries of a queue data which left the queue.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     */
+    @Override
+    public void purgePendingQueueData(final String queueDataUuid) {
+        for (PendingQueueData pendingQueueData : dao.getPendingQueueDataByQueueDataUuid(queueDataUuid)) {
+            dao.purgePendingQueueData(pendingQueueData);
+        }
+    }
+
+    /**
+     * Index the queue data waiting in the queue which are not indexed yet, e.g. the queue data submitted before the
+     * index was created.
+     *
+     * @return the number of indexed queue data.
+     */
+    @Override
+    public int indexPendingQueueData() {
+        int indexed = 0;
+        for (QueueData queueData : dao.getUnindexedQueueData(PendingQueueDataAdvice.INDEXED_DISCRIMINATORS)) {
+            PendingQueueData pendingQueueData = PendingQueueDataAdvice.createPendingQueueData(queueData);
+            if (pendingQueueData != null) {
+                dao.savePendingQueueData(pendingQueueData);
+                indexed++;
+            }
+        }
+        return indexed;
+    }
+}
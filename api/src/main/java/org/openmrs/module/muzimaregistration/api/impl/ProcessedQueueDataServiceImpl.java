@@ -0,0 +1,64 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.impl;
+
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.muzimaregistration.api.ProcessedQueueDataService;
+import org.openmrs.module.muzimaregistration.api.db.ProcessedQueueDataDao;
+import org.openmrs.module.muzimaregistration.api.model.ProcessedQueueData;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.ProcessedQueueDataService}.
+ */
+public class ProcessedQueueDataServiceImpl extends BaseOpenmrsService implements ProcessedQueueDataService {
+
+    private ProcessedQueueDataDao dao;
+
+    /**
+     * @param dao the dao to set
+     */
+    public void setDao(final ProcessedQueueDataDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @return the dao
+     */
+    public ProcessedQueueDataDao getDao() {
+        return dao;
+    }
+
+    /**
+     * Get the ledger entry of a payload processed by a handler.
+     *
+     * @param discriminator the discriminator of the handler.
+     * @param payloadHash   the hash of the payload.
+     * @return the ledger entry or null when the payload was never processed by the handler.
+     */
+    @Override
+    public ProcessedQueueData getProcessedQueueData(final String discriminator, final String payloadHash) {
+        return dao.getProcessedQueueData(discriminator, payloadHash);
+    }
+
+    /**
+     * Save the ledger entry of a processed payload.
+     *
+     * @param processedQueueData the ledger entry.
+     * @return the saved ledger entry.
+     */
+    @Override
+    public ProcessedQueueData saveProcessedQueueData(final ProcessedQueueData processedQueueData) {
+        return dao.saveProcessedQueueData(processedQueueData);
+    }
+}
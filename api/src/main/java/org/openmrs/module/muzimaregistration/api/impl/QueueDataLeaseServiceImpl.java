@@ -0,0 +1,106 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.impl;
+
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.muzimaregistration.api.QueueDataLeaseService;
+import org.openmrs.module.muzimaregistration.api.db.QueueDataLeaseDao;
+import org.openmrs.module.muzimaregistration.api.model.QueueDataLease;
+
+import java.util.Collection;
+import java.util.Date;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.QueueDataLeaseService}.
+ */
+public class QueueDataLeaseServiceImpl extends BaseOpenmrsService implements QueueDataLeaseService {
+
+    private QueueDataLeaseDao dao;
+
+    /**
+     * @param dao the dao to set
+     */
+    public void setDao(final QueueDataLeaseDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @return the dao
+     */
+    public QueueDataLeaseDao getDao() {
+        return dao;
+    }
+
+    /**
+     * Claim the lease of a queue data. The lease is claimed when no node holds it, when the node already holds it or
+     * when the lease of another node expired. The claim is committed on its own, so the other nodes see it before
+     * the queue data is processed.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     * @param expiresOn     when the lease expires unless it is renewed.
+     * @return the outcome of the claim.
+     */
+    @Override
+    public QueueDataLease.Claim claimLease(final String queueDataUuid, final String owner, final Date expiresOn) {
+        return dao.claimLease(queueDataUuid, owner, expiresOn);
+    }
+
+    /**
+     * Extend the leases held by a node.
+     *
+     * @param queueDataUuids the uuids of the queue data being processed by the node.
+     * @param owner          the id of the node.
+     * @param expiresOn      when the leases expire unless they are renewed again.
+     * @return the number of renewed leases.
+     */
+    @Override
+    public int renewLeases(final Collection<String> queueDataUuids, final String owner, final Date expiresOn) {
+        return dao.renewLeases(queueDataUuids, owner, expiresOn);
+    }
+
+    /**
+     * Mark the lease of a processed queue data as completed. The lease is completed in the transaction processing the
+     * queue data, so it is only completed when the processing is committed.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     */
+    @Override
+    public void completeLease(final String queueDataUuid, final String owner) {
+        dao.completeLease(queueDataUuid, owner);
+    }
+
+    /**
+     * Give up the lease of a queue data which failed, so it can be claimed again right away once it is requeued.
+     *
+     * @param queueDataUuid the uuid of the queue data.
+     * @param owner         the id of the node.
+     */
+    @Override
+    public void releaseLease(final String queueDataUuid, final String owner) {
+        dao.releaseLease(queueDataUuid, owner);
+    }
+
+    /**
+     * Delete the completed leases created before the date.
+     *
+     * @param before the creation date of the oldest completed lease kept.
+     * @return the number of deleted leases.
+     */
+    @Override
+    public int purgeCompletedLeases(final Date before) {
+        return dao.purgeCompletedLeases(before);
+    }
+}
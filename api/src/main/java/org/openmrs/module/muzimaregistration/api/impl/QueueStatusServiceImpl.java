@@ -0,0 +1,75 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.impl;
+
+import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.muzima.model.ErrorData;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaforms.MuzimaForm;
+import org.openmrs.module.muzimaregistration.api.QueueStatusService;
+import org.openmrs.module.muzimaregistration.api.db.QueueStatusDao;
+
+import java.util.Map;
+
+/**
+ * It is a default implementation of {@link org.openmrs.module.muzimaregistration.api.QueueStatusService}.
+ */
+public class QueueStatusServiceImpl extends BaseOpenmrsService implements QueueStatusService {
+
+    private QueueStatusDao dao;
+
+    /**
+     * @param dao the dao to set
+     */
+    public void setDao(final QueueStatusDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * @return the dao
+     */
+    public QueueStatusDao getDao() {
+        return dao;
+    }
+
+    /**
+     * Count the queue data waiting to be processed, grouped by discriminator.
+     *
+     * @return the number of queue data for each discriminator.
+     */
+    @Override
+    public Map<String, Long> countQueueDataByDiscriminator() {
+        return dao.countByDiscriminator(QueueData.class);
+    }
+
+    /**
+     * Count the queue data which failed processing, grouped by discriminator.
+     *
+     * @return the number of error data for each discriminator.
+     */
+    @Override
+    public Map<String, Long> countErrorDataByDiscriminator() {
+        return dao.countByDiscriminator(ErrorData.class);
+    }
+
+    /**
+     * Count the available muzima forms.
+     *
+     * @return the number of muzima forms.
+     */
+    @Override
+    public Number countMuzimaForms() {
+        return dao.count(MuzimaForm.class);
+    }
+}
@@ -18,10 +18,18 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.api.APIException;
 import org.openmrs.api.impl.BaseOpenmrsService;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataCallback;
 import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
 import org.openmrs.module.muzimaregistration.api.db.RegistrationDataDao;
+import org.openmrs.module.muzimaregistration.api.db.jdbc.JdbcRegistrationDataReader;
+import org.openmrs.module.muzimaregistration.api.db.jdbc.ReadReplica;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.scheduling.ParkingLot;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrorCode;
+import org.springframework.dao.DataAccessException;
 
+import java.io.IOException;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -77,7 +85,38 @@ public class RegistrationDataServiceImpl extends BaseOpenmrsService implements R
      */
     @Override
     public RegistrationData getRegistrationDataByTemporaryUuid(final String temporaryUuid) {
-        List<RegistrationData> registrationDataList = dao.getRegistrationData(temporaryUuid, StringUtils.EMPTY);
+        return uniqueRegistrationData(dao.getRegistrationData(temporaryUuid, StringUtils.EMPTY));
+    }
+
+    /**
+     * Get registration data based on the temporary uuid for display only, e.g. by the read only web endpoints. The
+     * registration data is read from the read only database when it is configured and is not attached to the
+     * hibernate session, it must not be saved or deleted. Use {@link #getRegistrationDataByTemporaryUuid(String)}
+     * for the registration data to be changed.
+     *
+     * @param temporaryUuid the temporary uuid assigned to a patient.
+     * @return the registration data based on the temporary uuid.
+     */
+    @Override
+    public RegistrationData getReadOnlyRegistrationDataByTemporaryUuid(final String temporaryUuid) {
+        JdbcRegistrationDataReader reader = ReadReplica.getReader();
+        if (reader != null && !ReadReplica.isRecentlyWritten(temporaryUuid)) {
+            try {
+                // registration data missing from the read only database (e.g. not replicated yet) are read from the
+                // primary database.
+                List<RegistrationData> registrationDataList =
+                        reader.getRegistrationData(temporaryUuid, StringUtils.EMPTY);
+                if (!registrationDataList.isEmpty()) {
+                    return uniqueRegistrationData(registrationDataList);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Unable to read registration data from the read only database.", e);
+            }
+        }
+        return getRegistrationDataByTemporaryUuid(temporaryUuid);
+    }
+
+    private RegistrationData uniqueRegistrationData(final List<RegistrationData> registrationDataList) {
         if (registrationDataList.size() == 1) {
             return registrationDataList.get(0);
         } else if (registrationDataList.size() > 1) {
@@ -100,14 +139,33 @@ public class RegistrationDataServiceImpl extends BaseOpenmrsService implements R
     }
 
     /**
-     * Create a new registration data entry in the database.
+     * Create a new registration data entry in the database. The queue data parked waiting on the temporary uuid are
+     * processed right after.
      *
      * @param registrationData the registration data to be created.
      * @return the new registration data.
      */
     @Override
     public RegistrationData saveRegistrationData(final RegistrationData registrationData) {
-        return dao.saveRegistrationData(registrationData);
+        RegistrationData savedRegistrationData = dao.saveRegistrationData(registrationData);
+        ReadReplica.recordWrite(savedRegistrationData);
+        ParkingLot.wake(ValidationErrorCode.PATIENT_NOT_FOUND, savedRegistrationData.getTemporaryUuid());
+        return savedRegistrationData;
+    }
+
+    /**
+     * Reserve the temporary uuid of a registration by inserting its registration data right away, before the patient
+     * is saved. The unique constraint on the temporary uuid makes a concurrent reservation of the same temporary uuid
+     * fail instead of creating the patient twice.
+     *
+     * @param registrationData the registration data with the temporary uuid and the uuid the patient will have.
+     * @return the saved registration data.
+     */
+    @Override
+    public RegistrationData reserveRegistrationData(final RegistrationData registrationData) {
+        RegistrationData savedRegistrationData = dao.reserveRegistrationData(registrationData);
+        ReadReplica.recordWrite(savedRegistrationData);
+        return savedRegistrationData;
     }
 
     /**
@@ -118,6 +176,7 @@ public class RegistrationDataServiceImpl extends BaseOpenmrsService implements R
     @Override
     public void deleteRegistrationData(final RegistrationData registrationData) {
         dao.deleteRegistrationData(registrationData);
+        ReadReplica.recordWrite(registrationData);
     }
 
     /**
@@ -129,7 +188,7 @@ public class RegistrationDataServiceImpl extends BaseOpenmrsService implements R
      */
     @Override
     public List<RegistrationData> getRegistrationData(final Integer pageNumber, final Integer pageSize) {
-        return dao.getRegistrationData(pageNumber, pageSize);
+        return getRegistrationData(null, pageNumber, pageSize);
     }
 
     /**
@@ -137,6 +196,105 @@ public class RegistrationDataServiceImpl extends BaseOpenmrsService implements R
      * @return the number of registration data in the database.
      */
     public Number countRegistrationData() {
-        return dao.countRegistrationData();
+        return countRegistrationData(null);
+    }
+
+    /**
+     * Get the registration data with a temporary uuid or an assigned uuid starting with the search term.
+     *
+     * @param search     the search term, blank to get all registration data.
+     * @param pageNumber the page number.
+     * @param pageSize   the page size.
+     * @return the matching registration data.
+     */
+    @Override
+    public List<RegistrationData> getRegistrationData(final String search, final Integer pageNumber,
+                                                      final Integer pageSize) {
+        return dao.getRegistrationData(search, pageNumber, pageSize);
+    }
+
+    /**
+     * Get a page of the registration data with a temporary uuid or an assigned uuid starting with the search term,
+     * ordered by id. The page starts right after the registration data with the given id. The registration data is
+     * read from the read only database when it is configured and must not be saved or deleted.
+     *
+     * @param search   the search term, blank to get all registration data.
+     * @param afterId  the id of the last registration data of the previous page, 0 for the first page.
+     * @param pageSize the page size.
+     * @return the registration data in the page.
+     */
+    @Override
+    public List<RegistrationData> getRegistrationDataAfter(final String search, final Integer afterId,
+                                                           final Integer pageSize) {
+        JdbcRegistrationDataReader reader = ReadReplica.getReader();
+        if (reader != null) {
+            try {
+                return reader.getRegistrationDataAfter(search, afterId, pageSize);
+            } catch (DataAccessException e) {
+                log.warn("Unable to read registration data from the read only database.", e);
+            }
+        }
+        return dao.getRegistrationDataAfter(search, afterId, pageSize);
+    }
+
+    /**
+     * Count the registration data with a temporary uuid or an assigned uuid starting with the search term.
+     *
+     * @param search the search term, blank to count all registration data.
+     * @return the number of matching registration data.
+     */
+    @Override
+    public Number countRegistrationData(final String search) {
+        JdbcRegistrationDataReader reader = ReadReplica.getReader();
+        if (reader != null) {
+            try {
+                return reader.countRegistrationData(search);
+            } catch (DataAccessException e) {
+                log.warn("Unable to count registration data in the read only database.", e);
+            }
+        }
+        return dao.countRegistrationData(search);
+    }
+
+    /**
+     * Get the most recent date any of the patients was created or changed.
+     *
+     * @param patientUuids the uuids of the patients.
+     * @return the most recent date created or date changed of the patients or null when no patient is found.
+     */
+    @Override
+    public Date getPatientsLastModified(final List<String> patientUuids) {
+        JdbcRegistrationDataReader reader = ReadReplica.getReader();
+        if (reader != null && !anyRecentlyWritten(patientUuids)) {
+            try {
+                return reader.getPatientsLastModified(patientUuids);
+            } catch (DataAccessException e) {
+                log.warn("Unable to read patients from the read only database.", e);
+            }
+        }
+        return dao.getPatientsLastModified(patientUuids);
+    }
+
+    private boolean anyRecentlyWritten(final List<String> uuids) {
+        if (uuids != null) {
+            for (String uuid : uuids) {
+                if (ReadReplica.isRecentlyWritten(uuid)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stream all registration data in the database to the callback using a database cursor, without holding all the
+     * registration data in memory.
+     *
+     * @param callback the callback receiving each registration data.
+     * @throws IOException when the callback is unable to handle a registration data.
+     */
+    @Override
+    public void streamRegistrationData(final RegistrationDataCallback callback) throws IOException {
+        dao.streamRegistrationData(callback);
     }
 }
\ No newline at end of file
@@ -0,0 +1,73 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.model;
+
+import org.openmrs.BaseOpenmrsData;
+
+import java.io.Serializable;
+
+/**
+ * A queue data which failed on a dependency that can still appear, e.g. the patient it references is registered later
+ * or a missing concept is created. The queue data is parked with the key of the dependency it is waiting on and its
+ * error data is run again as soon as that dependency is saved.
+ */
+public class ParkedQueueData extends BaseOpenmrsData implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer id;
+
+    private String queueDataUuid;
+
+    private String discriminator;
+
+    private String waitingKey;
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(final Integer id) {
+        this.id = id;
+    }
+
+    public String getQueueDataUuid() {
+        return queueDataUuid;
+    }
+
+    public void setQueueDataUuid(final String queueDataUuid) {
+        this.queueDataUuid = queueDataUuid;
+    }
+
+    public String getDiscriminator() {
+        return discriminator;
+    }
+
+    public void setDiscriminator(final String discriminator) {
+        this.discriminator = discriminator;
+    }
+
+    /**
+     * @return the key of the dependency, e.g. <code>PATIENT_NOT_FOUND:temporary uuid</code>.
+     */
+    public String getWaitingKey() {
+        return waitingKey;
+    }
+
+    public void setWaitingKey(final String waitingKey) {
+        this.waitingKey = waitingKey;
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.model;
+
+import org.openmrs.BaseOpenmrsData;
+
+import java.io.Serializable;
+
+/**
+ * Index entry of a queue data waiting to be processed, mapping it to the patient uuid referenced by its payload (for
+ * a registration, the temporary uuid it registers). The entry lets the handlers find the pending queue data of a
+ * patient without searching the payloads.
+ */
+public class PendingQueueData extends BaseOpenmrsData implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer id;
+
+    private String queueDataUuid;
+
+    private String discriminator;
+
+    private String patientUuid;
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(final Integer id) {
+        this.id = id;
+    }
+
+    public String getQueueDataUuid() {
+        return queueDataUuid;
+    }
+
+    public void setQueueDataUuid(final String queueDataUuid) {
+        this.queueDataUuid = queueDataUuid;
+    }
+
+    public String getDiscriminator() {
+        return discriminator;
+    }
+
+    public void setDiscriminator(final String discriminator) {
+        this.discriminator = discriminator;
+    }
+
+    /**
+     * @return the patient uuid referenced by the payload of the queue data.
+     */
+    public String getPatientUuid() {
+        return patientUuid;
+    }
+
+    public void setPatientUuid(final String patientUuid) {
+        this.patientUuid = patientUuid;
+    }
+}
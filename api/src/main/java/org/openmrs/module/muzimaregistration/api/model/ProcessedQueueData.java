@@ -0,0 +1,82 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.model;
+
+import org.openmrs.BaseOpenmrsData;
+
+import java.io.Serializable;
+
+/**
+ * Ledger entry of a processed queue data. The entry maps the payload of the queue data to the object created while
+ * processing it, so the same payload submitted again can be recognized without being parsed.
+ */
+public class ProcessedQueueData extends BaseOpenmrsData implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Integer id;
+
+    private String queueDataUuid;
+
+    private String discriminator;
+
+    private String payloadHash;
+
+    private String resultUuid;
+
+    @Override
+    public Integer getId() {
+        return id;
+    }
+
+    @Override
+    public void setId(final Integer id) {
+        this.id = id;
+    }
+
+    public String getQueueDataUuid() {
+        return queueDataUuid;
+    }
+
+    public void setQueueDataUuid(final String queueDataUuid) {
+        this.queueDataUuid = queueDataUuid;
+    }
+
+    public String getDiscriminator() {
+        return discriminator;
+    }
+
+    public void setDiscriminator(final String discriminator) {
+        this.discriminator = discriminator;
+    }
+
+    public String getPayloadHash() {
+        return payloadHash;
+    }
+
+    public void setPayloadHash(final String payloadHash) {
+        this.payloadHash = payloadHash;
+    }
+
+    /**
+     * @return the uuid of the encounter or patient created from the payload.
+     */
+    public String getResultUuid() {
+        return resultUuid;
+    }
+
+    public void setResultUuid(final String resultUuid) {
+        this.resultUuid = resultUuid;
+    }
+}
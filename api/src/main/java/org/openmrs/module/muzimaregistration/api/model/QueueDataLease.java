@@ -0,0 +1,111 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.model;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Time limited claim of a node on a queue data. When several OpenMRS nodes process the same queue, a node only
+ * processes the queue data it holds the lease of. The lease is kept once the queue data is completed, so a node still
+ * holding the queue data in its current batch will not process it again.
+ */
+public class QueueDataLease implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The outcome of a node claiming the lease of a queue data.
+     */
+    public enum Claim {
+
+        /**
+         * The node holds the lease and can process the queue data.
+         */
+        CLAIMED,
+
+        /**
+         * Another node holds an unexpired lease and is processing the queue data.
+         */
+        HELD,
+
+        /**
+         * The queue data was processed already.
+         */
+        COMPLETED
+    }
+
+    private Integer id;
+
+    private String queueDataUuid;
+
+    private String owner;
+
+    private Date expiresOn;
+
+    private Boolean completed = Boolean.FALSE;
+
+    private Date dateCreated;
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(final Integer id) {
+        this.id = id;
+    }
+
+    public String getQueueDataUuid() {
+        return queueDataUuid;
+    }
+
+    public void setQueueDataUuid(final String queueDataUuid) {
+        this.queueDataUuid = queueDataUuid;
+    }
+
+    /**
+     * @return the id of the node holding the lease.
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(final String owner) {
+        this.owner = owner;
+    }
+
+    public Date getExpiresOn() {
+        return expiresOn;
+    }
+
+    public void setExpiresOn(final Date expiresOn) {
+        this.expiresOn = expiresOn;
+    }
+
+    public Boolean getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(final Boolean completed) {
+        this.completed = completed;
+    }
+
+    public Date getDateCreated() {
+        return dateCreated;
+    }
+
+    public void setDateCreated(final Date dateCreated) {
+        this.dateCreated = dateCreated;
+    }
+}
@@ -14,7 +14,11 @@
 package org.openmrs.module.muzimaregistration.handler;
 
 import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import net.minidev.json.JSONValue;
+import org.apache.commons.lang.ObjectUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.time.DateUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.openmrs.Location;
@@ -27,23 +31,53 @@ import org.openmrs.PersonAttributeType;
 import org.openmrs.PersonName;
 import org.openmrs.User;
 import org.openmrs.annotation.Handler;
-import org.openmrs.api.PersonService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.muzima.exception.QueueProcessorException;
 import org.openmrs.module.muzima.model.QueueData;
 import org.openmrs.module.muzima.model.handler.QueueDataHandler;
+import org.openmrs.module.muzimaregistration.api.PendingQueueDataService;
+import org.openmrs.module.muzimaregistration.api.ProcessedQueueDataService;
+import org.openmrs.module.muzimaregistration.api.model.ProcessedQueueData;
+import org.openmrs.module.muzimaregistration.journal.PayloadJournal;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.metrics.Stage;
+import org.openmrs.module.muzimaregistration.metrics.StageClock;
+import org.openmrs.module.muzimaregistration.scheduling.ParkingLot;
+import org.openmrs.module.muzimaregistration.scheduling.QueueDataScheduler;
+import org.openmrs.module.muzimaregistration.scheduling.QueueLeases;
+import org.openmrs.module.muzimaregistration.utils.BoundedCache;
 import org.openmrs.module.muzimaregistration.utils.JsonUtils;
+import org.openmrs.module.muzimaregistration.utils.MetadataUtils;
 import org.openmrs.module.muzimaregistration.utils.PatientSearchUtils;
+import org.openmrs.module.muzimaregistration.utils.PayloadHashUtils;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrorCode;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrors;
+import org.openmrs.module.muzimaregistration.validation.ValidationResult;
+import org.openmrs.module.muzimaregistration.validation.ValidationResultCache;
+import org.openmrs.module.muzimaregistration.utils.RepresentationCache;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
+ * Applies the demographics update forms to the saved patients. When several updates for the same patient are waiting
+ * in the queue, the first one processed merges the later ones into a single update, so the patient is matched and
+ * saved once. The later updates are then recognized as already applied when their turn comes: each merged update is
+ * recorded in the processed queue data ledger, in the same transaction as the patient, and kept in memory once the
+ * transaction is committed.
+ * <p/>
+ * The handler is shared by the queue processor threads, the state of the queue data being processed is kept in an
+ * {@link UpdateContext} created for each call.
  */
 @Component
 @Handler(supports = QueueData.class, order = 6)
@@ -51,83 +85,347 @@ public class DemographicsUpdateQueueDataHandler implements QueueDataHandler {
 
     private static final String DISCRIMINATOR_VALUE = "json-demographics-update";
 
-    private final Log log = LogFactory.getLog(DemographicsUpdateQueueDataHandler.class);
+    private static final int MAX_COALESCED = 10000;
+
+    private static final long COALESCED_TIME_TO_LIVE = 60 * 60 * 1000;
+
+    private static final String COALESCED_DISCRIMINATOR = DISCRIMINATOR_VALUE + ".coalesced";
 
-    private Patient unsavedPatient;
-    private Patient savedPatient;
-    private String payload;
-    private QueueProcessorException queueProcessorException;
+    /**
+     * The committed queue data merged into an earlier update, mapped to the ledger hash of the queue data.
+     */
+    private static final BoundedCache<String, String> coalesced =
+            new BoundedCache<String, String>(MAX_COALESCED, COALESCED_TIME_TO_LIVE);
+
+    private final Log log = LogFactory.getLog(DemographicsUpdateQueueDataHandler.class);
 
     @Override
     public void process(final QueueData queueData) throws QueueProcessorException {
         log.info("Processing demographics update form data: " + queueData.getUuid());
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
+        PayloadJournal.capture(DISCRIMINATOR_VALUE, queueData);
+        UpdateContext context = new UpdateContext(queueData.getPayload());
         try {
-            if (validate(queueData)) {
-                updateSavedPatientDemographics();
-                Context.getPatientService().savePatient(savedPatient);
+            if (isCoalesced(queueData)) {
+                log.info("Demographics update form data: " + queueData.getUuid() + " was applied with an earlier update.");
+                coalesced.remove(queueData.getUuid());
+                return;
+            }
+            QueueDataScheduler.pullForwardRegistration(queueData);
+            if (validate(queueData, context)) {
+                List<QueueData> coalescedQueueData = coalescePendingUpdates(queueData, context);
+                if (updateSavedPatientDemographics(context)) {
+                    StageClock.switchTo(Stage.PERSISTENCE);
+                    Context.getPatientService().savePatient(context.savedPatient);
+                    RepresentationCache.invalidate(context.savedPatient.getUuid());
+                    markCoalesced(coalescedQueueData, context.savedPatient);
+                } else {
+                    markCoalesced(coalescedQueueData, context.savedPatient);
+                    log.info("Demographics update form data: " + queueData.getUuid() + " doesn't change patient: "
+                            + context.savedPatient.getUuid());
+                    HandlerMetrics.counter("handler." + DISCRIMINATOR_VALUE + ".unchanged").increment();
+                }
             }
         } catch (Exception e) {
             if (!e.getClass().equals(QueueProcessorException.class)) {
-                queueProcessorException.addException(e);
+                context.queueProcessorException.addException(e);
+            }
+        } finally {
+            ValidationResultCache.remove(DISCRIMINATOR_VALUE, queueData);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            QueueLeases.release(queueData, context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                ParkingLot.park(DISCRIMINATOR_VALUE, queueData, context.validationErrors);
+                throw context.queueProcessorException;
             }
+        }
+    }
+
+    /**
+     * Merge the updates for the same patient submitted after the queue data into the unsaved patient. Fields are
+     * merged in submission order, a later non blank value replaces an earlier one. When the merged update is not
+     * valid, nothing is merged and the later updates will be processed on their own.
+     *
+     * @param queueData the queue data being processed.
+     * @return the later queue data merged into the update.
+     */
+    private List<QueueData> coalescePendingUpdates(final QueueData queueData, final UpdateContext context) {
+        List<QueueData> coalescedQueueData = new ArrayList<QueueData>();
+        String patientUuid = getCandidatePatientUuidFromPayload(context);
+        if (context.savedPatient == null || StringUtils.isBlank(patientUuid)) {
+            return coalescedQueueData;
+        }
+        Stage previous = StageClock.switchTo(Stage.MATCHING);
+        List<QueueData> pendingQueueData;
+        try {
+            pendingQueueData = Context.getService(PendingQueueDataService.class)
+                    .getPendingQueueData(DISCRIMINATOR_VALUE, patientUuid);
         } finally {
-            if (queueProcessorException.anyExceptions()) {
-                throw queueProcessorException;
+            StageClock.switchTo(previous);
+        }
+
+        List<String> payloads = new ArrayList<String>();
+        payloads.add(context.payload);
+        for (QueueData pending : pendingQueueData) {
+            if (StringUtils.equals(pending.getUuid(), queueData.getUuid()) || isCoalesced(pending)
+                    || !isSubmittedAfter(pending, queueData)) {
+                continue;
+            }
+            if (StringUtils.equals(patientUuid,
+                    JsonUtils.readAsString(pending.getPayload(), "$['patient']['patient.uuid']"))) {
+                payloads.add(pending.getPayload());
+                coalescedQueueData.add(pending);
+            }
+        }
+        if (coalescedQueueData.isEmpty()) {
+            return coalescedQueueData;
+        }
+
+        UpdateContext merged = new UpdateContext(mergePayloads(payloads));
+        merged.unsavedPatient = new Patient();
+        populateUnsavedPatientDemographicsFromPayload(merged);
+        if (merged.validationErrors.hasErrors()) {
+            coalescedQueueData.clear();
+        } else {
+            context.unsavedPatient = merged.unsavedPatient;
+        }
+        return coalescedQueueData;
+    }
+
+    private boolean isSubmittedAfter(final QueueData pending, final QueueData queueData) {
+        if (pending.getDateCreated() == null || queueData.getDateCreated() == null) {
+            return false;
+        }
+        if (pending.getDateCreated().equals(queueData.getDateCreated())) {
+            return pending.getId() != null && queueData.getId() != null && pending.getId() > queueData.getId();
+        }
+        return pending.getDateCreated().after(queueData.getDateCreated());
+    }
+
+    @SuppressWarnings("unchecked")
+    private String mergePayloads(final List<String> payloads) {
+        JSONObject merged = new JSONObject();
+        for (String pendingPayload : payloads) {
+            Object parsed = JSONValue.parse(pendingPayload);
+            if (!(parsed instanceof Map)) {
+                continue;
+            }
+            for (Map.Entry<String, Object> section : ((Map<String, Object>) parsed).entrySet()) {
+                if (section.getValue() instanceof Map) {
+                    Map<String, Object> mergedSection = (Map<String, Object>) merged.get(section.getKey());
+                    if (mergedSection == null) {
+                        mergedSection = new JSONObject();
+                        merged.put(section.getKey(), mergedSection);
+                    }
+                    for (Map.Entry<String, Object> field : ((Map<String, Object>) section.getValue()).entrySet()) {
+                        if (field.getValue() != null && StringUtils.isNotBlank(String.valueOf(field.getValue()))) {
+                            mergedSection.put(field.getKey(), field.getValue());
+                        }
+                    }
+                } else if (section.getValue() != null) {
+                    merged.put(section.getKey(), section.getValue());
+                }
+            }
+        }
+        return merged.toJSONString();
+    }
+
+    /**
+     * The ledger hash covers the uuid and the payload, so identical payloads submitted twice get their own entries and
+     * a queue data edited after it was merged is processed again.
+     */
+    private static String getCoalescedHash(final QueueData queueData) {
+        return PayloadHashUtils.hash(queueData.getUuid() + ":" + queueData.getPayload());
+    }
+
+    private boolean isCoalesced(final QueueData queueData) {
+        String coalescedHash = getCoalescedHash(queueData);
+        if (coalescedHash.equals(coalesced.get(queueData.getUuid()))) {
+            return true;
+        }
+        return Context.getService(ProcessedQueueDataService.class)
+                .getProcessedQueueData(COALESCED_DISCRIMINATOR, coalescedHash) != null;
+    }
+
+    /**
+     * Record the queue data merged into the update in the ledger. They are only remembered in memory once the
+     * transaction saving the patient is committed.
+     */
+    private void markCoalesced(final List<QueueData> coalescedQueueData, final Patient patient) {
+        if (coalescedQueueData.isEmpty()) {
+            return;
+        }
+        ProcessedQueueDataService service = Context.getService(ProcessedQueueDataService.class);
+        final Map<String, String> marks = new HashMap<String, String>();
+        for (QueueData queueData : coalescedQueueData) {
+            String coalescedHash = getCoalescedHash(queueData);
+            if (service.getProcessedQueueData(COALESCED_DISCRIMINATOR, coalescedHash) == null) {
+                ProcessedQueueData processed = new ProcessedQueueData();
+                processed.setQueueDataUuid(queueData.getUuid());
+                processed.setDiscriminator(COALESCED_DISCRIMINATOR);
+                processed.setPayloadHash(coalescedHash);
+                processed.setResultUuid(patient.getUuid());
+                service.saveProcessedQueueData(processed);
             }
+            marks.put(queueData.getUuid(), coalescedHash);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(final int status) {
+                    if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                        remember(marks);
+                    }
+                }
+            });
+        } else {
+            remember(marks);
         }
+        HandlerMetrics.counter("handler." + DISCRIMINATOR_VALUE + ".coalesced").increment();
     }
 
-    private void updateSavedPatientDemographics(){
-        if(unsavedPatient.getIdentifiers() != null){
-            savedPatient.addIdentifiers(unsavedPatient.getIdentifiers());
+    private static void remember(final Map<String, String> marks) {
+        for (Map.Entry<String, String> mark : marks.entrySet()) {
+            coalesced.put(mark.getKey(), mark.getValue());
         }
-        if(unsavedPatient.getPersonName() != null) {
-            savedPatient.addName(unsavedPatient.getPersonName());
+    }
+
+    /**
+     * Apply the demographics from the payload which differ from the saved patient.
+     *
+     * @return true when the saved patient was changed and needs to be saved.
+     */
+    private boolean updateSavedPatientDemographics(final UpdateContext context){
+        boolean changed = false;
+        if(context.unsavedPatient.getIdentifiers() != null){
+            for (PatientIdentifier identifier : context.unsavedPatient.getIdentifiers()) {
+                if (!hasIdentifier(context.savedPatient, identifier)) {
+                    context.savedPatient.addIdentifier(identifier);
+                    changed = true;
+                }
+            }
         }
-        if(StringUtils.isNotBlank(unsavedPatient.getGender())) {
-            savedPatient.setGender(unsavedPatient.getGender());
+        if(context.unsavedPatient.getPersonName() != null
+                && !hasName(context.savedPatient, context.unsavedPatient.getPersonName())) {
+            context.savedPatient.addName(context.unsavedPatient.getPersonName());
+            changed = true;
+        }
+        if(StringUtils.isNotBlank(context.unsavedPatient.getGender())
+                && !StringUtils.equals(context.unsavedPatient.getGender(), context.savedPatient.getGender())) {
+            context.savedPatient.setGender(context.unsavedPatient.getGender());
+            changed = true;
+        }
+        if(context.unsavedPatient.getBirthdate() != null && (context.savedPatient.getBirthdate() == null
+                || !DateUtils.isSameDay(context.unsavedPatient.getBirthdate(), context.savedPatient.getBirthdate())
+                || !ObjectUtils.equals(context.unsavedPatient.getBirthdateEstimated(),
+                        context.savedPatient.getBirthdateEstimated()))) {
+            context.savedPatient.setBirthdate(context.unsavedPatient.getBirthdate());
+            context.savedPatient.setBirthdateEstimated(context.unsavedPatient.getBirthdateEstimated());
+            changed = true;
+        }
+        if(context.unsavedPatient.getPersonAddress() != null
+                && !hasAddress(context.savedPatient, context.unsavedPatient.getPersonAddress())) {
+            context.savedPatient.addAddress(context.unsavedPatient.getPersonAddress());
+            changed = true;
+        }
+        if(context.unsavedPatient.getAttributes() != null) {
+            for (PersonAttribute attribute : context.unsavedPatient.getAttributes()) {
+                PersonAttribute savedAttribute = context.savedPatient.getAttribute(attribute.getAttributeType());
+                if (savedAttribute == null || !StringUtils.equals(savedAttribute.getValue(), attribute.getValue())) {
+                    context.savedPatient.addAttribute(attribute);
+                    changed = true;
+                }
+            }
         }
-        if(unsavedPatient.getBirthdate() != null) {
-            savedPatient.setBirthdate(unsavedPatient.getBirthdate());
-            savedPatient.setBirthdateEstimated(unsavedPatient.getBirthdateEstimated());
+        if(changed && context.unsavedPatient.getChangedBy() != null) {
+            context.savedPatient.setChangedBy(context.unsavedPatient.getChangedBy());
         }
-        if(unsavedPatient.getPersonAddress() != null) {
-            savedPatient.addAddress(unsavedPatient.getPersonAddress());
+        return changed;
+    }
+
+    private boolean hasIdentifier(final Patient patient, final PatientIdentifier identifier) {
+        for (PatientIdentifier savedIdentifier : patient.getActiveIdentifiers()) {
+            if (savedIdentifier.getIdentifierType().equals(identifier.getIdentifierType())
+                    && StringUtils.equals(savedIdentifier.getIdentifier(), identifier.getIdentifier())) {
+                return true;
+            }
         }
-        if(unsavedPatient.getAttributes() != null) {
-            Set<PersonAttribute> attributes = unsavedPatient.getAttributes();
-            Iterator<PersonAttribute> iterator = attributes.iterator();
-            while(iterator.hasNext()) {
-                savedPatient.addAttribute(iterator.next());
+        return false;
+    }
+
+    /**
+     * Only the name parts sent in the payload are compared, the other parts are not set in the updated name.
+     */
+    private boolean hasName(final Patient patient, final PersonName name) {
+        for (PersonName savedName : patient.getNames()) {
+            if (!savedName.isVoided()
+                    && matches(name.getGivenName(), savedName.getGivenName())
+                    && matches(name.getMiddleName(), savedName.getMiddleName())
+                    && matches(name.getFamilyName(), savedName.getFamilyName())) {
+                return true;
             }
         }
-        if(unsavedPatient.getChangedBy() != null) {
-            savedPatient.setChangedBy(unsavedPatient.getChangedBy());
+        return false;
+    }
+
+    private boolean hasAddress(final Patient patient, final PersonAddress address) {
+        for (PersonAddress savedAddress : patient.getAddresses()) {
+            if (!savedAddress.isVoided()
+                    && matches(address.getStateProvince(), savedAddress.getStateProvince())
+                    && matches(address.getAddress6(), savedAddress.getAddress6())
+                    && matches(address.getAddress5(), savedAddress.getAddress5())
+                    && matches(address.getCityVillage(), savedAddress.getCityVillage())) {
+                return true;
+            }
         }
+        return false;
+    }
+
+    private boolean matches(final String updatedValue, final String savedValue) {
+        return StringUtils.isBlank(updatedValue) || StringUtils.equals(updatedValue, savedValue);
     }
 
     @Override
     public boolean validate(QueueData queueData) {
+        return validate(queueData, new UpdateContext(queueData.getPayload()));
+    }
+
+    private boolean validate(final QueueData queueData, final UpdateContext context) {
         log.info("Processing demographics Update form data: " + queueData.getUuid());
-        queueProcessorException = new QueueProcessorException();
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
         try {
-            payload = queueData.getPayload();
-            Patient candidatePatient = getCandidatePatientFromPayload();
-            savedPatient = PatientSearchUtils.findSavedPatient(candidatePatient,true);
-            if(savedPatient == null){
-                queueProcessorException.addException(new Exception("Unable to uniquely identify patient for this " +
-                        "demographic update form data. "));
+            if (isCoalesced(queueData)) {
+                return true;
+            }
+            ValidationResult<Patient[]> validationResult = ValidationResultCache.get(DISCRIMINATOR_VALUE, queueData);
+            if (validationResult != null) {
+                context.savedPatient = validationResult.getValue()[0];
+                context.unsavedPatient = validationResult.getValue()[1];
+                context.validationErrors.addAll(validationResult.getErrors());
+                return true;
+            }
+            StageClock.switchTo(Stage.PARSE);
+            Patient candidatePatient = getCandidatePatientFromPayload(context);
+            context.savedPatient = PatientSearchUtils.findSavedPatient(candidatePatient,true);
+            if(context.savedPatient == null){
+                context.validationErrors.add(ValidationErrorCode.PATIENT_NOT_FOUND, "$['patient']['patient.uuid']",
+                        candidatePatient.getUuid(),
+                        "Unable to uniquely identify patient for this demographic update form data.");
             } else {
-                unsavedPatient = new Patient();
-                populateUnsavedPatientDemographicsFromPayload();
+                context.unsavedPatient = new Patient();
+                populateUnsavedPatientDemographicsFromPayload(context);
             }
+            ValidationResultCache.put(DISCRIMINATOR_VALUE, queueData, new ValidationResult<Patient[]>(
+                    new Patient[]{context.savedPatient, context.unsavedPatient}, context.validationErrors.getErrors()));
             return true;
         } catch (Exception e) {
-            queueProcessorException.addException(e);
+            context.queueProcessorException.addException(e);
             return false;
         } finally {
-            if (queueProcessorException.anyExceptions()) {
-                throw queueProcessorException;
+            context.validationErrors.drainTo(context.queueProcessorException);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                throw context.queueProcessorException;
             }
         }
     }
@@ -137,54 +435,56 @@ public class DemographicsUpdateQueueDataHandler implements QueueDataHandler {
         return DISCRIMINATOR_VALUE;
     }
 
-    private Patient getCandidatePatientFromPayload(){
+    private Patient getCandidatePatientFromPayload(final UpdateContext context){
         Patient candidatePatient = new Patient();
 
-        String uuid = getCandidatePatientUuidFromPayload();
+        String uuid = getCandidatePatientUuidFromPayload(context);
         candidatePatient.setUuid(uuid);
 
-        PatientIdentifier preferredIdentifier = getCandidatePatientPreferredIdentifierFromPayload();
+        PatientIdentifier preferredIdentifier = getCandidatePatientPreferredIdentifierFromPayload(context);
         candidatePatient.addIdentifier(preferredIdentifier);
 
-        PersonName personName = getCandidatePatientPersonNameFromPayload();
+        PersonName personName = getCandidatePatientPersonNameFromPayload(context);
         candidatePatient.addName(personName);
 
-        String gender = getCandidatePatientGenderFromPayload();
+        String gender = getCandidatePatientGenderFromPayload(context);
         candidatePatient.setGender(gender);
 
-        Date birthDate = getCandidatePatientBirthDateFromPayload();
+        Date birthDate = getCandidatePatientBirthDateFromPayload(context);
         candidatePatient.setBirthdate(birthDate);
 
         return candidatePatient;
     }
 
-    private String getCandidatePatientUuidFromPayload(){
-        return JsonUtils.readAsString(payload, "$['patient']['patient.uuid']");
+    private String getCandidatePatientUuidFromPayload(final UpdateContext context){
+        return JsonUtils.readAsString(context.payload, "$['patient']['patient.uuid']");
     }
 
-    private PatientIdentifier getCandidatePatientPreferredIdentifierFromPayload(){
-        String identifierValue = JsonUtils.readAsString(payload, "$['patient']['patient.medical_record_number']");
+    private PatientIdentifier getCandidatePatientPreferredIdentifierFromPayload(final UpdateContext context){
+        String identifierValue = JsonUtils.readAsString(context.payload,
+                "$['patient']['patient.medical_record_number']");
         String identifierTypeName = "AMRS Universal ID";
 
-        PatientIdentifier preferredPatientIdentifier = createPatientIdentifier(identifierTypeName, identifierValue);
+        PatientIdentifier preferredPatientIdentifier = createPatientIdentifier(context,
+                identifierTypeName, identifierValue);
         if (preferredPatientIdentifier != null) {
             preferredPatientIdentifier.setPreferred(true);
         }
         return preferredPatientIdentifier;
     }
 
-    private PersonName getCandidatePatientPersonNameFromPayload(){
+    private PersonName getCandidatePatientPersonNameFromPayload(final UpdateContext context){
         PersonName personName = new PersonName();
-        String givenName = JsonUtils.readAsString(payload, "$['patient']['patient.given_name']");
+        String givenName = JsonUtils.readAsString(context.payload, "$['patient']['patient.given_name']");
         if(StringUtils.isNotBlank(givenName)){
             personName.setGivenName(givenName);
         }
-        String familyName = JsonUtils.readAsString(payload, "$['patient']['patient.family_name']");
+        String familyName = JsonUtils.readAsString(context.payload, "$['patient']['patient.family_name']");
         if(StringUtils.isNotBlank(familyName)){
             personName.setFamilyName(familyName);
         }
 
-        String middleName= JsonUtils.readAsString(payload, "$['patient']['patient.middle_name']");
+        String middleName= JsonUtils.readAsString(context.payload, "$['patient']['patient.middle_name']");
         if(StringUtils.isNotBlank(middleName)){
             personName.setMiddleName(middleName);
         }
@@ -193,47 +493,47 @@ public class DemographicsUpdateQueueDataHandler implements QueueDataHandler {
 
     }
 
-    private String getCandidatePatientGenderFromPayload(){
-        return JsonUtils.readAsString(payload, "$['patient']['patient.sex']");
+    private String getCandidatePatientGenderFromPayload(final UpdateContext context){
+        return JsonUtils.readAsString(context.payload, "$['patient']['patient.sex']");
     }
 
-    private Date getCandidatePatientBirthDateFromPayload(){
-        return JsonUtils.readAsDate(payload, "$['patient']['patient.birth_date']");
+    private Date getCandidatePatientBirthDateFromPayload(final UpdateContext context){
+        return JsonUtils.readAsDate(context.payload, "$['patient']['patient.birth_date']");
     }
 
-    private void populateUnsavedPatientDemographicsFromPayload() {
-        setUnsavedPatientIdentifiersFromPayload();
-        setUnsavedPatientBirthDateFromPayload();
-        setUnsavedPatientBirthDateEstimatedFromPayload();
-        setUnsavedPatientGenderFromPayload();
-        setUnsavedPatientNameFromPayload();
-        setUnsavedPatientAddressesFromPayload();
-        setUnsavedPatientPersonAttributesFromPayload();
-        setUnsavedPatientChangedByFromPayload();
+    private void populateUnsavedPatientDemographicsFromPayload(final UpdateContext context) {
+        setUnsavedPatientIdentifiersFromPayload(context);
+        setUnsavedPatientBirthDateFromPayload(context);
+        setUnsavedPatientBirthDateEstimatedFromPayload(context);
+        setUnsavedPatientGenderFromPayload(context);
+        setUnsavedPatientNameFromPayload(context);
+        setUnsavedPatientAddressesFromPayload(context);
+        setUnsavedPatientPersonAttributesFromPayload(context);
+        setUnsavedPatientChangedByFromPayload(context);
     }
 
-    private void setUnsavedPatientIdentifiersFromPayload() {
-        List<PatientIdentifier> otherIdentifiers = getOtherPatientIdentifiersFromPayload();
+    private void setUnsavedPatientIdentifiersFromPayload(final UpdateContext context) {
+        List<PatientIdentifier> otherIdentifiers = getOtherPatientIdentifiersFromPayload(context);
         if (!otherIdentifiers.isEmpty()) {
             Set<PatientIdentifier> patientIdentifiers = new HashSet<PatientIdentifier>();
             patientIdentifiers.addAll(otherIdentifiers);
-            setIdentifierTypeLocation(patientIdentifiers);
-            unsavedPatient.addIdentifiers(patientIdentifiers);
+            setIdentifierTypeLocation(context, patientIdentifiers);
+            context.unsavedPatient.addIdentifiers(patientIdentifiers);
         }
     }
 
-    private List<PatientIdentifier> getOtherPatientIdentifiersFromPayload() {
+    private List<PatientIdentifier> getOtherPatientIdentifiersFromPayload(final UpdateContext context) {
         List<PatientIdentifier> otherIdentifiers = new ArrayList<PatientIdentifier>();
-        Object identifierTypeNameObject = JsonUtils.readAsObject(payload,
+        Object identifierTypeNameObject = JsonUtils.readAsObject(context.payload,
                 "$['demographicsupdate']['demographicsupdate.other_identifier_type']");
-        Object identifierValueObject =JsonUtils.readAsObject(payload,
+        Object identifierValueObject =JsonUtils.readAsObject(context.payload,
                 "$['demographicsupdate']['demographicsupdate.other_identifier_value']");
 
         if (identifierTypeNameObject instanceof JSONArray) {
             JSONArray identifierTypeName = (JSONArray) identifierTypeNameObject;
             JSONArray identifierValue = (JSONArray) identifierValueObject;
             for (int i = 0; i < identifierTypeName.size(); i++) {
-                PatientIdentifier identifier = createPatientIdentifier(identifierTypeName.get(i).toString(),
+                PatientIdentifier identifier = createPatientIdentifier(context, identifierTypeName.get(i).toString(),
                         identifierValue.get(i).toString());
                 if (identifier != null) {
                     otherIdentifiers.add(identifier);
@@ -242,7 +542,7 @@ public class DemographicsUpdateQueueDataHandler implements QueueDataHandler {
         } else if (identifierTypeNameObject instanceof String) {
             String identifierTypeName = (String) identifierTypeNameObject;
             String identifierValue = (String) identifierValueObject;
-            PatientIdentifier identifier = createPatientIdentifier(identifierTypeName, identifierValue);
+            PatientIdentifier identifier = createPatientIdentifier(context, identifierTypeName, identifierValue);
             if (identifier != null) {
                 otherIdentifiers.add(identifier);
             }
@@ -250,15 +550,16 @@ public class DemographicsUpdateQueueDataHandler implements QueueDataHandler {
         return otherIdentifiers;
     }
 
-    private PatientIdentifier createPatientIdentifier(String identifierTypeName, String identifierValue) {
-        PatientIdentifierType identifierType = Context.getPatientService()
-                .getPatientIdentifierTypeByName(identifierTypeName);
+    private PatientIdentifier createPatientIdentifier(final UpdateContext context,
+            String identifierTypeName, String identifierValue) {
+        PatientIdentifierType identifierType = MetadataUtils.getPatientIdentifierTypeByName(identifierTypeName);
         if (identifierType == null) {
-            queueProcessorException.addException(
-                    new Exception("Unable to find identifier type with name: " + identifierTypeName));
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_IDENTIFIER_TYPE,
+                    "identifier_type", identifierTypeName,
+                    "Unable to find identifier type.");
         } else if (identifierValue == null) {
-            queueProcessorException.addException(
-                    new Exception("Identifier value can't be null type: " + identifierTypeName));
+            context.validationErrors.add(ValidationErrorCode.MISSING_IDENTIFIER, "identifier_value", null,
+                    "Identifier value can't be null type: " + identifierTypeName);
         } else {
             PatientIdentifier patientIdentifier = new PatientIdentifier();
             patientIdentifier.setIdentifierType(identifierType);
@@ -268,13 +569,16 @@ public class DemographicsUpdateQueueDataHandler implements QueueDataHandler {
         return null;
     }
 
-    private void setIdentifierTypeLocation(final Set<PatientIdentifier> patientIdentifiers) {
-        Location location = getLocationFromPayload();
+    private void setIdentifierTypeLocation(final UpdateContext context,
+            final Set<PatientIdentifier> patientIdentifiers) {
+        Location location = getLocationFromPayload(context);
 
         if (location == null) {
-            String locationIdString = JsonUtils.readAsString(payload, "$['encounter']['encounter.location_id']");
-            queueProcessorException.addException(
-                    new Exception("Unable to find encounter location using the id: " + locationIdString));
+            String locationIdString = JsonUtils.readAsString(context.payload,
+                    "$['encounter']['encounter.location_id']");
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_LOCATION,
+                    "$['encounter']['encounter.location_id']",
+                    locationIdString, "Unable to find encounter location.");
         } else {
             Iterator<PatientIdentifier> iterator = patientIdentifiers.iterator();
             while (iterator.hasNext()) {
@@ -284,142 +588,174 @@ public class DemographicsUpdateQueueDataHandler implements QueueDataHandler {
         }
     }
 
-    private Location getLocationFromPayload(){
-        String locationIdString = JsonUtils.readAsString(payload, "$['encounter']['encounter.location_id']");
+    private Location getLocationFromPayload(final UpdateContext context){
+        String locationIdString = JsonUtils.readAsString(context.payload, "$['encounter']['encounter.location_id']");
         Location location = null;
         int locationId;
 
         if(locationIdString != null){
             locationId = Integer.parseInt(locationIdString);
-            location = Context.getLocationService().getLocation(locationId);
+            location = MetadataUtils.getLocation(locationId);
         }
         return location;
     }
 
-    private void setUnsavedPatientBirthDateFromPayload(){
-        Date birthDate = JsonUtils.readAsDate(payload, "$['demographicsupdate']['demographicsupdate.birth_date']");
+    private void setUnsavedPatientBirthDateFromPayload(final UpdateContext context){
+        Date birthDate = JsonUtils.readAsDate(context.payload,
+                "$['demographicsupdate']['demographicsupdate.birth_date']");
         if(birthDate != null){
-            if(isBirthDateChangeValidated()){
-                unsavedPatient.setBirthdate(birthDate);
+            if(isBirthDateChangeValidated(context)){
+                context.unsavedPatient.setBirthdate(birthDate);
             }else{
-                queueProcessorException.addException(
-                        new Exception("Change of Birth Date requires manual review"));
+                context.validationErrors.add(ValidationErrorCode.REVIEW_REQUIRED,
+                        "$['demographicsupdate']['demographicsupdate.birth_date']", birthDate,
+                        "Change of Birth Date requires manual review");
             }
         }
 
     }
 
-    private void setUnsavedPatientBirthDateEstimatedFromPayload(){
-        boolean birthdateEstimated = JsonUtils.readAsBoolean(payload,
+    private void setUnsavedPatientBirthDateEstimatedFromPayload(final UpdateContext context){
+        boolean birthdateEstimated = JsonUtils.readAsBoolean(context.payload,
                 "$['demographicsupdate']['demographicsupdate.birthdate_estimated']");
-        unsavedPatient.setBirthdateEstimated(birthdateEstimated);
+        context.unsavedPatient.setBirthdateEstimated(birthdateEstimated);
     }
 
-    private void setUnsavedPatientGenderFromPayload(){
-        String gender = JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.sex']");
+    private void setUnsavedPatientGenderFromPayload(final UpdateContext context){
+        String gender = JsonUtils.readAsString(context.payload, "$['demographicsupdate']['demographicsupdate.sex']");
         if(StringUtils.isNotBlank(gender)){
-            if(isGenderChangeValidated()){
-                unsavedPatient.setGender(gender);
+            if(isGenderChangeValidated(context)){
+                context.unsavedPatient.setGender(gender);
             }else{
-                queueProcessorException.addException(
-                        new Exception("Change of Gender requires manual review"));
+                context.validationErrors.add(ValidationErrorCode.REVIEW_REQUIRED,
+                        "$['demographicsupdate']['demographicsupdate.sex']", gender,
+                        "Change of Gender requires manual review");
             }
         }
     }
 
-    private void setUnsavedPatientNameFromPayload(){
+    private void setUnsavedPatientNameFromPayload(final UpdateContext context){
         PersonName personName = new PersonName();
-        String givenName = JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.given_name']");
+        String givenName = JsonUtils.readAsString(context.payload,
+                "$['demographicsupdate']['demographicsupdate.given_name']");
         if(StringUtils.isNotBlank(givenName)){
             personName.setGivenName(givenName);
         }
-        String familyName = JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.family_name']");
+        String familyName = JsonUtils.readAsString(context.payload,
+                "$['demographicsupdate']['demographicsupdate.family_name']");
         if(StringUtils.isNotBlank(familyName)){
             personName.setFamilyName(familyName);
         }
 
-        String middleName= JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.middle_name']");
+        String middleName= JsonUtils.readAsString(context.payload,
+                "$['demographicsupdate']['demographicsupdate.middle_name']");
         if(StringUtils.isNotBlank(middleName)){
             personName.setMiddleName(middleName);
         }
 
         if(StringUtils.isNotBlank(personName.getFullName())) {
-            unsavedPatient.addName(personName);
+            context.unsavedPatient.addName(personName);
         }
     }
 
-    private void setUnsavedPatientAddressesFromPayload(){
+    private void setUnsavedPatientAddressesFromPayload(final UpdateContext context){
         PersonAddress patientAddress = new PersonAddress();
 
-        String county = JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.county']");
+        String county = JsonUtils.readAsString(context.payload, "$['demographicsupdate']['demographicsupdate.county']");
         if(StringUtils.isNotBlank(county)) {
             patientAddress.setStateProvince(county);
         }
 
-        String location = JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.location']");
+        String location = JsonUtils.readAsString(context.payload,
+                "$['demographicsupdate']['demographicsupdate.location']");
         if(StringUtils.isNotBlank(location)) {
             patientAddress.setAddress6(location);
         }
 
-        String sub_location = JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.sub_location']");
+        String sub_location = JsonUtils.readAsString(context.payload,
+                "$['demographicsupdate']['demographicsupdate.sub_location']");
         if(StringUtils.isNotBlank(sub_location)) {
             patientAddress.setAddress5(sub_location);
         }
 
-        String village = JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.village']");
+        String village = JsonUtils.readAsString(context.payload,
+                "$['demographicsupdate']['demographicsupdate.village']");
         if(StringUtils.isNotBlank(village)) {
             patientAddress.setCityVillage(village);
         }
         if(!patientAddress.isBlank()){
-            unsavedPatient.addAddress(patientAddress);
+            context.unsavedPatient.addAddress(patientAddress);
         }
     }
 
-    private void setUnsavedPatientPersonAttributesFromPayload(){
-        String mothersName = JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.mothers_name']");
+    private void setUnsavedPatientPersonAttributesFromPayload(final UpdateContext context){
+        String mothersName = JsonUtils.readAsString(context.payload,
+                "$['demographicsupdate']['demographicsupdate.mothers_name']");
         if(StringUtils.isNotBlank(mothersName)) {
-            setAsAttribute("Mother's Name", mothersName);
+            setAsAttribute(context, "Mother's Name", mothersName);
         }
 
-        String phoneNumber = JsonUtils.readAsString(payload, "$['demographicsupdate']['demographicsupdate.phone_number']");
+        String phoneNumber = JsonUtils.readAsString(context.payload,
+                "$['demographicsupdate']['demographicsupdate.phone_number']");
         if(StringUtils.isNotBlank(phoneNumber)) {
-            setAsAttribute("Contact Phone Number", phoneNumber);
+            setAsAttribute(context, "Contact Phone Number", phoneNumber);
         }
     }
 
-    private void setAsAttribute(String attributeTypeName, String value){
-        PersonService personService = Context.getPersonService();
-        PersonAttributeType attributeType = personService.getPersonAttributeTypeByName(attributeTypeName);
+    private void setAsAttribute(final UpdateContext context, String attributeTypeName, String value){
+        PersonAttributeType attributeType = MetadataUtils.getPersonAttributeTypeByName(attributeTypeName);
         if(attributeType !=null && StringUtils.isNotBlank(value)){
             PersonAttribute personAttribute = new PersonAttribute(attributeType, value);
-            unsavedPatient.addAttribute(personAttribute);
+            context.unsavedPatient.addAttribute(personAttribute);
         } else if(attributeType ==null){
-            queueProcessorException.addException(
-                    new Exception("Unable to find Person Attribute type by name '" + attributeTypeName + "'")
-            );
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_ATTRIBUTE_TYPE, attributeTypeName, value,
+                    "Unable to find Person Attribute type by name '" + attributeTypeName + "'");
         }
     }
 
-    private  void setUnsavedPatientChangedByFromPayload(){
-        String providerString = JsonUtils.readAsString(payload, "$['encounter']['encounter.provider_id']");
-        User user = Context.getUserService().getUserByUsername(providerString);
+    private  void setUnsavedPatientChangedByFromPayload(final UpdateContext context){
+        String providerString = JsonUtils.readAsString(context.payload, "$['encounter']['encounter.provider_id']");
+        User user = MetadataUtils.getUserByUsername(providerString);
         if (user == null) {
-            queueProcessorException.addException(new Exception("Unable to find user using the id: " + providerString));
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_USER, "$['encounter']['encounter.provider_id']",
+                    providerString, "Unable to find user.");
         } else {
-            unsavedPatient.setChangedBy(user);
+            context.unsavedPatient.setChangedBy(user);
         }
     }
 
-    private boolean isBirthDateChangeValidated(){
-        return JsonUtils.readAsBoolean(payload, "$['demographicsupdate']['demographicsupdate.birthdate_change_validated']");
+    private boolean isBirthDateChangeValidated(final UpdateContext context){
+        return JsonUtils.readAsBoolean(context.payload,
+                "$['demographicsupdate']['demographicsupdate.birthdate_change_validated']");
     }
 
-    private boolean isGenderChangeValidated(){
-        return JsonUtils.readAsBoolean(payload, "$['demographicsupdate']['demographicsupdate.gender_change_validated']");
+    private boolean isGenderChangeValidated(final UpdateContext context){
+        return JsonUtils.readAsBoolean(context.payload,
+                "$['demographicsupdate']['demographicsupdate.gender_change_validated']");
     }
 
     @Override
     public boolean accept(final QueueData queueData) {
         return StringUtils.equals(DISCRIMINATOR_VALUE, queueData.getDiscriminator());
     }
+
+    /**
+     * The state of the demographics update of a single queue data, or of the updates merged into it.
+     */
+    private static class UpdateContext {
+
+        private final String payload;
+
+        private final QueueProcessorException queueProcessorException = new QueueProcessorException();
+
+        private final ValidationErrors validationErrors = new ValidationErrors();
+
+        private Patient savedPatient;
+
+        private Patient unsavedPatient;
+
+        private UpdateContext(final String payload) {
+            this.payload = payload;
+        }
+    }
 }
\ No newline at end of file
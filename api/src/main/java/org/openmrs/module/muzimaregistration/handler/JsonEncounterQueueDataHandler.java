@@ -31,19 +31,31 @@ import org.openmrs.PatientIdentifierType;
 import org.openmrs.PersonName;
 import org.openmrs.User;
 import org.openmrs.annotation.Handler;
-import org.openmrs.api.LocationService;
-import org.openmrs.api.PatientService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.muzima.exception.QueueProcessorException;
 import org.openmrs.module.muzima.model.QueueData;
 import org.openmrs.module.muzima.model.handler.QueueDataHandler;
-import org.openmrs.module.muzimaforms.MuzimaForm;
-import org.openmrs.module.muzimaforms.api.MuzimaFormService;
+import org.openmrs.module.muzimaregistration.api.ProcessedQueueDataService;
+import org.openmrs.module.muzimaregistration.api.model.ProcessedQueueData;
+import org.openmrs.module.muzimaregistration.journal.PayloadJournal;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.metrics.Stage;
+import org.openmrs.module.muzimaregistration.metrics.StageClock;
+import org.openmrs.module.muzimaregistration.scheduling.ParkingLot;
+import org.openmrs.module.muzimaregistration.scheduling.QueueDataScheduler;
+import org.openmrs.module.muzimaregistration.scheduling.QueueLeases;
 import org.openmrs.module.muzimaregistration.utils.JsonUtils;
+import org.openmrs.module.muzimaregistration.utils.MetadataUtils;
+import org.openmrs.module.muzimaregistration.utils.ObsPlan;
+import org.openmrs.module.muzimaregistration.utils.ObsPlanCache;
 import org.openmrs.module.muzimaregistration.utils.PatientSearchUtils;
+import org.openmrs.module.muzimaregistration.utils.PayloadHashUtils;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrorCode;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrors;
+import org.openmrs.module.muzimaregistration.validation.ValidationResult;
+import org.openmrs.module.muzimaregistration.validation.ValidationResultCache;
 import org.springframework.stereotype.Component;
 
-import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -58,43 +70,73 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
 
     private static final String DISCRIMINATOR_VALUE = "json-encounter";
 
-    private static final DateFormat dateFormat = new SimpleDateFormat("dd-MM-yyyy");
+    private static final String DATE_PATTERN = "dd-MM-yyyy";
 
     private final Log log = LogFactory.getLog(JsonEncounterQueueDataHandler.class);
 
-    private QueueProcessorException queueProcessorException;
-
-    private Encounter encounter;
-
     @Override
     public boolean validate(QueueData queueData) {
+        return validate(queueData, new EncounterContext());
+    }
+
+    private boolean validate(final QueueData queueData, final EncounterContext context) {
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
         try {
-            queueProcessorException = new QueueProcessorException();
+            context.payloadHash = PayloadHashUtils.hash(queueData.getPayload());
+            StageClock.switchTo(Stage.MATCHING);
+            context.processedQueueData = Context.getService(ProcessedQueueDataService.class)
+                    .getProcessedQueueData(DISCRIMINATOR_VALUE, context.payloadHash);
+            if (context.processedQueueData != null) {
+                log.info("Skipping encounter form data: " + queueData.getUuid() + ", the same payload was processed "
+                        + "from: " + context.processedQueueData.getQueueDataUuid());
+                HandlerMetrics.counter("handler." + DISCRIMINATOR_VALUE + ".repeats").increment();
+                return true;
+            }
+            ValidationResult<Encounter> validationResult = ValidationResultCache.get(DISCRIMINATOR_VALUE, queueData);
+            if (validationResult != null) {
+                context.encounter = validationResult.getValue();
+                context.validationErrors.addAll(validationResult.getErrors());
+                return true;
+            }
+            StageClock.switchTo(Stage.PARSE);
             log.info("Processing encounter form data: " + queueData.getUuid());
-            encounter = new Encounter();
+            context.encounter = new Encounter();
             String payload = queueData.getPayload();
 
             //Object encounterObject = JsonUtils.readAsObject(queueData.getPayload(), "$['encounter']");
-            processEncounter(encounter, payload);
+            processEncounter(context, payload);
 
             //Object patientObject = JsonUtils.readAsObject(queueData.getPayload(), "$['patient']");
-            processPatient(encounter, payload);
+            processPatient(context, payload);
 
             Object obsObject = JsonUtils.readAsObject(queueData.getPayload(), "$['observation']");
-            processObs(encounter, null, obsObject);
+            processObs(context, null, obsObject);
 
+            ValidationResultCache.put(DISCRIMINATOR_VALUE, queueData,
+                    new ValidationResult<Encounter>(context.encounter, context.validationErrors.getErrors()));
             return true;
 
         } catch (Exception e) {
-            queueProcessorException.addException(e);
+            context.queueProcessorException.addException(e);
             return false;
         } finally {
-            if (queueProcessorException.anyExceptions()) {
-                throw queueProcessorException;
+            context.validationErrors.drainTo(context.queueProcessorException);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                throw context.queueProcessorException;
             }
         }
     }
 
+    private void recordProcessedQueueData(final QueueData queueData, final EncounterContext context) {
+        ProcessedQueueData processed = new ProcessedQueueData();
+        processed.setQueueDataUuid(queueData.getUuid());
+        processed.setDiscriminator(DISCRIMINATOR_VALUE);
+        processed.setPayloadHash(context.payloadHash);
+        processed.setResultUuid(context.encounter.getUuid());
+        Context.getService(ProcessedQueueDataService.class).saveProcessedQueueData(processed);
+    }
+
     @Override
     public String getDiscriminator() {
         return DISCRIMINATOR_VALUE;
@@ -102,31 +144,38 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
 
     @Override
     public void process(final QueueData queueData) throws QueueProcessorException {
-
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
+        PayloadJournal.capture(DISCRIMINATOR_VALUE, queueData);
+        EncounterContext context = new EncounterContext();
         try {
-            if (validate(queueData)) {
-                Context.getEncounterService().saveEncounter(encounter);
+            QueueDataScheduler.pullForwardRegistration(queueData);
+            if (validate(queueData, context) && context.processedQueueData == null) {
+                StageClock.switchTo(Stage.PERSISTENCE);
+                Context.getEncounterService().saveEncounter(context.encounter);
+                recordProcessedQueueData(queueData, context);
             }
         } catch (Exception e) {
             if (!e.getClass().equals(QueueProcessorException.class))
-                queueProcessorException.addException(e);
+                context.queueProcessorException.addException(e);
         } finally {
-            if (queueProcessorException.anyExceptions()) {
-                throw queueProcessorException;
+            ValidationResultCache.remove(DISCRIMINATOR_VALUE, queueData);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            QueueLeases.release(queueData, context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                ParkingLot.park(DISCRIMINATOR_VALUE, queueData, context.validationErrors);
+                throw context.queueProcessorException;
             }
         }
     }
 
-    private void processPatient(final Encounter encounter, final Object patientObject) {
+    private void processPatient(final EncounterContext context, final Object patientObject) {
         Patient unsavedPatient = new Patient();
         String patientPayload = patientObject.toString();
 
         String uuid = JsonUtils.readAsString(patientPayload, "$['patient']['patient.uuid']");
         unsavedPatient.setUuid(uuid);
 
-        PatientService patientService = Context.getPatientService();
-        LocationService locationService = Context.getLocationService();
-        PatientIdentifierType defaultIdentifierType = patientService.getPatientIdentifierType(1);
+        PatientIdentifierType defaultIdentifierType = MetadataUtils.getPatientIdentifierType(1);
 
         String identifier = JsonUtils.readAsString(patientPayload, "$['patient']['patient.medical_record_number']");
         String identifierTypeUuid = JsonUtils.readAsString(patientPayload, "$['patient']['patient.identifier_type']");
@@ -134,10 +183,10 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
 
         PatientIdentifier patientIdentifier = new PatientIdentifier();
         Location location = StringUtils.isNotBlank(locationUuid) ?
-                locationService.getLocationByUuid(locationUuid) : encounter.getLocation();
+                MetadataUtils.getLocationByUuid(locationUuid) : context.encounter.getLocation();
         patientIdentifier.setLocation(location);
         PatientIdentifierType patientIdentifierType = StringUtils.isNotBlank(identifierTypeUuid) ?
-                patientService.getPatientIdentifierTypeByUuid(identifierTypeUuid) : defaultIdentifierType;
+                MetadataUtils.getPatientIdentifierTypeByUuid(identifierTypeUuid) : defaultIdentifierType;
         patientIdentifier.setIdentifierType(patientIdentifierType);
         patientIdentifier.setIdentifier(identifier);
         unsavedPatient.addIdentifier(patientIdentifier);
@@ -165,30 +214,31 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
         Patient candidatePatient = PatientSearchUtils.findSavedPatient(unsavedPatient,true);
 
         if (candidatePatient == null) {
-            queueProcessorException.addException(new Exception("Unable to uniquely identify patient for this encounter form data. "));
-            //+ ToStringBuilder.reflectionToString(unsavedPatient)));
+            context.validationErrors.add(ValidationErrorCode.PATIENT_NOT_FOUND, "$['patient']['patient.uuid']", uuid,
+                    "Unable to uniquely identify patient for this encounter form data.");
         } else {
-            encounter.setPatient(candidatePatient);
+            context.encounter.setPatient(candidatePatient);
         }
     }
 
-    private void processObs(final Encounter encounter, final Obs parentObs, final Object obsObject) {
+    private void processObs(final EncounterContext context, final Obs parentObs, final Object obsObject) {
         if (obsObject instanceof JSONObject) {
             JSONObject obsJsonObject = (JSONObject) obsObject;
             for (String conceptQuestion : obsJsonObject.keySet()) {
-                String[] conceptElements = StringUtils.split(conceptQuestion, "\\^");
-                if (conceptElements.length < 3)
+                ObsPlan.Field field = context.obsPlan.getField(conceptQuestion);
+                if (field.isSkipped())
                     continue;
-                int conceptId = Integer.parseInt(conceptElements[0]);
-                Concept concept = Context.getConceptService().getConcept(conceptId);
+                Concept concept = field.getConcept();
                 if (concept == null) {
-                    queueProcessorException.addException(new Exception("Unable to find Concept for Question with ID: " + conceptId));
+                    context.validationErrors.add(ValidationErrorCode.UNKNOWN_CONCEPT,
+                            "$['observation']", conceptQuestion,
+                            "Unable to find Concept for Question with ID: " + field.getConceptId());
                 } else {
-                    if (concept.isSet()) {
+                    if (field.getValueType() == ObsPlan.ValueType.GROUP) {
                         Obs obsGroup = new Obs();
                         obsGroup.setConcept(concept);
                         Object childObsObject = obsJsonObject.get(conceptQuestion);
-                        processObsObject(encounter, obsGroup, childObsObject);
+                        processObsObject(context, obsGroup, childObsObject);
                         if (parentObs != null) {
                             parentObs.addGroupMember(obsGroup);
                         }
@@ -197,24 +247,25 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
                         if (valueObject instanceof JSONArray) {
                             JSONArray jsonArray = (JSONArray) valueObject;
                             for (Object arrayElement : jsonArray) {
-                                createObs(encounter, parentObs, concept, arrayElement);
+                                createObs(context, parentObs, field, arrayElement);
                             }
                         } else {
-                            createObs(encounter, parentObs, concept, valueObject);
+                            createObs(context, parentObs, field, valueObject);
                         }
                     }
                 }
             }
         }else if(obsObject instanceof LinkedHashMap){
             Object obsAsJsonObject = new JSONObject((Map<String,?>)obsObject);
-            processObs(encounter, parentObs, obsAsJsonObject);
+            processObs(context, parentObs, obsAsJsonObject);
         }
     }
 
-    private void createObs(final Encounter encounter, final Obs parentObs, final Concept concept, final Object o) {
+    private void createObs(final EncounterContext context, final Obs parentObs,
+                               final ObsPlan.Field field, final Object o) {
         String value=null;
         Obs obs = new Obs();
-        obs.setConcept(concept);
+        obs.setConcept(field.getConcept());
 
         //check and parse if obs_value / obs_datetime object
         if(o instanceof LinkedHashMap){
@@ -231,105 +282,101 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
             value = o.toString();
         }
         // find the obs value :)
-        if (concept.getDatatype().isNumeric()) {
+        if (field.getValueType() == ObsPlan.ValueType.NUMERIC) {
             obs.setValueNumeric(Double.parseDouble(value));
-        } else if (concept.getDatatype().isDate()
-                || concept.getDatatype().isTime()
-                || concept.getDatatype().isDateTime()) {
+        } else if (field.getValueType() == ObsPlan.ValueType.DATETIME) {
             obs.setValueDatetime(parseDate(value));
-        } else if (concept.getDatatype().isCoded()) {
-            String[] valueCodedElements = StringUtils.split(value, "\\^");
-            int valueCodedId = Integer.parseInt(valueCodedElements[0]);
-            Concept valueCoded = Context.getConceptService().getConcept(valueCodedId);
+        } else if (field.getValueType() == ObsPlan.ValueType.CODED) {
+            Concept valueCoded = context.obsPlan.getCodedValue(value);
             if (valueCoded == null) {
-                queueProcessorException.addException(new Exception("Unable to find concept for value coded with id: " + valueCodedId));
+                context.validationErrors.add(ValidationErrorCode.UNKNOWN_VALUE_CODED, "$['observation']", value,
+                        "Unable to find concept for value coded with id: " + ObsPlan.parseConceptId(value));
             } else {
                 obs.setValueCoded(valueCoded);
             }
-        } else if (concept.getDatatype().isText()) {
+        } else if (field.getValueType() == ObsPlan.ValueType.TEXT) {
             obs.setValueText(value);
         }
         // only add if the value is not empty :)
-        encounter.addObs(obs);
+        context.encounter.addObs(obs);
         if (parentObs != null) {
             parentObs.addGroupMember(obs);
         }
     }
 
-    private void processObsObject(final Encounter encounter, final Obs parentObs, final Object childObsObject) {
+    private void processObsObject(final EncounterContext context, final Obs parentObs, final Object childObsObject) {
         //Object o = JsonUtils.readAsObject(childObsObject.toString(), "$");
         if (childObsObject instanceof JSONArray) {
             JSONArray jsonArray = (JSONArray) childObsObject;
             for (Object arrayElement : jsonArray) {
                 Obs obsGroup = new Obs();
                 obsGroup.setConcept(parentObs.getConcept());
-                processObs(encounter, obsGroup, arrayElement);
-                encounter.addObs(obsGroup);
+                processObs(context, obsGroup, arrayElement);
+                context.encounter.addObs(obsGroup);
             }
         } else if (childObsObject instanceof JSONObject) {
-            processObs(encounter, parentObs, childObsObject);
-            encounter.addObs(parentObs);
+            processObs(context, parentObs, childObsObject);
+            context.encounter.addObs(parentObs);
         }else if (childObsObject instanceof LinkedHashMap) {
             Object childObsAsJsonObject = new JSONObject((Map<String,?>)childObsObject);
-            processObs(encounter, parentObs, childObsAsJsonObject);
-            encounter.addObs(parentObs);
+            processObs(context, parentObs, childObsAsJsonObject);
+            context.encounter.addObs(parentObs);
         }
     }
 
-    private void processEncounter(final Encounter encounter, final Object encounterObject) throws QueueProcessorException {
+    private void processEncounter(final EncounterContext context, final Object encounterObject)
+            throws QueueProcessorException {
         String encounterPayload = encounterObject.toString();
 
         String formUuid = JsonUtils.readAsString(encounterPayload, "$['encounter']['encounter.form_uuid']");
-        Form form = Context.getFormService().getFormByUuid(formUuid);
+        Form form = MetadataUtils.getFormByUuid(formUuid);
         if (form == null) {
-            MuzimaFormService muzimaFormService = Context.getService(MuzimaFormService.class);
-            MuzimaForm muzimaForm = muzimaFormService.findByUniqueId(formUuid);
-            if (muzimaForm != null) {
-                Form formDefinition = Context.getFormService().getFormByUuid(muzimaForm.getForm());
-                encounter.setForm(formDefinition);
-                encounter.setEncounterType(formDefinition.getEncounterType());
+            log.info("Unable to find form using the uuid: " + formUuid + ". Setting the form field to null!");
+            String encounterTypeString = JsonUtils.readAsString(encounterPayload, "$['encounter']['encounter.type_id']");
+            int encounterTypeId = NumberUtils.toInt(encounterTypeString, -999);
+            EncounterType encounterType = MetadataUtils.getEncounterType(encounterTypeId);
+            if (encounterType == null) {
+                context.validationErrors.add(ValidationErrorCode.UNKNOWN_ENCOUNTER_TYPE,
+                        "$['encounter']['encounter.type_id']",
+                        encounterTypeString, "Unable to find encounter type.");
             } else {
-                log.info("Unable to find form using the uuid: " + formUuid + ". Setting the form field to null!");
-                String encounterTypeString = JsonUtils.readAsString(encounterPayload, "$['encounter']['encounter.type_id']");
-                int encounterTypeId = NumberUtils.toInt(encounterTypeString, -999);
-                EncounterType encounterType = Context.getEncounterService().getEncounterType(encounterTypeId);
-                if (encounterType == null) {
-                    queueProcessorException.addException(new Exception("Unable to find encounter type using the id: " + encounterTypeString));
-                } else {
-                    encounter.setEncounterType(encounterType);
-                }
+                context.encounter.setEncounterType(encounterType);
             }
         } else {
-            encounter.setForm(form);
-            encounter.setEncounterType(form.getEncounterType());
+            context.encounter.setForm(form);
+            context.encounter.setEncounterType(form.getEncounterType());
         }
+        context.obsPlan = ObsPlanCache.getPlan(form == null ? formUuid : form.getUuid());
 
         String providerString = JsonUtils.readAsString(encounterPayload, "$['encounter']['encounter.provider_id']");
-        User user = Context.getUserService().getUserByUsername(providerString);
+        User user = MetadataUtils.getUserByUsername(providerString);
         if (user == null) {
-            queueProcessorException.addException(new Exception("Unable to find user using the id: " + providerString));
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_USER, "$['encounter']['encounter.provider_id']",
+                    providerString, "Unable to find user.");
         } else {
-            encounter.setCreator(user);
-            encounter.setProvider(user);
+            context.encounter.setCreator(user);
+            context.encounter.setProvider(user);
         }
 
         String locationString = JsonUtils.readAsString(encounterPayload, "$['encounter']['encounter.location_id']");
         int locationId = NumberUtils.toInt(locationString, -999);
-        Location location = Context.getLocationService().getLocation(locationId);
+        Location location = MetadataUtils.getLocation(locationId);
         if (location == null) {
-            queueProcessorException.addException(new Exception("Unable to find encounter location using the id: " + locationString));
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_LOCATION,
+                    "$['encounter']['encounter.location_id']",
+                    locationString, "Unable to find encounter location.");
         } else {
-            encounter.setLocation(location);
+            context.encounter.setLocation(location);
         }
 
         Date encounterDatetime = JsonUtils.readAsDate(encounterPayload, "$['encounter']['encounter.encounter_datetime']");
-        encounter.setEncounterDatetime(encounterDatetime);
+        context.encounter.setEncounterDatetime(encounterDatetime);
     }
 
     private Date parseDate(final String dateValue) {
         Date date = null;
         try {
-            date = dateFormat.parse(dateValue);
+            date = new SimpleDateFormat(DATE_PATTERN).parse(dateValue);
         } catch (ParseException e) {
             log.error("Unable to parse date data for encounter!", e);
         }
@@ -340,5 +387,22 @@ public class JsonEncounterQueueDataHandler implements QueueDataHandler {
     public boolean accept(final QueueData queueData) {
         return StringUtils.equals(DISCRIMINATOR_VALUE, queueData.getDiscriminator());
     }
-}
 
+    /**
+     * The state of the encounter of a single queue data, the handler is shared by the queue processor threads.
+     */
+    private static class EncounterContext {
+
+        private final QueueProcessorException queueProcessorException = new QueueProcessorException();
+
+        private final ValidationErrors validationErrors = new ValidationErrors();
+
+        private Encounter encounter;
+
+        private ObsPlan obsPlan;
+
+        private String payloadHash;
+
+        private ProcessedQueueData processedQueueData;
+    }
+}
@@ -34,11 +34,20 @@ import org.openmrs.module.muzima.model.QueueData;
 import org.openmrs.module.muzima.model.handler.QueueDataHandler;
 import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.journal.PayloadJournal;
+import org.openmrs.module.muzimaregistration.metrics.Stage;
+import org.openmrs.module.muzimaregistration.metrics.StageClock;
+import org.openmrs.module.muzimaregistration.scheduling.ParkingLot;
+import org.openmrs.module.muzimaregistration.scheduling.QueueLeases;
+import org.openmrs.module.muzimaregistration.scheduling.RegistrationLocks;
 import org.openmrs.module.muzimaregistration.utils.JsonUtils;
+import org.openmrs.module.muzimaregistration.utils.MetadataUtils;
 import org.openmrs.module.muzimaregistration.utils.PatientSearchUtils;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrorCode;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrors;
+import org.openmrs.module.muzimaregistration.validation.ValidationResult;
+import org.openmrs.module.muzimaregistration.validation.ValidationResultCache;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
@@ -46,61 +55,86 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
 
 /**
- * TODO: Write brief description about the class here.
+ * Registers the patients submitted through the json registration form. The temporary uuid given to the patient on the
+ * device is mapped to the uuid of the newly created patient in the registration data, so the encounters submitted
+ * for the temporary uuid can find the patient. A registration already mapped (e.g. pulled forward for a dependent
+ * encounter) is skipped.
+ * <p/>
+ * The handler is shared by the queue processor threads, the state of the queue data being processed is kept in a
+ * {@link RegistrationContext} created for each call.
  */
 @Handler(supports = QueueData.class, order = 1)
 public class JsonRegistrationQueueDataHandler implements QueueDataHandler {
 
     private static final String DISCRIMINATOR_VALUE = "json-registration";
 
-    private static final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-
     private final Log log = LogFactory.getLog(JsonRegistrationQueueDataHandler.class);
 
-    private Patient unsavedPatient;
-    private String payload;
-    Set<PersonAttribute> personAttributes;
-    private QueueProcessorException queueProcessorException;
-
     @Override
     public void process(final QueueData queueData) throws QueueProcessorException {
         log.info("Processing registration form data: " + queueData.getUuid());
-        queueProcessorException = new QueueProcessorException();
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
+        PayloadJournal.capture(DISCRIMINATOR_VALUE, queueData);
+        RegistrationContext context = new RegistrationContext(queueData);
         try {
-            if (validate(queueData)) {
-                registerUnsavedPatient();
+            if (validate(queueData, context)) {
+                StageClock.switchTo(Stage.PERSISTENCE);
+                registerUnsavedPatient(context);
             }
         } catch (Exception e) {
             /*Custom exception thrown by the validate function should not be added again into @queueProcessorException.
              It should add the runtime dao Exception while saving the data into @queueProcessorException collection */
             if (!e.getClass().equals(QueueProcessorException.class)) {
-                queueProcessorException.addException(e);
+                context.queueProcessorException.addException(e);
             }
         } finally {
-            if (queueProcessorException.anyExceptions()) {
-                throw queueProcessorException;
+            ValidationResultCache.remove(DISCRIMINATOR_VALUE, queueData);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            QueueLeases.release(queueData, context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                ParkingLot.park(DISCRIMINATOR_VALUE, queueData, context.validationErrors);
+                throw context.queueProcessorException;
             }
         }
     }
 
     @Override
     public boolean validate(QueueData queueData) {
+        return validate(queueData, new RegistrationContext(queueData));
+    }
+
+    private boolean validate(final QueueData queueData, final RegistrationContext context) {
         log.info("Processing registration form data: " + queueData.getUuid());
-        queueProcessorException = new QueueProcessorException();
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
         try {
-            payload = queueData.getPayload();
-            unsavedPatient = new Patient();
-            populateUnsavedPatientFromPayload();
-            validateUnsavedPatient();
+            if (isRegistered(context)) {
+                log.info("Registration form data: " + queueData.getUuid() + " was already registered.");
+                return true;
+            }
+            ValidationResult<Patient> validationResult = ValidationResultCache.get(DISCRIMINATOR_VALUE, queueData);
+            if (validationResult != null) {
+                context.unsavedPatient = validationResult.getValue();
+                context.validationErrors.addAll(validationResult.getErrors());
+                return true;
+            }
+            StageClock.switchTo(Stage.PARSE);
+            context.unsavedPatient = new Patient();
+            populateUnsavedPatientFromPayload(context);
+            validateUnsavedPatient(context);
+            ValidationResultCache.put(DISCRIMINATOR_VALUE, queueData,
+                    new ValidationResult<Patient>(context.unsavedPatient, context.validationErrors.getErrors()));
             return true;
         } catch (Exception e) {
-            queueProcessorException.addException(e);
+            context.queueProcessorException.addException(e);
             return false;
         } finally {
-            if (queueProcessorException.anyExceptions()) {
-                throw queueProcessorException;
+            context.validationErrors.drainTo(context.queueProcessorException);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                throw context.queueProcessorException;
             }
         }
     }
@@ -110,48 +144,50 @@ public class JsonRegistrationQueueDataHandler implements QueueDataHandler {
         return DISCRIMINATOR_VALUE;
     }
 
-    private void validateUnsavedPatient() {
-        Patient savedPatient = findSimilarSavedPatient();
-        if (savedPatient != null) {
-            queueProcessorException.addException(
-                    new Exception(
-                            "Found a patient with similar characteristic :  patientId = " + savedPatient.getPatientId()
-                                    + " Identifier Id = " + savedPatient.getPatientIdentifier().getIdentifier()
-                    )
-            );
+    private void validateUnsavedPatient(final RegistrationContext context) {
+        Patient savedPatient = findSimilarSavedPatient(context);
+        // the similar patient can be the one a concurrent registration of the same temporary uuid committed after the
+        // registration was checked, the registration is then skipped when saving.
+        if (savedPatient != null && !isRegistered(context)) {
+            context.validationErrors.add(ValidationErrorCode.DUPLICATE_PATIENT,
+                    "$['patient']['patient.medical_record_number']",
+                    savedPatient.getPatientIdentifier().getIdentifier(),
+                    "Found a patient with similar characteristic :  patientId = " + savedPatient.getPatientId());
         }
     }
 
-    private void populateUnsavedPatientFromPayload() {
-        setPatientIdentifiersFromPayload();
-        setPatientBirthDateFromPayload();
-        setPatientBirthDateEstimatedFromPayload();
-        setPatientGenderFromPayload();
-        setPatientNameFromPayload();
-        setPatientAddressesFromPayload();
-        setPersonAttributesFromPayload();
-        setCreatorFromPayload();
+    private void populateUnsavedPatientFromPayload(final RegistrationContext context) {
+        setPatientIdentifiersFromPayload(context);
+        setPatientBirthDateFromPayload(context);
+        setPatientBirthDateEstimatedFromPayload(context);
+        setPatientGenderFromPayload(context);
+        setPatientNameFromPayload(context);
+        setPatientAddressesFromPayload(context);
+        setPersonAttributesFromPayload(context);
+        setCreatorFromPayload(context);
     }
 
-    private void setPatientIdentifiersFromPayload() {
+    private void setPatientIdentifiersFromPayload(final RegistrationContext context) {
         Set<PatientIdentifier> patientIdentifiers = new HashSet<PatientIdentifier>();
-        PatientIdentifier preferredIdentifier = getPreferredPatientIdentifierFromPayload();
+        PatientIdentifier preferredIdentifier = getPreferredPatientIdentifierFromPayload(context);
         if (preferredIdentifier != null) {
             patientIdentifiers.add(preferredIdentifier);
         }
-        List<PatientIdentifier> otherIdentifiers = getOtherPatientIdentifiersFromPayload();
+        List<PatientIdentifier> otherIdentifiers = getOtherPatientIdentifiersFromPayload(context);
         if (!otherIdentifiers.isEmpty()) {
             patientIdentifiers.addAll(otherIdentifiers);
         }
-        setIdentifierTypeLocation(patientIdentifiers);
-        unsavedPatient.setIdentifiers(patientIdentifiers);
+        setIdentifierTypeLocation(context, patientIdentifiers);
+        context.unsavedPatient.setIdentifiers(patientIdentifiers);
     }
 
-    private PatientIdentifier getPreferredPatientIdentifierFromPayload(){
-        String identifierValue = JsonUtils.readAsString(payload, "$['patient']['patient.medical_record_number']");
+    private PatientIdentifier getPreferredPatientIdentifierFromPayload(final RegistrationContext context) {
+        String identifierValue =
+                JsonUtils.readAsString(context.payload, "$['patient']['patient.medical_record_number']");
         String identifierTypeName = "AMRS Universal ID";
 
-        PatientIdentifier preferredPatientIdentifier = createPatientIdentifier(identifierTypeName, identifierValue);
+        PatientIdentifier preferredPatientIdentifier =
+                createPatientIdentifier(context, identifierTypeName, identifierValue);
         if (preferredPatientIdentifier != null) {
             preferredPatientIdentifier.setPreferred(true);
             return preferredPatientIdentifier;
@@ -160,16 +196,18 @@ public class JsonRegistrationQueueDataHandler implements QueueDataHandler {
         }
     }
 
-    private List<PatientIdentifier> getOtherPatientIdentifiersFromPayload() {
+    private List<PatientIdentifier> getOtherPatientIdentifiersFromPayload(final RegistrationContext context) {
         List<PatientIdentifier> otherIdentifiers = new ArrayList<PatientIdentifier>();
-        Object identifierTypeNameObject = JsonUtils.readAsObject(payload, "$['patient']['patient.other_identifier_type']");
-        Object identifierValueObject =JsonUtils.readAsObject(payload, "$['patient']['patient.other_identifier_value']");
+        Object identifierTypeNameObject =
+                JsonUtils.readAsObject(context.payload, "$['patient']['patient.other_identifier_type']");
+        Object identifierValueObject =
+                JsonUtils.readAsObject(context.payload, "$['patient']['patient.other_identifier_value']");
 
         if (identifierTypeNameObject instanceof JSONArray) {
             JSONArray identifierTypeName = (JSONArray) identifierTypeNameObject;
             JSONArray identifierValue = (JSONArray) identifierValueObject;
             for (int i = 0; i < identifierTypeName.size(); i++) {
-                PatientIdentifier identifier = createPatientIdentifier(identifierTypeName.get(i).toString(),
+                PatientIdentifier identifier = createPatientIdentifier(context, identifierTypeName.get(i).toString(),
                         identifierValue.get(i).toString());
                 if (identifier != null) {
                     otherIdentifiers.add(identifier);
@@ -178,7 +216,7 @@ public class JsonRegistrationQueueDataHandler implements QueueDataHandler {
         } else if (identifierTypeNameObject instanceof String) {
             String identifierTypeName = (String) identifierTypeNameObject;
             String identifierValue = (String) identifierValueObject;
-            PatientIdentifier identifier = createPatientIdentifier(identifierTypeName, identifierValue);
+            PatientIdentifier identifier = createPatientIdentifier(context, identifierTypeName, identifierValue);
             if (identifier != null) {
                 otherIdentifiers.add(identifier);
             }
@@ -186,15 +224,15 @@ public class JsonRegistrationQueueDataHandler implements QueueDataHandler {
         return otherIdentifiers;
     }
 
-    private PatientIdentifier createPatientIdentifier(String identifierTypeName, String identifierValue) {
-        PatientIdentifierType identifierType = Context.getPatientService()
-                .getPatientIdentifierTypeByName(identifierTypeName);
+    private PatientIdentifier createPatientIdentifier(final RegistrationContext context, String identifierTypeName,
+                                                      String identifierValue) {
+        PatientIdentifierType identifierType = MetadataUtils.getPatientIdentifierTypeByName(identifierTypeName);
         if (identifierType == null) {
-            queueProcessorException.addException(
-                    new Exception("Unable to find identifier type with name: " + identifierTypeName));
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_IDENTIFIER_TYPE, "identifier_type",
+                    identifierTypeName, "Unable to find identifier type.");
         } else if (identifierValue == null) {
-            queueProcessorException.addException(
-                    new Exception("Identifier value can't be null type: " + identifierTypeName));
+            context.validationErrors.add(ValidationErrorCode.MISSING_IDENTIFIER, "identifier_value", null,
+                    "Identifier value can't be null type: " + identifierTypeName);
         } else {
             PatientIdentifier patientIdentifier = new PatientIdentifier();
             patientIdentifier.setIdentifierType(identifierType);
@@ -204,19 +242,20 @@ public class JsonRegistrationQueueDataHandler implements QueueDataHandler {
         return null;
     }
 
-    private void setIdentifierTypeLocation(final Set<PatientIdentifier> patientIdentifiers) {
-        String locationIdString = JsonUtils.readAsString(payload, "$['encounter']['encounter.location_id']");
+    private void setIdentifierTypeLocation(final RegistrationContext context,
+                                           final Set<PatientIdentifier> patientIdentifiers) {
+        String locationIdString = JsonUtils.readAsString(context.payload, "$['encounter']['encounter.location_id']");
         Location location = null;
         int locationId;
 
         if(locationIdString != null){
             locationId = Integer.parseInt(locationIdString);
-            location = Context.getLocationService().getLocation(locationId);
+            location = MetadataUtils.getLocation(locationId);
         }
         
         if (location == null) {
-            queueProcessorException.addException(
-                    new Exception("Unable to find encounter location using the id: " + locationIdString));
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_LOCATION,
+                    "$['encounter']['encounter.location_id']", locationIdString, "Unable to find encounter location.");
         } else {
             Iterator<PatientIdentifier> iterator = patientIdentifiers.iterator();
             while (iterator.hasNext()) {
@@ -226,27 +265,28 @@ public class JsonRegistrationQueueDataHandler implements QueueDataHandler {
         }
     }
 
-    private void setPatientBirthDateFromPayload(){
-        Date birthDate = JsonUtils.readAsDate(payload, "$['patient']['patient.birth_date']");
-        unsavedPatient.setBirthdate(birthDate);
+    private void setPatientBirthDateFromPayload(final RegistrationContext context) {
+        Date birthDate = JsonUtils.readAsDate(context.payload, "$['patient']['patient.birth_date']");
+        context.unsavedPatient.setBirthdate(birthDate);
     }
 
-    private void setPatientBirthDateEstimatedFromPayload(){
-        boolean birthdateEstimated = JsonUtils.readAsBoolean(payload, "$['patient']['patient.birthdate_estimated']");
-        unsavedPatient.setBirthdateEstimated(birthdateEstimated);
+    private void setPatientBirthDateEstimatedFromPayload(final RegistrationContext context) {
+        boolean birthdateEstimated =
+                JsonUtils.readAsBoolean(context.payload, "$['patient']['patient.birthdate_estimated']");
+        context.unsavedPatient.setBirthdateEstimated(birthdateEstimated);
     }
 
-    private void setPatientGenderFromPayload(){
-        String gender = JsonUtils.readAsString(payload, "$['patient']['patient.sex']");
-        unsavedPatient.setGender(gender);
+    private void setPatientGenderFromPayload(final RegistrationContext context) {
+        String gender = JsonUtils.readAsString(context.payload, "$['patient']['patient.sex']");
+        context.unsavedPatient.setGender(gender);
     }
 
-    private void setPatientNameFromPayload(){
-        String givenName = JsonUtils.readAsString(payload, "$['patient']['patient.given_name']");
-        String familyName = JsonUtils.readAsString(payload, "$['patient']['patient.family_name']");
+    private void setPatientNameFromPayload(final RegistrationContext context) {
+        String givenName = JsonUtils.readAsString(context.payload, "$['patient']['patient.given_name']");
+        String familyName = JsonUtils.readAsString(context.payload, "$['patient']['patient.family_name']");
         String middleName="";
         try{
-            middleName= JsonUtils.readAsString(payload, "$['patient']['patient.middle_name']");
+            middleName= JsonUtils.readAsString(context.payload, "$['patient']['patient.middle_name']");
         } catch(Exception e){
             log.error(e);
         }
@@ -255,89 +295,126 @@ public class JsonRegistrationQueueDataHandler implements QueueDataHandler {
         personName.setGivenName(givenName);
         personName.setMiddleName(middleName);
         personName.setFamilyName(familyName);
-        unsavedPatient.addName(personName);
+        context.unsavedPatient.addName(personName);
     }
 
-    private void registerUnsavedPatient() {
+    private void registerUnsavedPatient(final RegistrationContext context) {
         RegistrationDataService registrationDataService = Context.getService(RegistrationDataService.class);
-        String temporaryUuid = getPatientUuidFromPayload();
-        RegistrationData registrationData = registrationDataService.getRegistrationDataByTemporaryUuid(temporaryUuid);
-        if (registrationData == null) {
-            registrationData = new RegistrationData();
-            registrationData.setTemporaryUuid(temporaryUuid);
-            Context.getPatientService().savePatient(unsavedPatient);
-            String assignedUuid = unsavedPatient.getUuid();
-            registrationData.setAssignedUuid(assignedUuid);
-            registrationDataService.saveRegistrationData(registrationData);
+        String temporaryUuid = getPatientUuidFromPayload(context);
+        Lock lock = RegistrationLocks.lock(temporaryUuid);
+        try {
+            RegistrationData registrationData = registrationDataService.getRegistrationDataByTemporaryUuid(temporaryUuid);
+            if (registrationData == null) {
+                // reserve the temporary uuid before creating the patient, a concurrent registration of the same
+                // temporary uuid fails on the unique temporary uuid instead of creating a second patient. a failed
+                // registration rolls the reservation back together with the patient.
+                registrationData = new RegistrationData();
+                registrationData.setTemporaryUuid(temporaryUuid);
+                registrationData.setAssignedUuid(context.unsavedPatient.getUuid());
+                registrationDataService.reserveRegistrationData(registrationData);
+                Context.getPatientService().savePatient(context.unsavedPatient);
+                registrationDataService.saveRegistrationData(registrationData);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
-    private String getPatientUuidFromPayload(){
-        return JsonUtils.readAsString(payload, "$['patient']['patient.uuid']");
+    /**
+     * The registration can already be processed, e.g. pulled forward by the
+     * {@link org.openmrs.module.muzimaregistration.scheduling.QueueDataScheduler} for a dependent encounter.
+     */
+    private boolean isRegistered(final RegistrationContext context) {
+        RegistrationDataService registrationDataService = Context.getService(RegistrationDataService.class);
+        String temporaryUuid = getPatientUuidFromPayload(context);
+        return registrationDataService.getRegistrationDataByTemporaryUuid(temporaryUuid) != null;
+    }
+
+    private String getPatientUuidFromPayload(final RegistrationContext context) {
+        return JsonUtils.readAsString(context.payload, "$['patient']['patient.uuid']");
     }
 
-    private void setPatientAddressesFromPayload(){
+    private void setPatientAddressesFromPayload(final RegistrationContext context) {
         PersonAddress patientAddress = new PersonAddress();
 
-        String county = JsonUtils.readAsString(payload, "$['patient']['patient.county']");
+        String county = JsonUtils.readAsString(context.payload, "$['patient']['patient.county']");
         patientAddress.setStateProvince(county);
 
-        String location = JsonUtils.readAsString(payload, "$['patient']['patient.location']");
+        String location = JsonUtils.readAsString(context.payload, "$['patient']['patient.location']");
         patientAddress.setAddress6(location);
 
-        String sub_location = JsonUtils.readAsString(payload, "$['patient']['patient.sub_location']");
+        String sub_location = JsonUtils.readAsString(context.payload, "$['patient']['patient.sub_location']");
         patientAddress.setAddress5(sub_location);
 
-        String village = JsonUtils.readAsString(payload, "$['patient']['patient.village']");
+        String village = JsonUtils.readAsString(context.payload, "$['patient']['patient.village']");
         patientAddress.setCityVillage(village);
 
         Set<PersonAddress> addresses = new TreeSet<PersonAddress>();
         addresses.add(patientAddress);
-        unsavedPatient.setAddresses(addresses);
+        context.unsavedPatient.setAddresses(addresses);
     }
 
-    private void setPersonAttributesFromPayload(){
-        personAttributes = new TreeSet<PersonAttribute>();
+    private void setPersonAttributesFromPayload(final RegistrationContext context) {
+        context.personAttributes = new TreeSet<PersonAttribute>();
         PersonService personService = Context.getPersonService();
 
-        String mothersName = JsonUtils.readAsString(payload, "$['patient']['patient.mothers_name']");
-        setAsAttribute("Mother's Name",mothersName);
+        String mothersName = JsonUtils.readAsString(context.payload, "$['patient']['patient.mothers_name']");
+        setAsAttribute(context, "Mother's Name",mothersName);
 
-        String phoneNumber = JsonUtils.readAsString(payload, "$['patient']['patient.phone_number']");
-        setAsAttribute("Contact Phone Number",phoneNumber);
+        String phoneNumber = JsonUtils.readAsString(context.payload, "$['patient']['patient.phone_number']");
+        setAsAttribute(context, "Contact Phone Number",phoneNumber);
 
-        unsavedPatient.setAttributes(personAttributes);
+        context.unsavedPatient.setAttributes(context.personAttributes);
     }
 
-    private void setAsAttribute(String attributeTypeName, String value){
-        PersonService personService = Context.getPersonService();
-        PersonAttributeType attributeType = personService.getPersonAttributeTypeByName(attributeTypeName);
+    private void setAsAttribute(final RegistrationContext context, String attributeTypeName, String value){
+        PersonAttributeType attributeType = MetadataUtils.getPersonAttributeTypeByName(attributeTypeName);
         if(attributeType !=null && value != null){
             PersonAttribute personAttribute = new PersonAttribute(attributeType, value);
-            personAttributes.add(personAttribute);
+            context.personAttributes.add(personAttribute);
         } else if(attributeType ==null){
-            queueProcessorException.addException(
-                    new Exception("Unable to find Person Attribute type by name '" + attributeTypeName + "'")
-            );
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_ATTRIBUTE_TYPE, attributeTypeName, value,
+                    "Unable to find Person Attribute type by name '" + attributeTypeName + "'");
         }
     }
 
-    private  void setCreatorFromPayload(){
-        String providerString = JsonUtils.readAsString(payload, "$['encounter']['encounter.provider_id']");
-        User user = Context.getUserService().getUserByUsername(providerString);
+    private  void setCreatorFromPayload(final RegistrationContext context) {
+        String providerString = JsonUtils.readAsString(context.payload, "$['encounter']['encounter.provider_id']");
+        User user = MetadataUtils.getUserByUsername(providerString);
         if (user == null) {
-            queueProcessorException.addException(new Exception("Unable to find user using the id: " + providerString));
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_USER, "$['encounter']['encounter.provider_id']",
+                    providerString, "Unable to find user.");
         } else {
-            unsavedPatient.setCreator(user);
+            context.unsavedPatient.setCreator(user);
         }
     }
 
-    private Patient findSimilarSavedPatient() {
-        return PatientSearchUtils.findSavedPatient(unsavedPatient,false);
+    private Patient findSimilarSavedPatient(final RegistrationContext context) {
+        return PatientSearchUtils.findSavedPatient(context.unsavedPatient,false);
     }
 
     @Override
     public boolean accept(final QueueData queueData) {
         return StringUtils.equals(DISCRIMINATOR_VALUE, queueData.getDiscriminator());
     }
+
+    /**
+     * The state of the registration of a single queue data.
+     */
+    private static class RegistrationContext {
+
+        private final String payload;
+
+        private final QueueProcessorException queueProcessorException = new QueueProcessorException();
+
+        private final ValidationErrors validationErrors = new ValidationErrors();
+
+        private Patient unsavedPatient;
+
+        private Set<PersonAttribute> personAttributes;
+
+        private RegistrationContext(final QueueData queueData) {
+            this.payload = queueData.getPayload();
+        }
+    }
 }
@@ -14,15 +14,65 @@
 package org.openmrs.module.muzimaregistration.handler;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.openmrs.Concept;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.User;
 import org.openmrs.annotation.Handler;
+import org.openmrs.api.context.Context;
 import org.openmrs.module.muzima.exception.QueueProcessorException;
 import org.openmrs.module.muzima.model.QueueData;
 import org.openmrs.module.muzima.model.handler.QueueDataHandler;
+import org.openmrs.module.muzimaregistration.api.IndividualObsService;
+import org.openmrs.module.muzimaregistration.journal.PayloadJournal;
+import org.openmrs.module.muzimaregistration.metrics.Stage;
+import org.openmrs.module.muzimaregistration.metrics.StageClock;
+import org.openmrs.module.muzimaregistration.scheduling.ParkingLot;
+import org.openmrs.module.muzimaregistration.scheduling.QueueLeases;
+import org.openmrs.module.muzimaregistration.utils.ISO8601Util;
+import org.openmrs.module.muzimaregistration.utils.JsonUtils;
+import org.openmrs.module.muzimaregistration.utils.MetadataUtils;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrorCode;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrors;
+import org.openmrs.module.muzimaregistration.validation.ValidationResult;
+import org.openmrs.module.muzimaregistration.validation.ValidationResultCache;
+import org.openmrs.validator.ObsValidator;
 import org.springframework.stereotype.Component;
+import org.springframework.validation.BindException;
+import org.springframework.validation.Errors;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
+ * Handles batches of individual observations which are not part of an encounter, e.g. vitals captured by a device.
+ * The payload contains the location and provider of the batch and the list of observations:
+ * <pre>
+ * {
+ *   "batch": { "batch.location_id": "1", "batch.provider_id": "admin" },
+ *   "observations": [
+ *     { "patient.uuid": "...", "obs.concept_id": "5089^WEIGHT (KG)^99DCT", "obs.value": "61.5",
+ *       "obs.datetime": "2014-03-01T10:15:00.000+03:00" }
+ *   ]
+ * }
+ * </pre>
+ * Patients and concepts are looked up once per batch, and the observations are saved in one transaction through
+ * {@link IndividualObsService}, which inserts them grouped per patient in jdbc sized batches. The service inserts the
+ * observations directly, so each observation is checked with the {@link ObsValidator} while the batch is validated.
+ * <p/>
+ * The handler is shared by the queue processor threads, the state of the queue data being processed is kept in a
+ * {@link BatchContext} created for each call.
  */
 @Component
 @Handler(supports = QueueData.class, order = 3)
@@ -34,7 +84,28 @@ public class ObsQueueDataHandler implements QueueDataHandler {
 
     @Override
     public void process(final QueueData queueData) throws QueueProcessorException {
-        log.info("Processing encounter form data: " + queueData.getUuid());
+        log.info("Processing individual obs data: " + queueData.getUuid());
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
+        PayloadJournal.capture(DISCRIMINATOR_VALUE, queueData);
+        BatchContext context = new BatchContext(queueData);
+        try {
+            if (validate(queueData, context)) {
+                StageClock.switchTo(Stage.PERSISTENCE);
+                Context.getService(IndividualObsService.class).saveIndividualObs(context.observations);
+            }
+        } catch (Exception e) {
+            if (!e.getClass().equals(QueueProcessorException.class)) {
+                context.queueProcessorException.addException(e);
+            }
+        } finally {
+            ValidationResultCache.remove(DISCRIMINATOR_VALUE, queueData);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            QueueLeases.release(queueData, context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                ParkingLot.park(DISCRIMINATOR_VALUE, queueData, context.validationErrors);
+                throw context.queueProcessorException;
+            }
+        }
     }
 
     @Override
@@ -44,11 +115,238 @@ public class ObsQueueDataHandler implements QueueDataHandler {
 
     @Override
     public boolean validate(QueueData queueData) {
-        return false;
+        return validate(queueData, new BatchContext(queueData));
+    }
+
+    private boolean validate(final QueueData queueData, final BatchContext context) {
+        log.info("Validating individual obs data: " + queueData.getUuid());
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
+        try {
+            ValidationResult<List<Obs>> validationResult = ValidationResultCache.get(DISCRIMINATOR_VALUE, queueData);
+            if (validationResult != null) {
+                context.observations = validationResult.getValue();
+                context.validationErrors.addAll(validationResult.getErrors());
+                return true;
+            }
+            StageClock.switchTo(Stage.PARSE);
+            context.observations = createObservations(context);
+            ValidationResultCache.put(DISCRIMINATOR_VALUE, queueData,
+                    new ValidationResult<List<Obs>>(context.observations, context.validationErrors.getErrors()));
+            return true;
+        } catch (Exception e) {
+            context.queueProcessorException.addException(e);
+            return false;
+        } finally {
+            context.validationErrors.drainTo(context.queueProcessorException);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                throw context.queueProcessorException;
+            }
+        }
     }
 
     @Override
     public String getDiscriminator() {
         return DISCRIMINATOR_VALUE;
     }
+
+    private List<Obs> createObservations(final BatchContext context) {
+        String locationString = JsonUtils.readAsString(context.payload, "$['batch']['batch.location_id']");
+        Location location = MetadataUtils.getLocation(NumberUtils.toInt(locationString, -999));
+        if (location == null) {
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_LOCATION, "$['batch']['batch.location_id']",
+                    locationString, "Unable to find location.");
+        }
+        String providerString = JsonUtils.readAsString(context.payload, "$['batch']['batch.provider_id']");
+        User user = MetadataUtils.getUserByUsername(providerString);
+        if (user == null) {
+            context.validationErrors.add(ValidationErrorCode.UNKNOWN_USER, "$['batch']['batch.provider_id']",
+                    providerString, "Unable to find user.");
+        }
+
+        List<Obs> createdObservations = new ArrayList<Obs>();
+        Object observationsObject = JsonUtils.readAsObject(context.payload, "$['observations']");
+        if (!(observationsObject instanceof List)) {
+            context.validationErrors.add(ValidationErrorCode.INVALID_VALUE, "$['observations']", null,
+                    "The payload doesn't contain a list of observations.");
+            return createdObservations;
+        }
+
+        Map<String, Patient> patients = new HashMap<String, Patient>();
+        Map<Integer, Concept> concepts = new HashMap<Integer, Concept>();
+        Date dateCreated = new Date();
+        List<?> observationObjects = (List<?>) observationsObject;
+        for (int i = 0; i < observationObjects.size(); i++) {
+            if (!(observationObjects.get(i) instanceof Map)) {
+                continue;
+            }
+            Map<?, ?> observationObject = (Map<?, ?>) observationObjects.get(i);
+            String path = "$['observations'][" + i + "]";
+
+            String patientUuid = getString(observationObject, "patient.uuid");
+            Patient patient = getPatient(patients, patientUuid);
+            if (patient == null) {
+                context.validationErrors.add(ValidationErrorCode.PATIENT_NOT_FOUND, path + "['patient.uuid']",
+                        patientUuid, "Unable to find patient.");
+                continue;
+            }
+
+            String conceptString = getString(observationObject, "obs.concept_id");
+            Concept concept = getConcept(concepts, conceptString);
+            if (concept == null) {
+                context.validationErrors.add(ValidationErrorCode.UNKNOWN_CONCEPT, path + "['obs.concept_id']",
+                        conceptString, "Unable to find concept.");
+                continue;
+            }
+
+            Obs obs = new Obs();
+            obs.setPerson(patient);
+            obs.setConcept(concept);
+            obs.setLocation(location);
+            obs.setCreator(user);
+            obs.setDateCreated(dateCreated);
+            String datetimeString = getString(observationObject, "obs.datetime");
+            obs.setObsDatetime(StringUtils.isBlank(datetimeString) ? dateCreated : parseDatetime(datetimeString));
+            if (obs.getObsDatetime() == null) {
+                context.validationErrors.add(ValidationErrorCode.INVALID_VALUE, path + "['obs.datetime']",
+                        datetimeString, "Observation datetime is not a valid date.");
+                continue;
+            }
+            if (setValue(context, obs, concepts, getString(observationObject, "obs.value"), path + "['obs.value']")
+                    && isValid(context, obs, path)) {
+                createdObservations.add(obs);
+            }
+        }
+        return createdObservations;
+    }
+
+    private boolean isValid(final BatchContext context, final Obs obs, final String path) {
+        Errors errors = new BindException(obs, "obs");
+        new ObsValidator().validate(obs, errors);
+        for (ObjectError error : errors.getAllErrors()) {
+            String value = null;
+            String errorPath = path;
+            if (error instanceof FieldError) {
+                FieldError fieldError = (FieldError) error;
+                value = fieldError.getRejectedValue() == null ? null : String.valueOf(fieldError.getRejectedValue());
+                errorPath = path + "['" + fieldError.getField() + "']";
+            }
+            context.validationErrors.add(ValidationErrorCode.INVALID_VALUE, errorPath, value,
+                    "Observation is not valid: " + error.getCode());
+        }
+        return !errors.hasErrors();
+    }
+
+    private String getString(final Map<?, ?> observationObject, final String key) {
+        Object value = observationObject.get(key);
+        return value == null ? null : String.valueOf(value);
+    }
+
+    private Patient getPatient(final Map<String, Patient> patients, final String patientUuid) {
+        if (StringUtils.isBlank(patientUuid)) {
+            return null;
+        }
+        if (!patients.containsKey(patientUuid)) {
+            Stage previous = StageClock.switchTo(Stage.MATCHING);
+            try {
+                patients.put(patientUuid, Context.getPatientService().getPatientByUuid(patientUuid));
+            } finally {
+                StageClock.switchTo(previous);
+            }
+        }
+        return patients.get(patientUuid);
+    }
+
+    private Concept getConcept(final Map<Integer, Concept> concepts, final String conceptString) {
+        String[] conceptElements = StringUtils.split(conceptString, "\\^");
+        if (conceptElements == null || conceptElements.length == 0) {
+            return null;
+        }
+        int conceptId = NumberUtils.toInt(conceptElements[0], -999);
+        if (!concepts.containsKey(conceptId)) {
+            concepts.put(conceptId, MetadataUtils.getConcept(conceptId));
+        }
+        return concepts.get(conceptId);
+    }
+
+    private boolean setValue(final BatchContext context, final Obs obs, final Map<Integer, Concept> concepts,
+                             final String value, final String path) {
+        if (StringUtils.isBlank(value)) {
+            context.validationErrors.add(ValidationErrorCode.INVALID_VALUE, path, value,
+                    "Observation value is required.");
+            return false;
+        }
+        Concept concept = obs.getConcept();
+        if (concept.getDatatype().isNumeric()) {
+            if (!NumberUtils.isNumber(value)) {
+                context.validationErrors.add(ValidationErrorCode.INVALID_VALUE, path, value,
+                        "Value is not numeric.");
+                return false;
+            }
+            obs.setValueNumeric(Double.parseDouble(value));
+        } else if (concept.getDatatype().isDate()
+                || concept.getDatatype().isTime()
+                || concept.getDatatype().isDateTime()) {
+            Date date = concept.getDatatype().isTime() ? parseTime(value) : parseDatetime(value);
+            if (date == null) {
+                context.validationErrors.add(ValidationErrorCode.INVALID_VALUE, path, value,
+                        "Value is not a valid date.");
+                return false;
+            }
+            obs.setValueDatetime(date);
+        } else if (concept.getDatatype().isCoded()) {
+            Concept valueCoded = getConcept(concepts, value);
+            if (valueCoded == null) {
+                context.validationErrors.add(ValidationErrorCode.UNKNOWN_VALUE_CODED, path, value,
+                        "Unable to find concept for value coded.");
+                return false;
+            }
+            obs.setValueCoded(valueCoded);
+        } else {
+            obs.setValueText(value);
+        }
+        return true;
+    }
+
+    private Date parseDatetime(final String value) {
+        try {
+            return ISO8601Util.toCalendar(value).getTime();
+        } catch (ParseException e) {
+            log.error("Unable to parse observation datetime: " + value);
+            return null;
+        }
+    }
+
+    private Date parseTime(final String value) {
+        // time values are sent without a date, e.g. "10:15" or "10:15:00"
+        for (String pattern : new String[]{"HH:mm:ss", "HH:mm"}) {
+            SimpleDateFormat timeFormat = new SimpleDateFormat(pattern);
+            timeFormat.setLenient(false);
+            try {
+                return timeFormat.parse(value);
+            } catch (ParseException e) {
+                log.debug("Observation time doesn't match " + pattern + ": " + value);
+            }
+        }
+        log.error("Unable to parse observation time: " + value);
+        return null;
+    }
+
+    /**
+     * The state of the batch of observations of a single queue data.
+     */
+    private static class BatchContext {
+
+        private final String payload;
+
+        private final QueueProcessorException queueProcessorException = new QueueProcessorException();
+
+        private final ValidationErrors validationErrors = new ValidationErrors();
+
+        private List<Obs> observations;
+
+        private BatchContext(final QueueData queueData) {
+            this.payload = queueData.getPayload();
+        }
+    }
 }
@@ -14,7 +14,6 @@
 package org.openmrs.module.muzimaregistration.handler;
 
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.builder.ToStringBuilder;
 import org.apache.commons.lang.math.NumberUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -34,9 +33,22 @@ import org.openmrs.api.context.Context;
 import org.openmrs.module.muzima.exception.QueueProcessorException;
 import org.openmrs.module.muzima.model.QueueData;
 import org.openmrs.module.muzima.model.handler.QueueDataHandler;
-import org.openmrs.module.muzimaforms.MuzimaForm;
-import org.openmrs.module.muzimaforms.api.MuzimaFormService;
+import org.openmrs.module.muzimaregistration.api.ProcessedQueueDataService;
+import org.openmrs.module.muzimaregistration.api.model.ProcessedQueueData;
+import org.openmrs.module.muzimaregistration.journal.PayloadJournal;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.metrics.Stage;
+import org.openmrs.module.muzimaregistration.metrics.StageClock;
+import org.openmrs.module.muzimaregistration.scheduling.ParkingLot;
+import org.openmrs.module.muzimaregistration.scheduling.QueueDataScheduler;
+import org.openmrs.module.muzimaregistration.scheduling.QueueLeases;
+import org.openmrs.module.muzimaregistration.utils.MetadataUtils;
 import org.openmrs.module.muzimaregistration.utils.PatientSearchUtils;
+import org.openmrs.module.muzimaregistration.utils.PayloadHashUtils;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrorCode;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrors;
+import org.openmrs.module.muzimaregistration.validation.ValidationResult;
+import org.openmrs.module.muzimaregistration.validation.ValidationResultCache;
 import org.springframework.stereotype.Component;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -47,7 +59,6 @@ import org.xml.sax.InputSource;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.ByteArrayInputStream;
-import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -60,30 +71,35 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
 
     private static final String DISCRIMINATOR_VALUE = "xml-encounter";
 
-    private static final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private static final String DATE_PATTERN = "yyyy-MM-dd";
 
     private final Log log = LogFactory.getLog(XmlEncounterQueueDataHandler.class);
 
-    private QueueProcessorException queueProcessorException;
-
-    private Encounter encounter;
-
     @Override
     public void process(final QueueData queueData) throws QueueProcessorException {
 
         log.info("Processing registration form data: " + queueData.getUuid());
-        encounter = new Encounter();
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
+        PayloadJournal.capture(DISCRIMINATOR_VALUE, queueData);
+        EncounterContext context = new EncounterContext();
         try {
-            if (validate(queueData)) {
-                Context.getEncounterService().saveEncounter(encounter);
+            QueueDataScheduler.pullForwardRegistration(queueData);
+            if (validate(queueData, context) && context.processedQueueData == null) {
+                StageClock.switchTo(Stage.PERSISTENCE);
+                Context.getEncounterService().saveEncounter(context.encounter);
+                recordProcessedQueueData(queueData, context);
             }
         } catch (Exception e) {
             if (!e.getClass().equals(QueueProcessorException.class)) {
-                queueProcessorException.addException(e);
+                context.queueProcessorException.addException(e);
             }
         } finally {
-            if (queueProcessorException.anyExceptions()) {
-                throw queueProcessorException;
+            ValidationResultCache.remove(DISCRIMINATOR_VALUE, queueData);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            QueueLeases.release(queueData, context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                ParkingLot.park(DISCRIMINATOR_VALUE, queueData, context.validationErrors);
+                throw context.queueProcessorException;
             }
         }
 
@@ -92,13 +108,35 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
 
     @Override
     public boolean validate(QueueData queueData) {
+        return validate(queueData, new EncounterContext());
+    }
+
+    private boolean validate(final QueueData queueData, final EncounterContext context) {
 
         log.info("Processing encounter form data: " + queueData.getUuid());
-        queueProcessorException = new QueueProcessorException();
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
 
         String payload = queueData.getPayload();
 
         try {
+            context.payloadHash = PayloadHashUtils.hash(payload);
+            StageClock.switchTo(Stage.MATCHING);
+            context.processedQueueData = Context.getService(ProcessedQueueDataService.class)
+                    .getProcessedQueueData(DISCRIMINATOR_VALUE, context.payloadHash);
+            if (context.processedQueueData != null) {
+                log.info("Skipping encounter form data: " + queueData.getUuid() + ", the same payload was processed "
+                        + "from: " + context.processedQueueData.getQueueDataUuid());
+                HandlerMetrics.counter("handler." + DISCRIMINATOR_VALUE + ".repeats").increment();
+                return true;
+            }
+            ValidationResult<Encounter> validationResult = ValidationResultCache.get(DISCRIMINATOR_VALUE, queueData);
+            if (validationResult != null) {
+                context.encounter = validationResult.getValue();
+                context.validationErrors.addAll(validationResult.getErrors());
+                return true;
+            }
+            StageClock.switchTo(Stage.PARSE);
+            context.encounter = new Encounter();
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             DocumentBuilder db = dbf.newDocumentBuilder();
             Document document = db.parse(new InputSource(new ByteArrayInputStream(payload.getBytes("utf-8"))));
@@ -107,29 +145,44 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
             element.normalize();
 
             // we need to get the form id to get the encounter type associated with this form from the form record.
-            encounter.setEncounterType(Context.getEncounterService().getEncounterType(1));
+            context.encounter.setEncounterType(MetadataUtils.getEncounterType(1));
+
+            processPatient(context, document.getElementsByTagName("patient"));
+            processEncounter(context, document.getElementsByTagName("encounter"));
+            processObs(context, document.getElementsByTagName("obs"));
 
-            processPatient(encounter, document.getElementsByTagName("patient"));
-            processEncounter(encounter, document.getElementsByTagName("encounter"));
-            processObs(encounter, document.getElementsByTagName("obs"));
+            ValidationResultCache.put(DISCRIMINATOR_VALUE, queueData,
+                    new ValidationResult<Encounter>(context.encounter, context.validationErrors.getErrors()));
             return true;
 
         } catch (Exception e) {
-            queueProcessorException.addException(e);
+            context.queueProcessorException.addException(e);
             return false;
         } finally {
-            if (queueProcessorException.anyExceptions()) {
-                throw queueProcessorException;
+            context.validationErrors.drainTo(context.queueProcessorException);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                throw context.queueProcessorException;
             }
         }
     }
 
+    private void recordProcessedQueueData(final QueueData queueData, final EncounterContext context) {
+        ProcessedQueueData processed = new ProcessedQueueData();
+        processed.setQueueDataUuid(queueData.getUuid());
+        processed.setDiscriminator(DISCRIMINATOR_VALUE);
+        processed.setPayloadHash(context.payloadHash);
+        processed.setResultUuid(context.encounter.getUuid());
+        Context.getService(ProcessedQueueDataService.class).saveProcessedQueueData(processed);
+    }
+
     @Override
     public String getDiscriminator() {
         return DISCRIMINATOR_VALUE;
     }
 
-    private void processPatient(final Encounter encounter, final NodeList patientNodeList) throws QueueProcessorException {
+    private void processPatient(final EncounterContext context, final NodeList patientNodeList)
+            throws QueueProcessorException {
         Node patientNode = patientNodeList.item(0);
         NodeList patientElementNodes = patientNode.getChildNodes();
 
@@ -148,7 +201,7 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
                     personName.setFamilyName(patientElement.getTextContent());
                 } else if (patientElement.getTagName().equals("patient_identifier.identifier_type_id")) {
                     int identifierTypeId = Integer.parseInt(patientElement.getTextContent());
-                    PatientIdentifierType identifierType = Context.getPatientService().getPatientIdentifierType(identifierTypeId);
+                    PatientIdentifierType identifierType = MetadataUtils.getPatientIdentifierType(identifierTypeId);
                     patientIdentifier.setIdentifierType(identifierType);
                 } else if (patientElement.getTagName().equals("patient.medical_record_number")) {
                     patientIdentifier.setIdentifier(patientElement.getTextContent());
@@ -169,11 +222,12 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
         Patient candidatePatient = PatientSearchUtils.findSavedPatient(unsavedPatient,true);
 
         if (candidatePatient == null) {
-            queueProcessorException.addException(new Exception("Unable to uniquely identify patient for this encounter form data. "
-                    + ToStringBuilder.reflectionToString(unsavedPatient)));
+            context.validationErrors.add(ValidationErrorCode.PATIENT_NOT_FOUND,
+                    "patient/patient.uuid", unsavedPatient.getUuid(),
+                    "Unable to uniquely identify patient for this encounter form data.");
         }
 
-        encounter.setPatient(candidatePatient);
+        context.encounter.setPatient(candidatePatient);
     }
 
     private Node findSubNode(final String name, final Node node) {
@@ -191,7 +245,7 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
         return null;
     }
 
-    private void processObs(final Encounter encounter, final NodeList obsNodeList) throws QueueProcessorException {
+    private void processObs(final EncounterContext context, final NodeList obsNodeList) throws QueueProcessorException {
         Node obsNode = obsNodeList.item(0);
         NodeList obsElementNodes = obsNode.getChildNodes();
         for (int i = 0; i < obsElementNodes.getLength(); i++) {
@@ -200,16 +254,16 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
             // no attribute: temporary elements
             // no child: element with no answer
             if (obsElementNode.hasAttributes() && obsElementNode.hasChildNodes()) {
-                processObsNode(encounter, null, obsElementNode);
+                processObsNode(context, null, obsElementNode);
             }
         }
     }
 
-    private void processObsNode(final Encounter encounter, final Obs parentObs, final Node obsElementNode) {
+    private void processObsNode(final EncounterContext context, final Obs parentObs, final Node obsElementNode) {
         Element obsElement = (Element) obsElementNode;
         String[] conceptElements = StringUtils.split(obsElement.getAttribute("concept"), "\\^");
         int conceptId = Integer.parseInt(conceptElements[0]);
-        Concept concept = Context.getConceptService().getConcept(conceptId);
+        Concept concept = MetadataUtils.getConcept(conceptId);
 
         if (concept == null) {
             log.info("Skipping obs creation, " + obsElement.getAttribute("concept") + " is not valid or not available.");
@@ -219,15 +273,15 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
         if (concept.isSet()) {
             Obs obsGroup = new Obs();
             obsGroup.setConcept(concept);
-            obsGroup.setCreator(encounter.getCreator());
+            obsGroup.setCreator(context.encounter.getCreator());
             NodeList nodeList = obsElementNode.getChildNodes();
             for (int i = 0; i < nodeList.getLength(); i++) {
                 Node subNode = nodeList.item(i);
                 // only process sub node with attribute and it is a tag
                 if (subNode.hasAttributes() && subNode.getNodeType() == Node.ELEMENT_NODE) {
                     // need to do recursive because we might have nested sets structure
-                    encounter.addObs(obsGroup);
-                    processObsNode(encounter, obsGroup, subNode);
+                    context.encounter.addObs(obsGroup);
+                    processObsNode(context, obsGroup, subNode);
                 }
             }
         } else {
@@ -237,11 +291,11 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
                 if (StringUtils.isNotEmpty(value)) {
                     Obs obs = new Obs();
                     obs.setConcept(concept);
-                    obs.setEncounter(encounter);
-                    obs.setPerson(encounter.getPatient());
-                    obs.setObsDatetime(encounter.getEncounterDatetime());
-                    obs.setLocation(encounter.getLocation());
-                    obs.setCreator(encounter.getCreator());
+                    obs.setEncounter(context.encounter);
+                    obs.setPerson(context.encounter.getPatient());
+                    obs.setObsDatetime(context.encounter.getEncounterDatetime());
+                    obs.setLocation(context.encounter.getLocation());
+                    obs.setCreator(context.encounter.getCreator());
                     // find the obs value :)
                     if (concept.getDatatype().isNumeric()) {
                         obs.setValueNumeric(Double.parseDouble(value));
@@ -252,16 +306,18 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
                     } else if (concept.getDatatype().isCoded()) {
                         String[] valueCodedElements = StringUtils.split(value, "\\^");
                         int valueCodedId = Integer.parseInt(valueCodedElements[0]);
-                        Concept valueCoded = Context.getConceptService().getConcept(valueCodedId);
+                        Concept valueCoded = MetadataUtils.getConcept(valueCodedId);
                         if (valueCoded == null) {
-                            queueProcessorException.addException(new Exception("Unable to find concept for value coded with id: " + valueCodedId));
+                            context.validationErrors.add(ValidationErrorCode.UNKNOWN_VALUE_CODED,
+                                    "obs/" + obsElement.getTagName(),
+                                    value, "Unable to find concept for value coded with id: " + valueCodedId);
                         }
                         obs.setValueCoded(valueCoded);
                     } else if (concept.getDatatype().isText()) {
                         obs.setValueText(value);
                     }
                     // only add if the value is not empty :)
-                    encounter.addObs(obs);
+                    context.encounter.addObs(obs);
                     if (parentObs != null) {
                         parentObs.addGroupMember(obs);
                     }
@@ -275,22 +331,25 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
                         if (xformValueNode != null && xformValueNode.hasAttributes()) {
                             Obs obs = new Obs();
                             obs.setConcept(concept);
-                            obs.setEncounter(encounter);
-                            obs.setPerson(encounter.getPatient());
-                            obs.setObsDatetime(encounter.getEncounterDatetime());
-                            obs.setLocation(encounter.getLocation());
-                            obs.setCreator(encounter.getCreator());
+                            obs.setEncounter(context.encounter);
+                            obs.setPerson(context.encounter.getPatient());
+                            obs.setObsDatetime(context.encounter.getEncounterDatetime());
+                            obs.setLocation(context.encounter.getLocation());
+                            obs.setCreator(context.encounter.getCreator());
 
                             Element xformValueElement = (Element) xformValueNode;
                             String[] valueCodedElements = StringUtils.split(xformValueElement.getAttribute("concept"), "\\^");
                             int valueCodedId = Integer.parseInt(valueCodedElements[0]);
-                            Concept valueCoded = Context.getConceptService().getConcept(valueCodedId);
+                            Concept valueCoded = MetadataUtils.getConcept(valueCodedId);
                             if (valueCoded == null) {
-                                queueProcessorException.addException(new Exception("Unable to find concept for value coded with id: " + valueCodedId));
+                                context.validationErrors.add(ValidationErrorCode.UNKNOWN_VALUE_CODED,
+                                        "obs/" + obsElement.getTagName() + "/" + xformValue,
+                                        xformValueElement.getAttribute("concept"),
+                                        "Unable to find concept for value coded with id: " + valueCodedId);
                             }
                             obs.setValueCoded(valueCoded);
 
-                            encounter.addObs(obs);
+                            context.encounter.addObs(obs);
                             if (parentObs != null) {
                                 parentObs.addGroupMember(obs);
                             }
@@ -301,7 +360,8 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
         }
     }
 
-    private void processEncounter(final Encounter encounter, final NodeList encounterNodeList) throws QueueProcessorException {
+    private void processEncounter(final EncounterContext context, final NodeList encounterNodeList)
+            throws QueueProcessorException {
         Node encounterNode = encounterNodeList.item(0);
         NodeList encounterElementNodes = encounterNode.getChildNodes();
         for (int i = 0; i < encounterElementNodes.getLength(); i++) {
@@ -311,45 +371,43 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
                 String encounterElementValue = encounterElement.getTextContent();
                 if (encounterElement.getTagName().equals("encounter.encounter_datetime")) {
                     Date date = parseDate(encounterElementValue);
-                    encounter.setEncounterDatetime(date);
+                    context.encounter.setEncounterDatetime(date);
                 } else if (encounterElement.getTagName().equals("encounter.location_id")) {
                     int locationId = NumberUtils.toInt(encounterElementValue, -999);
-                    Location location = Context.getLocationService().getLocation(locationId);
+                    Location location = MetadataUtils.getLocation(locationId);
                     if (location == null) {
-                        queueProcessorException.addException(new Exception("Unable to find encounter location using the id: " + encounterElementValue));
+                        context.validationErrors.add(ValidationErrorCode.UNKNOWN_LOCATION,
+                                "encounter/encounter.location_id",
+                                encounterElementValue, "Unable to find encounter location.");
                     }
-                    encounter.setLocation(location);
+                    context.encounter.setLocation(location);
                 } else if (encounterElement.getTagName().equals("encounter.provider_id")) {
-                    User user = Context.getUserService().getUserByUsername(encounterElementValue);
+                    User user = MetadataUtils.getUserByUsername(encounterElementValue);
                     if (user == null) {
-                        queueProcessorException.addException(new Exception("Unable to find user using the id: " + encounterElementValue));
+                        context.validationErrors.add(ValidationErrorCode.UNKNOWN_USER,
+                                "encounter/encounter.provider_id",
+                                encounterElementValue, "Unable to find user.");
                     }
-                    encounter.setProvider(user);
-                    encounter.setCreator(user);
+                    context.encounter.setProvider(user);
+                    context.encounter.setCreator(user);
                 } else if (encounterElement.getTagName().equals("encounter.form_uuid")) {
-                    Form form = Context.getFormService().getFormByUuid(encounterElementValue);
+                    Form form = MetadataUtils.getFormByUuid(encounterElementValue);
                     if (form == null) {
-                        MuzimaFormService muzimaFormService = Context.getService(MuzimaFormService.class);
-                        MuzimaForm muzimaForm = muzimaFormService.findByUniqueId(encounterElementValue);
-                        if (muzimaForm != null) {
-                            Form formDefinition = Context.getFormService().getFormByUuid(muzimaForm.getForm());
-                            encounter.setForm(formDefinition);
-                            encounter.setEncounterType(formDefinition.getEncounterType());
-                        } else {
-                            log.info("Unable to find form using the uuid: " + encounterElementValue + ". Setting the form field to null!");
-                        }
+                        log.info("Unable to find form using the uuid: " + encounterElementValue + ". Setting the form field to null!");
                     } else {
-                        encounter.setForm(form);
-                        encounter.setEncounterType(form.getEncounterType());
+                        context.encounter.setForm(form);
+                        context.encounter.setEncounterType(form.getEncounterType());
                     }
                 } else if (encounterElement.getTagName().equals("encounter.encounter_type")) {
-                    if (encounter.getEncounterType() == null) {
+                    if (context.encounter.getEncounterType() == null) {
                         int encounterTypeId = NumberUtils.toInt(encounterElementValue, -999);
-                        EncounterType encounterType = Context.getEncounterService().getEncounterType(encounterTypeId);
+                        EncounterType encounterType = MetadataUtils.getEncounterType(encounterTypeId);
                         if (encounterType == null) {
-                            queueProcessorException.addException(new Exception("Unable to find encounter type using the id: " + encounterElementValue));
+                            context.validationErrors.add(ValidationErrorCode.UNKNOWN_ENCOUNTER_TYPE,
+                                    "encounter/encounter.encounter_type",
+                                    encounterElementValue, "Unable to find encounter type.");
                         }
-                        encounter.setEncounterType(encounterType);
+                        context.encounter.setEncounterType(encounterType);
                     }
                 }
             }
@@ -359,7 +417,7 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
     private Date parseDate(final String dateValue) {
         Date date = null;
         try {
-            date = dateFormat.parse(dateValue);
+            date = new SimpleDateFormat(DATE_PATTERN).parse(dateValue);
         } catch (ParseException e) {
             log.error("Unable to parse date data for encounter!", e);
         }
@@ -370,5 +428,20 @@ public class XmlEncounterQueueDataHandler implements QueueDataHandler {
     public boolean accept(final QueueData queueData) {
         return StringUtils.equals(DISCRIMINATOR_VALUE, queueData.getDiscriminator());
     }
-}
 
+    /**
+     * The state of the encounter of a single queue data, the handler is shared by the queue processor threads.
+     */
+    private static class EncounterContext {
+
+        private final QueueProcessorException queueProcessorException = new QueueProcessorException();
+
+        private final ValidationErrors validationErrors = new ValidationErrors();
+
+        private Encounter encounter;
+
+        private String payloadHash;
+
+        private ProcessedQueueData processedQueueData;
+    }
+}
@@ -25,16 +25,24 @@ import org.openmrs.PersonAttribute;
 import org.openmrs.PersonAttributeType;
 import org.openmrs.PersonName;
 import org.openmrs.annotation.Handler;
-import org.openmrs.api.LocationService;
-import org.openmrs.api.PatientService;
-import org.openmrs.api.PersonService;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.muzima.exception.QueueProcessorException;
 import org.openmrs.module.muzima.model.QueueData;
 import org.openmrs.module.muzima.model.handler.QueueDataHandler;
 import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.journal.PayloadJournal;
+import org.openmrs.module.muzimaregistration.metrics.Stage;
+import org.openmrs.module.muzimaregistration.metrics.StageClock;
+import org.openmrs.module.muzimaregistration.scheduling.ParkingLot;
+import org.openmrs.module.muzimaregistration.scheduling.QueueLeases;
+import org.openmrs.module.muzimaregistration.scheduling.RegistrationLocks;
+import org.openmrs.module.muzimaregistration.utils.MetadataUtils;
 import org.openmrs.module.muzimaregistration.utils.PatientSearchUtils;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrorCode;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrors;
+import org.openmrs.module.muzimaregistration.validation.ValidationResult;
+import org.openmrs.module.muzimaregistration.validation.ValidationResultCache;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -47,33 +55,28 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.locks.Lock;
 
 /**
- * TODO: Write brief description about the class here.
+ * Registers the patients submitted through the xml registration form. The temporary uuid given to the patient on the
+ * device is mapped in the registration data to the uuid of the newly created patient, or to the uuid of an existing
+ * patient with the same characteristics.
+ * <p/>
+ * The handler is shared by the queue processor threads, the state of the queue data being processed is kept in a
+ * {@link RegistrationContext} created for each call.
  */
 @Handler(supports = QueueData.class, order = 1)
 public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
 
     private static final String DISCRIMINATOR_VALUE = "xml-registration";
 
-    private static final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+    private static final String DATE_PATTERN = "yyyy-MM-dd";
 
     private final Log log = LogFactory.getLog(XmlRegistrationQueueDataHandler.class);
 
-    private PatientService patientService;
-
-    private LocationService locationService;
-
-    private String temporaryPatientUuid;
-
-    private QueueProcessorException queueProcessorException;
-
-    private Patient unsavedPatient;
-
     /**
      * Implementation of how the queue data should be processed.
      *
@@ -84,69 +87,101 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
     @Override
     public void process(final QueueData queueData) throws QueueProcessorException {
         log.info("Processing registration form data: " + queueData.getUuid());
-
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
+        PayloadJournal.capture(DISCRIMINATOR_VALUE, queueData);
+        RegistrationContext context = new RegistrationContext();
         try {
-            if (validate(queueData)) {
-                saveRegistrationData();
+            if (validate(queueData, context)) {
+                StageClock.switchTo(Stage.PERSISTENCE);
+                saveRegistrationData(context);
             }
         } catch (Exception e) {
             if (!e.getClass().equals(QueueProcessorException.class)) {
-                queueProcessorException.addException(e);
+                context.queueProcessorException.addException(e);
             }
         } finally {
-            if (queueProcessorException.anyExceptions()) {
-                throw queueProcessorException;
+            ValidationResultCache.remove(DISCRIMINATOR_VALUE, queueData);
+            StageClock.stop(context.queueProcessorException.anyExceptions());
+            QueueLeases.release(queueData, context.queueProcessorException.anyExceptions());
+            if (context.queueProcessorException.anyExceptions()) {
+                ParkingLot.park(DISCRIMINATOR_VALUE, queueData, context.validationErrors);
+                throw context.queueProcessorException;
             }
         }
     }
 
-    private void saveRegistrationData() {
+    private void saveRegistrationData(final RegistrationContext context) {
 
         RegistrationDataService registrationDataService = Context.getService(RegistrationDataService.class);
         RegistrationData registrationData;
+        Patient unsavedPatient = context.unsavedPatient;
+        String temporaryPatientUuid = context.temporaryPatientUuid;
         if (StringUtils.isNotEmpty(unsavedPatient.getUuid())) {
-            registrationData = registrationDataService.getRegistrationDataByTemporaryUuid(getTemporaryPatientUuid());
-            if (registrationData == null) {
-                // we can't find registration data for this uuid, process the registration form.
-                patientService = Context.getPatientService();
-                locationService = Context.getLocationService();
-
-                Patient savedPatient = PatientSearchUtils.findSavedPatient(unsavedPatient,false);
-
-                registrationData = new RegistrationData();
-                registrationData.setTemporaryUuid(getTemporaryPatientUuid());
-                String assignedUuid;
-                // for a new patient we will create mapping:
-                // * temporary uuid --> uuid of the newly created patient
-                // for existing patient we will create mapping:
-                // * temporary uuid --> uuid of the existing patient
-                if (savedPatient != null) {
-                    // if we have a patient already saved with the characteristic found in the registration form:
-                    // * we will map the temporary uuid to the existing uuid.
-                    assignedUuid = savedPatient.getUuid();
-                } else {
-                    patientService.savePatient(unsavedPatient);
-                    assignedUuid = unsavedPatient.getUuid();
+            Lock lock = RegistrationLocks.lock(temporaryPatientUuid);
+            try {
+                registrationData = registrationDataService.getRegistrationDataByTemporaryUuid(temporaryPatientUuid);
+                if (registrationData == null) {
+                    // we can't find registration data for this uuid, process the registration form.
+                    Patient savedPatient = PatientSearchUtils.findSavedPatient(unsavedPatient,false);
+
+                    registrationData = new RegistrationData();
+                    registrationData.setTemporaryUuid(temporaryPatientUuid);
+                    // for a new patient we will create mapping:
+                    // * temporary uuid --> uuid of the newly created patient
+                    // for existing patient we will create mapping:
+                    // * temporary uuid --> uuid of the existing patient
+                    if (savedPatient != null) {
+                        // if we have a patient already saved with the characteristic found in the registration form:
+                        // * we will map the temporary uuid to the existing uuid.
+                        registrationData.setAssignedUuid(savedPatient.getUuid());
+                        registrationDataService.saveRegistrationData(registrationData);
+                    } else {
+                        // reserve the temporary uuid before creating the patient, a concurrent registration of the
+                        // same temporary uuid fails on the unique temporary uuid instead of creating a second patient.
+                        // a failed registration rolls the reservation back together with the patient.
+                        registrationData.setAssignedUuid(unsavedPatient.getUuid());
+                        registrationDataService.reserveRegistrationData(registrationData);
+                        Context.getPatientService().savePatient(unsavedPatient);
+                        registrationDataService.saveRegistrationData(registrationData);
+                    }
                 }
-                registrationData.setAssignedUuid(assignedUuid);
-                registrationDataService.saveRegistrationData(registrationData);
+            } finally {
+                lock.unlock();
             }
         }
     }
 
     @Override
     public boolean validate(QueueData queueData) {
+        return validate(queueData, new RegistrationContext());
+    }
+
+    private boolean validate(final QueueData queueData, final RegistrationContext context) {
         log.info("validating registration form data: " + queueData.getUuid());
-        queueProcessorException = new QueueProcessorException();
+        StageClock.start(DISCRIMINATOR_VALUE, queueData);
+        ValidationErrors validationErrors = context.validationErrors;
+        QueueProcessorException queueProcessorException = context.queueProcessorException;
 
         try {
+            ValidationResult<Patient> validationResult = ValidationResultCache.get(DISCRIMINATOR_VALUE, queueData);
+            if (validationResult != null) {
+                context.unsavedPatient = validationResult.getValue();
+                context.temporaryPatientUuid = context.unsavedPatient.getUuid();
+                validationErrors.addAll(validationResult.getErrors());
+                return true;
+            }
+            StageClock.switchTo(Stage.PARSE);
             String payload = queueData.getPayload();
-            unsavedPatient = createPatientFromPayload(payload);
+            context.unsavedPatient = createPatientFromPayload(context, payload);
+            ValidationResultCache.put(DISCRIMINATOR_VALUE, queueData,
+                    new ValidationResult<Patient>(context.unsavedPatient, validationErrors.getErrors()));
             return true;
         } catch (Exception e) {
             queueProcessorException.addException(e);
             return false;
         } finally {
+            validationErrors.drainTo(queueProcessorException);
+            StageClock.stop(queueProcessorException.anyExceptions());
             if (queueProcessorException.anyExceptions()) {
                 throw queueProcessorException;
             }
@@ -172,15 +207,16 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
     private Date parseDate(final String dateValue) {
         Date date = null;
         try {
-            date = dateFormat.parse(dateValue);
+            date = new SimpleDateFormat(DATE_PATTERN).parse(dateValue);
         } catch (ParseException e) {
             log.error("Unable to parse date data for encounter!", e);
         }
         return date;
     }
 
-    private Patient createPatientFromPayload(final String payload) {
+    private Patient createPatientFromPayload(final RegistrationContext context, final String payload) {
         Patient unsavedPatient = new Patient();
+        ValidationErrors validationErrors = context.validationErrors;
         try {
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             DocumentBuilder db = dbf.newDocumentBuilder();
@@ -207,9 +243,10 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
                         personName.setFamilyName(patientElement.getTextContent());
                     } else if (tagName.equals("patient_identifier.identifier_type_id")) {
                         int identifierTypeId = Integer.parseInt(patientElement.getTextContent());
-                        PatientIdentifierType identifierType = Context.getPatientService().getPatientIdentifierType(identifierTypeId);
+                        PatientIdentifierType identifierType = MetadataUtils.getPatientIdentifierType(identifierTypeId);
                         if (identifierType == null) {
-                            queueProcessorException.addException(new Exception("Unable to find patient identifier type with id: " + identifierTypeId));
+                            validationErrors.add(ValidationErrorCode.UNKNOWN_IDENTIFIER_TYPE, "patient/" + tagName,
+                                    identifierTypeId, "Unable to find patient identifier type.");
                         } else {
                             patientIdentifier.setIdentifierType(identifierType);
                         }
@@ -222,34 +259,33 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
                         unsavedPatient.setBirthdate(dob);
                     } else if (tagName.equals("patient.uuid")) {
                         unsavedPatient.setUuid(patientElement.getTextContent());
-                        setTemporaryPatientUuid(patientElement.getTextContent());
+                        context.temporaryPatientUuid = patientElement.getTextContent();
                     } else if (tagName.equals("patient.finger")) {
                         savePatientsFinger(unsavedPatient, patientElement.getTextContent());
                     } else if (tagName.equals("patient.fingerprint")) {
                         savePatientsFingerprint(unsavedPatient, patientElement.getTextContent());
                     } else if (tagName.equals("amrs_medical_record_number_identifier_type")) {
-                        extractIdentifier(unsavedPatient, patientElement, "AMRS Medical Record Number");
+                        extractIdentifier(context, unsavedPatient, patientElement, "AMRS Medical Record Number");
                     } else if (tagName.equals("ccc_identifier_type")) {
-                        extractIdentifier(unsavedPatient, patientElement, "CCC Number ");
+                        extractIdentifier(context, unsavedPatient, patientElement, "CCC Number ");
                     } else if (tagName.equals("hct_identifier_type")) {
-                        extractIdentifier(unsavedPatient, patientElement, "HCT ID");
+                        extractIdentifier(context, unsavedPatient, patientElement, "HCT ID");
                     } else if (tagName.equals("kni_identifier_type")) {
-                        extractIdentifier(unsavedPatient, patientElement, "KENYAN NATIONAL ID NUMBER");
+                        extractIdentifier(context, unsavedPatient, patientElement, "KENYAN NATIONAL ID NUMBER");
                     } else if (tagName.equals("mtct_identifier_type")) {
-                        extractIdentifier(unsavedPatient, patientElement, "MTCT Plus ID");
+                        extractIdentifier(context, unsavedPatient, patientElement, "MTCT Plus ID");
                     } else if (tagName.equals("mtrh_hospital_number_identifier_type")) {
-                        extractIdentifier(unsavedPatient, patientElement, "MTRH Hospital Number");
+                        extractIdentifier(context, unsavedPatient, patientElement, "MTRH Hospital Number");
                     } else if (tagName.equals("old_amrs_number_identifier_type")) {
-                        extractIdentifier(unsavedPatient, patientElement, "Old AMPATH Medical Record Number");
+                        extractIdentifier(context, unsavedPatient, patientElement, "Old AMPATH Medical Record Number");
                     } else if (tagName.equals("pmtc_identifier_type")) {
-                        extractIdentifier(unsavedPatient, patientElement, "pMTCT ID");
+                        extractIdentifier(context, unsavedPatient, patientElement, "pMTCT ID");
                     } else if (tagName.startsWith("person_attribute")) {
-                        PersonService personService = Context.getPersonService();
-
                         int personAttributeTypeId = NumberUtils.toInt(tagName.replace("person_attribute", ""));
-                        PersonAttributeType personAttributeType = personService.getPersonAttributeType(personAttributeTypeId);
+                        PersonAttributeType personAttributeType = MetadataUtils.getPersonAttributeType(personAttributeTypeId);
                         if (personAttributeType == null) {
-                            queueProcessorException.addException(new Exception("Unable to find attribute type with id: " + personAttributeTypeId));
+                            validationErrors.add(ValidationErrorCode.UNKNOWN_ATTRIBUTE_TYPE, "patient/" + tagName,
+                                    personAttributeTypeId, "Unable to find attribute type.");
                         } else {
                             PersonAttribute personAttribute = new PersonAttribute();
                             personAttribute.setAttributeType(personAttributeType);
@@ -269,9 +305,10 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
                     Element encounterElement = (Element) encounterElementNode;
                     if (encounterElement.getTagName().equals("encounter.location_id")) {
                         int locationId = Integer.parseInt(encounterElement.getTextContent());
-                        Location location = Context.getLocationService().getLocation(locationId);
+                        Location location = MetadataUtils.getLocation(locationId);
                         if (location == null) {
-                            queueProcessorException.addException(new Exception("Unable to find location with id: " + locationId));
+                            validationErrors.add(ValidationErrorCode.UNKNOWN_LOCATION, "encounter/encounter.location_id",
+                                    locationId, "Unable to find location.");
                         } else {
                             patientIdentifier.setLocation(location);
                         }
@@ -285,24 +322,17 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
             unsavedPatient.addName(personName);
             unsavedPatient.addIdentifier(patientIdentifier);
         } catch (ParserConfigurationException e) {
-            queueProcessorException.addException(new Exception(e.getMessage()));
+            validationErrors.add(ValidationErrorCode.INVALID_VALUE, null, null, e.getMessage());
         } catch (SAXException e) {
-            queueProcessorException.addException(new Exception(e.getMessage()));
+            validationErrors.add(ValidationErrorCode.INVALID_VALUE, null, null, e.getMessage());
         } catch (IOException e) {
-            queueProcessorException.addException(new Exception(e.getMessage()));
+            validationErrors.add(ValidationErrorCode.INVALID_VALUE, null, null, e.getMessage());
         }
         return unsavedPatient;
     }
 
-    private void setTemporaryPatientUuid(String temporaryUuid) {
-        this.temporaryPatientUuid = temporaryUuid;
-    }
-
-    private String getTemporaryPatientUuid() {
-        return temporaryPatientUuid;
-    }
-
-    private void extractIdentifier(final Patient unsavedPatient, final Element patientElement, final String typeName) {
+    private void extractIdentifier(final RegistrationContext context, final Patient unsavedPatient,
+                                   final Element patientElement, final String typeName) {
         boolean identical = true;
         String identifierValue = StringUtils.EMPTY;
         NodeList identifierValueNodeList = patientElement.getChildNodes();
@@ -320,21 +350,21 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
             }
         }
         if (identical && StringUtils.isNotEmpty(identifierValue)) {
-            PatientIdentifierType identifierType = Context.getPatientService().getPatientIdentifierTypeByName(typeName);
+            PatientIdentifierType identifierType = MetadataUtils.getPatientIdentifierTypeByName(typeName);
             if (identifierType != null) {
                 PatientIdentifier patientIdentifier = new PatientIdentifier();
                 patientIdentifier.setIdentifierType(identifierType);
                 patientIdentifier.setIdentifier(identifierValue);
                 unsavedPatient.addIdentifier(patientIdentifier);
             } else {
-                queueProcessorException.addException(new Exception("Unable to find identifier type with name: " + typeName));
+                context.validationErrors.add(ValidationErrorCode.UNKNOWN_IDENTIFIER_TYPE,
+                        "patient/" + patientElement.getTagName(), typeName, "Unable to find identifier type.");
             }
         }
     }
 
     private void savePatientsFinger(final Patient unsavedPatient, final String value) {
-        PersonService personService = Context.getPersonService();
-        PersonAttributeType fingerAttributeType = personService.getPersonAttributeTypeByName("finger");
+        PersonAttributeType fingerAttributeType = MetadataUtils.getPersonAttributeTypeByName("finger");
         PersonAttribute fingerAttribute = new PersonAttribute();
         fingerAttribute.setAttributeType(fingerAttributeType);
         fingerAttribute.setValue(value);
@@ -342,12 +372,25 @@ public class XmlRegistrationQueueDataHandler implements QueueDataHandler {
     }
 
     private void savePatientsFingerprint(final Patient unsavedPatient, final String value) {
-        PersonService personService = Context.getPersonService();
-        PersonAttributeType fingerprintAttributeType = personService.getPersonAttributeTypeByName("fingerprint");
+        PersonAttributeType fingerprintAttributeType = MetadataUtils.getPersonAttributeTypeByName("fingerprint");
         PersonAttribute fingerprintAttribute = new PersonAttribute();
         fingerprintAttribute.setAttributeType(fingerprintAttributeType);
         fingerprintAttribute.setValue(value);
         unsavedPatient.addAttribute(fingerprintAttribute);
 
     }
+
+    /**
+     * The state of the registration of a single queue data.
+     */
+    private static class RegistrationContext {
+
+        private final QueueProcessorException queueProcessorException = new QueueProcessorException();
+
+        private final ValidationErrors validationErrors = new ValidationErrors();
+
+        private String temporaryPatientUuid;
+
+        private Patient unsavedPatient;
+    }
 }
@@ -0,0 +1,60 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.journal;
+
+/**
+ * A single queue data captured in the payload journal.
+ */
+public class JournalEntry {
+
+    private final String uuid;
+
+    private final String discriminator;
+
+    private final long captured;
+
+    private final String payload;
+
+    public JournalEntry(final String uuid, final String discriminator, final long captured, final String payload) {
+        this.uuid = uuid;
+        this.discriminator = discriminator;
+        this.captured = captured;
+        this.payload = payload;
+    }
+
+    /**
+     * @return the uuid of the captured queue data.
+     */
+    public String getUuid() {
+        return uuid;
+    }
+
+    public String getDiscriminator() {
+        return discriminator;
+    }
+
+    /**
+     * @return the time when the queue data was captured, in milliseconds since the epoch.
+     */
+    public long getCaptured() {
+        return captured;
+    }
+
+    /**
+     * @return the pseudonymized payload.
+     */
+    public String getPayload() {
+        return payload;
+    }
+}
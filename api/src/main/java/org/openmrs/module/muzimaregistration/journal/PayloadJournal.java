@@ -0,0 +1,162 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.journal;
+
+import net.minidev.json.JSONObject;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.module.muzima.model.QueueData;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.SecureRandom;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Opt-in capture of the processed queue data into a gzip compressed journal file, one json entry per line. Names,
+ * identifiers, phone numbers and fingerprints are pseudonymized before they are written. The journal is appended
+ * to and can be read back with {@link PayloadJournalReader}. Each entry is written and flushed as its own gzip
+ * member, so at most the entry being written is lost when the server stops unexpectedly.
+ * <p/>
+ * The salt of the pseudonyms is kept in a file next to the journal (the journal file name followed by ".salt"). It
+ * is created on the first capture and reused afterwards, so the same value gets the same pseudonym across restarts.
+ * The salt file must not be shared together with the journal.
+ */
+public class PayloadJournal {
+
+    public static final String GLOBAL_PROPERTY_ENABLED = "muzimaregistration.capture.enabled";
+
+    public static final String GLOBAL_PROPERTY_FILE = "muzimaregistration.capture.file";
+
+    public static final String DEFAULT_FILE_NAME = "muzimaregistration-journal.gz";
+
+    public static final String SALT_FILE_SUFFIX = ".salt";
+
+    private static final Log log = LogFactory.getLog(PayloadJournal.class);
+
+    private static volatile PayloadJournal journal;
+
+    private final OutputStream outputStream;
+
+    private final PayloadPseudonymizer pseudonymizer;
+
+    private PayloadJournal(final File file) throws IOException {
+        this.pseudonymizer = new PayloadPseudonymizer(readSalt(new File(file.getPath() + SALT_FILE_SUFFIX)));
+        this.outputStream = new FileOutputStream(file, true);
+    }
+
+    /**
+     * Read the salt from the salt file, creating the salt file with a random salt when it doesn't exist yet.
+     *
+     * @param saltFile the salt file.
+     * @return the salt.
+     */
+    private static String readSalt(final File saltFile) throws IOException {
+        if (saltFile.exists()) {
+            String salt = StringUtils.trimToNull(FileUtils.readFileToString(saltFile, "UTF-8"));
+            if (salt == null) {
+                throw new IOException("Empty journal salt file: " + saltFile.getAbsolutePath());
+            }
+            return salt;
+        }
+        byte[] bytes = new byte[16];
+        new SecureRandom().nextBytes(bytes);
+        String salt = DigestUtils.md5Hex(bytes);
+        FileUtils.writeStringToFile(saltFile, salt, "UTF-8");
+        // readable by the owner only.
+        saltFile.setReadable(false, false);
+        saltFile.setReadable(true, true);
+        log.info("Created the journal salt file: " + saltFile.getAbsolutePath());
+        return salt;
+    }
+
+    /**
+     * Start capturing the processed queue data into the journal file.
+     *
+     * @param file the journal file, new entries will be appended.
+     */
+    public static synchronized void open(final File file) throws IOException {
+        close();
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null && !directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Unable to create journal directory: " + directory);
+        }
+        journal = new PayloadJournal(file);
+        log.info("Capturing processed queue data into: " + file.getAbsolutePath());
+    }
+
+    /**
+     * Stop capturing and close the journal file.
+     */
+    public static synchronized void close() {
+        PayloadJournal current = journal;
+        journal = null;
+        if (current != null) {
+            current.closeJournal();
+        }
+    }
+
+    /**
+     * @return true when the processed queue data are being captured.
+     */
+    public static boolean isOpen() {
+        return journal != null;
+    }
+
+    /**
+     * Capture the queue data when the journal is open. Failing to write the journal never fails the processing.
+     *
+     * @param discriminator the discriminator of the handler processing the queue data.
+     * @param queueData     the queue data.
+     */
+    public static void capture(final String discriminator, final QueueData queueData) {
+        PayloadJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.write(discriminator, queueData);
+        } catch (Exception e) {
+            log.error("Unable to capture queue data: " + queueData.getUuid() + ", closing the journal.", e);
+            close();
+        }
+    }
+
+    private synchronized void write(final String discriminator, final QueueData queueData) throws IOException {
+        JSONObject entry = new JSONObject();
+        entry.put("uuid", queueData.getUuid());
+        entry.put("discriminator", discriminator);
+        entry.put("captured", System.currentTimeMillis());
+        entry.put("payload", pseudonymizer.pseudonymize(queueData.getPayload()));
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+        Writer writer = new OutputStreamWriter(gzipOutputStream, "UTF-8");
+        writer.write(entry.toJSONString());
+        writer.write("\n");
+        writer.flush();
+        gzipOutputStream.finish();
+        outputStream.flush();
+    }
+
+    private synchronized void closeJournal() {
+        IOUtils.closeQuietly(outputStream);
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.journal;
+
+import net.minidev.json.JSONObject;
+import net.minidev.json.JSONValue;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the entries of a journal written by {@link PayloadJournal}.
+ */
+public class PayloadJournalReader {
+
+    private static final Log log = LogFactory.getLog(PayloadJournalReader.class);
+
+    private PayloadJournalReader() {
+    }
+
+    /**
+     * Read all entries of the journal, in capture order. A truncated last gzip member (e.g. the server stopped while
+     * writing) is logged and ignored, any other read error is thrown.
+     *
+     * @param file the journal file.
+     * @return the journal entries.
+     */
+    public static List<JournalEntry> read(final File file) throws IOException {
+        List<JournalEntry> entries = new ArrayList<JournalEntry>();
+        InputStream inputStream = new GZIPInputStream(new FileInputStream(file));
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, "UTF-8"));
+            String line;
+            while ((line = readLine(file, reader)) != null) {
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+                Object parsed = JSONValue.parse(line);
+                if (parsed instanceof JSONObject) {
+                    JSONObject entry = (JSONObject) parsed;
+                    Number captured = (Number) entry.get("captured");
+                    entries.add(new JournalEntry((String) entry.get("uuid"), (String) entry.get("discriminator"),
+                            captured == null ? 0 : captured.longValue(), (String) entry.get("payload")));
+                }
+            }
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+        return entries;
+    }
+
+    private static String readLine(final File file, final BufferedReader reader) throws IOException {
+        try {
+            return reader.readLine();
+        } catch (EOFException e) {
+            log.warn("Ignoring the truncated last entry of the journal: " + file.getAbsolutePath(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.journal;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import net.minidev.json.JSONValue;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Replaces the names, identifiers, phone numbers and fingerprints in json and xml payloads with pseudonyms. The same value is
+ * always replaced with the same pseudonym for a pseudonymizer, so duplicates and repeated submissions for the same
+ * patient are preserved in the journal. The pseudonyms are derived using a secret salt which is never written into
+ * the journal, so they can't be reversed by hashing known names.
+ */
+public class PayloadPseudonymizer {
+
+    private static final String[] SENSITIVE_SUFFIXES = {
+            "given_name", "middle_name", "family_name", "mothers_name", "medical_record_number",
+            "other_identifier_value", "phone_number", "finger", "fingerprint"
+    };
+
+    private static final Pattern XML_ELEMENT = Pattern.compile(
+            "<([\\w.]*(?:" + StringUtils.join(SENSITIVE_SUFFIXES, "|") + "))>([^<]*)</\\1>");
+
+    private final String salt;
+
+    /**
+     * @param salt the secret salt, the same salt must be used for every capture into the same journal so the same
+     *             value keeps the same pseudonym across restarts.
+     */
+    public PayloadPseudonymizer(final String salt) {
+        this.salt = salt;
+    }
+
+    /**
+     * Pseudonymize the payload. Payloads which are neither json objects nor xml documents are returned unchanged.
+     *
+     * @param payload the payload.
+     * @return the pseudonymized payload.
+     */
+    public String pseudonymize(final String payload) {
+        String trimmed = StringUtils.trimToEmpty(payload);
+        if (trimmed.startsWith("{")) {
+            Object parsed = JSONValue.parse(trimmed);
+            if (parsed instanceof JSONObject) {
+                pseudonymizeObject((JSONObject) parsed);
+                return ((JSONObject) parsed).toJSONString();
+            }
+        } else if (trimmed.startsWith("<")) {
+            return pseudonymizeXml(trimmed);
+        }
+        return payload;
+    }
+
+    private void pseudonymizeObject(final JSONObject jsonObject) {
+        // form fields serialized as {"name": "patient.given_name", "value": "..."}
+        Object name = jsonObject.get("name");
+        if (name instanceof String && isSensitive((String) name) && jsonObject.containsKey("value")) {
+            jsonObject.put("value", pseudonymizeValue(jsonObject.get("value")));
+        }
+        for (Map.Entry<String, Object> entry : jsonObject.entrySet()) {
+            Object value = entry.getValue();
+            if (isSensitive(entry.getKey())) {
+                entry.setValue(pseudonymizeValue(value));
+            } else if (value instanceof JSONObject) {
+                pseudonymizeObject((JSONObject) value);
+            } else if (value instanceof JSONArray) {
+                for (Object element : (JSONArray) value) {
+                    if (element instanceof JSONObject) {
+                        pseudonymizeObject((JSONObject) element);
+                    }
+                }
+            }
+        }
+    }
+
+    private Object pseudonymizeValue(final Object value) {
+        if (value instanceof JSONArray) {
+            JSONArray pseudonyms = new JSONArray();
+            for (Object element : (JSONArray) value) {
+                pseudonyms.add(pseudonymizeValue(element));
+            }
+            return pseudonyms;
+        }
+        if (value instanceof String || value instanceof Number) {
+            return createPseudonym(String.valueOf(value));
+        }
+        return value;
+    }
+
+    private String pseudonymizeXml(final String payload) {
+        Matcher matcher = XML_ELEMENT.matcher(payload);
+        StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            String replacement = "<" + matcher.group(1) + ">" + createPseudonym(matcher.group(2))
+                    + "</" + matcher.group(1) + ">";
+            matcher.appendReplacement(buffer, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+
+    private String createPseudonym(final String value) {
+        String normalized = StringUtils.lowerCase(StringUtils.trimToEmpty(value));
+        if (normalized.length() == 0) {
+            return value;
+        }
+        return "P" + DigestUtils.md5Hex(salt + normalized).substring(0, 12);
+    }
+
+    private static boolean isSensitive(final String key) {
+        for (String suffix : SENSITIVE_SUFFIXES) {
+            if (StringUtils.endsWith(key, suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
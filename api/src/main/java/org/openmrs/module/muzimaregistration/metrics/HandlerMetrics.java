@@ -0,0 +1,174 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of the metrics collected while processing the queue data. The metrics are exposed through JMX and the
+ * plain text metrics page of the module. Recording can be suppressed on a thread (e.g. the warm-up), the metrics
+ * requested on that thread are then detached from the registry.
+ */
+public class HandlerMetrics implements HandlerMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.openmrs.module.muzimaregistration:type=HandlerMetrics";
+
+    private static final Log log = LogFactory.getLog(HandlerMetrics.class);
+
+    private static final ConcurrentMap<String, Metric> metrics = new ConcurrentHashMap<String, Metric>();
+
+    private static final ThreadLocal<Boolean> suppressed = new ThreadLocal<Boolean>();
+
+    /**
+     * Suppress or resume the recording of the metrics, slow item traces and validation results on the current thread.
+     *
+     * @param suppress true to suppress the recording, false to resume it.
+     */
+    public static void suppressRecording(final boolean suppress) {
+        if (suppress) {
+            suppressed.set(Boolean.TRUE);
+        } else {
+            suppressed.remove();
+        }
+    }
+
+    /**
+     * @return true when the recording is suppressed on the current thread.
+     */
+    public static boolean isRecordingSuppressed() {
+        return suppressed.get() != null;
+    }
+
+    /**
+     * Get or create the counter with the name.
+     *
+     * @param name the name of the counter.
+     * @return the counter.
+     */
+    public static Counter counter(final String name) {
+        if (isRecordingSuppressed()) {
+            return new Counter();
+        }
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            metrics.putIfAbsent(name, new Counter());
+            metric = metrics.get(name);
+        }
+        return (Counter) metric;
+    }
+
+    /**
+     * Get or create the timer with the name.
+     *
+     * @param name the name of the timer.
+     * @return the timer.
+     */
+    public static Timer timer(final String name) {
+        if (isRecordingSuppressed()) {
+            return new Timer();
+        }
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            metrics.putIfAbsent(name, new Timer());
+            metric = metrics.get(name);
+        }
+        return (Timer) metric;
+    }
+
+    /**
+     * Get or create the histogram with the name.
+     *
+     * @param name the name of the histogram.
+     * @return the histogram.
+     */
+    public static Histogram histogram(final String name) {
+        if (isRecordingSuppressed()) {
+            return new Histogram();
+        }
+        Metric metric = metrics.get(name);
+        if (metric == null) {
+            metrics.putIfAbsent(name, new Histogram());
+            metric = metrics.get(name);
+        }
+        return (Histogram) metric;
+    }
+
+    /**
+     * @return the current values of all metrics, sorted by the value name.
+     */
+    public static SortedMap<String, Long> snapshot() {
+        SortedMap<String, Long> values = new TreeMap<String, Long>();
+        for (Map.Entry<String, Metric> entry : metrics.entrySet()) {
+            entry.getValue().snapshot(entry.getKey(), values);
+        }
+        return values;
+    }
+
+    /**
+     * Remove all metrics.
+     */
+    public static void clear() {
+        metrics.clear();
+    }
+
+    /**
+     * Register the metrics in the platform mbean server.
+     */
+    public static void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(new HandlerMetrics(), objectName);
+            }
+        } catch (Exception e) {
+            log.error("Unable to register handler metrics mbean!", e);
+        }
+    }
+
+    /**
+     * Remove the metrics from the platform mbean server.
+     */
+    public static void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (Exception e) {
+            log.error("Unable to unregister handler metrics mbean!", e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getMetrics() {
+        return snapshot();
+    }
+
+    @Override
+    public void reset() {
+        clear();
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link HandlerMetrics} registry.
+ */
+public interface HandlerMetricsMXBean {
+
+    /**
+     * @return the current values of all metrics, keyed by the value name.
+     */
+    Map<String, Long> getMetrics();
+
+    /**
+     * Reset all metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,81 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+import java.util.Map;
+
+/**
+ * Records the distribution of non negative values. The percentiles are approximated using power of two buckets, so
+ * the histogram uses constant memory regardless the number of recorded values.
+ */
+public class Histogram implements Metric {
+
+    private static final int BUCKETS = 64;
+
+    private final long[] buckets = new long[BUCKETS];
+
+    private long count;
+
+    private long sum;
+
+    private long min = Long.MAX_VALUE;
+
+    private long max;
+
+    public synchronized void update(final long value) {
+        long positive = Math.max(0, value);
+        buckets[BUCKETS - Long.numberOfLeadingZeros(positive)]++;
+        count++;
+        sum += positive;
+        min = Math.min(min, positive);
+        max = Math.max(max, positive);
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the approximate value at the percentile. The value is the upper bound of the bucket containing the
+     * percentile, capped at the maximum recorded value.
+     *
+     * @param percentile the percentile, between 0 and 1.
+     * @return the approximate value at the percentile.
+     */
+    public synchronized long getPercentile(final double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                long upperBound = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upperBound, max);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public synchronized void snapshot(final String name, final Map<String, Long> values) {
+        values.put(name + ".count", count);
+        values.put(name + ".min", count == 0 ? 0 : min);
+        values.put(name + ".max", max);
+        values.put(name + ".mean", count == 0 ? 0 : sum / count);
+        values.put(name + ".p50", getPercentile(0.50));
+        values.put(name + ".p99", getPercentile(0.99));
+    }
+}
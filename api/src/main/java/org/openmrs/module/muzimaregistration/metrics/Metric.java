@@ -0,0 +1,30 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+import java.util.Map;
+
+/**
+ * A single metric in the {@link HandlerMetrics} registry.
+ */
+public interface Metric {
+
+    /**
+     * Write the current values of the metric.
+     *
+     * @param name   the name of the metric.
+     * @param values the values where the metric should be written, keyed by the value name.
+     */
+    void snapshot(final String name, final Map<String, Long> values);
+}
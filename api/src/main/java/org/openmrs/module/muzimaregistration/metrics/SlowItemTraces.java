@@ -0,0 +1,99 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded in memory ring buffer of the traces of queue data which took longer than the threshold to process. When
+ * the buffer is full, the oldest trace is overwritten.
+ */
+public class SlowItemTraces {
+
+    public static final String GLOBAL_PROPERTY_THRESHOLD = "muzimaregistration.trace.thresholdMillis";
+
+    public static final String GLOBAL_PROPERTY_CAPACITY = "muzimaregistration.trace.capacity";
+
+    public static final int DEFAULT_CAPACITY = 100;
+
+    public static final long DEFAULT_THRESHOLD_MILLIS = 5000;
+
+    private static StageTrace[] traces = new StageTrace[DEFAULT_CAPACITY];
+
+    private static int next;
+
+    private static int size;
+
+    private static volatile long thresholdMillis = DEFAULT_THRESHOLD_MILLIS;
+
+    private SlowItemTraces() {
+    }
+
+    /**
+     * Configure the ring buffer. Changing the capacity will remove all existing traces.
+     *
+     * @param capacity  the maximum number of traces kept.
+     * @param threshold the minimum processing time in milliseconds for a trace to be kept, negative to disable.
+     */
+    public static synchronized void configure(final int capacity, final long threshold) {
+        if (capacity != traces.length) {
+            traces = new StageTrace[Math.max(1, capacity)];
+            next = 0;
+            size = 0;
+        }
+        thresholdMillis = threshold;
+    }
+
+    /**
+     * @return the minimum processing time in milliseconds for a trace to be kept, negative when disabled.
+     */
+    public static long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    /**
+     * Keep the trace when the processing time is over the threshold.
+     *
+     * @param trace the trace.
+     */
+    public static synchronized void offer(final StageTrace trace) {
+        if (thresholdMillis < 0 || trace.getTotalMillis() < thresholdMillis || HandlerMetrics.isRecordingSuppressed()) {
+            return;
+        }
+        traces[next] = trace;
+        next = (next + 1) % traces.length;
+        size = Math.min(size + 1, traces.length);
+    }
+
+    /**
+     * @return the kept traces, the most recent trace first.
+     */
+    public static synchronized List<StageTrace> getTraces() {
+        List<StageTrace> snapshot = new ArrayList<StageTrace>(size);
+        for (int i = 1; i <= size; i++) {
+            snapshot.add(traces[(next - i + traces.length) % traces.length]);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Remove all kept traces.
+     */
+    public static synchronized void clear() {
+        traces = new StageTrace[traces.length];
+        next = 0;
+        size = 0;
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+/**
+ * The stages of processing a single queue data in the handlers.
+ */
+public enum Stage {
+
+    /**
+     * Reading the payload and building the unsaved objects.
+     */
+    PARSE("parse"),
+
+    /**
+     * Resolving metadata referenced by the payload: identifier types, attribute types, locations, users, forms and
+     * concepts.
+     */
+    METADATA("metadata"),
+
+    /**
+     * Matching the payload patient with the saved patients.
+     */
+    MATCHING("matching"),
+
+    /**
+     * Saving the patient, encounter and registration data.
+     */
+    PERSISTENCE("persistence");
+
+    private final String metricName;
+
+    Stage(final String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
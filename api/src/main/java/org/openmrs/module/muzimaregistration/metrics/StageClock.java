@@ -0,0 +1,166 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+import org.openmrs.module.muzima.model.QueueData;
+
+import java.util.Date;
+
+/**
+ * Attributes the time spent processing a single queue data to the processing stages. The clock is bound to the
+ * processing thread, so utility classes used by the handlers can switch the stage without having the clock passed
+ * around. Only one stage is active at a time, switching to a new stage stops the clock of the previous stage.
+ * <p/>
+ * Calls to {@link #start(String, QueueData)} and {@link #stop(boolean)} can be nested (e.g. process calling validate),
+ * only the outermost pair is recorded.
+ * <p/>
+ * When the processing takes longer than the threshold of {@link SlowItemTraces}, the full trace of the queue data
+ * (when each stage was first entered, the time and the number of statements per stage) is kept as well.
+ */
+public class StageClock {
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private static final ThreadLocal<StageClock> current = new ThreadLocal<StageClock>();
+
+    private final String discriminator;
+
+    private final String queueDataUuid;
+
+    private final String prefix;
+
+    private final Date startedDate;
+
+    private final long started;
+
+    private final long[] stageNanos = new long[Stage.values().length];
+
+    private final long[] stageEntered = new long[Stage.values().length];
+
+    private final long[] stageStatements = new long[Stage.values().length];
+
+    private final boolean[] visited = new boolean[Stage.values().length];
+
+    private int depth;
+
+    private Stage stage;
+
+    private long stageStarted;
+
+    private long stageStatementsStarted;
+
+    private StageClock(final String discriminator, final String queueDataUuid) {
+        this.discriminator = discriminator;
+        this.queueDataUuid = queueDataUuid;
+        this.prefix = "handler." + discriminator + ".";
+        this.startedDate = new Date();
+        this.started = System.nanoTime();
+    }
+
+    /**
+     * Start the clock for a queue data.
+     *
+     * @param discriminator the discriminator of the handler.
+     * @param queueData     the queue data being processed.
+     */
+    public static void start(final String discriminator, final QueueData queueData) {
+        StageClock clock = current.get();
+        if (clock != null) {
+            clock.depth++;
+            return;
+        }
+        clock = new StageClock(discriminator, queueData.getUuid());
+        current.set(clock);
+        String payload = queueData.getPayload();
+        HandlerMetrics.histogram(clock.prefix + "payload_size").update(payload == null ? 0 : payload.length());
+    }
+
+    /**
+     * Switch the active stage of the current queue data.
+     *
+     * @param stage the new active stage, null to stop the clock of the active stage.
+     * @return the previously active stage.
+     */
+    public static Stage switchTo(final Stage stage) {
+        StageClock clock = current.get();
+        if (clock == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        long statements = StatementCounter.getCount();
+        Stage previous = clock.stage;
+        clock.accrue(now, statements);
+        clock.stage = stage;
+        clock.stageStarted = now;
+        clock.stageStatementsStarted = statements;
+        if (stage != null && !clock.visited[stage.ordinal()]) {
+            clock.visited[stage.ordinal()] = true;
+            clock.stageEntered[stage.ordinal()] = now;
+        }
+        return previous;
+    }
+
+    /**
+     * Stop the clock of the current queue data and record the stage timers.
+     *
+     * @param failed whether the processing of the queue data failed.
+     */
+    public static void stop(final boolean failed) {
+        StageClock clock = current.get();
+        if (clock == null) {
+            return;
+        }
+        if (clock.depth > 0) {
+            clock.depth--;
+            return;
+        }
+        current.remove();
+        long now = System.nanoTime();
+        clock.accrue(now, StatementCounter.getCount());
+        for (Stage stage : Stage.values()) {
+            if (clock.visited[stage.ordinal()]) {
+                HandlerMetrics.timer(clock.prefix + stage.getMetricName()).update(clock.stageNanos[stage.ordinal()]);
+            }
+        }
+        HandlerMetrics.timer(clock.prefix + "total").update(now - clock.started);
+        if (failed) {
+            HandlerMetrics.counter(clock.prefix + "failures").increment();
+        }
+        long totalMillis = (now - clock.started) / NANOS_PER_MILLI;
+        long threshold = SlowItemTraces.getThresholdMillis();
+        if (threshold >= 0 && totalMillis >= threshold) {
+            SlowItemTraces.offer(clock.createTrace(totalMillis, failed));
+        }
+    }
+
+    private void accrue(final long now, final long statements) {
+        if (stage != null) {
+            stageNanos[stage.ordinal()] += now - stageStarted;
+            stageStatements[stage.ordinal()] += statements - stageStatementsStarted;
+        }
+    }
+
+    private StageTrace createTrace(final long totalMillis, final boolean failed) {
+        StageTrace trace = new StageTrace(queueDataUuid, discriminator, startedDate, totalMillis, failed);
+        for (Stage stage : Stage.values()) {
+            int index = stage.ordinal();
+            if (visited[index]) {
+                trace.addStageTiming(new StageTrace.StageTiming(stage.getMetricName(),
+                        (stageEntered[index] - started) / NANOS_PER_MILLI,
+                        stageNanos[index] / NANOS_PER_MILLI, stageStatements[index]));
+            }
+        }
+        return trace;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The trace of processing a single queue data: when each stage was first entered, the time spent and the number of
+ * statements executed in each stage.
+ */
+public class StageTrace {
+
+    private final String queueDataUuid;
+
+    private final String discriminator;
+
+    private final Date started;
+
+    private final long totalMillis;
+
+    private final boolean failed;
+
+    private final List<StageTiming> stageTimings = new ArrayList<StageTiming>();
+
+    public StageTrace(final String queueDataUuid, final String discriminator, final Date started,
+                      final long totalMillis, final boolean failed) {
+        this.queueDataUuid = queueDataUuid;
+        this.discriminator = discriminator;
+        this.started = started;
+        this.totalMillis = totalMillis;
+        this.failed = failed;
+    }
+
+    public String getQueueDataUuid() {
+        return queueDataUuid;
+    }
+
+    public String getDiscriminator() {
+        return discriminator;
+    }
+
+    public Date getStarted() {
+        return started;
+    }
+
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    public List<StageTiming> getStageTimings() {
+        return stageTimings;
+    }
+
+    public void addStageTiming(final StageTiming stageTiming) {
+        stageTimings.add(stageTiming);
+    }
+
+    /**
+     * The timing of a single stage in the trace.
+     */
+    public static class StageTiming {
+
+        private final String stage;
+
+        private final long offsetMillis;
+
+        private final long millis;
+
+        private final long statements;
+
+        public StageTiming(final String stage, final long offsetMillis, final long millis, final long statements) {
+            this.stage = stage;
+            this.offsetMillis = offsetMillis;
+            this.millis = millis;
+            this.statements = statements;
+        }
+
+        /**
+         * @return the name of the stage.
+         */
+        public String getStage() {
+            return stage;
+        }
+
+        /**
+         * @return the time when the stage was first entered, relative to the start of the processing.
+         */
+        public long getOffsetMillis() {
+            return offsetMillis;
+        }
+
+        /**
+         * @return the total time spent in the stage.
+         */
+        public long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return the number of statements executed in the stage.
+         */
+        public long getStatements() {
+            return statements;
+        }
+    }
+}
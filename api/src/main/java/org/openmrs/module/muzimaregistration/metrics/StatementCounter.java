@@ -0,0 +1,84 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openmrs.api.context.Context;
+
+import java.util.List;
+
+/**
+ * Counts the jdbc statements prepared by hibernate. The counter is based on the hibernate statistics of the session
+ * factory which are shared by all threads, so the count attributed to a queue data is approximate when other threads
+ * are using the database at the same time.
+ * <p/>
+ * Hibernate statistics are shared by the whole session factory and are a contention point under load, so the counter
+ * is opt-in and the statistics are put back to their previous state when the counter is disabled.
+ */
+public class StatementCounter {
+
+    private static final Log log = LogFactory.getLog(StatementCounter.class);
+
+    public static final String GLOBAL_PROPERTY_ENABLED = "muzimaregistration.trace.countStatements";
+
+    private static volatile Statistics statistics;
+
+    private static boolean previouslyEnabled;
+
+    private StatementCounter() {
+    }
+
+    /**
+     * Enable the hibernate statistics of the session factory.
+     */
+    public static synchronized void enable() {
+        if (statistics != null) {
+            return;
+        }
+        try {
+            List<SessionFactory> sessionFactories = Context.getRegisteredComponents(SessionFactory.class);
+            if (!sessionFactories.isEmpty()) {
+                Statistics sessionFactoryStatistics = sessionFactories.get(0).getStatistics();
+                previouslyEnabled = sessionFactoryStatistics.isStatisticsEnabled();
+                sessionFactoryStatistics.setStatisticsEnabled(true);
+                statistics = sessionFactoryStatistics;
+            }
+        } catch (Exception e) {
+            log.error("Unable to enable hibernate statistics!", e);
+        }
+    }
+
+    /**
+     * Stop reading the hibernate statistics and put the statistics of the session factory back to the state they were
+     * in before the counter was enabled.
+     */
+    public static synchronized void disable() {
+        Statistics current = statistics;
+        statistics = null;
+        if (current != null && !previouslyEnabled) {
+            current.setStatisticsEnabled(false);
+        }
+    }
+
+    /**
+     * @return the number of statements prepared so far or zero when the counter is not enabled.
+     */
+    public static long getCount() {
+        Statistics current = statistics;
+        return current == null ? 0 : current.getPrepareStatementCount();
+    }
+}
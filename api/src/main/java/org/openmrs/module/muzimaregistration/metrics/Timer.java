@@ -0,0 +1,53 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the number of events and the time spent on them.
+ */
+public class Timer implements Metric {
+
+    private long count;
+
+    private long totalNanos;
+
+    private long maxNanos;
+
+    public synchronized void update(final long nanos) {
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getTotalNanos() {
+        return totalNanos;
+    }
+
+    @Override
+    public synchronized void snapshot(final String name, final Map<String, Long> values) {
+        values.put(name + ".count", count);
+        values.put(name + ".total_ms", TimeUnit.NANOSECONDS.toMillis(totalNanos));
+        values.put(name + ".mean_us", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos / count));
+        values.put(name + ".max_us", TimeUnit.NANOSECONDS.toMicros(maxNanos));
+    }
+}
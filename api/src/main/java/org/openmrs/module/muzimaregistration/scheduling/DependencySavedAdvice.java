@@ -0,0 +1,64 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.scheduling;
+
+import org.openmrs.Concept;
+import org.openmrs.EncounterType;
+import org.openmrs.Location;
+import org.openmrs.OpenmrsMetadata;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrorCode;
+import org.springframework.aop.AfterReturningAdvice;
+
+import java.lang.reflect.Method;
+
+/**
+ * Wakes the queue data parked in the {@link ParkingLot} when the patient or metadata they are waiting on is saved.
+ * The advice only collects the keys of the saved dependencies, the waiting queue data are requeued after the caller's
+ * transaction is committed. The advice is applied to the patient, concept, location and encounter services, see
+ * config.xml.
+ */
+public class DependencySavedAdvice implements AfterReturningAdvice {
+
+    @Override
+    public void afterReturning(final Object returnValue, final Method method, final Object[] args,
+                               final Object target) throws Throwable {
+        if (returnValue == null || !method.getName().startsWith("save")) {
+            return;
+        }
+        if (returnValue instanceof Patient) {
+            ParkingLot.wake(ValidationErrorCode.PATIENT_NOT_FOUND, ((Patient) returnValue).getUuid());
+        } else if (returnValue instanceof Concept) {
+            Concept concept = (Concept) returnValue;
+            ParkingLot.wake(ValidationErrorCode.UNKNOWN_CONCEPT, concept.getConceptId());
+            ParkingLot.wake(ValidationErrorCode.UNKNOWN_CONCEPT, concept.getUuid());
+        } else if (returnValue instanceof Location) {
+            wakeMetadata(ValidationErrorCode.UNKNOWN_LOCATION, (Location) returnValue,
+                    ((Location) returnValue).getLocationId());
+        } else if (returnValue instanceof EncounterType) {
+            wakeMetadata(ValidationErrorCode.UNKNOWN_ENCOUNTER_TYPE, (EncounterType) returnValue,
+                    ((EncounterType) returnValue).getEncounterTypeId());
+        } else if (returnValue instanceof PatientIdentifierType) {
+            wakeMetadata(ValidationErrorCode.UNKNOWN_IDENTIFIER_TYPE, (PatientIdentifierType) returnValue,
+                    ((PatientIdentifierType) returnValue).getPatientIdentifierTypeId());
+        }
+    }
+
+    private void wakeMetadata(final ValidationErrorCode code, final OpenmrsMetadata metadata, final Integer id) {
+        ParkingLot.wake(code, id);
+        ParkingLot.wake(code, metadata.getUuid());
+        ParkingLot.wake(code, metadata.getName());
+    }
+}
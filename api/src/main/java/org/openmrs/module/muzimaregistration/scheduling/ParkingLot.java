@@ -0,0 +1,179 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.scheduling;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.ParkedQueueDataService;
+import org.openmrs.module.muzimaregistration.api.model.ParkedQueueData;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.validation.ValidationError;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrorCode;
+import org.openmrs.module.muzimaregistration.validation.ValidationErrors;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Parks the queue data which failed only because a patient or a piece of metadata doesn't exist yet, together with
+ * the key of each dependency it is waiting on (e.g. <code>PATIENT_NOT_FOUND:temporary uuid</code> or
+ * <code>UNKNOWN_CONCEPT:5089</code>). When the dependency is saved, only the queue data waiting on its key are woken:
+ * once the transaction saving the dependency is committed, the error data left by the queue processor is moved back
+ * into the queue.
+ * <p/>
+ * A woken queue data is processed, archived or failed by the queue processor like any other queue data. When it fails
+ * again, it is parked again by its handler with the keys it is still waiting on.
+ */
+public class ParkingLot {
+
+    private static final Set<ValidationErrorCode> WAITING_CODES = EnumSet.of(
+            ValidationErrorCode.PATIENT_NOT_FOUND, ValidationErrorCode.UNKNOWN_CONCEPT,
+            ValidationErrorCode.UNKNOWN_LOCATION, ValidationErrorCode.UNKNOWN_ENCOUNTER_TYPE,
+            ValidationErrorCode.UNKNOWN_IDENTIFIER_TYPE);
+
+    private static final Log log = LogFactory.getLog(ParkingLot.class);
+
+    /**
+     * Get the key of a dependency. Coded values (e.g. <code>5089^WEIGHT (KG)^99DCT</code>) are keyed by their id.
+     *
+     * @param code  the kind of the missing dependency.
+     * @param value the reference to the dependency, an id, uuid or name.
+     * @return the waiting key.
+     */
+    public static String getWaitingKey(final ValidationErrorCode code, final Object value) {
+        String reference = StringUtils.trim(String.valueOf(value));
+        return code.name() + ":" + StringUtils.substringBefore(reference, "^");
+    }
+
+    /**
+     * Park the queue data when all of its validation errors are missing dependencies. Does nothing otherwise, as
+     * saving a dependency wouldn't make the queue data succeed.
+     *
+     * @param discriminator    the discriminator of the handler.
+     * @param queueData        the failed queue data.
+     * @param validationErrors the validation errors of the queue data, can be null.
+     * @return true when the queue data was parked.
+     */
+    public static boolean park(final String discriminator, final QueueData queueData,
+                               final ValidationErrors validationErrors) {
+        if (validationErrors == null || !validationErrors.hasErrors() || StringUtils.isBlank(queueData.getUuid())) {
+            return false;
+        }
+        Set<String> waitingKeys = new LinkedHashSet<String>();
+        for (ValidationError error : validationErrors.getErrors()) {
+            if (!WAITING_CODES.contains(error.getCode()) || error.getValue() == null
+                    || StringUtils.isBlank(String.valueOf(error.getValue()))) {
+                return false;
+            }
+            waitingKeys.add(getWaitingKey(error.getCode(), error.getValue()));
+        }
+        try {
+            ParkedQueueDataService service = Context.getService(ParkedQueueDataService.class);
+            release(service, queueData.getUuid());
+            for (String waitingKey : waitingKeys) {
+                ParkedQueueData parkedQueueData = new ParkedQueueData();
+                parkedQueueData.setQueueDataUuid(queueData.getUuid());
+                parkedQueueData.setDiscriminator(discriminator);
+                parkedQueueData.setWaitingKey(waitingKey);
+                service.saveParkedQueueData(parkedQueueData);
+            }
+            log.info("Parked queue data: " + queueData.getUuid() + " waiting on: " + waitingKeys);
+            HandlerMetrics.counter("parking.parked").increment();
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Unable to park queue data: " + queueData.getUuid(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Wake the queue data waiting on the dependency.
+     *
+     * @param code  the kind of the saved dependency.
+     * @param value the reference to the saved dependency.
+     */
+    public static void wake(final ValidationErrorCode code, final Object value) {
+        if (value != null) {
+            wake(getWaitingKey(code, value));
+        }
+    }
+
+    /**
+     * Wake the queue data waiting on the key. Within a transaction, the key is only collected and the waiting queue
+     * data are requeued once the transaction is committed, so the caller saving the dependency is never affected by
+     * the queue data it wakes. The requeued queue data are processed by the queue processor.
+     *
+     * @param waitingKey the key of the saved dependency.
+     */
+    public static void wake(final String waitingKey) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            requeue(waitingKey);
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof WakeAfterCommit) {
+                ((WakeAfterCommit) synchronization).waitingKeys.add(waitingKey);
+                return;
+            }
+        }
+        WakeAfterCommit wakeAfterCommit = new WakeAfterCommit();
+        wakeAfterCommit.waitingKeys.add(waitingKey);
+        TransactionSynchronizationManager.registerSynchronization(wakeAfterCommit);
+    }
+
+    private static void requeue(final String waitingKey) {
+        try {
+            List<QueueData> requeued = Context.getService(ParkedQueueDataService.class)
+                    .requeueParkedQueueData(waitingKey);
+            for (QueueData queueData : requeued) {
+                log.info("Requeued parked queue data: " + queueData.getUuid() + " after: " + waitingKey);
+                HandlerMetrics.counter("parking.requeued").increment();
+            }
+        } catch (RuntimeException e) {
+            log.error("Unable to requeue queue data waiting on: " + waitingKey, e);
+        }
+    }
+
+    private static void release(final ParkedQueueDataService service, final String queueDataUuid) {
+        for (ParkedQueueData parkedQueueData : service.getParkedQueueDataByQueueDataUuid(queueDataUuid)) {
+            service.purgeParkedQueueData(parkedQueueData);
+        }
+    }
+
+    /**
+     * Collects the keys of the dependencies saved in a transaction and requeues their waiting queue data once the
+     * transaction is committed.
+     */
+    private static class WakeAfterCommit extends TransactionSynchronizationAdapter {
+
+        private final Set<String> waitingKeys = new LinkedHashSet<String>();
+
+        @Override
+        public void afterCompletion(final int status) {
+            if (status == STATUS_COMMITTED) {
+                for (String waitingKey : waitingKeys) {
+                    requeue(waitingKey);
+                }
+            }
+        }
+    }
+}
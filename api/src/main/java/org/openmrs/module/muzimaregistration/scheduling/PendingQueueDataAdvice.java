@@ -0,0 +1,156 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.scheduling;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.PendingQueueDataService;
+import org.openmrs.module.muzimaregistration.api.model.PendingQueueData;
+import org.springframework.aop.AfterReturningAdvice;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the index of the pending queue data by patient uuid, see {@link PendingQueueDataService}. A queue data is
+ * indexed when it is saved into the queue and removed from the index when it is purged from the queue. Only the
+ * registrations and demographics updates are indexed, they are the only queue data looked up by patient uuid. The
+ * advice is applied to the muzima data service, see config.xml.
+ * <p/>
+ * Within a transaction, the index is only updated once the transaction is committed, and each update runs in its own
+ * transaction. A failing index update never marks the transaction saving or purging the queue data for rollback.
+ */
+public class PendingQueueDataAdvice implements AfterReturningAdvice {
+
+    public static final List<String> INDEXED_DISCRIMINATORS = Collections.unmodifiableList(Arrays.asList(
+            QueueDataScheduler.REGISTRATION_DISCRIMINATOR, "json-demographics-update"));
+
+    private static final int MAX_PATIENT_UUID_LENGTH = 38;
+
+    private static final Log log = LogFactory.getLog(PendingQueueDataAdvice.class);
+
+    @Override
+    public void afterReturning(final Object returnValue, final Method method, final Object[] args,
+                               final Object target) throws Throwable {
+        try {
+            if (method.getName().startsWith("save") && returnValue instanceof QueueData) {
+                index((QueueData) returnValue);
+            } else if (method.getName().startsWith("purge") && args != null && args.length > 0
+                    && args[0] instanceof QueueData) {
+                String queueDataUuid = ((QueueData) args[0]).getUuid();
+                if (StringUtils.isNotBlank(queueDataUuid)) {
+                    update(queueDataUuid, null);
+                }
+            }
+        } catch (RuntimeException e) {
+            // the index only speeds up the lookups, it must never fail the queue.
+            log.error("Unable to update the pending queue data index after: " + method.getName(), e);
+        }
+    }
+
+    /**
+     * Index the queue data under the patient uuid referenced by its payload, once the current transaction is
+     * committed.
+     *
+     * @param queueData the queue data saved into the queue.
+     */
+    public static void index(final QueueData queueData) {
+        PendingQueueData pendingQueueData = createPendingQueueData(queueData);
+        if (pendingQueueData != null) {
+            update(queueData.getUuid(), pendingQueueData);
+        }
+    }
+
+    /**
+     * Create the index entry of the queue data.
+     *
+     * @param queueData the queue data.
+     * @return the index entry or null when the queue data is not indexed.
+     */
+    public static PendingQueueData createPendingQueueData(final QueueData queueData) {
+        if (!INDEXED_DISCRIMINATORS.contains(queueData.getDiscriminator())
+                || StringUtils.isBlank(queueData.getUuid())) {
+            return null;
+        }
+        String patientUuid = QueueDataScheduler.getPatientUuid(queueData);
+        if (StringUtils.isBlank(patientUuid) || patientUuid.length() > MAX_PATIENT_UUID_LENGTH) {
+            return null;
+        }
+        PendingQueueData pendingQueueData = new PendingQueueData();
+        pendingQueueData.setQueueDataUuid(queueData.getUuid());
+        pendingQueueData.setDiscriminator(queueData.getDiscriminator());
+        pendingQueueData.setPatientUuid(patientUuid);
+        return pendingQueueData;
+    }
+
+    /**
+     * Within a transaction, the update is only collected and applied once the transaction is committed. The last update
+     * of a queue data wins: a null entry removes the queue data from the index.
+     */
+    private static void update(final String queueDataUuid, final PendingQueueData pendingQueueData) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(queueDataUuid, pendingQueueData);
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof IndexAfterCommit) {
+                ((IndexAfterCommit) synchronization).updates.put(queueDataUuid, pendingQueueData);
+                return;
+            }
+        }
+        IndexAfterCommit indexAfterCommit = new IndexAfterCommit();
+        indexAfterCommit.updates.put(queueDataUuid, pendingQueueData);
+        TransactionSynchronizationManager.registerSynchronization(indexAfterCommit);
+    }
+
+    private static void apply(final String queueDataUuid, final PendingQueueData pendingQueueData) {
+        try {
+            PendingQueueDataService service = Context.getService(PendingQueueDataService.class);
+            if (pendingQueueData == null) {
+                service.purgePendingQueueData(queueDataUuid);
+            } else {
+                service.savePendingQueueData(pendingQueueData);
+            }
+        } catch (RuntimeException e) {
+            log.error("Unable to update the pending queue data index of: " + queueDataUuid, e);
+        }
+    }
+
+    /**
+     * Collects the index updates of a transaction and applies them once the transaction is committed.
+     */
+    private static class IndexAfterCommit extends TransactionSynchronizationAdapter {
+
+        private final Map<String, PendingQueueData> updates = new LinkedHashMap<String, PendingQueueData>();
+
+        @Override
+        public void afterCompletion(final int status) {
+            if (status == STATUS_COMMITTED) {
+                for (Map.Entry<String, PendingQueueData> update : updates.entrySet()) {
+                    apply(update.getKey(), update.getValue());
+                }
+            }
+        }
+    }
+}
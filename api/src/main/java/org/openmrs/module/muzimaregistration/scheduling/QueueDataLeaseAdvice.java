@@ -0,0 +1,55 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.scheduling;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.openmrs.module.muzima.model.QueueData;
+
+import java.util.List;
+
+/**
+ * Claims the leases of a batch of queue data when the queue processor of the muzima module reads the queue, see
+ * {@link QueueLeases#claimBatch(List)}. The queue processor only gets the queue data this node claimed, the queue data
+ * leased by the other nodes are left in the queue untouched. Other callers reading the queue, e.g. the queue listing
+ * of the web pages, get the whole queue. The advice is applied to the muzima data service, see config.xml.
+ */
+public class QueueDataLeaseAdvice implements MethodInterceptor {
+
+    private static final String QUEUE_PROCESSOR = "QueueProcessor";
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(final MethodInvocation invocation) throws Throwable {
+        Object result = invocation.proceed();
+        if (QueueLeases.getNodeId() != null && "getAllQueueData".equals(invocation.getMethod().getName())
+                && result instanceof List && isCalledByQueueProcessor()) {
+            return QueueLeases.claimBatch((List<QueueData>) result);
+        }
+        return result;
+    }
+
+    /**
+     * The queue processor of the muzima module doesn't identify itself in any other way than the call stack.
+     */
+    private static boolean isCalledByQueueProcessor() {
+        for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+            String className = element.getClassName();
+            if (className.endsWith("." + QUEUE_PROCESSOR) && className.startsWith("org.openmrs.module.muzima.")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
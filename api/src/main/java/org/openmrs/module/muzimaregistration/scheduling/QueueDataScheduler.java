@@ -0,0 +1,120 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.scheduling;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.exception.QueueProcessorException;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.PendingQueueDataService;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
+import org.openmrs.module.muzimaregistration.handler.JsonRegistrationQueueDataHandler;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.utils.JsonUtils;
+import org.openmrs.module.muzimaregistration.validation.ValidationResultCache;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Makes sure a json registration is processed before the queue data referencing the temporary uuid it registers.
+ * Encounters and demographics updates collected on the device reference the patient by the temporary uuid assigned
+ * on the device, which can only be resolved once the registration has been processed and its registration data saved.
+ * <p/>
+ * {@link #pullForwardRegistration(QueueData)} is called by the handlers before resolving the patient, and processes
+ * the pending registration of an unresolved temporary uuid on the spot, so the dependent queue data doesn't fail for
+ * a missing patient just because it was picked before its registration.
+ */
+public class QueueDataScheduler {
+
+    public static final String REGISTRATION_DISCRIMINATOR = "json-registration";
+
+    private static final String JSON_PATIENT_UUID_PATH = "$['patient']['patient.uuid']";
+
+    private static final Pattern XML_PATIENT_UUID = Pattern.compile("<patient\\.uuid>\\s*([^<]*?)\\s*</patient\\.uuid>");
+
+    private static final Log log = LogFactory.getLog(QueueDataScheduler.class);
+
+    /**
+     * Process the pending json registration of the temporary uuid referenced by the queue data, when the temporary
+     * uuid is not known yet. The registration is processed in its own transaction, so its failure doesn't affect the
+     * queue data being processed. Failures of the registration are left for the queue processor to report when it
+     * reaches the registration itself. When leasing is enabled, a registration leased by another node is left to
+     * that node.
+     *
+     * @param queueData the queue data about to be processed.
+     * @return true when a registration was processed for the queue data.
+     */
+    public static boolean pullForwardRegistration(final QueueData queueData) {
+        String temporaryUuid = getPatientUuid(queueData);
+        if (StringUtils.isBlank(temporaryUuid) || isResolved(temporaryUuid)) {
+            return false;
+        }
+        PendingQueueDataService service = Context.getService(PendingQueueDataService.class);
+        List<QueueData> pendingRegistrations = service.getPendingQueueData(REGISTRATION_DISCRIMINATOR, temporaryUuid);
+        for (QueueData registration : pendingRegistrations) {
+            if (StringUtils.equals(temporaryUuid, getPatientUuid(registration))) {
+                if (!QueueLeases.claimOutOfTurn(registration)) {
+                    log.info("Registration: " + registration.getUuid() + " is being processed by another node.");
+                    return false;
+                }
+                try {
+                    service.processPendingQueueData(new JsonRegistrationQueueDataHandler(), registration);
+                } catch (QueueProcessorException e) {
+                    log.info("Unable to process registration: " + registration.getUuid() + " ahead of: "
+                            + queueData.getUuid(), e);
+                    return false;
+                } catch (RuntimeException e) {
+                    log.error("Unexpected error processing registration: " + registration.getUuid() + " ahead of: "
+                            + queueData.getUuid(), e);
+                    return false;
+                } finally {
+                    QueueLeases.giveBack(registration);
+                }
+                log.info("Processed registration: " + registration.getUuid() + " ahead of: " + queueData.getUuid());
+                HandlerMetrics.counter("scheduler.registrations_pulled_forward").increment();
+                ValidationResultCache.remove(queueData.getDiscriminator(), queueData);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the patient uuid referenced by the queue data, for a registration this is the temporary uuid it registers.
+     *
+     * @param queueData the queue data.
+     * @return the patient uuid or null when the payload doesn't reference a patient uuid.
+     */
+    public static String getPatientUuid(final QueueData queueData) {
+        String payload = queueData.getPayload();
+        if (StringUtils.isBlank(payload)) {
+            return null;
+        }
+        if (StringUtils.startsWith(queueData.getDiscriminator(), "xml-")) {
+            Matcher matcher = XML_PATIENT_UUID.matcher(payload);
+            return matcher.find() ? matcher.group(1) : null;
+        }
+        return JsonUtils.readAsString(payload, JSON_PATIENT_UUID_PATH);
+    }
+
+    private static boolean isResolved(final String temporaryUuid) {
+        return Context.getPatientService().getPatientByUuid(temporaryUuid) != null
+                || Context.getService(RegistrationDataService.class)
+                .getRegistrationDataByTemporaryUuid(temporaryUuid) != null;
+    }
+}
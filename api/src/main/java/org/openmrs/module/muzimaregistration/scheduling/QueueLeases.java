@@ -0,0 +1,257 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.scheduling;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.QueueDataLeaseService;
+import org.openmrs.module.muzimaregistration.api.model.QueueDataLease;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the OpenMRS nodes sharing the database from processing the same queue data. Each node runs the queue processor
+ * over the same queue, so when the queue processor reads the queue the node claims the leases of a batch of queue data
+ * up front, see {@link QueueDataLeaseAdvice}:
+ * <ul>
+ * <li>a claimed queue data is handed to the queue processor, its lease is renewed in the background while processing
+ * takes long and is completed together with the processing (or released when the processing failed),</li>
+ * <li>a queue data leased by another node, or completed by another node and not purged from the queue yet, is left
+ * out of the batch. The queue processor never sees it, so it is neither failed nor purged by this node.</li>
+ * </ul>
+ * Only the queue data of the handlers of this module are leased, the other queue data are handed to the queue
+ * processor as they are. Leasing is disabled unless enabled by the global property, a single node doesn't need it.
+ */
+public class QueueLeases {
+
+    public static final String GLOBAL_PROPERTY_ENABLED = "muzimaregistration.cluster.leasing";
+
+    public static final String GLOBAL_PROPERTY_NODE_ID = "muzimaregistration.cluster.nodeId";
+
+    public static final String GLOBAL_PROPERTY_LEASE = "muzimaregistration.cluster.leaseMillis";
+
+    public static final String GLOBAL_PROPERTY_BATCH_SIZE = "muzimaregistration.cluster.batchSize";
+
+    public static final long DEFAULT_LEASE_MILLIS = 300000;
+
+    public static final int DEFAULT_BATCH_SIZE = 50;
+
+    /**
+     * The discriminators of the queue data processed by the handlers of this module.
+     */
+    public static final List<String> LEASED_DISCRIMINATORS = Collections.unmodifiableList(Arrays.asList(
+            "json-registration", "xml-registration", "json-encounter", "xml-encounter", "json-demographics-update",
+            "json-individual-obs"));
+
+    private static final long COMPLETED_RETENTION_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private static final Log log = LogFactory.getLog(QueueLeases.class);
+
+    private static final Set<String> held = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private static volatile String nodeId;
+
+    private static volatile long leaseMillis = DEFAULT_LEASE_MILLIS;
+
+    private static volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+    private static Timer renewal;
+
+    private QueueLeases() {
+    }
+
+    /**
+     * Start leasing the queue data.
+     *
+     * @param configuredNodeId the id of this node, blank to use the host name and a random suffix.
+     * @param lease            how long a lease is valid without being renewed, in milliseconds.
+     * @param batch            the maximum number of queue data claimed each time the queue is read.
+     */
+    public static synchronized void start(final String configuredNodeId, final long lease, final int batch) {
+        stop();
+        nodeId = StringUtils.isNotBlank(configuredNodeId) ? configuredNodeId : createNodeId();
+        leaseMillis = lease;
+        batchSize = Math.max(1, batch);
+        renewal = new Timer("muzimaregistration-lease-renewal", true);
+        long period = Math.max(1000, lease / 3);
+        renewal.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                renewLeases();
+            }
+        }, period, period);
+        log.info("Leasing queue data as node: " + nodeId);
+    }
+
+    /**
+     * Stop leasing the queue data.
+     */
+    public static synchronized void stop() {
+        if (renewal != null) {
+            renewal.cancel();
+            renewal = null;
+        }
+        nodeId = null;
+        held.clear();
+    }
+
+    /**
+     * @return the id of this node or null when leasing is disabled.
+     */
+    public static String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Claim the leases of the next batch of queue data read by the queue processor. The queue data leased or completed
+     * by another node are skipped, and the claiming stops once the batch is full: the queue data left out are read
+     * again by the next run of the queue processor. The leases still held from the previous batch of this node are
+     * dropped, the queue processor is done with that batch.
+     *
+     * @param queueData the queue data in the queue, in processing order.
+     * @return the queue data to process on this node, in processing order.
+     */
+    public static List<QueueData> claimBatch(final List<QueueData> queueData) {
+        String owner = nodeId;
+        if (owner == null) {
+            return queueData;
+        }
+        QueueDataLeaseService service = Context.getService(QueueDataLeaseService.class);
+        List<QueueData> batch = new ArrayList<QueueData>();
+        Set<String> claimed = new HashSet<String>();
+        for (QueueData candidate : queueData) {
+            if (!LEASED_DISCRIMINATORS.contains(candidate.getDiscriminator())
+                    || StringUtils.isBlank(candidate.getUuid())) {
+                batch.add(candidate);
+                continue;
+            }
+            if (claimed.size() >= batchSize) {
+                continue;
+            }
+            QueueDataLease.Claim claim = service.claimLease(candidate.getUuid(), owner, expiresOn());
+            if (claim == QueueDataLease.Claim.CLAIMED) {
+                claimed.add(candidate.getUuid());
+                held.add(candidate.getUuid());
+                batch.add(candidate);
+                HandlerMetrics.counter("lease.claimed").increment();
+            } else if (claim == QueueDataLease.Claim.COMPLETED) {
+                HandlerMetrics.counter("lease.completed_elsewhere").increment();
+            } else {
+                HandlerMetrics.counter("lease.held_elsewhere").increment();
+            }
+        }
+        held.retainAll(claimed);
+        return batch;
+    }
+
+    /**
+     * Claim the lease of a queue data processed out of its turn, e.g. a registration pulled forward by the queue data
+     * depending on it. The lease is not renewed nor completed by the processing, it must be given back with
+     * {@link #giveBack(QueueData)}: the queue data is still archived by the queue processor when its turn comes.
+     *
+     * @param queueData the queue data.
+     * @return false when another node leased or completed the queue data.
+     */
+    public static boolean claimOutOfTurn(final QueueData queueData) {
+        String owner = nodeId;
+        if (owner == null || held.contains(queueData.getUuid())) {
+            return true;
+        }
+        QueueDataLease.Claim claim = Context.getService(QueueDataLeaseService.class)
+                .claimLease(queueData.getUuid(), owner, expiresOn());
+        return claim == QueueDataLease.Claim.CLAIMED;
+    }
+
+    /**
+     * Give back the lease of a queue data processed out of its turn.
+     *
+     * @param queueData the queue data.
+     */
+    public static void giveBack(final QueueData queueData) {
+        String owner = nodeId;
+        if (owner == null || held.contains(queueData.getUuid())) {
+            return;
+        }
+        Context.getService(QueueDataLeaseService.class).releaseLease(queueData.getUuid(), owner);
+    }
+
+    /**
+     * Complete or release the lease of a processed queue data.
+     *
+     * @param queueData the queue data.
+     * @param failed    whether the processing failed.
+     */
+    public static void release(final QueueData queueData, final boolean failed) {
+        String owner = nodeId;
+        if (owner == null || !held.remove(queueData.getUuid())) {
+            return;
+        }
+        QueueDataLeaseService service = Context.getService(QueueDataLeaseService.class);
+        if (failed) {
+            service.releaseLease(queueData.getUuid(), owner);
+        } else {
+            service.completeLease(queueData.getUuid(), owner);
+        }
+    }
+
+    private static void renewLeases() {
+        String owner = nodeId;
+        if (owner == null) {
+            return;
+        }
+        List<String> queueDataUuids = new ArrayList<String>(held);
+        Context.openSession();
+        try {
+            QueueDataLeaseService service = Context.getService(QueueDataLeaseService.class);
+            if (!queueDataUuids.isEmpty()) {
+                service.renewLeases(queueDataUuids, owner, expiresOn());
+            }
+            service.purgeCompletedLeases(new Date(System.currentTimeMillis() - COMPLETED_RETENTION_MILLIS));
+        } catch (RuntimeException e) {
+            log.warn("Unable to renew the queue data leases of node: " + owner, e);
+        } finally {
+            Context.closeSession();
+        }
+    }
+
+    private static Date expiresOn() {
+        return new Date(System.currentTimeMillis() + leaseMillis);
+    }
+
+    private static String createNodeId() {
+        String hostName;
+        try {
+            hostName = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            hostName = "unknown";
+        }
+        return hostName + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
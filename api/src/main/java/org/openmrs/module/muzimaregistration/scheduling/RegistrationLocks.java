@@ -0,0 +1,55 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.scheduling;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the registrations of the same temporary uuid within this node. The locks are striped by the hash of the
+ * temporary uuid, so registrations of different patients rarely wait on each other while the number of locks stays
+ * fixed.
+ * <p/>
+ * The lock is released as soon as the registration returns, before its transaction commits, so the shared stripe isn't
+ * held for the rest of the transaction while other registrations wait on it. The unique constraint on the temporary uuid of the registration data is
+ * the arbiter, within the node and across nodes: the registration data is reserved before the patient is saved, and a
+ * concurrent registration of the same temporary uuid fails on the constraint and is rolled back.
+ */
+public class RegistrationLocks {
+
+    private static final int STRIPES = 64;
+
+    private static final Lock[] locks = new Lock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    private RegistrationLocks() {
+    }
+
+    /**
+     * Lock the registrations of a temporary uuid.
+     *
+     * @param temporaryUuid the temporary uuid.
+     * @return the lock, to be unlocked once the registration returns.
+     */
+    public static Lock lock(final String temporaryUuid) {
+        Lock lock = locks[(temporaryUuid == null ? 0 : temporaryUuid.hashCode()) & (STRIPES - 1)];
+        lock.lock();
+        return lock;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Simple thread safe, size bounded cache. When the cache is full, the least recently used entry will be evicted.
+ * Optionally, entries will expire after the configured time to live.
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+
+    private final long timeToLive;
+
+    private final Map<K, CacheEntry<V>> entries;
+
+    /**
+     * Create a new cache without expiration.
+     *
+     * @param maxSize the maximum number of entries in the cache.
+     */
+    public BoundedCache(final int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * Create a new cache where the entries will expire after the time to live.
+     *
+     * @param maxSize    the maximum number of entries in the cache.
+     * @param timeToLive the time to live of each entry in milliseconds, zero or less for no expiration.
+     */
+    public BoundedCache(final int maxSize, final long timeToLive) {
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+        this.entries = new LinkedHashMap<K, CacheEntry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, CacheEntry<V>> eldest) {
+                return size() > BoundedCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get the value for the key.
+     *
+     * @param key the key.
+     * @return the value or null when the key is not in the cache or the entry already expired.
+     */
+    public synchronized V get(final K key) {
+        CacheEntry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.isExpired(timeToLive)) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.getValue();
+    }
+
+    /**
+     * Put the value for the key, replacing any existing value.
+     *
+     * @param key   the key.
+     * @param value the value.
+     */
+    public synchronized void put(final K key, final V value) {
+        entries.put(key, new CacheEntry<V>(value));
+    }
+
+    /**
+     * Remove the value for the key.
+     *
+     * @param key the key.
+     * @return the removed value or null when the key is not in the cache.
+     */
+    public synchronized V remove(final K key) {
+        CacheEntry<V> entry = entries.remove(key);
+        return entry == null ? null : entry.getValue();
+    }
+
+    /**
+     * Remove all entries in the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of entries in the cache, including the expired entries not yet evicted.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private static class CacheEntry<V> {
+
+        private final V value;
+
+        private final long created;
+
+        private CacheEntry(final V value) {
+            this.value = value;
+            this.created = System.currentTimeMillis();
+        }
+
+        private V getValue() {
+            return value;
+        }
+
+        private boolean isExpired(final long timeToLive) {
+            return timeToLive > 0 && System.currentTimeMillis() - created > timeToLive;
+        }
+    }
+}
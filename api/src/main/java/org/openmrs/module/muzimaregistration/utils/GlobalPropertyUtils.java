@@ -0,0 +1,45 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.lang.math.NumberUtils;
+import org.openmrs.api.context.Context;
+
+/**
+ * Helper methods to read the module global properties with default values.
+ */
+public class GlobalPropertyUtils {
+
+    private GlobalPropertyUtils() {
+    }
+
+    public static String getString(final String name, final String defaultValue) {
+        String value = Context.getAdministrationService().getGlobalProperty(name);
+        return StringUtils.isBlank(value) ? defaultValue : StringUtils.trim(value);
+    }
+
+    public static int getInteger(final String name, final int defaultValue) {
+        return NumberUtils.toInt(getString(name, null), defaultValue);
+    }
+
+    public static long getLong(final String name, final long defaultValue) {
+        return NumberUtils.toLong(getString(name, null), defaultValue);
+    }
+
+    public static boolean getBoolean(final String name, final boolean defaultValue) {
+        String value = getString(name, null);
+        return value == null ? defaultValue : Boolean.valueOf(value);
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import org.openmrs.Concept;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
+import org.openmrs.Location;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.PersonAttributeType;
+import org.openmrs.User;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzimaforms.MuzimaForm;
+import org.openmrs.module.muzimaforms.api.MuzimaFormService;
+import org.openmrs.module.muzimaregistration.metrics.Stage;
+import org.openmrs.module.muzimaregistration.metrics.StageClock;
+
+/**
+ * Lookups of the metadata referenced by the queue data payloads. All lookups are attributed to the metadata stage of
+ * the queue data being processed.
+ */
+public class MetadataUtils {
+
+    private MetadataUtils() {
+    }
+
+    public static PatientIdentifierType getPatientIdentifierType(final Integer identifierTypeId) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getPatientService().getPatientIdentifierType(identifierTypeId);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    public static PatientIdentifierType getPatientIdentifierTypeByName(final String identifierTypeName) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getPatientService().getPatientIdentifierTypeByName(identifierTypeName);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    public static PatientIdentifierType getPatientIdentifierTypeByUuid(final String identifierTypeUuid) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getPatientService().getPatientIdentifierTypeByUuid(identifierTypeUuid);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    public static PersonAttributeType getPersonAttributeType(final Integer attributeTypeId) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getPersonService().getPersonAttributeType(attributeTypeId);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    public static PersonAttributeType getPersonAttributeTypeByName(final String attributeTypeName) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getPersonService().getPersonAttributeTypeByName(attributeTypeName);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    public static Location getLocation(final Integer locationId) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getLocationService().getLocation(locationId);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    public static Location getLocationByUuid(final String locationUuid) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getLocationService().getLocationByUuid(locationUuid);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    public static User getUserByUsername(final String username) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getUserService().getUserByUsername(username);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    public static EncounterType getEncounterType(final Integer encounterTypeId) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getEncounterService().getEncounterType(encounterTypeId);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    public static Concept getConcept(final Integer conceptId) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            return Context.getConceptService().getConcept(conceptId);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    /**
+     * Get the form using the uuid of the form or the uuid of the muzima form wrapping the form.
+     *
+     * @param formUuid the uuid of the form or the muzima form.
+     * @return the form or null when no form or muzima form is found.
+     */
+    public static Form getFormByUuid(final String formUuid) {
+        Stage previous = StageClock.switchTo(Stage.METADATA);
+        try {
+            Form form = Context.getFormService().getFormByUuid(formUuid);
+            if (form == null) {
+                MuzimaFormService muzimaFormService = Context.getService(MuzimaFormService.class);
+                MuzimaForm muzimaForm = muzimaFormService.findByUniqueId(formUuid);
+                if (muzimaForm != null) {
+                    form = Context.getFormService().getFormByUuid(muzimaForm.getForm());
+                }
+            }
+            return form;
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+}
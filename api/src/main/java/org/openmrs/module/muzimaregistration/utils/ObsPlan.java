@@ -0,0 +1,147 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.Concept;
+import org.openmrs.ConceptDatatype;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiled observation plan of a form. The observations in an encounter payload are keyed by the concept question,
+ * e.g. <code>5089^WEIGHT (KG)^99DCT</code>, and each form uses a fixed set of keys. The plan resolves each key once,
+ * to the concept id, whether it is an obs group and how its value is converted. After the first payload of the form,
+ * building the observations is a hash lookup per field.
+ * <p/>
+ * The plans are shared by all threads and outlive the sessions, so they only keep the concept ids and never the
+ * concepts: the concept of a field is looked up in the current session, where it comes from the hibernate caches.
+ * Keys referencing an unknown concept are not kept, so the concept is picked up as soon as it is created. The plans
+ * are kept by {@link ObsPlanCache} and dropped when the form or a concept is saved or purged.
+ */
+public class ObsPlan {
+
+    private static final int MAX_ENTRIES = 1000;
+
+    public enum ValueType {
+        GROUP, NUMERIC, DATETIME, CODED, TEXT, OTHER
+    }
+
+    private final ConcurrentMap<String, Field> fields = new ConcurrentHashMap<String, Field>();
+
+    /**
+     * Get the compiled field of the concept question, compiling it on first use.
+     *
+     * @param conceptQuestion the key of the observation in the payload.
+     * @return the compiled field.
+     */
+    public Field getField(final String conceptQuestion) {
+        Field field = fields.get(conceptQuestion);
+        if (field == null) {
+            field = compile(conceptQuestion);
+            if ((field.isSkipped() || field.getValueType() != null) && fields.size() < MAX_ENTRIES) {
+                fields.put(conceptQuestion, field);
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Get the concept of a coded value, e.g. <code>1065^YES^99DCT</code>, from the current session.
+     *
+     * @param value the coded value in the payload.
+     * @return the concept or null when the concept doesn't exist.
+     */
+    public Concept getCodedValue(final String value) {
+        return MetadataUtils.getConcept(parseConceptId(value));
+    }
+
+    /**
+     * @param value a concept question or coded value.
+     * @return the concept id, the first element of the value.
+     */
+    public static int parseConceptId(final String value) {
+        return Integer.parseInt(StringUtils.split(value, "\\^")[0]);
+    }
+
+    private static Field compile(final String conceptQuestion) {
+        HandlerMetrics.counter("obs_plan.compiled_fields").increment();
+        String[] conceptElements = StringUtils.split(conceptQuestion, "\\^");
+        if (conceptElements.length < 3) {
+            return new Field(-1, null);
+        }
+        int conceptId = Integer.parseInt(conceptElements[0]);
+        Concept concept = MetadataUtils.getConcept(conceptId);
+        return new Field(conceptId, concept == null ? null : getValueType(concept));
+    }
+
+    private static ValueType getValueType(final Concept concept) {
+        if (concept.isSet()) {
+            return ValueType.GROUP;
+        }
+        ConceptDatatype datatype = concept.getDatatype();
+        if (datatype.isNumeric()) {
+            return ValueType.NUMERIC;
+        } else if (datatype.isDate() || datatype.isTime() || datatype.isDateTime()) {
+            return ValueType.DATETIME;
+        } else if (datatype.isCoded()) {
+            return ValueType.CODED;
+        } else if (datatype.isText()) {
+            return ValueType.TEXT;
+        }
+        return ValueType.OTHER;
+    }
+
+    /**
+     * A resolved concept question.
+     */
+    public static class Field {
+
+        private final int conceptId;
+
+        private final ValueType valueType;
+
+        private Field(final int conceptId, final ValueType valueType) {
+            this.conceptId = conceptId;
+            this.valueType = valueType;
+        }
+
+        /**
+         * @return true when the key is not a concept question and must be ignored.
+         */
+        public boolean isSkipped() {
+            return conceptId < 0;
+        }
+
+        public int getConceptId() {
+            return conceptId;
+        }
+
+        /**
+         * @return the concept from the current session or null when the concept doesn't exist.
+         */
+        public Concept getConcept() {
+            return valueType == null ? null : MetadataUtils.getConcept(conceptId);
+        }
+
+        /**
+         * @return how the value is converted or null when the concept doesn't exist.
+         */
+        public ValueType getValueType() {
+            return valueType;
+        }
+    }
+}
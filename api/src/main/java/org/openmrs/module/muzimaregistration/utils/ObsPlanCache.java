@@ -0,0 +1,63 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Cache of the compiled observation plans, keyed by form uuid. Payloads without a form share a single plan.
+ */
+public class ObsPlanCache {
+
+    private static final int MAX_FORMS = 200;
+
+    private static final BoundedCache<String, ObsPlan> cache = new BoundedCache<String, ObsPlan>(MAX_FORMS);
+
+    private ObsPlanCache() {
+    }
+
+    /**
+     * Get the observation plan of a form, creating an empty plan on first use.
+     *
+     * @param formUuid the uuid of the form.
+     * @return the observation plan of the form.
+     */
+    public static ObsPlan getPlan(final String formUuid) {
+        String key = StringUtils.defaultString(formUuid);
+        synchronized (cache) {
+            ObsPlan plan = cache.get(key);
+            if (plan == null) {
+                plan = new ObsPlan();
+                cache.put(key, plan);
+            }
+            return plan;
+        }
+    }
+
+    /**
+     * Drop the observation plan of a form.
+     *
+     * @param formUuid the uuid of the form.
+     */
+    public static void invalidate(final String formUuid) {
+        cache.remove(StringUtils.defaultString(formUuid));
+    }
+
+    /**
+     * Drop all observation plans.
+     */
+    public static void clear() {
+        cache.clear();
+    }
+}
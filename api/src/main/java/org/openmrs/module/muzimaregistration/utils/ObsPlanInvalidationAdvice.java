@@ -0,0 +1,48 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import org.openmrs.Concept;
+import org.openmrs.Form;
+import org.springframework.aop.AfterReturningAdvice;
+
+import java.lang.reflect.Method;
+
+/**
+ * Drops the compiled observation plans when a form or a concept changes or is purged. A changed form only drops its
+ * own plan, a changed concept (e.g. a new datatype or a retired concept) can be used by any form and drops all plans.
+ * The advice is applied to the concept and form services, see config.xml.
+ */
+public class ObsPlanInvalidationAdvice implements AfterReturningAdvice {
+
+    @Override
+    public void afterReturning(final Object returnValue, final Method method, final Object[] args,
+                               final Object target) throws Throwable {
+        String name = method.getName();
+        Object changed;
+        if (name.startsWith("save") || name.startsWith("retire") || name.startsWith("unretire")) {
+            changed = returnValue;
+        } else if (name.startsWith("purge") && args != null && args.length > 0) {
+            // the purge methods don't return the purged object.
+            changed = args[0];
+        } else {
+            return;
+        }
+        if (changed instanceof Form) {
+            ObsPlanCache.invalidate(((Form) changed).getUuid());
+        } else if (changed instanceof Concept) {
+            ObsPlanCache.clear();
+        }
+    }
+}
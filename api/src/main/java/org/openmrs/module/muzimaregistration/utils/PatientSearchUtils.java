@@ -20,6 +20,9 @@ import org.openmrs.PersonName;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.metrics.Stage;
+import org.openmrs.module.muzimaregistration.metrics.StageClock;
 
 import java.util.List;
 
@@ -28,6 +31,7 @@ import java.util.List;
 public class PatientSearchUtils {
     private PatientSearchUtils(){}
     public static Patient findPatient(final List<Patient> patients, final Patient unsavedPatient) {
+        HandlerMetrics.histogram("matching.candidates").update(patients.size());
         for (Patient patient : patients) {
             // match it using the person name and gender.
             PersonName savedPersonName = patient.getPersonName();
@@ -58,6 +62,15 @@ public class PatientSearchUtils {
     }
 
     public static Patient findSavedPatient(Patient candidatePatient, boolean searchRegistrationData){
+        Stage previous = StageClock.switchTo(Stage.MATCHING);
+        try {
+            return findSavedPatientInternal(candidatePatient, searchRegistrationData);
+        } finally {
+            StageClock.switchTo(previous);
+        }
+    }
+
+    private static Patient findSavedPatientInternal(Patient candidatePatient, boolean searchRegistrationData){
         Patient savedPatient = null;
         if (StringUtils.isNotEmpty(candidatePatient.getUuid())) {
             savedPatient = Context.getPatientService().getPatientByUuid(candidatePatient.getUuid());
@@ -0,0 +1,34 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Content hash of the queue data payloads, used to recognize a payload which was seen before.
+ */
+public class PayloadHashUtils {
+
+    private PayloadHashUtils() {
+    }
+
+    /**
+     * @param payload the payload.
+     * @return the hex encoded sha-1 hash of the payload.
+     */
+    public static String hash(final String payload) {
+        return DigestUtils.shaHex(StringUtils.defaultString(payload));
+    }
+}
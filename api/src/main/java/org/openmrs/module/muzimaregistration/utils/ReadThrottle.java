@@ -0,0 +1,111 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of registration read requests (the registrations listing and the registration rest resource)
+ * served at the same time. A request waits at most the configured time for a permit and is rejected otherwise, so a
+ * burst of devices syncing can't take all the request threads of the servlet container and starve the rest of OpenMRS.
+ * Only a bounded number of requests wait at the same time, a request arriving when that many are already waiting is
+ * rejected right away instead of holding its request thread for the wait.
+ */
+public class ReadThrottle {
+
+    public static final String GLOBAL_PROPERTY_MAX_CONCURRENT = "muzimaregistration.read.maxConcurrent";
+
+    public static final String GLOBAL_PROPERTY_MAX_WAIT = "muzimaregistration.read.maxWaitMillis";
+
+    public static final String GLOBAL_PROPERTY_MAX_QUEUED = "muzimaregistration.read.maxQueued";
+
+    public static final int DEFAULT_MAX_CONCURRENT = 8;
+
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 2000;
+
+    public static final int DEFAULT_MAX_QUEUED = 8;
+
+    private static final Permit UNLIMITED = new Permit(null);
+
+    private static volatile Semaphore permits = new Semaphore(DEFAULT_MAX_CONCURRENT, true);
+
+    private static volatile long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+    private static volatile int maxQueued = DEFAULT_MAX_QUEUED;
+
+    private ReadThrottle() {
+    }
+
+    /**
+     * Configure the throttle. Requests admitted before the throttle is reconfigured release their permit to the
+     * previous configuration.
+     *
+     * @param maxConcurrent the maximum number of requests served at the same time, zero or less for no limit.
+     * @param maxWait       the time in milliseconds a request waits for a permit before being rejected.
+     * @param maxQueued     the maximum number of requests waiting for a permit at the same time, zero or less to
+     *                      reject the requests without waiting.
+     */
+    public static void configure(final int maxConcurrent, final long maxWait, final int maxQueued) {
+        maxWaitMillis = Math.max(0, maxWait);
+        ReadThrottle.maxQueued = Math.max(0, maxQueued);
+        permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+    }
+
+    /**
+     * Wait for a permit to serve a read request. The request doesn't wait when a permit is free or when the maximum
+     * number of requests are already waiting.
+     *
+     * @return the permit to be released once the request is served, or null when no permit was available in time.
+     * @throws InterruptedException when the request thread is interrupted while waiting.
+     */
+    public static Permit acquire() throws InterruptedException {
+        Semaphore current = permits;
+        if (current == null) {
+            return UNLIMITED;
+        }
+        if (!current.tryAcquire()
+                && (current.getQueueLength() >= maxQueued
+                || !current.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS))) {
+            HandlerMetrics.counter("read.rejected").increment();
+            return null;
+        }
+        return new Permit(current);
+    }
+
+    /**
+     * @return the number of requests waiting for a permit.
+     */
+    public static int getQueueLength() {
+        Semaphore current = permits;
+        return current == null ? 0 : current.getQueueLength();
+    }
+
+    public static class Permit {
+
+        private final Semaphore semaphore;
+
+        private Permit(final Semaphore semaphore) {
+            this.semaphore = semaphore;
+        }
+
+        public void release() {
+            if (semaphore != null) {
+                semaphore.release();
+            }
+        }
+    }
+}
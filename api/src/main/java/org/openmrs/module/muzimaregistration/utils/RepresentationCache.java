@@ -0,0 +1,156 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the rendered rest representations of registered patients. Entries are keyed by the patient uuid and the
+ * representation name, and are only valid for the date changed of the patient when the representation was rendered.
+ * <p/>
+ * The rendered representations are mutable maps, so the cache keeps its own copy and hands out a fresh copy to every
+ * caller. A caller changing the representation it got can't change what the other callers get.
+ */
+public class RepresentationCache {
+
+    private static final int MAX_PATIENTS = 1000;
+
+    private static final BoundedCache<String, PatientRepresentations> cache =
+            new BoundedCache<String, PatientRepresentations>(MAX_PATIENTS);
+
+    private RepresentationCache() {
+    }
+
+    /**
+     * Get the rendered representation of a patient.
+     *
+     * @param patientUuid    the uuid of the patient.
+     * @param representation the representation name.
+     * @param dateChanged    the current date changed of the patient.
+     * @return a copy of the rendered representation or null when the representation is not cached or stale.
+     */
+    public static Object get(final String patientUuid, final String representation, final Date dateChanged) {
+        PatientRepresentations representations = cache.get(patientUuid);
+        if (representations == null) {
+            return null;
+        }
+        return copy(representations.get(representation, dateChanged));
+    }
+
+    /**
+     * Cache the rendered representation of a patient.
+     *
+     * @param patientUuid    the uuid of the patient.
+     * @param representation the representation name.
+     * @param dateChanged    the date changed of the patient used to render the representation.
+     * @param rendered       the rendered representation.
+     */
+    public static void put(final String patientUuid, final String representation, final Date dateChanged,
+                           final Object rendered) {
+        synchronized (cache) {
+            PatientRepresentations representations = cache.get(patientUuid);
+            if (representations == null || !representations.isValidFor(dateChanged)) {
+                representations = new PatientRepresentations(dateChanged);
+                cache.put(patientUuid, representations);
+            }
+            representations.put(representation, copy(rendered));
+        }
+    }
+
+    /**
+     * Remove all cached representations of a patient.
+     *
+     * @param patientUuid the uuid of the patient.
+     */
+    public static void invalidate(final String patientUuid) {
+        cache.remove(patientUuid);
+    }
+
+    /**
+     * Remove all cached representations.
+     */
+    public static void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Copy the maps, collections and dates of a rendered representation. The other values (strings, numbers, booleans)
+     * are immutable and shared.
+     */
+    @SuppressWarnings("unchecked")
+    static Object copy(final Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> copy = (Map<Object, Object>) newInstance(value, LinkedHashMap.class);
+            for (Map.Entry<Object, Object> entry : ((Map<Object, Object>) value).entrySet()) {
+                copy.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof Collection) {
+            Collection<Object> copy = (Collection<Object>) newInstance(value, ArrayList.class);
+            for (Object element : (Collection<Object>) value) {
+                copy.add(copy(element));
+            }
+            return copy;
+        }
+        if (value instanceof Date) {
+            return ((Date) value).clone();
+        }
+        return value;
+    }
+
+    /**
+     * Create an empty instance of the same class (e.g. a SimpleObject stays a SimpleObject), or of the fallback class
+     * when the class can't be instantiated.
+     */
+    private static Object newInstance(final Object value, final Class<?> fallback) {
+        try {
+            return value.getClass().newInstance();
+        } catch (Exception e) {
+            try {
+                return fallback.newInstance();
+            } catch (Exception ignored) {
+                throw new IllegalStateException("Unable to copy the rendered representation.", e);
+            }
+        }
+    }
+
+    private static class PatientRepresentations {
+
+        private final Date dateChanged;
+
+        private final Map<String, Object> rendered = new HashMap<String, Object>();
+
+        private PatientRepresentations(final Date dateChanged) {
+            this.dateChanged = dateChanged;
+        }
+
+        private boolean isValidFor(final Date date) {
+            return dateChanged == null ? date == null : date != null && dateChanged.getTime() == date.getTime();
+        }
+
+        private synchronized Object get(final String representation, final Date date) {
+            return isValidFor(date) ? rendered.get(representation) : null;
+        }
+
+        private synchronized void put(final String representation, final Object value) {
+            rendered.put(representation, value);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.validation;
+
+/**
+ * A single problem found while validating a queue data: what went wrong, where in the payload and which value caused
+ * it. Validation errors are expected outcomes of a bad payload rather than failures of the code, so the stack trace is
+ * never captured.
+ */
+public class ValidationError extends Exception {
+
+    private final ValidationErrorCode code;
+
+    private final String path;
+
+    private final String value;
+
+    public ValidationError(final ValidationErrorCode code, final String path, final Object value,
+                           final String message) {
+        super(message);
+        this.code = code;
+        this.path = path;
+        this.value = value == null ? null : String.valueOf(value);
+    }
+
+    public ValidationErrorCode getCode() {
+        return code;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String getMessage() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(code).append(": ").append(super.getMessage());
+        if (path != null) {
+            builder.append(" [").append(path).append(" = ").append(value).append("]");
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
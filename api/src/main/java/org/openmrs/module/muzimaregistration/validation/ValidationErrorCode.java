@@ -0,0 +1,44 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.validation;
+
+/**
+ * The kind of problems found while validating a queue data.
+ */
+public enum ValidationErrorCode {
+
+    PATIENT_NOT_FOUND,
+
+    DUPLICATE_PATIENT,
+
+    UNKNOWN_IDENTIFIER_TYPE,
+
+    MISSING_IDENTIFIER,
+
+    UNKNOWN_ATTRIBUTE_TYPE,
+
+    UNKNOWN_LOCATION,
+
+    UNKNOWN_USER,
+
+    UNKNOWN_ENCOUNTER_TYPE,
+
+    UNKNOWN_CONCEPT,
+
+    UNKNOWN_VALUE_CODED,
+
+    INVALID_VALUE,
+
+    REVIEW_REQUIRED
+}
@@ -0,0 +1,70 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.validation;
+
+import org.openmrs.module.muzima.exception.QueueProcessorException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collects the validation errors of a single queue data. The handlers report problems here while parsing the payload
+ * and only translate them into a {@link QueueProcessorException} when leaving the handler.
+ */
+public class ValidationErrors {
+
+    private final List<ValidationError> errors = new ArrayList<ValidationError>();
+
+    /**
+     * Report a validation problem.
+     *
+     * @param code    the kind of the problem.
+     * @param path    the path of the offending field in the payload.
+     * @param value   the offending value.
+     * @param message the human readable description of the problem.
+     */
+    public void add(final ValidationErrorCode code, final String path, final Object value, final String message) {
+        errors.add(new ValidationError(code, path, value, message));
+    }
+
+    /**
+     * Report validation problems found earlier, e.g. when reusing a memoized validation result.
+     *
+     * @param validationErrors the validation problems.
+     */
+    public void addAll(final List<ValidationError> validationErrors) {
+        errors.addAll(validationErrors);
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
+    }
+
+    public List<ValidationError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    /**
+     * Add all collected errors to the queue processor exception. The errors are kept, so the handler can still decide
+     * whether the queue data can be parked.
+     *
+     * @param queueProcessorException the exception thrown back to the queue processor.
+     */
+    public void drainTo(final QueueProcessorException queueProcessorException) {
+        for (ValidationError error : errors) {
+            queueProcessorException.addException(error);
+        }
+    }
+}
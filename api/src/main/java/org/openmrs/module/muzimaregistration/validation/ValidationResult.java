@@ -0,0 +1,41 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of validating a queue data: the objects built from the payload by the handler and the validation errors.
+ */
+public class ValidationResult<T> {
+
+    private final T value;
+
+    private final List<ValidationError> errors;
+
+    public ValidationResult(final T value, final List<ValidationError> errors) {
+        this.value = value;
+        this.errors = Collections.unmodifiableList(new ArrayList<ValidationError>(errors));
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public List<ValidationError> getErrors() {
+        return errors;
+    }
+}
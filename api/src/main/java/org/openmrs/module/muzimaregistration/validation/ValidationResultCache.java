@@ -0,0 +1,177 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.validation;
+
+import org.apache.commons.lang.StringUtils;
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.utils.BoundedCache;
+import org.openmrs.module.muzimaregistration.utils.PayloadHashUtils;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+
+/**
+ * Short lived cache of the validation results, so the work done when the queue processor validates a queue data is
+ * not repeated when the same queue data is processed right after. Entries are keyed by the handler discriminator and
+ * the queue data uuid, and are only returned when the payload is still the same. The handlers remove the entry once
+ * the queue data is processed, the time to live only bounds how long an abandoned result can be reused.
+ * <p/>
+ * The cached results hold the entities built and loaded during the validation, so a result is only returned in the
+ * hibernate session which validated the queue data. Any other session (e.g. another thread, or the next run of the
+ * queue processor) validates the queue data again. Nothing is cached on a thread where the recording is suppressed,
+ * see {@link HandlerMetrics#suppressRecording(boolean)}.
+ */
+public class ValidationResultCache {
+
+    public static final String GLOBAL_PROPERTY_TIME_TO_LIVE = "muzimaregistration.validation.cacheTimeToLive";
+
+    public static final String GLOBAL_PROPERTY_CAPACITY = "muzimaregistration.validation.cacheCapacity";
+
+    public static final int DEFAULT_CAPACITY = 500;
+
+    public static final long DEFAULT_TIME_TO_LIVE = 30000;
+
+    private static volatile BoundedCache<String, CachedResult> cache =
+            new BoundedCache<String, CachedResult>(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE);
+
+    private static volatile SessionFactory sessionFactory;
+
+    private ValidationResultCache() {
+    }
+
+    /**
+     * Configure the cache. Reconfiguring the cache will remove all existing results.
+     *
+     * @param capacity   the maximum number of results kept, zero or less to disable the cache.
+     * @param timeToLive the time in milliseconds a result can be reused.
+     */
+    public static void configure(final int capacity, final long timeToLive) {
+        cache = capacity > 0 ? new BoundedCache<String, CachedResult>(capacity, timeToLive) : null;
+        sessionFactory = null;
+    }
+
+    /**
+     * Get the validation result of a queue data.
+     *
+     * @param discriminator the discriminator of the handler.
+     * @param queueData     the queue data.
+     * @return the validation result or null when the queue data was not validated recently in the current session or
+     *         the payload changed.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ValidationResult<T> get(final String discriminator, final QueueData queueData) {
+        BoundedCache<String, CachedResult> current = cache;
+        if (current == null || StringUtils.isBlank(queueData.getUuid()) || HandlerMetrics.isRecordingSuppressed()) {
+            return null;
+        }
+        CachedResult cachedResult = current.get(createKey(discriminator, queueData));
+        if (cachedResult == null || !StringUtils.equals(cachedResult.payloadHash, hash(queueData))) {
+            return null;
+        }
+        Session session = getCurrentSession();
+        if (session == null || cachedResult.session.get() != session) {
+            current.remove(createKey(discriminator, queueData));
+            return null;
+        }
+        HandlerMetrics.counter("handler." + discriminator + ".validation_reused").increment();
+        return (ValidationResult<T>) cachedResult.result;
+    }
+
+    /**
+     * Keep the validation result of a queue data.
+     *
+     * @param discriminator the discriminator of the handler.
+     * @param queueData     the queue data.
+     * @param result        the validation result.
+     */
+    public static void put(final String discriminator, final QueueData queueData, final ValidationResult<?> result) {
+        BoundedCache<String, CachedResult> current = cache;
+        if (current == null || StringUtils.isBlank(queueData.getUuid()) || HandlerMetrics.isRecordingSuppressed()) {
+            return;
+        }
+        Session session = getCurrentSession();
+        if (session != null) {
+            current.put(createKey(discriminator, queueData), new CachedResult(hash(queueData), session, result));
+        }
+    }
+
+    /**
+     * Remove the validation result of a queue data.
+     *
+     * @param discriminator the discriminator of the handler.
+     * @param queueData     the queue data.
+     */
+    public static void remove(final String discriminator, final QueueData queueData) {
+        BoundedCache<String, CachedResult> current = cache;
+        if (current != null && StringUtils.isNotBlank(queueData.getUuid())) {
+            current.remove(createKey(discriminator, queueData));
+        }
+    }
+
+    /**
+     * Remove all validation results.
+     */
+    public static void clear() {
+        BoundedCache<String, CachedResult> current = cache;
+        if (current != null) {
+            current.clear();
+        }
+    }
+
+    private static Session getCurrentSession() {
+        try {
+            SessionFactory current = sessionFactory;
+            if (current == null) {
+                List<SessionFactory> sessionFactories = Context.getRegisteredComponents(SessionFactory.class);
+                if (sessionFactories.isEmpty()) {
+                    return null;
+                }
+                current = sessionFactories.get(0);
+                sessionFactory = current;
+            }
+            return current.getCurrentSession();
+        } catch (HibernateException e) {
+            // no session bound to the current thread.
+            return null;
+        }
+    }
+
+    private static String createKey(final String discriminator, final QueueData queueData) {
+        return discriminator + ":" + queueData.getUuid();
+    }
+
+    private static String hash(final QueueData queueData) {
+        return PayloadHashUtils.hash(queueData.getPayload());
+    }
+
+    private static class CachedResult {
+
+        private final String payloadHash;
+
+        private final WeakReference<Session> session;
+
+        private final ValidationResult<?> result;
+
+        private CachedResult(final String payloadHash, final Session session, final ValidationResult<?> result) {
+            this.payloadHash = payloadHash;
+            this.session = new WeakReference<Session>(session);
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.warmup;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.Concept;
+import org.openmrs.Form;
+import org.openmrs.FormField;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzima.model.handler.QueueDataHandler;
+import org.openmrs.module.muzimaforms.MuzimaForm;
+import org.openmrs.module.muzimaforms.api.MuzimaFormService;
+import org.openmrs.module.muzimaregistration.handler.DemographicsUpdateQueueDataHandler;
+import org.openmrs.module.muzimaregistration.handler.JsonEncounterQueueDataHandler;
+import org.openmrs.module.muzimaregistration.handler.JsonRegistrationQueueDataHandler;
+import org.openmrs.module.muzimaregistration.handler.XmlEncounterQueueDataHandler;
+import org.openmrs.module.muzimaregistration.handler.XmlRegistrationQueueDataHandler;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.utils.MetadataUtils;
+import org.openmrs.util.PrivilegeConstants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Warms up the module after a restart, so the first queue batch does not pay for cold metadata lookups and
+ * interpreted handler code. The warm-up:
+ * <ul>
+ * <li>loads the identifier types, attribute types, locations, encounter types, forms and the concepts referenced by
+ * the active muzima forms,</li>
+ * <li>runs the validation (parse and build, no persistence) of each handler over the bundled sample payloads.</li>
+ * </ul>
+ * The warm-up runs in its own thread and session, using separate handler instances, so it never shares state with
+ * the queue processor. The handler metrics, slow item traces and validation results are not recorded on the warm-up
+ * thread.
+ */
+public class HandlerWarmUp implements Runnable {
+
+    public static final String GLOBAL_PROPERTY_ENABLED = "muzimaregistration.warmup.enabled";
+
+    public static final String GLOBAL_PROPERTY_ITERATIONS = "muzimaregistration.warmup.iterations";
+
+    public static final int DEFAULT_ITERATIONS = 200;
+
+    private static final String[] PRIVILEGES = {
+            PrivilegeConstants.VIEW_IDENTIFIER_TYPES, PrivilegeConstants.VIEW_PERSON_ATTRIBUTE_TYPES,
+            PrivilegeConstants.VIEW_LOCATIONS, PrivilegeConstants.VIEW_ENCOUNTER_TYPES, PrivilegeConstants.VIEW_FORMS,
+            PrivilegeConstants.VIEW_CONCEPTS, PrivilegeConstants.VIEW_USERS, PrivilegeConstants.VIEW_PATIENTS
+    };
+
+    private final Log log = LogFactory.getLog(HandlerWarmUp.class);
+
+    private final int iterations;
+
+    public HandlerWarmUp(final int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * Start the warm-up in a background thread.
+     *
+     * @param iterations the number of times each sample payload is validated.
+     */
+    public static void start(final int iterations) {
+        Thread thread = new Thread(new HandlerWarmUp(iterations), "muzimaregistration-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        long started = System.currentTimeMillis();
+        HandlerMetrics.suppressRecording(true);
+        Context.openSession();
+        try {
+            for (String privilege : PRIVILEGES) {
+                Context.addProxyPrivilege(privilege);
+            }
+            int concepts = preloadMetadata();
+            warmUpHandlers();
+            log.info("Warm-up completed in " + (System.currentTimeMillis() - started) + " ms, preloaded "
+                    + concepts + " form concepts.");
+        } catch (Exception e) {
+            log.error("Unable to complete the warm-up.", e);
+        } finally {
+            for (String privilege : PRIVILEGES) {
+                Context.removeProxyPrivilege(privilege);
+            }
+            Context.closeSession();
+            HandlerMetrics.suppressRecording(false);
+        }
+    }
+
+    private int preloadMetadata() {
+        Context.getPatientService().getAllPatientIdentifierTypes();
+        Context.getPersonService().getAllPersonAttributeTypes();
+        Context.getLocationService().getAllLocations();
+        Context.getEncounterService().getAllEncounterTypes();
+        Context.getFormService().getAllForms();
+
+        int concepts = 0;
+        for (MuzimaForm muzimaForm : Context.getService(MuzimaFormService.class).getAll()) {
+            Form form = MetadataUtils.getFormByUuid(muzimaForm.getForm());
+            if (form == null || form.isRetired()) {
+                continue;
+            }
+            for (FormField formField : form.getFormFields()) {
+                if (formField.getField() != null && formField.getField().getConcept() != null) {
+                    Concept concept = MetadataUtils.getConcept(formField.getField().getConcept().getConceptId());
+                    if (concept != null) {
+                        concept.getDatatype();
+                        concepts++;
+                    }
+                }
+            }
+        }
+        return concepts;
+    }
+
+    private void warmUpHandlers() throws IOException {
+        List<QueueDataHandler> handlers = new ArrayList<QueueDataHandler>();
+        List<QueueData> samples = new ArrayList<QueueData>();
+        addSample(handlers, samples, new JsonRegistrationQueueDataHandler(), "json-registration.json");
+        addSample(handlers, samples, new JsonEncounterQueueDataHandler(), "json-encounter.json");
+        addSample(handlers, samples, new DemographicsUpdateQueueDataHandler(), "json-demographics-update.json");
+        addSample(handlers, samples, new XmlRegistrationQueueDataHandler(), "xml-registration.xml");
+        addSample(handlers, samples, new XmlEncounterQueueDataHandler(), "xml-encounter.xml");
+        for (int i = 0; i < iterations; i++) {
+            for (int j = 0; j < handlers.size(); j++) {
+                try {
+                    // a new uuid every time, so the handlers never see an item twice.
+                    samples.get(j).setUuid(UUID.randomUUID().toString());
+                    handlers.get(j).validate(samples.get(j));
+                } catch (Exception e) {
+                    // the sample patients don't exist, the validation is expected to fail.
+                }
+            }
+            Context.clearSession();
+        }
+    }
+
+    private void addSample(final List<QueueDataHandler> handlers, final List<QueueData> samples,
+                           final QueueDataHandler handler, final String resource) throws IOException {
+        InputStream inputStream = HandlerWarmUp.class.getResourceAsStream(resource);
+        try {
+            QueueData queueData = new QueueData();
+            queueData.setDiscriminator(handler.getDiscriminator());
+            queueData.setPayload(IOUtils.toString(inputStream, "UTF-8"));
+            handlers.add(handler);
+            samples.add(queueData);
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api;
+
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzimaregistration.api.model.QueueDataLease;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests {@link QueueDataLeaseService}.
+ */
+public class QueueDataLeaseServiceTest extends BaseModuleContextSensitiveTest {
+
+    private static final long LEASE_MILLIS = 60000;
+
+    @Test
+    public void claimLease_shouldOnlyLetOneNodeHoldTheLease() {
+        QueueDataLeaseService service = Context.getService(QueueDataLeaseService.class);
+        String queueDataUuid = UUID.randomUUID().toString();
+
+        assertEquals(QueueDataLease.Claim.CLAIMED, service.claimLease(queueDataUuid, "node-a", later()));
+        assertEquals(QueueDataLease.Claim.HELD, service.claimLease(queueDataUuid, "node-b", later()));
+        assertEquals(QueueDataLease.Claim.CLAIMED, service.claimLease(queueDataUuid, "node-a", later()));
+    }
+
+    @Test
+    public void claimLease_shouldTakeOverAnExpiredLease() {
+        QueueDataLeaseService service = Context.getService(QueueDataLeaseService.class);
+        String queueDataUuid = UUID.randomUUID().toString();
+
+        assertEquals(QueueDataLease.Claim.CLAIMED, service.claimLease(queueDataUuid, "node-a", earlier()));
+        assertEquals(QueueDataLease.Claim.CLAIMED, service.claimLease(queueDataUuid, "node-b", later()));
+        assertEquals(QueueDataLease.Claim.HELD, service.claimLease(queueDataUuid, "node-a", later()));
+    }
+
+    @Test
+    public void renewLeases_shouldKeepTheLeaseFromBeingTakenOver() {
+        QueueDataLeaseService service = Context.getService(QueueDataLeaseService.class);
+        String queueDataUuid = UUID.randomUUID().toString();
+
+        assertEquals(QueueDataLease.Claim.CLAIMED, service.claimLease(queueDataUuid, "node-a", earlier()));
+        assertEquals(1, service.renewLeases(Arrays.asList(queueDataUuid), "node-a", later()));
+        assertEquals(QueueDataLease.Claim.HELD, service.claimLease(queueDataUuid, "node-b", later()));
+    }
+
+    private static Date later() {
+        return new Date(System.currentTimeMillis() + LEASE_MILLIS);
+    }
+
+    private static Date earlier() {
+        return new Date(System.currentTimeMillis() - LEASE_MILLIS);
+    }
+}
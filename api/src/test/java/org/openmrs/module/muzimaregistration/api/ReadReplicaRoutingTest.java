@@ -0,0 +1,141 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzimaregistration.api.db.jdbc.ReadReplica;
+import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the routing of the {@link RegistrationDataService} reads between the primary database (the test database of
+ * the context) and a second in memory database standing in for the read only replica. Only the read only lookups and
+ * the listings are served by the replica, the lookups of the registration data to be changed read the primary.
+ */
+public class ReadReplicaRoutingTest extends BaseModuleContextSensitiveTest {
+
+    private JdbcTemplate replica;
+
+    private DataSource replicaDataSource;
+
+    @Before
+    public void setUpReplica() throws Exception {
+        replicaDataSource = ReadReplica.createDataSource(null,
+                "jdbc:h2:mem:muzimaregistration-replica;DB_CLOSE_DELAY=-1", "sa", "", "org.h2.Driver");
+        replica = new JdbcTemplate(replicaDataSource);
+        replica.execute("create table muzimaregistration_registration_data ("
+                + " id int primary key, uuid varchar(38), temporary_uuid varchar(38), assigned_uuid varchar(38),"
+                + " creator int, date_created timestamp, date_changed timestamp, voided boolean)");
+        ReadReplica.configure(replicaDataSource, ReadReplica.DEFAULT_READ_YOUR_WRITES_MILLIS);
+    }
+
+    @After
+    public void tearDownReplica() {
+        ReadReplica.disable();
+        replica.execute("drop table muzimaregistration_registration_data");
+    }
+
+    @Test
+    public void getReadOnlyRegistrationDataByTemporaryUuid_shouldReadFromTheReplica() {
+        insertIntoReplica(1, "temporary-replica", "assigned-replica");
+
+        RegistrationDataService service = Context.getService(RegistrationDataService.class);
+        RegistrationData registrationData = service.getReadOnlyRegistrationDataByTemporaryUuid("temporary-replica");
+
+        assertNotNull(registrationData);
+        assertEquals("assigned-replica", registrationData.getAssignedUuid());
+        assertEquals(1, service.countRegistrationData().intValue());
+    }
+
+    @Test
+    public void getRegistrationDataByTemporaryUuid_shouldReadFromThePrimary() {
+        insertIntoReplica(1, "temporary-replica", "assigned-replica");
+
+        RegistrationDataService service = Context.getService(RegistrationDataService.class);
+
+        assertNull(service.getRegistrationDataByTemporaryUuid("temporary-replica"));
+        assertTrue(service.getRegistrationDataByAssignedUuid("assigned-replica").isEmpty());
+    }
+
+    @Test
+    public void getReadOnlyRegistrationDataByTemporaryUuid_shouldFallBackToThePrimaryWhenMissingFromTheReplica() {
+        RegistrationDataService service = Context.getService(RegistrationDataService.class);
+        service.saveRegistrationData(createRegistrationData("temporary-primary", "assigned-primary"));
+        // forget the write, as if the read your writes window had passed without the row being replicated.
+        ReadReplica.configure(replicaDataSource, ReadReplica.DEFAULT_READ_YOUR_WRITES_MILLIS);
+
+        RegistrationData registrationData = service.getReadOnlyRegistrationDataByTemporaryUuid("temporary-primary");
+
+        assertNotNull(registrationData);
+        assertEquals("assigned-primary", registrationData.getAssignedUuid());
+    }
+
+    @Test
+    public void getReadOnlyRegistrationDataByTemporaryUuid_shouldReadOwnWritesFromThePrimary() {
+        insertIntoReplica(1, "temporary-lagging", "assigned-stale");
+
+        RegistrationDataService service = Context.getService(RegistrationDataService.class);
+        service.saveRegistrationData(createRegistrationData("temporary-lagging", "assigned-fresh"));
+
+        RegistrationData registrationData = service.getReadOnlyRegistrationDataByTemporaryUuid("temporary-lagging");
+        assertEquals("assigned-fresh", registrationData.getAssignedUuid());
+    }
+
+    @Test
+    public void getRegistrationDataAfter_shouldReadThePageAfterTheLastIdFromTheReplica() {
+        for (int id = 1; id <= 5; id++) {
+            insertIntoReplica(id, "temporary-" + id, "assigned-" + id);
+        }
+
+        RegistrationDataService service = Context.getService(RegistrationDataService.class);
+        List<RegistrationData> firstPage = service.getRegistrationDataAfter(null, 0, 2);
+        List<RegistrationData> secondPage = service.getRegistrationDataAfter(null, firstPage.get(1).getId(), 2);
+        List<RegistrationData> lastPage = service.getRegistrationDataAfter("temporary", secondPage.get(1).getId(), 2);
+
+        assertEquals(2, firstPage.size());
+        assertEquals("temporary-1", firstPage.get(0).getTemporaryUuid());
+        assertEquals("temporary-3", secondPage.get(0).getTemporaryUuid());
+        assertEquals("temporary-4", secondPage.get(1).getTemporaryUuid());
+        assertEquals(1, lastPage.size());
+        assertEquals("temporary-5", lastPage.get(0).getTemporaryUuid());
+    }
+
+    private void insertIntoReplica(final int id, final String temporaryUuid, final String assignedUuid) {
+        replica.update("insert into muzimaregistration_registration_data"
+                + " (id, uuid, temporary_uuid, assigned_uuid, creator, date_created, voided)"
+                + " values (?, ?, ?, ?, ?, ?, ?)",
+                new Object[]{id, UUID.randomUUID().toString(), temporaryUuid, assignedUuid, 1, new Date(), Boolean.FALSE});
+    }
+
+    private RegistrationData createRegistrationData(final String temporaryUuid, final String assignedUuid) {
+        RegistrationData registrationData = new RegistrationData();
+        registrationData.setTemporaryUuid(temporaryUuid);
+        registrationData.setAssignedUuid(assignedUuid);
+        return registrationData;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.api.db.hibernate;
+
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Location;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests {@link HibernateIndividualObsDao}.
+ */
+public class HibernateIndividualObsDaoTest extends BaseModuleContextSensitiveTest {
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    /**
+     * @verifies insert all observations across batches
+     * @see HibernateIndividualObsDao#saveObs(java.util.List, int)
+     */
+    @Test
+    public void saveObs_shouldInsertAllObservationsAcrossBatches() throws Exception {
+        List<Obs> observations = createObservations(5);
+
+        createDao().saveObs(observations, 2);
+
+        for (int i = 0; i < observations.size(); i++) {
+            Obs obs = observations.get(i);
+            assertNotNull(obs.getObsId());
+            Obs saved = Context.getObsService().getObs(obs.getObsId());
+            assertEquals(Double.valueOf(60 + i), saved.getValueNumeric());
+        }
+    }
+
+    /**
+     * @verifies evict only the saved observations from the session
+     * @see HibernateIndividualObsDao#saveObs(java.util.List, int)
+     */
+    @Test
+    public void saveObs_shouldEvictOnlyTheSavedObservationsFromTheSession() throws Exception {
+        List<Obs> observations = createObservations(3);
+        Patient patient = (Patient) observations.get(0).getPerson();
+
+        createDao().saveObs(observations, 2);
+
+        for (Obs obs : observations) {
+            assertFalse(sessionFactory.getCurrentSession().contains(obs));
+        }
+        assertTrue(sessionFactory.getCurrentSession().contains(patient));
+    }
+
+    private HibernateIndividualObsDao createDao() {
+        HibernateIndividualObsDao dao = new HibernateIndividualObsDao();
+        dao.setSessionFactory(sessionFactory);
+        return dao;
+    }
+
+    private List<Obs> createObservations(final int count) {
+        Patient patient = Context.getPatientService().getPatient(7);
+        Concept weight = Context.getConceptService().getConcept(5089);
+        Location location = Context.getLocationService().getLocation(1);
+        Date now = new Date();
+        List<Obs> observations = new ArrayList<Obs>();
+        for (int i = 0; i < count; i++) {
+            Obs obs = new Obs();
+            obs.setPerson(patient);
+            obs.setConcept(weight);
+            obs.setLocation(location);
+            obs.setCreator(Context.getAuthenticatedUser());
+            obs.setDateCreated(now);
+            obs.setObsDatetime(now);
+            obs.setValueNumeric(60.0 + i);
+            observations.add(obs);
+        }
+        return observations;
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.handler;
+
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.PersonAddress;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.api.service.DataService;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.PendingQueueDataService;
+import org.openmrs.module.muzimaregistration.api.ProcessedQueueDataService;
+import org.openmrs.module.muzimaregistration.api.model.ProcessedQueueData;
+import org.openmrs.module.muzimaregistration.scheduling.PendingQueueDataAdvice;
+import org.openmrs.module.muzimaregistration.utils.PayloadHashUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests {@link DemographicsUpdateQueueDataHandler}.
+ */
+public class DemographicsUpdateQueueDataHandlerTest extends BaseModuleContextSensitiveTest {
+
+    private static final String DISCRIMINATOR_VALUE = "json-demographics-update";
+
+    private static final String COALESCED_DISCRIMINATOR = DISCRIMINATOR_VALUE + ".coalesced";
+
+    private static final String PATIENT_UUID = "5946f880-b197-400b-9caa-a3c661d23041";
+
+    /**
+     * @verifies merge the later pending updates of the patient in submission order
+     * @see DemographicsUpdateQueueDataHandler#process(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    public void process_shouldMergeTheLaterPendingUpdatesOfThePatientInSubmissionOrder() throws Exception {
+        long now = System.currentTimeMillis();
+        QueueData first = saveQueueData(createPayload("Alpha", "A"), new Date(now - 3000));
+        saveQueueData(createPayload("Beta", "B"), new Date(now - 2000));
+        saveQueueData(createPayload("", "C"), new Date(now - 1000));
+
+        new DemographicsUpdateQueueDataHandler().process(first);
+
+        List<PersonAddress> addresses = getAddresses("Beta", "C");
+        assertEquals(1, addresses.size());
+        assertEquals(0, getAddresses("Alpha", "A").size());
+        assertEquals(0, getAddresses("Beta", "B").size());
+    }
+
+    /**
+     * @verifies record the merged updates in the ledger and skip them when their turn comes
+     * @see DemographicsUpdateQueueDataHandler#process(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    public void process_shouldRecordTheMergedUpdatesInTheLedgerAndSkipThemWhenTheirTurnComes() throws Exception {
+        long now = System.currentTimeMillis();
+        QueueData first = saveQueueData(createPayload("Gamma", "G"), new Date(now - 2000));
+        QueueData second = saveQueueData(createPayload("Delta", "D"), new Date(now - 1000));
+
+        DemographicsUpdateQueueDataHandler handler = new DemographicsUpdateQueueDataHandler();
+        handler.process(first);
+
+        ProcessedQueueData processedQueueData = Context.getService(ProcessedQueueDataService.class)
+                .getProcessedQueueData(COALESCED_DISCRIMINATOR, getCoalescedHash(second));
+        assertNotNull(processedQueueData);
+        assertEquals(second.getUuid(), processedQueueData.getQueueDataUuid());
+        assertEquals(PATIENT_UUID, processedQueueData.getResultUuid());
+        assertNull(Context.getService(ProcessedQueueDataService.class)
+                .getProcessedQueueData(COALESCED_DISCRIMINATOR, getCoalescedHash(first)));
+
+        int addresses = getPatient().getAddresses().size();
+        handler.process(second);
+        assertEquals(addresses, getPatient().getAddresses().size());
+        assertEquals(1, getAddresses("Delta", "D").size());
+    }
+
+    /**
+     * @verifies not merge updates submitted before the processed update
+     * @see DemographicsUpdateQueueDataHandler#process(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    public void process_shouldNotMergeUpdatesSubmittedBeforeTheProcessedUpdate() throws Exception {
+        long now = System.currentTimeMillis();
+        QueueData earlier = saveQueueData(createPayload("Epsilon", "E"), new Date(now - 2000));
+        QueueData later = saveQueueData(createPayload("Zeta", "Z"), new Date(now - 1000));
+
+        new DemographicsUpdateQueueDataHandler().process(later);
+
+        assertEquals(1, getAddresses("Zeta", "Z").size());
+        assertEquals(0, getAddresses("Epsilon", "E").size());
+        assertNull(Context.getService(ProcessedQueueDataService.class)
+                .getProcessedQueueData(COALESCED_DISCRIMINATOR, getCoalescedHash(earlier)));
+    }
+
+    private QueueData saveQueueData(final String payload, final Date dateCreated) {
+        QueueData queueData = new QueueData();
+        queueData.setUuid(UUID.randomUUID().toString());
+        queueData.setDiscriminator(DISCRIMINATOR_VALUE);
+        queueData.setPayload(payload);
+        queueData.setDateCreated(dateCreated);
+        queueData = Context.getService(DataService.class).saveQueueData(queueData);
+        // the advice isn't applied in the tests and would only index after the test transaction commits.
+        Context.getService(PendingQueueDataService.class)
+                .savePendingQueueData(PendingQueueDataAdvice.createPendingQueueData(queueData));
+        return queueData;
+    }
+
+    private String createPayload(final String village, final String county) {
+        return "{\"patient\": {\"patient.uuid\": \"" + PATIENT_UUID + "\"}, "
+                + "\"encounter\": {\"encounter.provider_id\": \"admin\", \"encounter.location_id\": \"1\"}, "
+                + "\"demographicsupdate\": {\"demographicsupdate.village\": \"" + village + "\", "
+                + "\"demographicsupdate.county\": \"" + county + "\"}}";
+    }
+
+    private String getCoalescedHash(final QueueData queueData) {
+        return PayloadHashUtils.hash(queueData.getUuid() + ":" + queueData.getPayload());
+    }
+
+    private Patient getPatient() {
+        return Context.getPatientService().getPatientByUuid(PATIENT_UUID);
+    }
+
+    private List<PersonAddress> getAddresses(final String village, final String county) {
+        List<PersonAddress> addresses = new ArrayList<PersonAddress>();
+        for (PersonAddress address : getPatient().getAddresses()) {
+            if (!address.isVoided() && village.equals(address.getCityVillage())
+                    && county.equals(address.getStateProvince())) {
+                addresses.add(address);
+            }
+        }
+        return addresses;
+    }
+}
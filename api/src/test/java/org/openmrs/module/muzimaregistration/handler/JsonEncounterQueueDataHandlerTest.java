@@ -0,0 +1,77 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.handler;
+
+import org.junit.Test;
+import org.openmrs.Encounter;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.ProcessedQueueDataService;
+import org.openmrs.module.muzimaregistration.api.model.ProcessedQueueData;
+import org.openmrs.module.muzimaregistration.utils.PayloadHashUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Tests {@link JsonEncounterQueueDataHandler}.
+ */
+public class JsonEncounterQueueDataHandlerTest extends BaseModuleContextSensitiveTest {
+
+    private static final String DISCRIMINATOR_VALUE = "json-encounter";
+
+    private static final String PATIENT_UUID = "5946f880-b197-400b-9caa-a3c661d23041";
+
+    private static final String PAYLOAD = "{\"encounter\": {\"encounter.form_uuid\": \"unknown-form\", "
+            + "\"encounter.type_id\": \"1\", \"encounter.provider_id\": \"admin\", \"encounter.location_id\": \"1\", "
+            + "\"encounter.encounter_datetime\": \"01-03-2014\"}, "
+            + "\"patient\": {\"patient.uuid\": \"" + PATIENT_UUID + "\"}, \"observation\": {}}";
+
+    /**
+     * @verifies not save a second encounter for a resubmitted payload
+     * @see JsonEncounterQueueDataHandler#process(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    public void process_shouldNotSaveASecondEncounterForAResubmittedPayload() throws Exception {
+        Patient patient = Context.getPatientService().getPatientByUuid(PATIENT_UUID);
+        int existing = Context.getEncounterService().getEncountersByPatient(patient).size();
+        JsonEncounterQueueDataHandler handler = new JsonEncounterQueueDataHandler();
+
+        QueueData submitted = createQueueData();
+        handler.process(submitted);
+        handler.process(createQueueData());
+
+        List<Encounter> encounters = Context.getEncounterService().getEncountersByPatient(patient);
+        assertEquals(existing + 1, encounters.size());
+
+        ProcessedQueueData processedQueueData = Context.getService(ProcessedQueueDataService.class)
+                .getProcessedQueueData(DISCRIMINATOR_VALUE, PayloadHashUtils.hash(PAYLOAD));
+        assertNotNull(processedQueueData);
+        assertEquals(submitted.getUuid(), processedQueueData.getQueueDataUuid());
+        assertNotNull(Context.getEncounterService().getEncounterByUuid(processedQueueData.getResultUuid()));
+    }
+
+    private QueueData createQueueData() {
+        QueueData queueData = new QueueData();
+        queueData.setUuid(UUID.randomUUID().toString());
+        queueData.setDiscriminator(DISCRIMINATOR_VALUE);
+        queueData.setPayload(PAYLOAD);
+        return queueData;
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.handler;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.exception.QueueProcessorException;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.PendingQueueDataService;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
+import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.load.SyntheticPayloadGenerator;
+import org.openmrs.module.muzimaregistration.utils.JsonUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.test.annotation.NotTransactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs each registration through a single {@link JsonRegistrationQueueDataHandler}, shared the way the queue processor
+ * shares it, from several threads at once. Each thread processes its copy of the registration in its own session and
+ * transaction, so the test runs outside of the test transaction and removes its data afterwards.
+ * <p/>
+ * The reservation of the temporary uuid is watched, so each call is known to have registered the patient, to have
+ * found the registration already mapped, or to have failed on the unique temporary uuid.
+ */
+public class JsonRegistrationQueueDataHandlerConcurrencyTest extends BaseModuleContextSensitiveTest {
+
+    private static final int WORKERS = 8;
+
+    private static final int REGISTRATIONS = 100;
+
+    private ExecutorService executor;
+
+    private ReservationWatch reservationWatch;
+
+    @Before
+    public void setUp() throws Exception {
+        executeDataSet("org/openmrs/module/muzimaregistration/load/load-test-dataset.xml");
+        executor = Executors.newFixedThreadPool(WORKERS);
+        reservationWatch = new ReservationWatch();
+        Context.addAdvice(RegistrationDataService.class, reservationWatch);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Context.removeAdvice(RegistrationDataService.class, reservationWatch);
+        executor.shutdownNow();
+        deleteAllData();
+    }
+
+    /**
+     * @verifies register each temporary uuid once when processed concurrently
+     * @see JsonRegistrationQueueDataHandler#process(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    @NotTransactional
+    public void process_shouldRegisterEachTemporaryUuidOnceWhenProcessedConcurrently() throws Exception {
+        SyntheticPayloadGenerator generator = new SyntheticPayloadGenerator(42L);
+        generator.setEncountersPerPatient(0);
+        generator.setDemographicsUpdateRate(0.0);
+        final List<QueueData> registrations = generator.generate(REGISTRATIONS);
+        assertEquals(REGISTRATIONS, registrations.size());
+
+        final JsonRegistrationQueueDataHandler handler = new JsonRegistrationQueueDataHandler();
+        // all workers take on the same registration at the same time.
+        final CyclicBarrier barrier = new CyclicBarrier(WORKERS);
+        final AtomicIntegerArray registered = new AtomicIntegerArray(REGISTRATIONS);
+        final AtomicIntegerArray skipped = new AtomicIntegerArray(REGISTRATIONS);
+        final AtomicIntegerArray lost = new AtomicIntegerArray(REGISTRATIONS);
+        final List<String> unexpected = Collections.synchronizedList(new ArrayList<String>());
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int worker = 0; worker < WORKERS; worker++) {
+            futures.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = 0; i < REGISTRATIONS; i++) {
+                        QueueData queueData = new QueueData();
+                        queueData.setUuid(UUID.randomUUID().toString());
+                        queueData.setDiscriminator(handler.getDiscriminator());
+                        queueData.setPayload(registrations.get(i).getPayload());
+                        barrier.await(1, TimeUnit.MINUTES);
+                        Context.openSession();
+                        try {
+                            Context.authenticate("admin", "test");
+                            reservationWatch.reset();
+                            Context.getService(PendingQueueDataService.class)
+                                    .processPendingQueueData(handler, queueData);
+                            if (reservationWatch.isReserved()) {
+                                registered.incrementAndGet(i);
+                            } else {
+                                skipped.incrementAndGet(i);
+                            }
+                        } catch (QueueProcessorException e) {
+                            if (reservationWatch.isLostOnTemporaryUuid()) {
+                                lost.incrementAndGet(i);
+                            } else {
+                                unexpected.add("registration " + i + " failed: " + e);
+                            }
+                        } catch (RuntimeException e) {
+                            unexpected.add("registration " + i + " failed: " + e);
+                        } finally {
+                            Context.closeSession();
+                        }
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures) {
+            // a deadlock between the workers would time out here.
+            future.get(10, TimeUnit.MINUTES);
+        }
+
+        assertTrue(unexpected.toString(), unexpected.isEmpty());
+        RegistrationDataService registrationDataService = Context.getService(RegistrationDataService.class);
+        for (int i = 0; i < REGISTRATIONS; i++) {
+            assertEquals(1, registered.get(i));
+            assertEquals(WORKERS, registered.get(i) + skipped.get(i) + lost.get(i));
+
+            String payload = registrations.get(i).getPayload();
+            String temporaryUuid = JsonUtils.readAsString(payload, "$['patient']['patient.uuid']");
+            String identifier = JsonUtils.readAsString(payload, "$['patient']['patient.medical_record_number']");
+            RegistrationData registrationData =
+                    registrationDataService.getRegistrationDataByTemporaryUuid(temporaryUuid);
+            assertNotNull(registrationData);
+            List<Patient> patients = Context.getPatientService().getPatients(null, identifier, null, true);
+            assertEquals(1, patients.size());
+            assertEquals(registrationData.getAssignedUuid(), patients.get(0).getUuid());
+        }
+    }
+
+    /**
+     * Records, for the calling thread, whether the temporary uuid was reserved and why the reservation failed.
+     */
+    private static class ReservationWatch implements MethodInterceptor {
+
+        private final ThreadLocal<Boolean> reserved = new ThreadLocal<Boolean>();
+
+        private final ThreadLocal<Throwable> failure = new ThreadLocal<Throwable>();
+
+        @Override
+        public Object invoke(final MethodInvocation invocation) throws Throwable {
+            if (!"reserveRegistrationData".equals(invocation.getMethod().getName())) {
+                return invocation.proceed();
+            }
+            try {
+                Object result = invocation.proceed();
+                reserved.set(Boolean.TRUE);
+                return result;
+            } catch (Throwable e) {
+                failure.set(e);
+                throw e;
+            }
+        }
+
+        void reset() {
+            reserved.remove();
+            failure.remove();
+        }
+
+        boolean isReserved() {
+            return Boolean.TRUE.equals(reserved.get());
+        }
+
+        /**
+         * @return true when the reservation failed on the unique temporary uuid.
+         */
+        boolean isLostOnTemporaryUuid() {
+            for (Throwable cause = failure.get(); cause != null; cause = cause.getCause()) {
+                if (cause.getMessage() != null && cause.getMessage().toLowerCase().contains("temporary_uuid")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
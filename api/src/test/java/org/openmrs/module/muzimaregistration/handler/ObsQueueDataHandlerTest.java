@@ -0,0 +1,130 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.handler;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.Concept;
+import org.openmrs.Obs;
+import org.openmrs.Patient;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.exception.QueueProcessorException;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests {@link ObsQueueDataHandler}.
+ */
+public class ObsQueueDataHandlerTest extends BaseModuleContextSensitiveTest {
+
+    private static final String PATIENT_UUID = "5946f880-b197-400b-9caa-a3c661d23041";
+
+    private static final int WEIGHT_CONCEPT_ID = 5089;
+
+    private Patient patient;
+
+    private Concept weight;
+
+    @Before
+    public void setUp() {
+        patient = Context.getPatientService().getPatientByUuid(PATIENT_UUID);
+        weight = Context.getConceptService().getConcept(WEIGHT_CONCEPT_ID);
+    }
+
+    /**
+     * @verifies save the observations of the batch
+     * @see ObsQueueDataHandler#process(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    public void process_shouldSaveTheObservationsOfTheBatch() throws Exception {
+        int existing = getWeights().size();
+
+        new ObsQueueDataHandler().process(createQueueData(
+                createObservation("61.5", "2014-03-01T10:15:00.000+03:00")
+                        + "," + createObservation("62", "2014-03-02T10:15:00.000+03:00")));
+
+        List<Obs> weights = getWeights();
+        assertEquals(existing + 2, weights.size());
+    }
+
+    /**
+     * @verifies report an unparseable obs datetime as an invalid value
+     * @see ObsQueueDataHandler#validate(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    public void validate_shouldReportAnUnparseableObsDatetimeAsAnInvalidValue() throws Exception {
+        assertRejected(createQueueData(createObservation("61.5", "yesterday morning")));
+    }
+
+    /**
+     * @verifies report observations rejected by the obs validator
+     * @see ObsQueueDataHandler#validate(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    public void validate_shouldReportObservationsRejectedByTheObsValidator() throws Exception {
+        // above the absolute maximum of the weight concept
+        assertRejected(createQueueData(createObservation("1000", "2014-03-01T10:15:00.000+03:00")));
+    }
+
+    /**
+     * @verifies not save any observation of a rejected batch
+     * @see ObsQueueDataHandler#process(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    public void process_shouldNotSaveAnyObservationOfARejectedBatch() throws Exception {
+        int existing = getWeights().size();
+        try {
+            new ObsQueueDataHandler().process(createQueueData(
+                    createObservation("61.5", "2014-03-01T10:15:00.000+03:00")
+                            + "," + createObservation("62", "not a date")));
+            fail("The batch with an unparseable obs datetime must be rejected.");
+        } catch (QueueProcessorException e) {
+            assertEquals(existing, getWeights().size());
+        }
+    }
+
+    private void assertRejected(final QueueData queueData) {
+        try {
+            new ObsQueueDataHandler().validate(queueData);
+            fail("The observation must be rejected.");
+        } catch (QueueProcessorException e) {
+            assertTrue(e.anyExceptions());
+        }
+    }
+
+    private List<Obs> getWeights() {
+        return Context.getObsService().getObservationsByPersonAndConcept(patient, weight);
+    }
+
+    private QueueData createQueueData(final String observations) {
+        QueueData queueData = new QueueData();
+        queueData.setUuid(UUID.randomUUID().toString());
+        queueData.setDiscriminator(ObsQueueDataHandler.DISCRIMINATOR_VALUE);
+        queueData.setPayload("{\"batch\": {\"batch.location_id\": \"1\", \"batch.provider_id\": \"admin\"}, "
+                + "\"observations\": [" + observations + "]}");
+        return queueData;
+    }
+
+    private String createObservation(final String value, final String datetime) {
+        return "{\"patient.uuid\": \"" + PATIENT_UUID + "\", \"obs.concept_id\": \"" + WEIGHT_CONCEPT_ID
+                + "^WEIGHT (KG)^99DCT\", \"obs.value\": \"" + value + "\", \"obs.datetime\": \"" + datetime + "\"}";
+    }
+}
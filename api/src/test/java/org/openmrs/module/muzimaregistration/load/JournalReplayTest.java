@@ -0,0 +1,82 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.load;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.journal.JournalEntry;
+import org.openmrs.module.muzimaregistration.journal.PayloadJournalReader;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays a captured payload journal through the handlers against the in memory test database. The test only runs
+ * when the journal is given, e.g.:
+ * <pre>
+ * mvn test -Dtest=JournalReplayTest -Dmuzimaregistration.replay.journal=/tmp/muzimaregistration-journal.gz \
+ *     -Dmuzimaregistration.replay.paced=true -Dmuzimaregistration.replay.dataset=/tmp/site-metadata.xml
+ * </pre>
+ * The optional dataset should contain the metadata (identifier types, locations, concepts, forms) referenced by the
+ * captured payloads, otherwise most of them will fail validation.
+ */
+public class JournalReplayTest extends BaseModuleContextSensitiveTest {
+
+    private static final Log log = LogFactory.getLog(JournalReplayTest.class);
+
+    private static final String PROPERTY_PREFIX = "muzimaregistration.replay.";
+
+    @Before
+    public void setUp() throws Exception {
+        executeDataSet("org/openmrs/module/muzimaregistration/load/load-test-dataset.xml");
+        String dataset = System.getProperty(PROPERTY_PREFIX + "dataset");
+        if (dataset != null) {
+            executeDataSet(dataset);
+        }
+    }
+
+    @Test
+    public void shouldReplayJournal() throws Exception {
+        String journal = System.getProperty(PROPERTY_PREFIX + "journal");
+        Assume.assumeNotNull(journal);
+
+        List<JournalEntry> entries = PayloadJournalReader.read(new File(journal));
+        List<QueueData> queueDataList = new ArrayList<QueueData>();
+        long[] arrivalOffsets = new long[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            JournalEntry entry = entries.get(i);
+            QueueData queueData = new QueueData();
+            queueData.setUuid(entry.getUuid());
+            queueData.setDiscriminator(entry.getDiscriminator());
+            queueData.setPayload(entry.getPayload());
+            queueDataList.add(queueData);
+            arrivalOffsets[i] = entry.getCaptured() - entries.get(0).getCaptured();
+        }
+
+        boolean paced = Boolean.getBoolean(PROPERTY_PREFIX + "paced");
+        LoadTestReport report = new LoadTestHarness().run(queueDataList, paced ? arrivalOffsets : null);
+        log.info("Journal replay (" + (paced ? "original pacing" : "full speed") + "): " + report);
+        Assert.assertEquals(queueDataList.size(), report.getItems());
+        Assert.assertEquals(0, report.getErrors());
+        Assert.assertTrue(report.getFailures() <= report.getItems());
+        Assert.assertTrue(report.getItemsPerSecond() > 0);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.load;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.exception.QueueProcessorException;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzima.model.handler.QueueDataHandler;
+import org.openmrs.module.muzimaregistration.handler.DemographicsUpdateQueueDataHandler;
+import org.openmrs.module.muzimaregistration.handler.JsonEncounterQueueDataHandler;
+import org.openmrs.module.muzimaregistration.handler.JsonRegistrationQueueDataHandler;
+import org.openmrs.module.muzimaregistration.handler.XmlEncounterQueueDataHandler;
+import org.openmrs.module.muzimaregistration.handler.XmlRegistrationQueueDataHandler;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.openmrs.module.muzimaregistration.metrics.StatementCounter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pushes queue data through the real handlers and measures the throughput, the latency of each item and the number
+ * of statements executed. The hibernate session is flushed after each item and cleared periodically, the same way
+ * the items would be committed one by one by the queue processor. The stage timings of the handlers are collected
+ * from {@link HandlerMetrics}. Queue processor exceptions are counted as failures, any other exception is counted
+ * as an error and the run continues with the next item.
+ */
+public class LoadTestHarness {
+
+    private static final Log log = LogFactory.getLog(LoadTestHarness.class);
+
+    private static final int CLEAR_INTERVAL = 100;
+
+    private final List<QueueDataHandler> handlers = Arrays.<QueueDataHandler>asList(
+            new JsonRegistrationQueueDataHandler(),
+            new JsonEncounterQueueDataHandler(),
+            new DemographicsUpdateQueueDataHandler(),
+            new XmlRegistrationQueueDataHandler(),
+            new XmlEncounterQueueDataHandler());
+
+    /**
+     * Process all queue data and report the measurements.
+     *
+     * @param queueDataList the queue data in processing order.
+     * @return the report of the run.
+     */
+    public LoadTestReport run(final List<QueueData> queueDataList) {
+        return run(queueDataList, null);
+    }
+
+    /**
+     * Process all queue data, optionally following the original pacing, and report the measurements.
+     *
+     * @param queueDataList  the queue data in processing order.
+     * @param arrivalOffsets the offset in milliseconds of each queue data from the start of the run, null to process
+     *                       the queue data at full speed.
+     * @return the report of the run.
+     */
+    public LoadTestReport run(final List<QueueData> queueDataList, final long[] arrivalOffsets) {
+        StatementCounter.enable();
+        HandlerMetrics.clear();
+        long[] latencies = new long[queueDataList.size()];
+        int failures = 0;
+        int errors = 0;
+        long statements = StatementCounter.getCount();
+        long started = System.nanoTime();
+        for (int i = 0; i < queueDataList.size(); i++) {
+            QueueData queueData = queueDataList.get(i);
+            if (arrivalOffsets != null) {
+                waitUntil(started, arrivalOffsets[i]);
+            }
+            long itemStarted = System.nanoTime();
+            try {
+                getHandler(queueData).process(queueData);
+                Context.flushSession();
+            } catch (QueueProcessorException e) {
+                failures++;
+            } catch (RuntimeException e) {
+                log.error("Unexpected error processing queue data with uuid: " + queueData.getUuid(), e);
+                errors++;
+                Context.clearSession();
+            }
+            latencies[i] = System.nanoTime() - itemStarted;
+            if ((i + 1) % CLEAR_INTERVAL == 0) {
+                Context.clearSession();
+            }
+        }
+        long elapsed = System.nanoTime() - started;
+        return new LoadTestReport(latencies, failures, errors, elapsed, StatementCounter.getCount() - statements,
+                HandlerMetrics.snapshot());
+    }
+
+    private void waitUntil(final long started, final long offsetMillis) {
+        long remaining = offsetMillis - (System.nanoTime() - started) / 1000000L;
+        if (remaining > 0) {
+            try {
+                Thread.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private QueueDataHandler getHandler(final QueueData queueData) {
+        for (QueueDataHandler handler : handlers) {
+            if (handler.accept(queueData)) {
+                return handler;
+            }
+        }
+        throw new IllegalArgumentException("No handler for discriminator: " + queueData.getDiscriminator());
+    }
+}
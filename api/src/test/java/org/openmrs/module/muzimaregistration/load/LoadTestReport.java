@@ -0,0 +1,107 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.load;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The measurements of a load test run.
+ */
+public class LoadTestReport {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final long[] latencies;
+
+    private final int failures;
+
+    private final int errors;
+
+    private final long elapsedNanos;
+
+    private final long statements;
+
+    private final SortedMap<String, Long> handlerMetrics;
+
+    public LoadTestReport(final long[] latencies, final int failures, final int errors, final long elapsedNanos,
+                          final long statements, final SortedMap<String, Long> handlerMetrics) {
+        this.latencies = latencies.clone();
+        Arrays.sort(this.latencies);
+        this.failures = failures;
+        this.errors = errors;
+        this.elapsedNanos = elapsedNanos;
+        this.statements = statements;
+        this.handlerMetrics = handlerMetrics;
+    }
+
+    public int getItems() {
+        return latencies.length;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    public double getItemsPerSecond() {
+        return elapsedNanos == 0 ? 0 : latencies.length * 1000 * NANOS_PER_MILLI / elapsedNanos;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100.
+     * @return the latency at the percentile in milliseconds.
+     */
+    public double getLatencyMillis(final double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+        return latencies[Math.max(0, Math.min(index, latencies.length - 1))] / NANOS_PER_MILLI;
+    }
+
+    public double getStatementsPerItem() {
+        return latencies.length == 0 ? 0 : (double) statements / latencies.length;
+    }
+
+    /**
+     * @return the mean time in microseconds of each handler stage, keyed by the timer name.
+     */
+    public SortedMap<String, Long> getStageMeans() {
+        SortedMap<String, Long> means = new TreeMap<String, Long>();
+        for (Map.Entry<String, Long> entry : handlerMetrics.entrySet()) {
+            if (entry.getKey().endsWith(".mean_us")) {
+                means.put(entry.getKey().substring(0, entry.getKey().length() - ".mean_us".length()), entry.getValue());
+            }
+        }
+        return means;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format(
+                "items=%d failures=%d errors=%d items/sec=%.1f p50=%.2fms p99=%.2fms statements/item=%.1f",
+                getItems(), getFailures(), getErrors(), getItemsPerSecond(), getLatencyMillis(50), getLatencyMillis(99),
+                getStatementsPerItem()));
+        for (Map.Entry<String, Long> entry : getStageMeans().entrySet()) {
+            builder.append("\n  ").append(entry.getKey()).append(" mean=").append(entry.getValue()).append("us");
+        }
+        return builder.toString();
+    }
+}
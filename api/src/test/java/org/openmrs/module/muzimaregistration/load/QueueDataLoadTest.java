@@ -0,0 +1,70 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.load;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+
+import java.util.List;
+
+/**
+ * Load test of the handlers against the in memory test database. The test only runs when the number of patients is
+ * given, e.g.:
+ * <pre>
+ * mvn test -Dtest=QueueDataLoadTest -Dmuzimaregistration.load.patients=1000 \
+ *     -Dmuzimaregistration.load.duplicateRate=0.05 -Dmuzimaregistration.load.obsPerEncounter=20 \
+ *     -Dmuzimaregistration.load.ordering=ENCOUNTERS_FIRST
+ * </pre>
+ */
+public class QueueDataLoadTest extends BaseModuleContextSensitiveTest {
+
+    private static final Log log = LogFactory.getLog(QueueDataLoadTest.class);
+
+    private static final String PROPERTY_PREFIX = "muzimaregistration.load.";
+
+    @Before
+    public void setUp() throws Exception {
+        executeDataSet("org/openmrs/module/muzimaregistration/load/load-test-dataset.xml");
+    }
+
+    @Test
+    public void shouldReportThroughputLatencyAndStatements() {
+        String patients = System.getProperty(PROPERTY_PREFIX + "patients");
+        Assume.assumeNotNull(patients);
+
+        SyntheticPayloadGenerator generator = new SyntheticPayloadGenerator(
+                Long.getLong(PROPERTY_PREFIX + "seed", 42L));
+        generator.setDuplicateRate(Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "duplicateRate", "0.0")));
+        generator.setDemographicsUpdateRate(
+                Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "demographicsUpdateRate", "0.2")));
+        generator.setEncountersPerPatient(Integer.getInteger(PROPERTY_PREFIX + "encountersPerPatient", 1));
+        generator.setObsPerEncounter(Integer.getInteger(PROPERTY_PREFIX + "obsPerEncounter", 10));
+        generator.setOrdering(SyntheticPayloadGenerator.Ordering.valueOf(
+                System.getProperty(PROPERTY_PREFIX + "ordering", SyntheticPayloadGenerator.Ordering.INTERLEAVED.name())));
+        List<QueueData> queueDataList = generator.generate(Integer.parseInt(patients));
+
+        LoadTestReport report = new LoadTestHarness().run(queueDataList);
+        log.info("Load test: " + report);
+        Assert.assertEquals(queueDataList.size(), report.getItems());
+        Assert.assertEquals(0, report.getErrors());
+        Assert.assertTrue(report.getFailures() <= report.getItems());
+        Assert.assertTrue(report.getItemsPerSecond() > 0);
+    }
+}
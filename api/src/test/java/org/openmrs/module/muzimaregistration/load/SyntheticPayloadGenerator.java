@@ -0,0 +1,252 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.load;
+
+import net.minidev.json.JSONArray;
+import net.minidev.json.JSONObject;
+import org.openmrs.module.muzima.model.QueueData;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates json-registration, json-encounter and json-demographics-update queue data for synthetic patients. The
+ * payloads only reference metadata from the standard test dataset and the load test dataset.
+ */
+public class SyntheticPayloadGenerator {
+
+    /**
+     * How the registrations are ordered relative to the encounters and demographics updates of the same patient.
+     */
+    public enum Ordering {
+        /**
+         * All registrations first, then all encounters and updates.
+         */
+        REGISTRATIONS_FIRST,
+        /**
+         * Each registration is directly followed by the encounters and updates of the patient.
+         */
+        INTERLEAVED,
+        /**
+         * The encounters and updates of each patient arrive before the registration of the patient.
+         */
+        ENCOUNTERS_FIRST
+    }
+
+    private static final String JSON_REGISTRATION = "json-registration";
+
+    private static final String JSON_ENCOUNTER = "json-encounter";
+
+    private static final String JSON_DEMOGRAPHICS_UPDATE = "json-demographics-update";
+
+    // basic form from the standard test dataset.
+    private static final String FORM_UUID = "d9218f76-6c39-45f4-8efa-4c5c6c199f50";
+
+    private static final String[] OBS_CONCEPTS = {"5089^WEIGHT (KG)^99DCT", "5497^CD4 COUNT^99DCT"};
+
+    private static final String[] GIVEN_NAMES = {
+            "Amani", "Baraka", "Chausiku", "Daudi", "Eshe", "Faraji", "Gasira", "Halima", "Imani", "Jabari",
+            "Kamaria", "Lulu", "Makena", "Nia", "Omari", "Pendo", "Rehema", "Sefu", "Tumaini", "Zuri"
+    };
+
+    private static final String[] FAMILY_NAMES = {
+            "Kamau", "Otieno", "Wanjiru", "Mutua", "Njoroge", "Achieng", "Kiprono", "Wafula", "Chebet", "Omondi",
+            "Mwangi", "Nyambura", "Kipchoge", "Atieno", "Odhiambo", "Wambui", "Kiptoo", "Auma", "Barasa", "Cherono"
+    };
+
+    private final Random random;
+
+    private double duplicateRate = 0.0;
+
+    private double demographicsUpdateRate = 0.2;
+
+    private int encountersPerPatient = 1;
+
+    private int obsPerEncounter = 10;
+
+    private Ordering ordering = Ordering.INTERLEAVED;
+
+    public SyntheticPayloadGenerator(final long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * @param duplicateRate the fraction of registrations repeating the demographics of an earlier patient.
+     */
+    public void setDuplicateRate(final double duplicateRate) {
+        this.duplicateRate = duplicateRate;
+    }
+
+    /**
+     * @param demographicsUpdateRate the fraction of patients receiving a demographics update.
+     */
+    public void setDemographicsUpdateRate(final double demographicsUpdateRate) {
+        this.demographicsUpdateRate = demographicsUpdateRate;
+    }
+
+    public void setEncountersPerPatient(final int encountersPerPatient) {
+        this.encountersPerPatient = encountersPerPatient;
+    }
+
+    public void setObsPerEncounter(final int obsPerEncounter) {
+        this.obsPerEncounter = obsPerEncounter;
+    }
+
+    public void setOrdering(final Ordering ordering) {
+        this.ordering = ordering;
+    }
+
+    /**
+     * Generate the queue data for the patients.
+     *
+     * @param patientCount the number of patients.
+     * @return the queue data in processing order.
+     */
+    public List<QueueData> generate(final int patientCount) {
+        List<JSONObject> patients = new ArrayList<JSONObject>();
+        List<QueueData> registrations = new ArrayList<QueueData>();
+        List<List<QueueData>> followUps = new ArrayList<List<QueueData>>();
+        for (int i = 0; i < patientCount; i++) {
+            JSONObject patient;
+            if (!patients.isEmpty() && random.nextDouble() < duplicateRate) {
+                patient = copyWithNewUuid(patients.get(random.nextInt(patients.size())));
+            } else {
+                patient = createPatient(i);
+            }
+            patients.add(patient);
+            registrations.add(createQueueData(JSON_REGISTRATION, createRegistration(patient)));
+
+            List<QueueData> patientFollowUps = new ArrayList<QueueData>();
+            for (int j = 0; j < encountersPerPatient; j++) {
+                patientFollowUps.add(createQueueData(JSON_ENCOUNTER, createEncounter(patient)));
+            }
+            if (random.nextDouble() < demographicsUpdateRate) {
+                patientFollowUps.add(createQueueData(JSON_DEMOGRAPHICS_UPDATE, createDemographicsUpdate(patient)));
+            }
+            followUps.add(patientFollowUps);
+        }
+
+        List<QueueData> queueDataList = new ArrayList<QueueData>();
+        if (ordering == Ordering.REGISTRATIONS_FIRST) {
+            queueDataList.addAll(registrations);
+            for (List<QueueData> patientFollowUps : followUps) {
+                queueDataList.addAll(patientFollowUps);
+            }
+        } else {
+            for (int i = 0; i < registrations.size(); i++) {
+                if (ordering == Ordering.INTERLEAVED) {
+                    queueDataList.add(registrations.get(i));
+                    queueDataList.addAll(followUps.get(i));
+                } else {
+                    queueDataList.addAll(followUps.get(i));
+                    queueDataList.add(registrations.get(i));
+                }
+            }
+        }
+        return queueDataList;
+    }
+
+    private JSONObject createPatient(final int index) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.YEAR, -(1 + random.nextInt(80)));
+        calendar.add(Calendar.DAY_OF_YEAR, -random.nextInt(365));
+
+        JSONObject patient = new JSONObject();
+        patient.put("patient.uuid", UUID.randomUUID().toString());
+        patient.put("patient.medical_record_number", "LOAD-" + index);
+        patient.put("patient.given_name", GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)]);
+        patient.put("patient.middle_name", "");
+        patient.put("patient.family_name", FAMILY_NAMES[random.nextInt(FAMILY_NAMES.length)] + index);
+        patient.put("patient.sex", random.nextBoolean() ? "M" : "F");
+        patient.put("patient.birth_date", formatDate(calendar.getTime()));
+        patient.put("patient.birthdate_estimated", false);
+        patient.put("patient.mothers_name", GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)]);
+        patient.put("patient.phone_number", "07" + (10000000 + random.nextInt(89999999)));
+        patient.put("patient.county", "Uasin Gishu");
+        patient.put("patient.location", "Kapseret");
+        patient.put("patient.sub_location", "Simat");
+        patient.put("patient.village", "Kipkenyo");
+        return patient;
+    }
+
+    private JSONObject copyWithNewUuid(final JSONObject patient) {
+        JSONObject copy = new JSONObject();
+        copy.putAll(patient);
+        copy.put("patient.uuid", UUID.randomUUID().toString());
+        return copy;
+    }
+
+    private JSONObject createEncounterSection() {
+        JSONObject encounter = new JSONObject();
+        encounter.put("encounter.form_uuid", FORM_UUID);
+        encounter.put("encounter.type_id", "1");
+        encounter.put("encounter.provider_id", "admin");
+        encounter.put("encounter.location_id", "1");
+        encounter.put("encounter.encounter_datetime", formatDate(new Date()));
+        return encounter;
+    }
+
+    private String createRegistration(final JSONObject patient) {
+        JSONObject payload = new JSONObject();
+        payload.put("patient", patient);
+        payload.put("encounter", createEncounterSection());
+        return payload.toJSONString();
+    }
+
+    private String createEncounter(final JSONObject patient) {
+        JSONObject observation = new JSONObject();
+        for (int i = 0; i < obsPerEncounter; i++) {
+            String concept = OBS_CONCEPTS[i % OBS_CONCEPTS.length];
+            JSONArray values = (JSONArray) observation.get(concept);
+            if (values == null) {
+                values = new JSONArray();
+                observation.put(concept, values);
+            }
+            values.add(String.valueOf(40 + random.nextInt(600)));
+        }
+        JSONObject payload = new JSONObject();
+        payload.put("patient", patient);
+        payload.put("encounter", createEncounterSection());
+        payload.put("observation", observation);
+        return payload.toJSONString();
+    }
+
+    private String createDemographicsUpdate(final JSONObject patient) {
+        JSONObject update = new JSONObject();
+        update.put("demographicsupdate.given_name", GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)]);
+        update.put("demographicsupdate.village", "Langas");
+        update.put("demographicsupdate.phone_number", "07" + (10000000 + random.nextInt(89999999)));
+        JSONObject payload = new JSONObject();
+        payload.put("patient", patient);
+        payload.put("encounter", createEncounterSection());
+        payload.put("demographicsupdate", update);
+        return payload.toJSONString();
+    }
+
+    private QueueData createQueueData(final String discriminator, final String payload) {
+        QueueData queueData = new QueueData();
+        queueData.setDiscriminator(discriminator);
+        queueData.setPayload(payload);
+        return queueData;
+    }
+
+    private static String formatDate(final Date date) {
+        return new SimpleDateFormat("dd-MM-yyyy").format(date);
+    }
+}
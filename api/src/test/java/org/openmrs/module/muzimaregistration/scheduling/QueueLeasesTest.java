@@ -0,0 +1,129 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.scheduling;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.api.PendingQueueDataService;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
+import org.openmrs.module.muzimaregistration.handler.JsonRegistrationQueueDataHandler;
+import org.openmrs.module.muzimaregistration.load.SyntheticPayloadGenerator;
+import org.openmrs.module.muzimaregistration.utils.JsonUtils;
+import org.openmrs.test.BaseModuleContextSensitiveTest;
+import org.springframework.test.annotation.NotTransactional;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the queue through two nodes sharing the database, the way the queue processor of each node reads the queue
+ * and hands the queue data to the handler. The leases are claimed and completed in their own transactions, so the
+ * test runs outside of the test transaction and removes its data afterwards.
+ */
+public class QueueLeasesTest extends BaseModuleContextSensitiveTest {
+
+    private static final long LEASE_MILLIS = 60000;
+
+    private static final int BATCH_SIZE = 2;
+
+    private List<QueueData> queue;
+
+    @Before
+    public void setUp() throws Exception {
+        executeDataSet("org/openmrs/module/muzimaregistration/load/load-test-dataset.xml");
+        SyntheticPayloadGenerator generator = new SyntheticPayloadGenerator(7L);
+        generator.setEncountersPerPatient(0);
+        generator.setDemographicsUpdateRate(0.0);
+        queue = generator.generate(4);
+        for (QueueData queueData : queue) {
+            queueData.setUuid(UUID.randomUUID().toString());
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        QueueLeases.stop();
+        deleteAllData();
+    }
+
+    /**
+     * @verifies skip the queue data leased by another node without failing it
+     * @see QueueLeases#claimBatch(java.util.List)
+     */
+    @Test
+    @NotTransactional
+    public void claimBatch_shouldSkipTheQueueDataLeasedByAnotherNodeWithoutFailingIt() throws Exception {
+        JsonRegistrationQueueDataHandler handler = new JsonRegistrationQueueDataHandler();
+
+        QueueLeases.start("node-a", LEASE_MILLIS, BATCH_SIZE);
+        List<QueueData> batchA = QueueLeases.claimBatch(queue);
+        assertEquals(Arrays.asList(queue.get(0), queue.get(1)), batchA);
+
+        // node-b reads the queue while node-a is still processing its batch.
+        QueueLeases.start("node-b", LEASE_MILLIS, BATCH_SIZE);
+        List<QueueData> batchB = QueueLeases.claimBatch(queue);
+        assertEquals(Arrays.asList(queue.get(2), queue.get(3)), batchB);
+        process(handler, batchB);
+
+        // node-a still holds its batch, the queue data completed by node-b are left out.
+        QueueLeases.start("node-a", LEASE_MILLIS, BATCH_SIZE);
+        batchA = QueueLeases.claimBatch(queue);
+        assertEquals(Arrays.asList(queue.get(0), queue.get(1)), batchA);
+        process(handler, batchA);
+
+        QueueLeases.start("node-b", LEASE_MILLIS, BATCH_SIZE);
+        assertTrue(QueueLeases.claimBatch(queue).isEmpty());
+
+        RegistrationDataService registrationDataService = Context.getService(RegistrationDataService.class);
+        for (QueueData queueData : queue) {
+            String temporaryUuid = JsonUtils.readAsString(queueData.getPayload(), "$['patient']['patient.uuid']");
+            assertNotNull(registrationDataService.getRegistrationDataByTemporaryUuid(temporaryUuid));
+        }
+    }
+
+    /**
+     * @verifies not claim a queue data leased by another node
+     * @see QueueLeases#claimOutOfTurn(org.openmrs.module.muzima.model.QueueData)
+     */
+    @Test
+    @NotTransactional
+    public void claimOutOfTurn_shouldNotClaimAQueueDataLeasedByAnotherNode() throws Exception {
+        QueueLeases.start("node-a", LEASE_MILLIS, BATCH_SIZE);
+        QueueLeases.claimBatch(queue);
+
+        QueueLeases.start("node-b", LEASE_MILLIS, BATCH_SIZE);
+        assertFalse(QueueLeases.claimOutOfTurn(queue.get(0)));
+        assertTrue(QueueLeases.claimOutOfTurn(queue.get(2)));
+        QueueLeases.giveBack(queue.get(2));
+
+        QueueLeases.start("node-a", LEASE_MILLIS, BATCH_SIZE);
+        assertEquals(Arrays.asList(queue.get(0), queue.get(1)), QueueLeases.claimBatch(queue));
+    }
+
+    private static void process(final JsonRegistrationQueueDataHandler handler, final List<QueueData> batch)
+            throws Exception {
+        for (QueueData queueData : batch) {
+            Context.getService(PendingQueueDataService.class).processPendingQueueData(handler, queueData);
+        }
+    }
+}
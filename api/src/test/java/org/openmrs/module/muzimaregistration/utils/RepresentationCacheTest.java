@@ -0,0 +1,97 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests {@link RepresentationCache}.
+ */
+public class RepresentationCacheTest {
+
+    private static final String PATIENT_UUID = "patient-uuid";
+
+    @After
+    public void clearCache() {
+        RepresentationCache.clear();
+    }
+
+    @Test
+    public void get_shouldReturnTheCachedRepresentationForTheSameDateChanged() {
+        Date dateChanged = new Date();
+        RepresentationCache.put(PATIENT_UUID, "default", dateChanged, createRepresentation());
+
+        Date sameDateChanged = new Date(dateChanged.getTime());
+        assertEquals(createRepresentation(), RepresentationCache.get(PATIENT_UUID, "default", sameDateChanged));
+        assertNull(RepresentationCache.get(PATIENT_UUID, "full", dateChanged));
+    }
+
+    @Test
+    public void get_shouldNotReturnTheRepresentationOnceThePatientChanged() {
+        Date dateChanged = new Date();
+        RepresentationCache.put(PATIENT_UUID, "default", dateChanged, createRepresentation());
+
+        assertNull(RepresentationCache.get(PATIENT_UUID, "default", new Date(dateChanged.getTime() + 1000)));
+    }
+
+    @Test
+    public void invalidate_shouldRemoveTheRepresentationsOfThePatient() {
+        Date dateChanged = new Date();
+        RepresentationCache.put(PATIENT_UUID, "default", dateChanged, createRepresentation());
+        RepresentationCache.invalidate(PATIENT_UUID);
+
+        assertNull(RepresentationCache.get(PATIENT_UUID, "default", dateChanged));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void get_shouldNotLetCallersChangeTheCachedRepresentation() {
+        Date dateChanged = new Date();
+        Map<String, Object> rendered = createRepresentation();
+        RepresentationCache.put(PATIENT_UUID, "default", dateChanged, rendered);
+        rendered.put("uuid", "changed after put");
+
+        Map<String, Object> first = (Map<String, Object>) RepresentationCache.get(PATIENT_UUID, "default", dateChanged);
+        first.put("uuid", "changed after get");
+        ((List<Object>) first.get("identifiers")).clear();
+        ((Map<String, Object>) first.get("person")).put("gender", "F");
+
+        Map<String, Object> second = (Map<String, Object>) RepresentationCache.get(PATIENT_UUID, "default", dateChanged);
+        assertNotSame(first, second);
+        assertEquals(createRepresentation(), second);
+    }
+
+    private static Map<String, Object> createRepresentation() {
+        Map<String, Object> person = new LinkedHashMap<String, Object>();
+        person.put("gender", "M");
+        List<Object> identifiers = new ArrayList<Object>();
+        identifiers.add("1234-5");
+        Map<String, Object> representation = new LinkedHashMap<String, Object>();
+        representation.put("uuid", PATIENT_UUID);
+        representation.put("identifiers", identifiers);
+        representation.put("person", person);
+        return representation;
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.benchmarks;
+
+import org.apache.commons.io.IOUtils;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openmrs.Concept;
+import org.openmrs.ConceptDatatype;
+import org.openmrs.EncounterType;
+import org.openmrs.Form;
+import org.openmrs.Location;
+import org.openmrs.Patient;
+import org.openmrs.PatientIdentifier;
+import org.openmrs.PatientIdentifierType;
+import org.openmrs.PersonName;
+import org.openmrs.User;
+import org.openmrs.api.ConceptService;
+import org.openmrs.api.EncounterService;
+import org.openmrs.api.FormService;
+import org.openmrs.api.LocationService;
+import org.openmrs.api.PatientService;
+import org.openmrs.api.UserService;
+import org.openmrs.api.context.ServiceContext;
+import org.openmrs.module.muzimaforms.api.MuzimaFormService;
+import org.openmrs.module.muzimaregistration.api.ProcessedQueueDataService;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Installs mocked OpenMRS services in the service context, so the handlers and utility classes can be benchmarked
+ * without a database. The lookups return fixed metadata and a small concept dictionary matching the benchmark
+ * payloads. The mock invocation overhead is part of every measurement, but it is constant between runs.
+ */
+public class BenchmarkServices {
+
+    // hl7 abbreviations of the concept datatypes used in the benchmark payloads.
+    private static final String NUMERIC = "NM";
+
+    private static final String CODED = "CWE";
+
+    private static final String TEXT = "ST";
+
+    private static final String DATE = "DT";
+
+    private static final String NOT_APPLICABLE = "ZZ";
+
+    private static boolean installed;
+
+    private BenchmarkServices() {
+    }
+
+    /**
+     * Install the mocked services in the service context. Calling this method more than once has no effect.
+     */
+    public static synchronized void install() {
+        if (installed) {
+            return;
+        }
+        final Map<Integer, Concept> concepts = createConcepts();
+        ConceptService conceptService = mock(ConceptService.class);
+        when(conceptService.getConcept(anyInt())).thenAnswer(new Answer<Concept>() {
+            @Override
+            public Concept answer(final InvocationOnMock invocation) throws Throwable {
+                return concepts.get(invocation.getArguments()[0]);
+            }
+        });
+
+        EncounterType encounterType = new EncounterType(1);
+        EncounterService encounterService = mock(EncounterService.class);
+        when(encounterService.getEncounterType(anyInt())).thenReturn(encounterType);
+
+        Form form = new Form(1);
+        form.setEncounterType(encounterType);
+        FormService formService = mock(FormService.class);
+        when(formService.getFormByUuid(anyString())).thenReturn(form);
+
+        LocationService locationService = mock(LocationService.class);
+        when(locationService.getLocation(anyInt())).thenReturn(new Location(1));
+        when(locationService.getLocationByUuid(anyString())).thenReturn(new Location(1));
+
+        UserService userService = mock(UserService.class);
+        when(userService.getUserByUsername(anyString())).thenReturn(new User(1));
+
+        PatientIdentifierType identifierType = new PatientIdentifierType(3);
+        Patient savedPatient = createPatient("Jane", "Doe", "F", new Date(), "1234-5");
+        PatientService patientService = mock(PatientService.class);
+        when(patientService.getPatientIdentifierType(anyInt())).thenReturn(identifierType);
+        when(patientService.getPatientIdentifierTypeByUuid(anyString())).thenReturn(identifierType);
+        when(patientService.getPatientByUuid(anyString())).thenReturn(savedPatient);
+        when(patientService.getPatients(anyString())).thenReturn(Arrays.asList(savedPatient));
+
+        ServiceContext serviceContext = ServiceContext.getInstance();
+        serviceContext.setService(ConceptService.class, conceptService);
+        serviceContext.setService(EncounterService.class, encounterService);
+        serviceContext.setService(FormService.class, formService);
+        serviceContext.setService(LocationService.class, locationService);
+        serviceContext.setService(UserService.class, userService);
+        serviceContext.setService(PatientService.class, patientService);
+        serviceContext.setService(RegistrationDataService.class, mock(RegistrationDataService.class));
+        serviceContext.setService(ProcessedQueueDataService.class, mock(ProcessedQueueDataService.class));
+        serviceContext.setService(MuzimaFormService.class, mock(MuzimaFormService.class));
+        installed = true;
+    }
+
+    /**
+     * Create a patient with a single name and identifier.
+     */
+    public static Patient createPatient(final String givenName, final String familyName, final String gender,
+                                        final Date birthdate, final String identifier) {
+        Patient patient = new Patient();
+        patient.setGender(gender);
+        patient.setBirthdate(birthdate);
+        PersonName personName = new PersonName(givenName, null, familyName);
+        personName.setPreferred(true);
+        patient.addName(personName);
+        PatientIdentifier patientIdentifier = new PatientIdentifier();
+        patientIdentifier.setIdentifier(identifier);
+        patientIdentifier.setPreferred(true);
+        patient.addIdentifier(patientIdentifier);
+        return patient;
+    }
+
+    /**
+     * Read a benchmark payload from the classpath.
+     *
+     * @param name the name of the payload file.
+     * @return the payload.
+     */
+    public static String readPayload(final String name) throws IOException {
+        InputStream inputStream = BenchmarkServices.class.getResourceAsStream(name);
+        try {
+            return IOUtils.toString(inputStream, "UTF-8");
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+    }
+
+    private static Map<Integer, Concept> createConcepts() {
+        Map<Integer, Concept> concepts = new HashMap<Integer, Concept>();
+        addConcept(concepts, 5089, NUMERIC, false);
+        addConcept(concepts, 5090, NUMERIC, false);
+        addConcept(concepts, 1728, NUMERIC, false);
+        addConcept(concepts, 1732, NUMERIC, false);
+        addConcept(concepts, 5096, DATE, false);
+        addConcept(concepts, 160632, TEXT, false);
+        addConcept(concepts, 1284, CODED, false);
+        addConcept(concepts, 1729, CODED, false);
+        addConcept(concepts, 1731, CODED, false);
+        addConcept(concepts, 1727, NOT_APPLICABLE, true);
+        addConcept(concepts, 1730, NOT_APPLICABLE, true);
+        for (int answerId : new int[]{5945, 143264, 139084, 71617, 70116}) {
+            addConcept(concepts, answerId, NOT_APPLICABLE, false);
+        }
+        return concepts;
+    }
+
+    private static void addConcept(final Map<Integer, Concept> concepts, final int conceptId,
+                                   final String hl7Abbreviation, final boolean set) {
+        ConceptDatatype datatype = new ConceptDatatype();
+        datatype.setHl7Abbreviation(hl7Abbreviation);
+        Concept concept = new Concept(conceptId);
+        concept.setDatatype(datatype);
+        concept.setSet(set);
+        concepts.put(conceptId, concept);
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.module.muzimaregistration.utils.ISO8601Util;
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the ISO 8601 formatting and parsing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ISO8601UtilBenchmark {
+
+    private Calendar calendar;
+
+    private String formatted;
+
+    @Setup
+    public void setUp() {
+        calendar = Calendar.getInstance();
+        formatted = ISO8601Util.fromCalendar(calendar);
+    }
+
+    @Benchmark
+    public String fromCalendar() {
+        return ISO8601Util.fromCalendar(calendar);
+    }
+
+    @Benchmark
+    public Calendar toCalendar() throws ParseException {
+        return ISO8601Util.toCalendar(formatted);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.module.muzimaregistration.utils.JsonUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the json read methods over the well formed registration payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JsonUtilsBenchmark {
+
+    private String payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        payload = BenchmarkServices.readPayload("well-formed-registration.json");
+    }
+
+    @Benchmark
+    public String readAsString() {
+        return JsonUtils.readAsString(payload, "$['discriminator']");
+    }
+
+    @Benchmark
+    public String readAsStringNested() {
+        return JsonUtils.readAsString(payload, "$['payload']['form']['fields'][12]['value']");
+    }
+
+    @Benchmark
+    public Object readAsObject() {
+        return JsonUtils.readAsObject(payload, "$['payload']");
+    }
+
+    @Benchmark
+    public List<Object> readAsObjectList() {
+        return JsonUtils.readAsObjectList(payload, "$['payload']['form']['fields']");
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.Patient;
+import org.openmrs.module.muzimaregistration.utils.PatientSearchUtils;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the fuzzy patient matching over candidate lists of varying size. Half of the candidates share the
+ * gender and birthdate of the searched patient so the name edit distances are computed for them, and none of them
+ * matches, so the whole list is scanned.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PatientSearchBenchmark {
+
+    private static final String[] GIVEN_NAMES = {"Amani", "Baraka", "Chausiku", "Daudi", "Eshe", "Faraji", "Gasira"};
+
+    private static final String[] FAMILY_NAMES = {"Kamau", "Otieno", "Wanjiru", "Mutua", "Njoroge", "Achieng"};
+
+    @Param({"1", "10", "100", "1000"})
+    private int candidates;
+
+    private List<Patient> patients;
+
+    private Patient unsavedPatient;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        Date birthdate = new Date();
+        Date otherBirthdate = new Date(birthdate.getTime() - TimeUnit.DAYS.toMillis(400));
+        patients = new ArrayList<Patient>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            String givenName = GIVEN_NAMES[random.nextInt(GIVEN_NAMES.length)];
+            String familyName = FAMILY_NAMES[random.nextInt(FAMILY_NAMES.length)];
+            patients.add(BenchmarkServices.createPatient(givenName, familyName, "F",
+                    i % 2 == 0 ? birthdate : otherBirthdate, "ID-" + i));
+        }
+        unsavedPatient = BenchmarkServices.createPatient("Zawadi", "Mwangangi", "F", birthdate, "ID-UNSAVED");
+    }
+
+    @Benchmark
+    public Patient findPatient() {
+        return PatientSearchUtils.findPatient(patients, unsavedPatient);
+    }
+}
@@ -0,0 +1,70 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmrs.module.muzima.model.QueueData;
+import org.openmrs.module.muzimaregistration.handler.XmlEncounterQueueDataHandler;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the xml encounter processing: the DOM parsing of the payload alone, and the full validation which
+ * parses the payload and builds the encounter and obs from the DOM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class XmlEncounterBenchmark {
+
+    private XmlEncounterQueueDataHandler handler;
+
+    private QueueData queueData;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkServices.install();
+        handler = new XmlEncounterQueueDataHandler();
+        queueData = new QueueData();
+        queueData.setDiscriminator(handler.getDiscriminator());
+        queueData.setPayload(BenchmarkServices.readPayload("xml-encounter.xml"));
+    }
+
+    @Benchmark
+    public Document parse() throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(queueData.getPayload())));
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return handler.validate(queueData);
+    }
+}
@@ -45,6 +45,7 @@ public class AdminList extends AdministrationSectionExt {
 	public Map<String, String> getLinks() {
 		LinkedHashMap<String, String> map = new LinkedHashMap<String, String>();
 		map.put("/module/muzimaregistration/view.list", "muzimaregistration.view");
+		map.put("/module/muzimaregistration/traces.list", "muzimaregistration.traces");
 		return map;
 	}
 	
@@ -0,0 +1,50 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.web.controller;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzimaregistration.metrics.HandlerMetrics;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * Writes the handler metrics as plain text, one "name value" pair per line. Requires the same privilege as the slow
+ * item traces page.
+ */
+@Controller
+@RequestMapping(value = "module/muzimaregistration/metrics.form")
+public class HandlerMetricsController {
+
+    private static final String PRIVILEGE_VIEW_METRICS = "View Administration Functions";
+
+    @RequestMapping(method = RequestMethod.GET)
+    public void getMetrics(final HttpServletResponse response) throws IOException {
+        Context.requirePrivilege(PRIVILEGE_VIEW_METRICS);
+        response.setContentType("text/plain");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+        for (Map.Entry<String, Long> entry : HandlerMetrics.snapshot().entrySet()) {
+            writer.print(entry.getKey());
+            writer.print(' ');
+            writer.println(entry.getValue());
+        }
+        writer.flush();
+    }
+}
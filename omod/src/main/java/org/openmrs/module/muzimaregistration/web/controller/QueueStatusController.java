@@ -0,0 +1,49 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.web.controller;
+
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzimaregistration.api.QueueStatusService;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reports the backlog of the muzima queues per discriminator, using count queries only.
+ */
+@Controller
+@RequestMapping(value = "module/muzimaregistration/status.json")
+public class QueueStatusController {
+
+    @RequestMapping(method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> getStatus() {
+        QueueStatusService service = Context.getService(QueueStatusService.class);
+        Map<String, Long> queueData = service.countQueueDataByDiscriminator();
+        long backlog = 0;
+        for (Long count : queueData.values()) {
+            backlog += count;
+        }
+        Map<String, Object> status = new HashMap<String, Object>();
+        status.put("backlog", backlog);
+        status.put("queueData", queueData);
+        status.put("errorData", service.countErrorDataByDiscriminator());
+        status.put("forms", service.countMuzimaForms());
+        return status;
+    }
+}
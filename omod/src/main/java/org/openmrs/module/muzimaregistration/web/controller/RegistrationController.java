@@ -33,8 +33,10 @@ public class RegistrationController {
 
     @RequestMapping(method = RequestMethod.GET)
     @ResponseBody
-    public Map<String, Object> getNotificationsFor(final @RequestParam(value = "uuid") String uuid) {
+    public Map<String, Object> getNotificationsFor(final @RequestParam(value = "uuid") String uuid,
+                                                   final @RequestParam(value = "fields", required = false) String fields) {
         RegistrationDataService service = Context.getService(RegistrationDataService.class);
-        return WebConverter.convertRegistrationData(service.getRegistrationDataByUuid(uuid));
+        return WebConverter.convertRegistrationData(service.getRegistrationDataByUuid(uuid),
+                WebConverter.parseFields(fields));
     }
 }
@@ -0,0 +1,145 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.web.controller;
+
+import net.minidev.json.JSONValue;
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataCallback;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
+import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.utils.ISO8601Util;
+import org.openmrs.module.muzimaregistration.web.utils.WebConverter;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Streams all registration data as newline delimited json or csv directly to the response. The optional fields
+ * parameter selects the columns, e.g. "temporaryUuid,assignedUuid" to export the mappings only. The registration data are
+ * read using a database cursor and written one row at a time, so the export runs in constant memory.
+ */
+@Controller
+@RequestMapping(value = "module/muzimaregistration/registrations/export.form")
+public class RegistrationExportController {
+
+    private static final String FORMAT_CSV = "csv";
+
+    private static final String[] COLUMNS = new String[]{
+            WebConverter.FIELD_UUID, WebConverter.FIELD_TEMPORARY_UUID,
+            WebConverter.FIELD_ASSIGNED_UUID, WebConverter.FIELD_SUBMITTED};
+
+    @RequestMapping(method = RequestMethod.GET)
+    public void export(final @RequestParam(value = "format", required = false) String format,
+                       final @RequestParam(value = "fields", required = false) String fields,
+                       final HttpServletResponse response) throws IOException {
+        final boolean csv = StringUtils.equalsIgnoreCase(FORMAT_CSV, format);
+        final String[] columns = selectColumns(WebConverter.parseFields(fields));
+        response.setCharacterEncoding("UTF-8");
+        response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+        response.setHeader("Content-Disposition",
+                "attachment; filename=\"registrations." + (csv ? "csv" : "ndjson") + "\"");
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), "UTF-8"));
+        if (csv) {
+            writer.write(StringUtils.join(columns, ","));
+            writer.write("\n");
+        }
+        RegistrationDataService service = Context.getService(RegistrationDataService.class);
+        service.streamRegistrationData(new RegistrationDataCallback() {
+            @Override
+            public void handle(final RegistrationData registrationData) throws IOException {
+                String[] values = new String[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    values[i] = getValue(registrationData, columns[i]);
+                }
+                if (csv) {
+                    writeCsvRow(writer, values);
+                } else {
+                    writeJsonRow(writer, columns, values);
+                }
+            }
+        });
+        writer.flush();
+    }
+
+    private static String[] selectColumns(final Set<String> fields) {
+        List<String> columns = new ArrayList<String>();
+        for (String column : COLUMNS) {
+            if (fields.contains(column)) {
+                columns.add(column);
+            }
+        }
+        return columns.toArray(new String[columns.size()]);
+    }
+
+    private static String getValue(final RegistrationData registrationData, final String column) {
+        if (WebConverter.FIELD_UUID.equals(column)) {
+            return registrationData.getUuid();
+        } else if (WebConverter.FIELD_TEMPORARY_UUID.equals(column)) {
+            return registrationData.getTemporaryUuid();
+        } else if (WebConverter.FIELD_ASSIGNED_UUID.equals(column)) {
+            return registrationData.getAssignedUuid();
+        }
+        return formatDate(registrationData.getDateCreated());
+    }
+
+    private static void writeCsvRow(final Writer writer, final String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(",");
+            }
+            String value = StringUtils.defaultString(values[i]);
+            if (StringUtils.containsAny(value, ",\"\n\r")) {
+                value = "\"" + StringUtils.replace(value, "\"", "\"\"") + "\"";
+            }
+            writer.write(value);
+        }
+        writer.write("\n");
+    }
+
+    private static void writeJsonRow(final Writer writer, final String[] columns, final String[] values)
+            throws IOException {
+        writer.write("{");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(",");
+            }
+            writer.write("\"" + columns[i] + "\":");
+            writer.write(values[i] == null ? "null" : "\"" + JSONValue.escape(values[i]) + "\"");
+        }
+        writer.write("}\n");
+    }
+
+    private static String formatDate(final Date date) {
+        if (date == null) {
+            return null;
+        }
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTime(date);
+        return ISO8601Util.fromCalendar(calendar);
+    }
+}
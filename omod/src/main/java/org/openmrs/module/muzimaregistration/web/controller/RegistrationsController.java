@@ -13,9 +13,11 @@
  */
 package org.openmrs.module.muzimaregistration.web.controller;
 
+import org.apache.commons.lang.StringUtils;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.web.utils.ConditionalGetUtils;
 import org.openmrs.module.muzimaregistration.web.utils.WebConverter;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -23,10 +25,14 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * TODO: Write brief description about the class here.
@@ -38,18 +44,58 @@ public class RegistrationsController {
         @RequestMapping(method = RequestMethod.GET)
         @ResponseBody
         public Map<String, Object> getNotificationsFor(final @RequestParam(value = "pageNumber") Integer pageNumber,
-                                                       final @RequestParam(value = "pageSize") Integer pageSize) {
-            Map<String, Object> response = new HashMap<String, Object>();
+                                                       final @RequestParam(value = "pageSize") Integer pageSize,
+                                                       final @RequestParam(value = "fields", required = false) String fields,
+                                                       final @RequestParam(value = "search", required = false) String search,
+                                                       final @RequestParam(value = "afterId", required = false) Integer afterId,
+                                                       final HttpServletRequest request,
+                                                       final HttpServletResponse response) {
+            Map<String, Object> serverResponse = new HashMap<String, Object>();
             RegistrationDataService service = Context.getService(RegistrationDataService.class);
+            Set<String> requestedFields = WebConverter.parseFields(fields);
 
-            int pages = (service.countRegistrationData().intValue() + pageSize - 1)/ pageSize;
+            Number count = service.countRegistrationData(search);
+            int pages = (count.intValue() + pageSize - 1)/ pageSize;
+
+            // clients browsing page by page pass the id of the last registration data of the previous page, so the
+            // page is read through the primary key instead of skipping all the rows of the previous pages.
+            List<RegistrationData> registrationDataList;
+            if (afterId != null) {
+                registrationDataList = service.getRegistrationDataAfter(search, afterId, pageSize);
+            } else {
+                registrationDataList = service.getRegistrationData(search, pageNumber, pageSize);
+            }
+            // the validators are derived from the registration data and the patients, the patients are only loaded
+            // when the client doesn't have the current version of the page.
+            Date lastModified = null;
+            List<String> uuids = new ArrayList<String>();
+            List<String> assignedUuids = new ArrayList<String>();
+            for (RegistrationData registrationData : registrationDataList) {
+                lastModified = ConditionalGetUtils.lastModified(registrationData, lastModified);
+                uuids.add(registrationData.getUuid());
+                assignedUuids.add(registrationData.getAssignedUuid());
+            }
+            // responses without the patients (e.g. devices only syncing the mappings) don't depend on the patients.
+            if (requestedFields.contains(WebConverter.FIELD_PATIENT)) {
+                lastModified = ConditionalGetUtils.latest(lastModified, service.getPatientsLastModified(assignedUuids));
+            }
+            String eTag = ConditionalGetUtils.createETag(pageNumber, pageSize, afterId, count, lastModified, uuids,
+                    StringUtils.join(requestedFields, ","), StringUtils.defaultString(search));
+            if (ConditionalGetUtils.isNotModified(request, eTag, lastModified)) {
+                ConditionalGetUtils.writeNotModified(response, eTag, lastModified);
+                return null;
+            }
+            ConditionalGetUtils.writeValidators(response, eTag, lastModified);
 
             List<Object> objects = new ArrayList<Object>();
-            for (RegistrationData notificationData : service.getRegistrationData(pageNumber, pageSize)) {
-                objects.add(WebConverter.convertRegistrationData(notificationData));
+            Integer lastId = afterId;
+            for (RegistrationData notificationData : registrationDataList) {
+                objects.add(WebConverter.convertRegistrationData(notificationData, requestedFields));
+                lastId = notificationData.getId();
             }
-            response.put("pages", pages);
-            response.put("objects", objects);
-            return response;
+            serverResponse.put("pages", pages);
+            serverResponse.put("lastId", lastId);
+            serverResponse.put("objects", objects);
+            return serverResponse;
         }
 }
@@ -0,0 +1,33 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.web.controller;
+
+import org.openmrs.module.muzimaregistration.metrics.SlowItemTraces;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * Shows the traces of the queue data which took longer than the threshold to process.
+ */
+@Controller
+public class SlowItemTracesController {
+
+    @RequestMapping(value = "/module/muzimaregistration/traces.list", method = RequestMethod.GET)
+    public void traces(final Model model) {
+        model.addAttribute("thresholdMillis", SlowItemTraces.getThresholdMillis());
+        model.addAttribute("traces", SlowItemTraces.getTraces());
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.web.filter;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.openmrs.api.context.Context;
+import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
+import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.web.utils.ConditionalGetUtils;
+import org.openmrs.module.webservices.rest.web.RestConstants;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * Answers conditional GET requests for the registration rest resource before the request reaches the rest
+ * representation pipeline. The validators are derived from the registration data and the assigned patient, so a
+ * device re-downloading an unchanged patient will get 304 Not Modified without the patient being converted.
+ */
+public class RegistrationConditionalGetFilter implements Filter {
+
+    private final Log log = LogFactory.getLog(RegistrationConditionalGetFilter.class);
+
+    @Override
+    public void init(final FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse,
+                         final FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        String temporaryUuid = StringUtils.substringAfterLast(request.getRequestURI(), "/");
+        if (!"GET".equals(request.getMethod()) || StringUtils.isBlank(temporaryUuid) || !Context.isAuthenticated()) {
+            chain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        try {
+            RegistrationDataService service = Context.getService(RegistrationDataService.class);
+            RegistrationData registrationData = service.getReadOnlyRegistrationDataByTemporaryUuid(temporaryUuid);
+            if (registrationData != null) {
+                Date lastModified = ConditionalGetUtils.lastModified(registrationData,
+                        service.getPatientsLastModified(Arrays.asList(registrationData.getAssignedUuid())));
+                String representation = StringUtils.defaultIfEmpty(
+                        request.getParameter(RestConstants.REQUEST_PROPERTY_FOR_REPRESENTATION),
+                        RestConstants.REPRESENTATION_DEFAULT);
+                String eTag = ConditionalGetUtils.createETag(temporaryUuid,
+                        registrationData.getAssignedUuid(), representation, lastModified);
+                if (ConditionalGetUtils.isNotModified(request, eTag, lastModified)) {
+                    ConditionalGetUtils.writeNotModified(response, eTag, lastModified);
+                    return;
+                }
+                ConditionalGetUtils.writeValidators(response, eTag, lastModified);
+            }
+        } catch (RuntimeException e) {
+            // let the rest resource deal with the request the usual way.
+            log.debug("Unable to compute validators for registration: " + temporaryUuid, e);
+        }
+        chain.doFilter(servletRequest, servletResponse);
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.web.filter;
+
+import org.openmrs.module.muzimaregistration.utils.ReadThrottle;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Sheds registration read requests with 503 Service Unavailable when more requests than allowed by
+ * {@link ReadThrottle} are already being served and no permit frees up in time. The devices retry after the time
+ * given in the Retry-After header instead of holding a request thread while the database is busy.
+ */
+public class RegistrationThrottleFilter implements Filter {
+
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    @Override
+    public void init(final FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(final ServletRequest servletRequest, final ServletResponse servletResponse,
+                         final FilterChain chain) throws IOException, ServletException {
+        ReadThrottle.Permit permit;
+        try {
+            permit = ReadThrottle.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            permit = null;
+        }
+        if (permit == null) {
+            HttpServletResponse response = (HttpServletResponse) servletResponse;
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    "Too many registration requests, please retry later.");
+            return;
+        }
+        try {
+            chain.doFilter(servletRequest, servletResponse);
+        } finally {
+            permit.release();
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
@@ -21,6 +21,7 @@ import org.openmrs.api.context.Context;
 import org.openmrs.module.muzima.web.controller.MuzimaRestController;
 import org.openmrs.module.muzimaregistration.api.RegistrationDataService;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+import org.openmrs.module.muzimaregistration.utils.RepresentationCache;
 import org.openmrs.module.muzimaregistration.web.wrapper.FakePatient;
 import org.openmrs.module.webservices.rest.web.RequestContext;
 import org.openmrs.module.webservices.rest.web.RestConstants;
@@ -31,9 +32,11 @@ import org.openmrs.module.webservices.rest.web.representation.FullRepresentation
 import org.openmrs.module.webservices.rest.web.representation.Representation;
 import org.openmrs.module.webservices.rest.web.resource.impl.DataDelegatingCrudResource;
 import org.openmrs.module.webservices.rest.web.resource.impl.DelegatingResourceDescription;
+import org.openmrs.module.webservices.rest.web.response.ObjectNotFoundException;
 import org.openmrs.module.webservices.rest.web.response.ResourceDoesNotSupportOperationException;
 import org.openmrs.module.webservices.rest.web.response.ResponseException;
 
+import java.util.Date;
 import java.util.LinkedHashSet;
 import java.util.Set;
 
@@ -54,12 +57,49 @@ public class RegistrationResource extends DataDelegatingCrudResource<FakePatient
      */
     @Override
     public FakePatient getByUniqueId(final String uniqueId) {
+        Patient patient = getAssignedPatient(uniqueId);
+        if (patient == null) {
+            return null;
+        }
+        return FakePatient.copyPatient(patient);
+    }
+
+    /**
+     * Gets the representation of the patient assigned to the temporary uuid. The rendered representation is cached
+     * until the patient is changed, so repeated polling from the devices will not rebuild the representation.
+     *
+     * @param uuid    the temporary uuid of the patient.
+     * @param context the request context.
+     * @return the representation of the assigned patient.
+     * @throws ResponseException
+     */
+    @Override
+    public Object retrieve(final String uuid, final RequestContext context) throws ResponseException {
+        Patient patient = getAssignedPatient(uuid);
+        if (patient == null) {
+            throw new ObjectNotFoundException();
+        }
+
+        Representation representation = context.getRepresentation();
+        Date dateChanged = patient.getDateChanged() != null ? patient.getDateChanged() : patient.getDateCreated();
+        Object rendered = RepresentationCache.get(patient.getUuid(), representation.getRepresentation(), dateChanged);
+        if (rendered == null) {
+            rendered = asRepresentation(FakePatient.copyPatient(patient), representation);
+            RepresentationCache.put(patient.getUuid(), representation.getRepresentation(), dateChanged, rendered);
+        }
+        return rendered;
+    }
+
+    private Patient getAssignedPatient(final String temporaryUuid) {
         PatientService patientService = Context.getPatientService();
         RegistrationDataService registrationService = Context.getService(RegistrationDataService.class);
 
-        RegistrationData registrationData = registrationService.getRegistrationDataByTemporaryUuid(uniqueId);
-        Patient patient = patientService.getPatientByUuid(registrationData.getAssignedUuid());
-        return FakePatient.copyPatient(patient);
+        RegistrationData registrationData =
+                registrationService.getReadOnlyRegistrationDataByTemporaryUuid(temporaryUuid);
+        if (registrationData == null) {
+            return null;
+        }
+        return patientService.getPatientByUuid(registrationData.getAssignedUuid());
     }
 
     /**
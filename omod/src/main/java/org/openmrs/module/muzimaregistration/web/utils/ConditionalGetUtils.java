@@ -0,0 +1,149 @@
+/**
+ * The contents of this file are subject to the OpenMRS Public License
+ * Version 1.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ * http://license.openmrs.org
+ *
+ * Software distributed under the License is distributed on an "AS IS"
+ * basis, WITHOUT WARRANTY OF ANY KIND, either express or implied. See the
+ * License for the specific language governing rights and limitations
+ * under the License.
+ *
+ * Copyright (C) OpenMRS, LLC.  All Rights Reserved.
+ */
+package org.openmrs.module.muzimaregistration.web.utils;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Date;
+
+/**
+ * Helper methods to answer conditional GET requests using the ETag and Last-Modified validators.
+ */
+public class ConditionalGetUtils {
+
+    private static final String HEADER_ETAG = "ETag";
+
+    private static final String HEADER_LAST_MODIFIED = "Last-Modified";
+
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+    private static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+
+    private static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+    private ConditionalGetUtils() {
+    }
+
+    /**
+     * Create a strong entity tag from the parts of the response which determine the response content.
+     *
+     * @param parts the parts of the response.
+     * @return the quoted entity tag.
+     */
+    public static String createETag(final Object... parts) {
+        StringBuilder builder = new StringBuilder();
+        for (Object part : parts) {
+            if (part instanceof Date) {
+                builder.append(((Date) part).getTime());
+            } else {
+                builder.append(String.valueOf(part));
+            }
+            builder.append('|');
+        }
+        return "\"" + DigestUtils.md5Hex(builder.toString()) + "\"";
+    }
+
+    /**
+     * Get the most recent date between the last modified date of a registration data and the other date.
+     *
+     * @param registrationData the registration data.
+     * @param date             the other date.
+     * @return the most recent date.
+     */
+    public static Date lastModified(final RegistrationData registrationData, final Date date) {
+        Date registrationDate = registrationData.getDateChanged() != null ?
+                registrationData.getDateChanged() : registrationData.getDateCreated();
+        return latest(registrationDate, date);
+    }
+
+    /**
+     * Get the most recent date of the two dates.
+     *
+     * @param first  the first date.
+     * @param second the second date.
+     * @return the most recent date or null when both dates are null.
+     */
+    public static Date latest(final Date first, final Date second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return first.after(second) ? first : second;
+    }
+
+    /**
+     * Check whether the client already has the current version of the response.
+     *
+     * @param request      the request.
+     * @param eTag         the current entity tag of the response.
+     * @param lastModified the current last modified date of the response.
+     * @return true when the client copy is still valid.
+     */
+    public static boolean isNotModified(final HttpServletRequest request, final String eTag, final Date lastModified) {
+        String ifNoneMatch = request.getHeader(HEADER_IF_NONE_MATCH);
+        if (StringUtils.isNotBlank(ifNoneMatch)) {
+            for (String candidate : StringUtils.split(ifNoneMatch, ",")) {
+                String trimmed = StringUtils.trim(candidate);
+                if (StringUtils.equals(trimmed, "*") || StringUtils.equals(trimmed, eTag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (lastModified == null) {
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(HEADER_IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // http dates only have second precision.
+        return ifModifiedSince >= 0 && ifModifiedSince / 1000 >= lastModified.getTime() / 1000;
+    }
+
+    /**
+     * Write the validators of the current version of the response.
+     *
+     * @param response     the response.
+     * @param eTag         the current entity tag of the response.
+     * @param lastModified the current last modified date of the response.
+     */
+    public static void writeValidators(final HttpServletResponse response, final String eTag, final Date lastModified) {
+        response.setHeader(HEADER_ETAG, eTag);
+        if (lastModified != null) {
+            response.setDateHeader(HEADER_LAST_MODIFIED, lastModified.getTime());
+        }
+        response.setHeader(HEADER_CACHE_CONTROL, "private, must-revalidate");
+    }
+
+    /**
+     * Answer the request with 304 Not Modified.
+     *
+     * @param response     the response.
+     * @param eTag         the current entity tag of the response.
+     * @param lastModified the current last modified date of the response.
+     */
+    public static void writeNotModified(final HttpServletResponse response, final String eTag, final Date lastModified) {
+        writeValidators(response, eTag, lastModified);
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    }
+}
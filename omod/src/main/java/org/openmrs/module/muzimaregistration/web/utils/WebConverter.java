@@ -13,33 +13,100 @@
  */
 package org.openmrs.module.muzimaregistration.web.utils;
 
+import org.apache.commons.lang.StringUtils;
 import org.openmrs.Patient;
 import org.openmrs.api.context.Context;
 import org.openmrs.module.muzimaregistration.api.model.RegistrationData;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * TODO: Write brief description about the class here.
  */
 public class WebConverter {
+
+    public static final String FIELD_UUID = "uuid";
+
+    public static final String FIELD_TEMPORARY_UUID = "temporaryUuid";
+
+    public static final String FIELD_ASSIGNED_UUID = "assignedUuid";
+
+    public static final String FIELD_SUBMITTED = "submitted";
+
+    public static final String FIELD_PATIENT = "patient";
+
+    public static final Set<String> ALL_FIELDS = Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(
+            FIELD_UUID, FIELD_TEMPORARY_UUID, FIELD_ASSIGNED_UUID, FIELD_SUBMITTED, FIELD_PATIENT)));
+
+    /**
+     * Parse the comma separated fields requested by the client, e.g. "temporaryUuid,assignedUuid" for devices only
+     * syncing the mappings. Unknown fields are ignored, a request with only unknown fields gets all fields like a
+     * request without fields instead of empty objects.
+     *
+     * @param fields the requested fields.
+     * @return the requested fields in the order of {@link #ALL_FIELDS}, or all fields when no known fields are
+     *         requested.
+     */
+    public static Set<String> parseFields(final String fields) {
+        if (StringUtils.isBlank(fields)) {
+            return ALL_FIELDS;
+        }
+        Set<String> requested = new LinkedHashSet<String>();
+        for (String field : StringUtils.split(fields, ",")) {
+            requested.add(StringUtils.trim(field));
+        }
+        Set<String> parsed = new LinkedHashSet<String>(ALL_FIELDS);
+        parsed.retainAll(requested);
+        if (parsed.isEmpty()) {
+            return ALL_FIELDS;
+        }
+        return parsed;
+    }
+
     public static Map<String, Object> convertRegistrationData(final RegistrationData registrationData) {
+        return convertRegistrationData(registrationData, ALL_FIELDS);
+    }
+
+    /**
+     * Convert the registration data with only the requested fields. The assigned patient is only loaded when the
+     * patient field is requested.
+     *
+     * @param registrationData the registration data.
+     * @param fields           the requested fields.
+     * @return the requested fields of the registration data.
+     */
+    public static Map<String, Object> convertRegistrationData(final RegistrationData registrationData,
+                                                              final Set<String> fields) {
         Map<String, Object> map = new HashMap<String, Object>();
         if (registrationData != null) {
-            map.put("uuid", registrationData.getUuid());
-            map.put("assignedUuid", registrationData.getAssignedUuid());
-
-            Patient patient = Context.getPatientService().getPatientByUuid(registrationData.getAssignedUuid());
-            Map<String, Object> patientMap = new HashMap<String, Object>();
-            patientMap.put("name", patient.getPersonName().getFullName());
-            patientMap.put("gender", patient.getGender());
-            patientMap.put("birthdate", Context.getDateFormat().format(patient.getBirthdate()));
-            patientMap.put("identifier", patient.getPatientIdentifier().getIdentifier());
-            map.put("patient", patientMap);
-
-            map.put("temporaryUuid", registrationData.getTemporaryUuid());
-            map.put("submitted", Context.getDateFormat().format(registrationData.getDateCreated()));
+            if (fields.contains(FIELD_UUID)) {
+                map.put(FIELD_UUID, registrationData.getUuid());
+            }
+            if (fields.contains(FIELD_ASSIGNED_UUID)) {
+                map.put(FIELD_ASSIGNED_UUID, registrationData.getAssignedUuid());
+            }
+
+            if (fields.contains(FIELD_PATIENT)) {
+                Patient patient = Context.getPatientService().getPatientByUuid(registrationData.getAssignedUuid());
+                Map<String, Object> patientMap = new HashMap<String, Object>();
+                patientMap.put("name", patient.getPersonName().getFullName());
+                patientMap.put("gender", patient.getGender());
+                patientMap.put("birthdate", Context.getDateFormat().format(patient.getBirthdate()));
+                patientMap.put("identifier", patient.getPatientIdentifier().getIdentifier());
+                map.put(FIELD_PATIENT, patientMap);
+            }
+
+            if (fields.contains(FIELD_TEMPORARY_UUID)) {
+                map.put(FIELD_TEMPORARY_UUID, registrationData.getTemporaryUuid());
+            }
+            if (fields.contains(FIELD_SUBMITTED)) {
+                map.put(FIELD_SUBMITTED, Context.getDateFormat().format(registrationData.getDateCreated()));
+            }
         }
         return map;
     }
@@ -14,8 +14,15 @@ muzimaregistration.factory('$registrations', function($http) {
     var getRegistration = function(uuid) {
         return $http.get("registration.json?uuid=" + uuid);
     };
-    var getRegistrations = function(pageNumber, pageSize) {
-        return $http.get("registrations.json?pageNumber=" + pageNumber + "&pageSize=" + pageSize);
+    var getRegistrations = function(pageNumber, pageSize, search, afterId) {
+        var url = "registrations.json?pageNumber=" + pageNumber + "&pageSize=" + pageSize;
+        if (afterId != null) {
+            url = url + "&afterId=" + afterId;
+        }
+        if (search) {
+            url = url + "&search=" + encodeURIComponent(search);
+        }
+        return $http.get(url);
     };
     return {
         getRegistrations: getRegistrations,
@@ -12,38 +12,94 @@ function ViewRegistrationCtrl($scope, $location, $routeParams, $registrations) {
     };
 }
 
-function ListRegistrationsCtrl($scope, $registrations) {
+function ListRegistrationsCtrl($scope, $q, $timeout, $registrations) {
     // initialize the paging structure
     $scope.maxSize = 5;
     $scope.pageSize = 5;
     $scope.currentPage = 1;
-    $registrations.getRegistrations($scope.currentPage, $scope.pageSize).
-        then(function (response) {
-            var serverData = response.data;
+    $scope.search = '';
+
+    // the search term the pages are requested for, only taken from the search box once the user stops typing.
+    var activeSearch = '';
+    // pages fetched for the active search, keyed by the search term and the page number. the pages of the previous
+    // search terms are dropped when the search changes.
+    var pages = {};
+    // only the latest requested page is shown, responses arriving for a page the user already moved away from are
+    // discarded (angular 1.0 can't abort an in-flight request).
+    var sequence = 0;
+    var searchDelay = null;
+
+    // each page is requested after the last id of the previous page, the server seeks to it instead of skipping the
+    // rows of all the previous pages.
+    var fetchPage = function (search, pageNumber) {
+        var cache = pages[search] || (pages[search] = {});
+        if (!cache[pageNumber]) {
+            var lastId = pageNumber > 1 ? fetchPage(search, pageNumber - 1).then(function (serverData) {
+                return serverData.lastId;
+            }) : $q.when(0);
+            cache[pageNumber] = lastId.then(function (afterId) {
+                return $registrations.getRegistrations(pageNumber, $scope.pageSize, search, afterId);
+            }).then(function (response) {
+                return response.data;
+            }, function (response) {
+                // don't keep the failed page, it will be requested again next time.
+                delete cache[pageNumber];
+                return $q.reject(response);
+            });
+        }
+        return cache[pageNumber];
+    };
+
+    var showPage = function () {
+        var current = ++sequence;
+        var pageNumber = $scope.currentPage;
+        var search = activeSearch;
+        fetchPage(search, pageNumber).then(function (serverData) {
+            if (current != sequence) {
+                return;
+            }
             $scope.registrations = serverData.objects;
             $scope.noOfPages = serverData.pages;
+            // prefetch the next page, so browsing forward doesn't wait for the server.
+            if (pageNumber < serverData.pages) {
+                fetchPage(search, pageNumber + 1);
+            }
         });
+    };
+
+    showPage();
 
     $scope.$watch('currentPage', function (newValue, oldValue) {
         if (newValue != oldValue) {
-            $registrations.getRegistrations($scope.currentPage, $scope.pageSize).
-                then(function (response) {
-                    var serverData = response.data;
-                    $scope.errors = serverData.objects;
-                    $scope.noOfPages = serverData.pages;
-                });
+            showPage();
         }
-    }, true);
+    });
 
+    // wait for the user to stop typing before searching.
     $scope.$watch('search', function (newValue, oldValue) {
         if (newValue != oldValue) {
-            $scope.currentPage = 1;
-            $registrations.getRegistrations($scope.currentPage, $scope.pageSize).
-                then(function (response) {
-                    var serverData = response.data;
-                    $scope.errors = serverData.objects;
-                    $scope.noOfPages = serverData.pages;
-                });
+            $timeout.cancel(searchDelay);
+            searchDelay = $timeout(function () {
+                activeSearch = $scope.search;
+                pages = {};
+                if ($scope.currentPage == 1) {
+                    showPage();
+                } else {
+                    $scope.currentPage = 1;
+                }
+            }, 300);
         }
-    }, true);
-}
\ No newline at end of file
+    });
+
+    $scope.previousPage = function () {
+        if ($scope.currentPage > 1) {
+            $scope.currentPage--;
+        }
+    };
+
+    $scope.nextPage = function () {
+        if ($scope.currentPage < $scope.noOfPages) {
+            $scope.currentPage++;
+        }
+    };
+}
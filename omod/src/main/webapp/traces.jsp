@@ -0,0 +1,41 @@
+<%@ include file="/WEB-INF/template/include.jsp" %>
+<%@ include file="/WEB-INF/template/header.jsp" %>
+
+<openmrs:require privilege="View Administration Functions" otherwise="/login.htm" redirect="/module/muzimaregistration/traces.list"/>
+
+<h3><spring:message code="muzimaregistration.traces"/></h3>
+<p><spring:message code="muzimaregistration.traces.threshold" arguments="${thresholdMillis}"/></p>
+
+<c:choose>
+    <c:when test="${empty traces}">
+        <p><spring:message code="muzimaregistration.traces.empty"/></p>
+    </c:when>
+    <c:otherwise>
+        <table cellpadding="4" cellspacing="0" border="1">
+            <tr>
+                <th><spring:message code="muzimaregistration.traces.started"/></th>
+                <th><spring:message code="muzimaregistration.traces.queueData"/></th>
+                <th><spring:message code="muzimaregistration.traces.discriminator"/></th>
+                <th><spring:message code="muzimaregistration.traces.total"/></th>
+                <th><spring:message code="muzimaregistration.traces.failed"/></th>
+                <th><spring:message code="muzimaregistration.traces.stages"/></th>
+            </tr>
+            <c:forEach var="trace" items="${traces}">
+                <tr>
+                    <td><openmrs:formatDate date="${trace.started}" type="long"/></td>
+                    <td><c:out value="${trace.queueDataUuid}"/></td>
+                    <td><c:out value="${trace.discriminator}"/></td>
+                    <td>${trace.totalMillis}</td>
+                    <td>${trace.failed}</td>
+                    <td>
+                        <c:forEach var="timing" items="${trace.stageTimings}">
+                            <c:out value="${timing.stage}"/>: ${timing.offsetMillis} / ${timing.millis} / ${timing.statements}<br/>
+                        </c:forEach>
+                    </td>
+                </tr>
+            </c:forEach>
+        </table>
+    </c:otherwise>
+</c:choose>
+
+<%@ include file="/WEB-INF/template/footer.jsp" %>